@@ -15,11 +15,24 @@
  */
 package com.github.nethad.clustermeister.api;
 
+import com.github.nethad.clustermeister.api.impl.CancellationStatistics;
+import com.github.nethad.clustermeister.api.impl.Combiner;
 import com.github.nethad.clustermeister.api.impl.ExecutorServiceMode;
 import com.github.nethad.clustermeister.api.impl.Job;
+import com.github.nethad.clustermeister.api.impl.JobResultListener;
+import com.github.nethad.clustermeister.api.impl.Mapper;
+import com.github.nethad.clustermeister.api.impl.QueueStatistics;
+import com.github.nethad.clustermeister.api.impl.Reducer;
+import com.github.nethad.clustermeister.api.impl.SchedulingQueue;
+import com.github.nethad.clustermeister.api.impl.Task;
+import com.github.nethad.clustermeister.node.common.BroadcastCacheStatistics;
+import com.github.nethad.clustermeister.node.common.ClassCacheStatistics;
 import com.google.common.util.concurrent.ListenableFuture;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import org.jppf.client.JPPFClient;
 
@@ -37,6 +50,21 @@ public interface Clustermeister {
      * @return an ExecutorService for all nodes currently provisioned.
      */
     public ExecutorService getExecutorService(ExecutorServiceMode executorServiceMode);
+    
+    /**
+     * Returns a new {@link ExecutorService} whose tasks are dispatched through a {@link SchedulingQueue}.
+     * Executor services sharing the cluster through queues get node threads by priority, weight 
+     * and minimum share, instead of first come, first served.
+     * @param executorServiceMode the {@link ExecutorServiceMode} for this {@link ExecutorService}.
+     * @param queue the queue, null for an executor service that is not scheduled.
+     * @return an ExecutorService for all nodes currently provisioned.
+     */
+    public ExecutorService getExecutorService(ExecutorServiceMode executorServiceMode, SchedulingQueue queue);
+    
+    /**
+     * @return the statistics of all scheduling queues by queue name, including the time tasks waited.
+     */
+    public Map<String, QueueStatistics> getQueueStatistics();
 
     /**
      * The Clustermeister implementation is based on <a href="http://www.jppf.org/">JPPF</a>.
@@ -50,9 +78,16 @@ public interface Clustermeister {
     /**
      * This method returns all nodes that are currently connected.
      * For information on how to execute code on the nodes, see {@link ExecutorNode}.
-     * @return all nodes currently connected.
+     * Joins and leaves are pushed to the API, so every call reflects the current membership.
+     * @return an immutable snapshot of all nodes currently connected.
      */
     public Collection<ExecutorNode> getAllNodes();
+    
+    /**
+     * @param nodeId the ID of a node.
+     * @return the node with this ID, or null if it is not connected.
+     */
+    public ExecutorNode getNode(String nodeId);
 
     /**
      * Shuts down all currently running executions and closes the connection to the (local) JPPF driver.
@@ -92,4 +127,82 @@ public interface Clustermeister {
      */
     public <T> List<ListenableFuture<T>> executeJobAsyncTasks(final Job<T> job) throws Exception;
     
+    /**
+     * Execute a job asynchronously and stream task results to a listener as they arrive.
+     * The listener is registered before the job is submitted, so no result is missed.
+     * @param <T>
+     * @param job the job to be executed.
+     * @param listener receives every task result and a final completion callback.
+     * @return a list of Futures, where every Future is a task result.
+     * @throws Exception 
+     */
+    public <T> List<ListenableFuture<T>> executeJobAsyncTasks(Job<T> job, JobResultListener<T> listener) throws Exception;
+    
+    /**
+     * Execute a stream of tasks with bounded client memory.
+     * The tasks are cut into sub-jobs which are submitted as results are consumed, 
+     * so that at most {@code maxInFlight} tasks are submitted but not yet consumed.
+     * Results are returned in the order of the tasks. Calls to {@link Iterator#next()} block until 
+     * the next result is available and throw an unchecked exception if the task failed.
+     * @param <T>
+     * @param tasks the tasks to be executed, consumed lazily.
+     * @param maxInFlight the maximum number of tasks submitted but not yet consumed.
+     * @return an iterator over the task results.
+     */
+    public <T> Iterator<T> executeStream(Iterator<? extends Task<T>> tasks, int maxInFlight);
+    
+    /**
+     * Execute a map/reduce computation. Every input chunk becomes one task that applies the mapper on a node.
+     * The partial results of all tasks executed together on a node are pre-combined on that node 
+     * with the combiner, so the amount of data returned scales with the number of nodes rather 
+     * than the number of tasks. The reducer is applied on the client to the pre-combined results.
+     * This method is blocking.
+     * @param <I> the type of the input chunks.
+     * @param <O> the type of the partial results.
+     * @param <R> the type of the final result.
+     * @param source the input chunks.
+     * @param mapper maps an input chunk to a partial result on a node.
+     * @param combiner merges partial results on a node, must be associative.
+     * @param reducer reduces the pre-combined partial results on the client.
+     * @return the final result.
+     * @throws Exception if a task failed.
+     */
+    public <I, O, R> R mapReduce(Iterable<I> source, Mapper<I, O> mapper, Combiner<O> combiner, 
+            Reducer<O, R> reducer) throws Exception;
+    
+    /**
+     * Job data values above {@link com.github.nethad.clustermeister.api.impl.JobImpl#BROADCAST_THRESHOLD} 
+     * are broadcast: each node fetches them once and keeps them in a local cache across jobs.
+     * This method queries the cache statistics of all nodes. It is blocking.
+     * @return the cache statistics by node ID.
+     * @throws Exception if a node could not be queried.
+     */
+    public Map<String, BroadcastCacheStatistics> getBroadcastCacheStatistics() throws Exception;
+    
+    /**
+     * Nodes keep the client class path entries of executed jobs in a persistent cache, 
+     * so that unchanged classes are not loaded remotely again, also after a node restart.
+     * This method queries the class cache statistics of all nodes. It is blocking.
+     * @return the cache statistics by node ID.
+     * @throws Exception if a node could not be queried.
+     */
+    public Map<String, ClassCacheStatistics> getClassCacheStatistics() throws Exception;
+    
+    /**
+     * Executes a {@link Callable} once on every node, e.g. to warm caches or collect diagnostics.
+     * All nodes are reached with a single broadcast job, and every future completes as soon as
+     * its node delivered the result. Futures of nodes that left before executing the callable fail.
+     * @param <T> the result type.
+     * @param callable the code to execute on every node.
+     * @return a future per node ID, for all nodes currently provisioned.
+     * @throws Exception if the broadcast job can not be created.
+     */
+    public <T> Map<String, ListenableFuture<T>> executeOnAll(Callable<T> callable) throws Exception;
+    
+    /**
+     * Returns how many tasks were cancelled or expired by their job's deadline, and an estimate 
+     * of the node time saved by cancelling their jobs on the driver.
+     * @return the cancellation statistics of this client.
+     */
+    public CancellationStatistics getCancellationStatistics();
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api;
+
+import java.io.Serializable;
+
+/**
+ * The host and ports of a JPPF driver the API connects to.
+ *
+ * @author thomas
+ */
+public class DriverAddress implements Serializable {
+    private final String host;
+    private final int serverPort;
+    private final int managementPort;
+
+    public DriverAddress(String host, int serverPort, int managementPort) {
+        this.host = host;
+        this.serverPort = serverPort;
+        this.managementPort = managementPort;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    public int getManagementPort() {
+        return managementPort;
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + serverPort + ":" + managementPort;
+    }
+
+    /**
+     * Parses the format of {@link #toString()}.
+     * @param address host, server port and management port separated by colons.
+     * @return the address.
+     * @throws IllegalArgumentException if the address is malformed.
+     */
+    public static DriverAddress valueOf(String address) {
+        String[] parts = address.trim().split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException(String.format("Malformed driver address '%s'.", address));
+        }
+        try {
+            return new DriverAddress(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("Malformed driver address '%s'.", address), ex);
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.github.nethad.clustermeister.api;
 
+import com.github.nethad.clustermeister.api.impl.ExecutorServiceMode;
 import com.google.common.util.concurrent.ListenableFuture;
 import java.util.concurrent.Callable;
 
@@ -38,4 +39,13 @@ public interface ExecutorNode extends Node {
      */
     public <T> ListenableFuture<T> execute(Callable<T> callable);
     
+    /**
+     * Sets how {@link #execute(Callable)} schedules {@link Callable}s on this node.
+     * With a timeout or batch size, callables are bundled into one job per batch
+     * and each of them still gets its own {@link ListenableFuture}.
+     * Callables pending under the previous mode are sent immediately.
+     * @param executorServiceMode the {@link ExecutorServiceMode}, null for {@link ExecutorServiceMode#standard()}.
+     */
+    public void setExecutorServiceMode(ExecutorServiceMode executorServiceMode);
+    
 }
@@ -15,6 +15,7 @@
  */
 package com.github.nethad.clustermeister.api;
 
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
 import org.jppf.management.JPPFSystemInformation;
 
 /**
@@ -42,4 +43,10 @@ public interface NodeCapabilities {
     
     public String getJppfConfig();
     
+    /**
+     * The latest health and load of the node, as pushed by the node to its driver every second.
+     * @return the latest sample, or null if the node did not send one yet.
+     */
+    public NodeTelemetrySample getTelemetry();
+    
 }
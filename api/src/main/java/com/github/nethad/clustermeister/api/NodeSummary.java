@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api;
+
+import com.github.nethad.clustermeister.api.utils.JPPFProperties;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import org.jppf.management.JPPFSystemInformation;
+import org.jppf.utils.TypedProperties;
+
+/**
+ * The few properties of a node the API needs, instead of its whole {@link JPPFSystemInformation}.
+ * A summary serializes to a few dozen bytes, the full system information is fetched on demand.
+ *
+ * @author thomas
+ */
+public class NodeSummary implements Externalizable {
+    private String id;
+    private String host;
+    private int availableProcessors;
+    private int processingThreads;
+    private long totalMemory;
+
+    /**
+     * For deserialization only.
+     */
+    public NodeSummary() {
+    }
+
+    public NodeSummary(String id, String host, int availableProcessors, int processingThreads, long totalMemory) {
+        this.id = id;
+        this.host = host;
+        this.availableProcessors = availableProcessors;
+        this.processingThreads = processingThreads;
+        this.totalMemory = totalMemory;
+    }
+
+    /**
+     * Projects the system information of a node to a summary. Missing values are 0.
+     * @param id the node ID.
+     * @param host the host of the node, may be null.
+     * @param systemInformation the system information of the node, may be null.
+     * @return the summary.
+     */
+    public static NodeSummary of(String id, String host, JPPFSystemInformation systemInformation) {
+        TypedProperties runtime = systemInformation == null ? null : systemInformation.getRuntime();
+        TypedProperties jppf = systemInformation == null ? null : systemInformation.getJppf();
+        return new NodeSummary(id, host, 
+                runtime == null ? 0 : runtime.getInt(JPPFProperties.AVAILABLE_PROCESSORS, 0),
+                jppf == null ? 0 : jppf.getInt(JPPFProperties.PROCESSING_THREADS, 0),
+                runtime == null ? 0 : runtime.getLong(JPPFProperties.TOTAL_MEMORY, 0));
+    }
+
+    public String getID() {
+        return id;
+    }
+
+    /**
+     * @return the host of the node as reported by the driver, null if unknown.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    public int getAvailableProcessors() {
+        return availableProcessors;
+    }
+
+    public int getProcessingThreads() {
+        return processingThreads;
+    }
+
+    /**
+     * @return the total memory of the node's JVM in bytes.
+     */
+    public long getTotalMemory() {
+        return totalMemory;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeUTF(id);
+        out.writeBoolean(host != null);
+        if (host != null) {
+            out.writeUTF(host);
+        }
+        out.writeInt(availableProcessors);
+        out.writeInt(processingThreads);
+        out.writeLong(totalMemory);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        id = in.readUTF();
+        host = in.readBoolean() ? in.readUTF() : null;
+        availableProcessors = in.readInt();
+        processingThreads = in.readInt();
+        totalMemory = in.readLong();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (host=%s, processors=%d, threads=%d, memory=%d)", 
+                id, host, availableProcessors, processingThreads, totalMemory);
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.google.common.util.concurrent.ForwardingExecutorService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import org.jppf.client.concurrent.JPPFExecutorService;
+
+/**
+ * Measures latency and execution time of the tasks submitted to a {@link JPPFExecutorService}
+ * and reports them to an {@link AdaptiveExecutorServiceMode}.
+ *
+ * Tasks are wrapped to measure their execution time on the node. Completions are detected by a single
+ * monitor thread polling the pending futures, so no thread waits per task. The monitor only polls while 
+ * tasks are pending, at a twentieth of the target latency but no more often than every {@link #POLL_INTERVAL} ms.
+ * Only {@code submit} and {@code execute} are measured, {@code invokeAll} and {@code invokeAny} are forwarded as is.
+ *
+ * @author thomas
+ */
+class AdaptiveExecutorService extends ForwardingExecutorService {
+
+    static final long POLL_INTERVAL = 10;
+
+    private final JPPFExecutorService delegate;
+    private final AdaptiveExecutorServiceMode mode;
+    private final Queue<PendingTask> pendingTasks = new ConcurrentLinkedQueue<PendingTask>();
+    private final ScheduledExecutorService monitor;
+    private final long pollInterval;
+    private final Runnable poll = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (AdaptiveExecutorService.this) {
+                scheduledPoll = null;
+            }
+            pollCompletedTasks();
+            if (!pendingTasks.isEmpty()) {
+                schedulePoll();
+            }
+        }
+    };
+    private ScheduledFuture<?> scheduledPoll = null;
+
+    AdaptiveExecutorService(JPPFExecutorService delegate, AdaptiveExecutorServiceMode mode) {
+        this.delegate = delegate;
+        this.mode = mode;
+        this.pollInterval = Math.max(POLL_INTERVAL, mode.getTargetLatency() / 20);
+        monitor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("cm-adaptive-monitor-%d").setDaemon(true).build());
+    }
+
+    @Override
+    protected ExecutorService delegate() {
+        return delegate;
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        long submitTime = System.nanoTime();
+        Future<TimedResult<T>> future = delegate.submit(new TimedCallable<T>(task));
+        pendingTasks.add(new PendingTask(future, submitTime));
+        schedulePoll();
+        return new TimedFuture<T>(future);
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return submit(new RunnableCallable<T>(task, result));
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return submit(task, null);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        submit(command);
+    }
+
+    @Override
+    public void shutdown() {
+        stopMonitor();
+        mode.release(delegate);
+        super.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        stopMonitor();
+        mode.release(delegate);
+        return super.shutdownNow();
+    }
+
+    private synchronized void schedulePoll() {
+        if (scheduledPoll != null || monitor.isShutdown()) {
+            return;
+        }
+        try {
+            scheduledPoll = monitor.schedule(poll, pollInterval, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // shut down meanwhile
+        }
+    }
+
+    private synchronized void stopMonitor() {
+        if (scheduledPoll != null) {
+            scheduledPoll.cancel(false);
+            scheduledPoll = null;
+        }
+        monitor.shutdownNow();
+    }
+
+    private void pollCompletedTasks() {
+        long now = System.nanoTime();
+        Iterator<PendingTask> iterator = pendingTasks.iterator();
+        while (iterator.hasNext()) {
+            PendingTask pendingTask = iterator.next();
+            if (!pendingTask.future.isDone()) {
+                continue;
+            }
+            iterator.remove();
+            long latency = TimeUnit.NANOSECONDS.toMillis(now - pendingTask.submitTime);
+            try {
+                long executionTime = TimeUnit.NANOSECONDS.toMillis(pendingTask.future.get().executionTime);
+                mode.recordSample(System.currentTimeMillis(), latency, executionTime);
+            } catch (Exception ex) {
+                // failed and cancelled tasks are not representative, skip them
+            }
+        }
+    }
+
+    private static class PendingTask {
+        private final Future<? extends TimedResult<?>> future;
+        private final long submitTime;
+
+        PendingTask(Future<? extends TimedResult<?>> future, long submitTime) {
+            this.future = future;
+            this.submitTime = submitTime;
+        }
+    }
+
+    static class TimedResult<T> implements Serializable {
+        final T result;
+        final long executionTime;
+
+        TimedResult(T result, long executionTime) {
+            this.result = result;
+            this.executionTime = executionTime;
+        }
+    }
+
+    static class TimedCallable<T> implements Callable<TimedResult<T>>, Serializable {
+        private final Callable<T> callable;
+
+        TimedCallable(Callable<T> callable) {
+            this.callable = callable;
+        }
+
+        @Override
+        public TimedResult<T> call() throws Exception {
+            long start = System.nanoTime();
+            T result = callable.call();
+            return new TimedResult<T>(result, System.nanoTime() - start);
+        }
+    }
+
+    static class RunnableCallable<T> implements Callable<T>, Serializable {
+        private final Runnable runnable;
+        private final T result;
+
+        RunnableCallable(Runnable runnable, T result) {
+            this.runnable = runnable;
+            this.result = result;
+        }
+
+        @Override
+        public T call() throws Exception {
+            runnable.run();
+            return result;
+        }
+    }
+
+    static class TimedFuture<T> implements Future<T> {
+        private final Future<TimedResult<T>> future;
+
+        TimedFuture(Future<TimedResult<T>> future) {
+            this.future = future;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return future.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return future.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            return future.get().result;
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return future.get(timeout, unit).result;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import org.jppf.client.concurrent.JPPFExecutorService;
+
+/**
+ * An {@link ExecutorServiceMode} that tunes batch size and timeout while tasks are executed.
+ *
+ * For every task, the round-trip latency (submission to result) and the execution time on the node
+ * are measured. After each window of samples the settings are adjusted:
+ * <ul>
+ * <li>If the average latency exceeds the target, batch size and timeout are halved.</li>
+ * <li>If throughput dropped by more than 10% since the last adjustment, they are reduced by a quarter.</li>
+ * <li>If the latency is below half the target and the round-trip overhead exceeds the execution time,
+ * they are doubled. The timeout never exceeds a quarter of the target latency.</li>
+ * </ul>
+ *
+ * An instance keeps its own statistics and should configure only one {@link ExecutorService}.
+ * The settings are also applied to the {@link ExecutorNodeDispatcher}s of nodes set to this mode,
+ * and the tasks they send are measured as well.
+ *
+ * @author thomas
+ */
+public class AdaptiveExecutorServiceMode extends ExecutorServiceMode {
+
+    static final int MIN_SAMPLE_WINDOW = 64;
+    static final int MAX_BATCH_SIZE = 10000;
+    static final long MIN_BATCH_TIMEOUT = 5;
+
+    private final long targetLatency;
+    // executor services are released when shut down or no longer referenced
+    private final Set<JPPFExecutorService> executorServices = 
+            Collections.newSetFromMap(new WeakHashMap<JPPFExecutorService, Boolean>());
+    // replaced dispatchers are released with their nodes
+    private final Set<ExecutorNodeDispatcher> dispatchers = 
+            Collections.newSetFromMap(new WeakHashMap<ExecutorNodeDispatcher, Boolean>());
+    private final List<Adjustment> history = new ArrayList<Adjustment>();
+    private int batchSize = 1;
+    private long batchTimeout = 0;
+
+    private int samples = 0;
+    private long windowStart = 0;
+    private long latencySum = 0;
+    private long executionTimeSum = 0;
+    private double lastThroughput = 0;
+
+    AdaptiveExecutorServiceMode(long targetLatency) {
+        if (targetLatency <= 0) {
+            throw new IllegalArgumentException("Target latency must be positive, was " + targetLatency);
+        }
+        this.targetLatency = targetLatency;
+    }
+
+    @Override
+    protected synchronized void configureJppfExecutorService(JPPFExecutorService executorService) {
+        executorServices.add(executorService);
+        executorService.setBatchTimeout(batchTimeout);
+        executorService.setBatchSize(batchSize);
+    }
+
+    @Override
+    protected synchronized void configureExecutorNodeDispatcher(ExecutorNodeDispatcher dispatcher) {
+        dispatchers.add(dispatcher);
+        dispatcher.setBatchTimeout(batchTimeout);
+        dispatcher.setBatchSize(batchSize);
+        dispatcher.setSampleRecorder(this);
+    }
+
+    @Override
+    protected ExecutorService decorate(JPPFExecutorService executorService) {
+        return new AdaptiveExecutorService(executorService, this);
+    }
+
+    /**
+     * Releases an executor service that was shut down, it is no longer adjusted.
+     * @param executorService the executor service configured by this mode.
+     */
+    synchronized void release(JPPFExecutorService executorService) {
+        executorServices.remove(executorService);
+    }
+
+    /**
+     * Records a completed task.
+     * @param now the current time in milliseconds.
+     * @param latency the time from submission to result in milliseconds.
+     * @param executionTime the execution time on the node in milliseconds.
+     */
+    synchronized void recordSample(long now, long latency, long executionTime) {
+        if (samples == 0) {
+            windowStart = now;
+        }
+        samples++;
+        latencySum += latency;
+        executionTimeSum += executionTime;
+        if (samples >= Math.max(MIN_SAMPLE_WINDOW, batchSize)) {
+            adjust(now);
+        }
+    }
+
+    private void adjust(long now) {
+        double averageLatency = (double) latencySum / samples;
+        double averageExecutionTime = (double) executionTimeSum / samples;
+        double overhead = averageLatency - averageExecutionTime;
+        double throughput = samples * 1000.0 / Math.max(1, now - windowStart);
+
+        if (averageLatency > targetLatency) {
+            resize(batchSize / 2, batchTimeout / 2);
+        } else if (throughput < lastThroughput * 0.9) {
+            resize(batchSize * 3 / 4, batchTimeout * 3 / 4);
+        } else if (averageLatency < targetLatency / 2.0 && overhead > averageExecutionTime) {
+            resize(batchSize * 2, batchTimeout * 2);
+        }
+        history.add(new Adjustment(now, batchSize, batchTimeout, averageLatency, averageExecutionTime, throughput));
+        Iterator<JPPFExecutorService> iterator = executorServices.iterator();
+        while (iterator.hasNext()) {
+            JPPFExecutorService executorService = iterator.next();
+            if (executorService.isShutdown()) {
+                iterator.remove();
+                continue;
+            }
+            executorService.setBatchTimeout(batchTimeout);
+            executorService.setBatchSize(batchSize);
+        }
+        for (ExecutorNodeDispatcher dispatcher : dispatchers) {
+            dispatcher.setBatchTimeout(batchTimeout);
+            dispatcher.setBatchSize(batchSize);
+        }
+
+        lastThroughput = throughput;
+        samples = 0;
+        latencySum = 0;
+        executionTimeSum = 0;
+    }
+
+    private void resize(int newBatchSize, long newBatchTimeout) {
+        batchSize = Math.min(MAX_BATCH_SIZE, Math.max(1, newBatchSize));
+        if (batchSize == 1) {
+            // a single task is sent immediately
+            batchTimeout = 0;
+        } else {
+            // a batch must always be flushed by timeout eventually
+            batchTimeout = Math.min(Math.max(targetLatency / 4, 1), Math.max(MIN_BATCH_TIMEOUT, newBatchTimeout));
+        }
+    }
+
+    /**
+     * @return the latency budget in milliseconds.
+     */
+    public long getTargetLatency() {
+        return targetLatency;
+    }
+
+    /**
+     * @return the current batch size.
+     */
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the current batch timeout in milliseconds, 0 if none.
+     */
+    public synchronized long getBatchTimeout() {
+        return batchTimeout;
+    }
+
+    /**
+     * @return all adjustments made so far, oldest first.
+     */
+    public synchronized List<Adjustment> getHistory() {
+        return new ArrayList<Adjustment>(history);
+    }
+
+    /**
+     * The settings chosen after a window of samples, and the measurements they are based on.
+     */
+    public static class Adjustment {
+        private final long timestamp;
+        private final int batchSize;
+        private final long batchTimeout;
+        private final double averageLatency;
+        private final double averageExecutionTime;
+        private final double throughput;
+
+        Adjustment(long timestamp, int batchSize, long batchTimeout,
+                double averageLatency, double averageExecutionTime, double throughput) {
+            this.timestamp = timestamp;
+            this.batchSize = batchSize;
+            this.batchTimeout = batchTimeout;
+            this.averageLatency = averageLatency;
+            this.averageExecutionTime = averageExecutionTime;
+            this.throughput = throughput;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public long getBatchTimeout() {
+            return batchTimeout;
+        }
+
+        public double getAverageLatency() {
+            return averageLatency;
+        }
+
+        public double getAverageExecutionTime() {
+            return averageExecutionTime;
+        }
+
+        /**
+         * @return the measured throughput in tasks per second.
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("batchSize=%d, batchTimeout=%dms, latency=%.1fms, execution=%.1fms, throughput=%.1f/s",
+                    batchSize, batchTimeout, averageLatency, averageExecutionTime, throughput);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.node.common.BroadcastCache;
+import com.github.nethad.clustermeister.node.common.BroadcastCacheStatistics;
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+
+/**
+ * Returns the statistics of the {@link BroadcastCache} of the node it is executed on.
+ *
+ * @author thomas
+ */
+class BroadcastCacheStatisticsCallable implements Callable<BroadcastCacheStatistics>, Serializable {
+
+    @Override
+    public BroadcastCacheStatistics call() throws Exception {
+        return BroadcastCache.getInstance().getStatistics();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import org.jppf.utils.JPPFCallable;
+
+/**
+ * Executed on the client on behalf of a node, returns a broadcast value.
+ *
+ * @author thomas
+ */
+class BroadcastFetch implements JPPFCallable<Object> {
+    private final String hash;
+
+    BroadcastFetch(String hash) {
+        this.hash = hash;
+    }
+
+    @Override
+    public Object call() throws Exception {
+        Object value = BroadcastRegistry.getInstance().get(hash);
+        if (value == null) {
+            throw new IllegalStateException("Broadcast value " + hash + " is no longer available on the client.");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.node.common.BroadcastCache;
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+import org.jppf.server.protocol.JPPFTask;
+
+/**
+ * Stands in for a broadcast value in a job's data provider. 
+ * 
+ * On the node, the value is taken from the {@link BroadcastCache}, 
+ * or fetched from the client once and cached.
+ *
+ * @author thomas
+ */
+class BroadcastReference implements Serializable {
+    private final String hash;
+    private final long size;
+
+    BroadcastReference(String hash, long size) {
+        this.hash = hash;
+        this.size = size;
+    }
+
+    String getHash() {
+        return hash;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * @param task the task that needs the value, used to call back to the client.
+     * @return the value.
+     * @throws Exception if the value can not be fetched.
+     */
+    Object resolve(final JPPFTask task) throws Exception {
+        // the class loader identifies the client, values are not shared between clients
+        return BroadcastCache.getInstance().get(hash, getClass().getClassLoader(), size, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return task.compute(new BroadcastFetch(hash));
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "BroadcastReference{" + hash + ", " + size + " bytes}";
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the broadcast values of the jobs of this client, by content hash, 
+ * so that nodes can fetch them on a cache miss.
+ * 
+ * Values are held weakly, jobs keep their broadcast values alive while they run.
+ * Hashes are cached per value instance, so broadcast values must not be modified after a job was created.
+ *
+ * @author thomas
+ */
+class BroadcastRegistry {
+    private static final BroadcastRegistry INSTANCE = new BroadcastRegistry();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ConcurrentMap<Object, BroadcastReference> references = new MapMaker().weakKeys().makeMap();
+    private final ConcurrentMap<String, Object> values = new MapMaker().weakValues().makeMap();
+
+    static BroadcastRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers a value for broadcast if its serialized size reaches the threshold.
+     * @param value the value.
+     * @param threshold the minimum serialized size in bytes.
+     * @return a reference to the value, or null if it is smaller than the threshold.
+     * @throws IOException if the value can not be serialized.
+     */
+    BroadcastReference register(Object value, long threshold) throws IOException {
+        BroadcastReference reference = references.get(value);
+        if (reference != null) {
+            return reference;
+        }
+        MessageDigest digest = sha1();
+        CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
+        ObjectOutputStream out = new ObjectOutputStream(new DigestOutputStream(counter, digest));
+        out.writeObject(value);
+        out.close();
+        if (counter.getCount() < threshold) {
+            return null;
+        }
+        reference = new BroadcastReference(toHex(digest.digest()), counter.getCount());
+        values.put(reference.getHash(), value);
+        references.put(value, reference);
+        return reference;
+    }
+
+    /**
+     * @param hash the content hash of a registered value.
+     * @return the value, or null if it is not registered (anymore).
+     */
+    Object get(String hash) {
+        return values.get(hash);
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.node.common.TaskWatchdog;
+import java.util.concurrent.Callable;
+import org.jppf.server.protocol.JPPFTask;
+import org.jppf.utils.JPPFCallable;
+
+/**
+ * Executed on the client on behalf of a node, tells whether a running task was cancelled.
+ *
+ * @author thomas
+ */
+class CancellationCheck implements JPPFCallable<Boolean> {
+    private final String cancellationKey;
+
+    CancellationCheck(String cancellationKey) {
+        this.cancellationKey = cancellationKey;
+    }
+
+    @Override
+    public Boolean call() throws Exception {
+        return JobCancellation.isCancelled(cancellationKey);
+    }
+
+    /**
+     * Watches the calling thread on the node while it executes a task.
+     * @param task the task, used to call back to the client.
+     * @param cancellationKey the key of the task, may be null.
+     * @return the watch to stop when the task finishes, null if the task is not watched.
+     */
+    static TaskWatchdog.Watch watch(final JPPFTask task, final String cancellationKey) {
+        if (cancellationKey == null) {
+            return null;
+        }
+        return TaskWatchdog.getInstance().watch(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return task.compute(new CancellationCheck(cancellationKey));
+            }
+        });
+    }
+}
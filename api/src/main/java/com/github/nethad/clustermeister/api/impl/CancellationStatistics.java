@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts tasks abandoned by the client and the node time saved by cancelling their jobs.
+ *
+ * @author thomas
+ */
+public class CancellationStatistics {
+    private final AtomicInteger cancelledTasks = new AtomicInteger();
+    private final AtomicInteger expiredTasks = new AtomicInteger();
+    private final AtomicInteger cancelledJobs = new AtomicInteger();
+    private final AtomicLong reclaimedNodeMillis = new AtomicLong();
+
+    void recordCancelledTask() {
+        cancelledTasks.incrementAndGet();
+    }
+
+    void recordExpiredTask() {
+        expiredTasks.incrementAndGet();
+    }
+
+    void recordCancelledJob(long reclaimedMillis) {
+        cancelledJobs.incrementAndGet();
+        reclaimedNodeMillis.addAndGet(reclaimedMillis);
+    }
+
+    /**
+     * @return the number of task futures cancelled by the client.
+     */
+    public int getCancelledTasks() {
+        return cancelledTasks.get();
+    }
+
+    /**
+     * @return the number of task futures failed because their job's deadline passed.
+     */
+    public int getExpiredTasks() {
+        return expiredTasks.get();
+    }
+
+    /**
+     * @return the number of jobs cancelled on the driver.
+     */
+    public int getCancelledJobs() {
+        return cancelledJobs.get();
+    }
+
+    /**
+     * The node time saved by cancelling jobs. This is an estimate: for every abandoned task,
+     * the average task latency seen so far minus the time the task had already been running.
+     * @return the estimated node time reclaimed in seconds.
+     */
+    public double getReclaimedNodeSeconds() {
+        return reclaimedNodeMillis.get() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cancelledTasks=%d, expiredTasks=%d, cancelledJobs=%d, reclaimed=%.1f node-s",
+                getCancelledTasks(), getExpiredTasks(), getCancelledJobs(), getReclaimedNodeSeconds());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.Loggers;
+import com.github.nethad.clustermeister.node.common.ClassCacheManifest;
+import com.github.nethad.clustermeister.node.common.ClassPathEntries;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adds the class path entries of the classes a job needs to its {@link ClassCacheManifest}.
+ * 
+ * Content hashes are kept per entry and only recomputed when the entry is modified.
+ * Whether it is modified is checked at most once per {@link #STAMP_INTERVAL}, so 
+ * submitting jobs does not walk the class path entries each time. A job sent within 
+ * the interval after a modification still refers to the previous content.
+ * Entries that are on the class path of every node (node-common and JPPF) are skipped.
+ *
+ * @author thomas
+ */
+class ClassCacheManifests {
+    private static final Logger logger = LoggerFactory.getLogger(Loggers.API);
+    private static final ClassCacheManifests INSTANCE = new ClassCacheManifests();
+    private static final String JPPF_PACKAGE = "org.jppf.";
+    static final long STAMP_INTERVAL = 1000;
+
+    private final ConcurrentMap<File, HashedEntry> hashes = new ConcurrentHashMap<File, HashedEntry>();
+    private final File nodeCommonEntry = entryOf(ClassCacheManifest.class);
+
+    static ClassCacheManifests getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Adds the class path entry a class is loaded from to the manifest.
+     * @param manifest the manifest of a job.
+     * @param type a class the job needs on the node.
+     */
+    void addEntryOf(ClassCacheManifest manifest, Class<?> type) {
+        if (type.getName().startsWith(JPPF_PACKAGE)) {
+            return;
+        }
+        File entry = entryOf(type);
+        if (entry == null || entry.equals(nodeCommonEntry)) {
+            return;
+        }
+        String hash = hashOf(entry);
+        if (hash != null) {
+            manifest.add(hash, entry.getPath());
+        }
+    }
+
+    String hashOf(File entry) {
+        return hashOf(entry, System.currentTimeMillis());
+    }
+
+    String hashOf(File entry, long now) {
+        HashedEntry hashed = hashes.get(entry);
+        if (hashed != null && now - hashed.stampedAt < STAMP_INTERVAL) {
+            return hashed.hash;
+        }
+        long stamp = ClassPathEntries.stamp(entry);
+        if (hashed != null && hashed.stamp == stamp) {
+            hashes.put(entry, new HashedEntry(hashed.hash, stamp, now));
+            return hashed.hash;
+        }
+        try {
+            String hash = ClassPathEntries.hash(entry);
+            hashes.put(entry, new HashedEntry(hash, stamp, now));
+            return hash;
+        } catch (IOException ex) {
+            logger.warn("Could not hash class path entry {}.", entry, ex);
+            return null;
+        }
+    }
+
+    private static File entryOf(Class<?> type) {
+        CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            // bootstrap classes
+            return null;
+        }
+        try {
+            File entry = new File(codeSource.getLocation().toURI());
+            return entry.exists() ? entry : null;
+        } catch (URISyntaxException ex) {
+            return null;
+        } catch (IllegalArgumentException ex) {
+            // not a file, e.g. a remote location
+            return null;
+        }
+    }
+
+    private static class HashedEntry {
+        private final String hash;
+        private final long stamp;
+        private final long stampedAt;
+
+        HashedEntry(String hash, long stamp, long stampedAt) {
+            this.hash = hash;
+            this.stamp = stamp;
+            this.stampedAt = stampedAt;
+        }
+    }
+}
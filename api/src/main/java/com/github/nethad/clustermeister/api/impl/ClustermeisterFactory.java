@@ -16,24 +16,58 @@
 package com.github.nethad.clustermeister.api.impl;
 
 import com.github.nethad.clustermeister.api.Clustermeister;
-import com.github.nethad.clustermeister.api.JPPFConstants;
+import com.github.nethad.clustermeister.api.Loggers;
+import java.io.File;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A factory to instantiate the {@link Clustermeister} object. This is the entry point to the Clustermeister API.
  * @author thomas
  */
 public class ClustermeisterFactory {
+    private static final Logger logger = LoggerFactory.getLogger(Loggers.API);
     
     /**
-     * Instantiates a {@link Clustermeister} object.
+     * Instantiates a {@link Clustermeister} object, 
+     * configured by {@link FileConfiguration#DEFAULT_CONFIG_FILE} if it exists.
      * @return a configured Clustermeister object.
      */
     public static Clustermeister create() {
-        
-        System.setProperty(JPPFConstants.CONFIG_PLUGIN, JPPFClientConfiguration.class.getCanonicalName());
-        ClustermeisterImpl clustermeister = new ClustermeisterImpl();
-        clustermeister.gatherNodeInformation();
+        return create(defaultConfiguration());
+    }
+    
+    /**
+     * Instantiates a {@link Clustermeister} object.
+     * @param configuration the configuration, may be null.
+     * @return a configured Clustermeister object.
+     */
+    public static Clustermeister create(Configuration configuration) {
+        // resolved first, it fails on bad configuration before any connection is opened
+        PayloadSerializer payloadSerializer = PayloadSerializers.fromConfiguration(configuration);
+        ClustermeisterImpl clustermeister = new ClustermeisterImpl(configuration);
+        try {
+            clustermeister.setPayloadSerializer(payloadSerializer);
+            clustermeister.gatherNodeInformation();
+        } catch (RuntimeException ex) {
+            clustermeister.shutdown();
+            throw ex;
+        }
         return clustermeister;
     }
     
+    private static Configuration defaultConfiguration() {
+        if (!new File(FileConfiguration.DEFAULT_CONFIG_FILE).isFile()) {
+            return null;
+        }
+        try {
+            return new YamlConfiguration(FileConfiguration.DEFAULT_CONFIG_FILE);
+        } catch (ConfigurationException ex) {
+            logger.warn("Could not read configuration, using defaults.", ex);
+            return null;
+        }
+    }
+    
 }
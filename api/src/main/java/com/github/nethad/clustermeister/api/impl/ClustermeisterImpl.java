@@ -17,20 +17,40 @@ package com.github.nethad.clustermeister.api.impl;
 
 import com.github.nethad.clustermeister.api.*;
 import com.github.nethad.clustermeister.api.rmi.IRmiServerForApi;
-import com.github.nethad.clustermeister.api.utils.JPPFProperties;
+import com.github.nethad.clustermeister.node.common.BroadcastCacheStatistics;
+import com.github.nethad.clustermeister.node.common.BundleResultCombiner;
+import com.github.nethad.clustermeister.node.common.ClassCacheStatistics;
+import com.github.nethad.clustermeister.node.common.Constants;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import com.github.nethad.clustermeister.node.common.builders.JPPFClientBuilder;
+import com.github.nethad.clustermeister.node.common.control.ControlClient;
+import com.github.nethad.clustermeister.node.common.control.ControlEndpoint;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import java.io.IOException;
 import java.rmi.AccessException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.configuration.Configuration;
 import org.jppf.client.JPPFClient;
 import org.jppf.client.concurrent.JPPFExecutorService;
+import org.jppf.management.JPPFSystemInformation;
 import org.jppf.server.protocol.JPPFTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,19 +65,103 @@ public class ClustermeisterImpl implements Clustermeister {
 //    private JPPFExecutorService executorService;
     private JPPFClient jppfClient;
     private static final Logger logger = LoggerFactory.getLogger(Loggers.API);
-    private Collection<ExecutorNode> nodes;
-    private Collection<NodeInformation> nodeInformationCollection;
+    private NodeMembership nodeMembership;
     private IRmiServerForApi rmiServerForApi;
     private ThreadsExecutorService threadsExecutorService;
-
+    private PayloadSerializer payloadSerializer;
+    private LocalityScheduler localityScheduler;
+    private JobCancellation jobCancellation;
+    private FairShareScheduler fairShareScheduler;
+    
+    /**
+     * Interval of membership polling in milliseconds, if membership pushes can not be received.
+     */
+    static final long MEMBERSHIP_POLL_INTERVAL = 5000;
+    
+    /**
+     * Time in milliseconds the node telemetry is reused, nodes send it every second.
+     */
+    static final long TELEMETRY_EXPIRATION = 1000;
+    
+    /**
+     * Configuration of the transport to the provisioning components, {@code rmi} (default) or {@code nio}.
+     */
+    public static final String CONTROL_TRANSPORT = "control.transport";
+    /**
+     * Configuration of the control channel port, used with the {@code nio} transport. 
+     * By default the port of the local provisioning's {@link ControlEndpoint}.
+     */
+    public static final String CONTROL_PORT = "control.port";
+    
+    private ControlClient controlClient;
+    
+    private final Supplier<Map<String, NodeTelemetrySample>> telemetry = Suppliers.memoizeWithExpiration(
+            new Supplier<Map<String, NodeTelemetrySample>>() {
+        @Override
+        public Map<String, NodeTelemetrySample> get() {
+            try {
+                return rmiServerForApi.getNodeTelemetry();
+            } catch (RemoteException ex) {
+                logger.warn("Could not get node telemetry.", ex);
+                return Collections.emptyMap();
+            }
+        }
+    }, TELEMETRY_EXPIRATION, TimeUnit.MILLISECONDS);
 
     public ClustermeisterImpl() {
-        jppfClient = new JPPFClient("clustermeister_" + System.currentTimeMillis());
+        this(null);
+    }
+
+    /**
+     * @param configuration the configuration selecting the control transport, may be null.
+     */
+    public ClustermeisterImpl(Configuration configuration) {
+        String transport = configuration == null ? Constants.CONTROL_TRANSPORT_RMI 
+                : configuration.getString(CONTROL_TRANSPORT, Constants.CONTROL_TRANSPORT_RMI);
+        if (Constants.CONTROL_TRANSPORT_NIO.equalsIgnoreCase(transport)) {
+            setupControlChannel(configuration);
+        } else if (Constants.CONTROL_TRANSPORT_RMI.equalsIgnoreCase(transport)) {
+            setupRmi();
+        } else {
+            throw new IllegalArgumentException(String.format("Unknown control transport '%s'.", transport));
+        }
+        JPPFClientBuilder clientBuilder = new JPPFClientBuilder("clustermeister_" + System.currentTimeMillis());
+        clientBuilder.setProperties(new JPPFClientConfiguration(getDriverAddresses()).getProperties());
+        jppfClient = clientBuilder.build();
 //        executorService = new JPPFExecutorService(jppfClient);
 //        nodes = new LinkedList<ExecutorNode>();
         threadsExecutorService = new ThreadsExecutorService();
         executorServices = new LinkedList<JPPFExecutorService>();
-        setupRmi();
+        jobCancellation = new JobCancellation(jppfClient, threadsExecutorService.getScheduler(), 
+                threadsExecutorService.getBlockingExecutor());
+        localityScheduler = new LocalityScheduler(jppfClient, jobCancellation);
+        fairShareScheduler = new FairShareScheduler(
+                threadsExecutorService.getBlockingExecutor(), threadsExecutorService.getCallbackExecutor());
+    }
+
+    /**
+     * @return every local driver started by the provisioning, none for the default driver.
+     */
+    private List<DriverAddress> getDriverAddresses() {
+        try {
+            List<DriverAddress> drivers = rmiServerForApi.getDriverAddresses();
+            logger.info("Connecting to drivers {}", drivers);
+            return drivers;
+        } catch (RemoteException ex) {
+            logger.warn("Could not get the driver addresses, connecting to the default driver.", ex);
+            return Collections.emptyList();
+        }
+    }
+
+    private void setupControlChannel(Configuration configuration) throws RuntimeException {
+        try {
+            ControlEndpoint endpoint = ControlEndpoint.read(ControlEndpoint.DEFAULT_FILE);
+            int port = configuration.getInt(CONTROL_PORT, endpoint.getPort());
+            controlClient = ControlClient.connect("localhost", port, endpoint.getSecret());
+            rmiServerForApi = controlClient.getService(IRmiServerForApi.class);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
     }
 
     private void setupRmi() throws RuntimeException {
@@ -68,7 +172,7 @@ public class ClustermeisterImpl implements Clustermeister {
             System.setSecurityManager(new SecurityManager());
         }
         try {
-            Registry registry = LocateRegistry.getRegistry(61111);
+            Registry registry = LocateRegistry.getRegistry(Constants.RMI_REGISTRY_PORT);
             rmiServerForApi = (IRmiServerForApi)registry.lookup(IRmiServerForApi.NAME);
         } catch (NotBoundException ex) {
             throw new RuntimeException(ex);
@@ -79,36 +183,123 @@ public class ClustermeisterImpl implements Clustermeister {
         }
     }
 
+    /**
+     * Sets the serializer for callables and results sent to {@link ExecutorNode}s.
+     * Takes effect for nodes gathered afterwards.
+     * @param payloadSerializer the serializer, null for Java serialization.
+     */
+    protected void setPayloadSerializer(PayloadSerializer payloadSerializer) {
+        this.payloadSerializer = payloadSerializer;
+    }
+
     protected void gatherNodeInformation() {
-        try {
-            nodeInformationCollection = rmiServerForApi.getAllNodes();
-            logger.info("Provisioning returned {} nodes.", nodeInformationCollection.size());
-            nodes = new LinkedList<ExecutorNode>();
-            for(NodeInformation nodeInfo : nodeInformationCollection) {
-                ExecutorNodeImpl executorNode = new ExecutorNodeImpl(jppfClient, threadsExecutorService);
-                executorNode.setId(nodeInfo.getID());
-                int availableProcessors = Integer.valueOf(nodeInfo.getJPPFSystemInformation().getRuntime().getProperty(JPPFProperties.AVAILABLE_PROCESSORS));
-                int numberOfProcessingThreads = Integer.valueOf(nodeInfo.getJPPFSystemInformation().getJppf().getProperty(JPPFProperties.PROCESSING_THREADS));
-                final String jppfInfo = nodeInfo.getJPPFSystemInformation().getJppf().asString();
-                NodeCapabilities nodeCapabilities = new NodeCapabilitiesImpl(availableProcessors, numberOfProcessingThreads, jppfInfo);
-                executorNode.setNodeCapabilities(nodeCapabilities);
-                nodes.add(executorNode);
+        nodeMembership = new NodeMembership(rmiServerForApi, new NodeMembership.NodeFactory() {
+            @Override
+            public ExecutorNode create(NodeSummary summary) {
+                return createExecutorNode(summary);
+            }
+        }, new NodeMembership.Listener() {
+            @Override
+            public void nodesChanged(Collection<ExecutorNode> nodes) {
+                onNodesChanged(nodes);
             }
+        });
+        try {
+            nodeMembership.refresh();
+            logger.info("Provisioning returned {} nodes.", nodeMembership.getNodes().size());
         } catch (RemoteException ex) {
             logger.error("Could not get list of nodes via RMI.", ex);
         }
+        if (controlClient != null) {
+            controlClient.addListener(new ControlClient.Listener() {
+                @Override
+                public void reconnected(ControlClient client) {
+                    // the provisioning server forgot the callback with the lost connection
+                    nodeMembership.register(false);
+                }
+            });
+        }
+        if (!nodeMembership.register(controlClient == null)) {
+            logger.warn("Polling node membership every {} ms.", MEMBERSHIP_POLL_INTERVAL);
+            threadsExecutorService.getScheduler().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    threadsExecutorService.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            nodeMembership.refresh();
+                            return null;
+                        }
+                    });
+                }
+            }, MEMBERSHIP_POLL_INTERVAL, MEMBERSHIP_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private ExecutorNode createExecutorNode(final NodeSummary summary) {
+        ExecutorNodeImpl executorNode = new ExecutorNodeImpl(
+                jppfClient, threadsExecutorService, payloadSerializer, jobCancellation);
+        executorNode.setId(summary.getID());
+        // the full JPPF configuration is only transferred when it is asked for
+        Supplier<String> jppfConfig = Suppliers.memoize(new Supplier<String>() {
+            @Override
+            public String get() {
+                try {
+                    JPPFSystemInformation systemInformation = rmiServerForApi.getSystemInformation(summary.getID());
+                    return systemInformation == null ? null : systemInformation.getJppf().asString();
+                } catch (RemoteException ex) {
+                    throw new IllegalStateException("Could not get system information of node " + summary.getID(), ex);
+                }
+            }
+        });
+        Supplier<NodeTelemetrySample> nodeTelemetry = new Supplier<NodeTelemetrySample>() {
+            @Override
+            public NodeTelemetrySample get() {
+                return telemetry.get().get(summary.getID());
+            }
+        };
+        NodeCapabilities nodeCapabilities = new NodeCapabilitiesImpl(
+                summary.getAvailableProcessors(), summary.getProcessingThreads(), jppfConfig, nodeTelemetry);
+        executorNode.setNodeCapabilities(nodeCapabilities);
+        return executorNode;
+    }
+    
+    private void onNodesChanged(Collection<ExecutorNode> nodes) {
+        int nodeThreads = 0;
+        for (ExecutorNode node : nodes) {
+            nodeThreads += Math.max(1, node.getCapabilities().getNumberOfProcessingThreads());
+        }
+        localityScheduler.setNodes(nodes);
+        fairShareScheduler.setNodeThreads(nodeThreads);
     }
 
     @Override
     public ExecutorService getExecutorService(ExecutorServiceMode executorServiceMode) {
+        return getExecutorService(executorServiceMode, null);
+    }
+
+    @Override
+    public ExecutorService getExecutorService(ExecutorServiceMode executorServiceMode, SchedulingQueue queue) {
         JPPFExecutorService executorService = new JPPFExecutorService(jppfClient);
-        if (executorServiceMode != null) {
-            executorServiceMode.configureJppfExecutorService(executorService);
-        } else {
-            ExecutorServiceMode.standard().configureJppfExecutorService(executorService);
+        if (executorServiceMode == null) {
+            executorServiceMode = ExecutorServiceMode.standard();
         }
+        executorServiceMode.configureJppfExecutorService(executorService);
         executorServices.add(executorService);
-        return executorService;
+        ExecutorService decorated = executorServiceMode.decorate(executorService);
+        if (queue == null) {
+            return decorated;
+        }
+        executorService.getConfiguration().getJobConfiguration().getSLA().setPriority(queue.getPriority());
+        if (queue.getMaxNodes() > 0) {
+            executorService.getConfiguration().getJobConfiguration().getSLA().setMaxNodes(queue.getMaxNodes());
+        }
+        return new QueuedExecutorService(decorated, fairShareScheduler, queue);
+    }
+    
+    @Override
+    public Map<String, QueueStatistics> getQueueStatistics() {
+        return fairShareScheduler.getStatistics();
     }
 
     @Override
@@ -125,17 +316,42 @@ public class ClustermeisterImpl implements Clustermeister {
                 logger.warn("{} tasks are still running.", runnables.size());
             }
         }
+        if (nodeMembership != null) {
+            nodeMembership.close();
+        }
+        if (controlClient != null) {
+            controlClient.close();
+        }
+        fairShareScheduler.shutdown();
         threadsExecutorService.shutdown();
         jppfClient.close();
     }
 
     @Override
     public Collection<ExecutorNode> getAllNodes() {
-        return this.nodes;
+        if (nodeMembership == null) {
+            return Collections.emptyList();
+        }
+        return nodeMembership.getNodes();
+    }
+
+    @Override
+    public ExecutorNode getNode(String nodeId) {
+        if (nodeMembership == null) {
+            return null;
+        }
+        return nodeMembership.getNode(nodeId);
     }
 
     @Override
     public <T> List<T> executeJob(Job<T> job) throws Exception {
+        if (LocalityScheduler.hasAffinity(job)) {
+            try {
+                return Futures.allAsList(localityScheduler.submit(job, null)).get();
+            } catch (ExecutionException ex) {
+                throw new Exception(ex.getCause());
+            }
+        }
         List<T> resultObjects = new LinkedList<T>();
         List<JPPFTask> results = jppfClient.submit(job.getJppfJob());
         for (JPPFTask jppfTask : results) {
@@ -165,10 +381,105 @@ public class ClustermeisterImpl implements Clustermeister {
     
     @Override
     public <T> List<ListenableFuture<T>> executeJobAsyncTasks(final Job<T> job) throws Exception {
+        return executeJobAsyncTasks(job, null);
+    }
+    
+    @Override
+    public <T> List<ListenableFuture<T>> executeJobAsyncTasks(Job<T> job, JobResultListener<T> listener) throws Exception {
+        if (LocalityScheduler.hasAffinity(job)) {
+            return localityScheduler.submit(job, listener);
+        }
         job.setBlocking(false);
-        FutureResultCollector collector = job.resultCollector();
-        jppfClient.submit(job.getJppfJob());
+        FutureResultCollector<T> collector = job.resultCollector();
+        if (listener != null) {
+            collector.addListener(listener);
+        }
+        jobCancellation.track(job.getJppfJob(), collector.getFutureList(), job.getDeadline());
+        if (job.isSpeculativeExecution()) {
+            SpeculativeExecution speculation = new SpeculativeExecution(jppfClient, job, collector, 
+                    System.currentTimeMillis(), threadsExecutorService.getBlockingExecutor());
+            job.getJppfJob().setResultListener(speculation);
+            jppfClient.submit(job.getJppfJob());
+            speculation.start(threadsExecutorService.getScheduler());
+        } else {
+            jppfClient.submit(job.getJppfJob());
+        }
         return collector.getFutureList();
     }
+    
+    @Override
+    public <T> Iterator<T> executeStream(Iterator<? extends Task<T>> tasks, int maxInFlight) {
+        return new StreamingJobExecutor<T>(this, tasks, maxInFlight);
+    }
+    
+    @Override
+    public Map<String, BroadcastCacheStatistics> getBroadcastCacheStatistics() throws Exception {
+        Map<String, ListenableFuture<BroadcastCacheStatistics>> futures = 
+                executeOnAll(new BroadcastCacheStatisticsCallable());
+        Map<String, BroadcastCacheStatistics> statistics = new LinkedHashMap<String, BroadcastCacheStatistics>();
+        for (Map.Entry<String, ListenableFuture<BroadcastCacheStatistics>> entry : futures.entrySet()) {
+            statistics.put(entry.getKey(), entry.getValue().get());
+        }
+        return statistics;
+    }
+    
+    @Override
+    public Map<String, ClassCacheStatistics> getClassCacheStatistics() throws Exception {
+        Map<String, ListenableFuture<ClassCacheStatistics>> futures = 
+                executeOnAll(new ClassCacheStatisticsCallable());
+        Map<String, ClassCacheStatistics> statistics = new LinkedHashMap<String, ClassCacheStatistics>();
+        for (Map.Entry<String, ListenableFuture<ClassCacheStatistics>> entry : futures.entrySet()) {
+            statistics.put(entry.getKey(), entry.getValue().get());
+        }
+        return statistics;
+    }
+    
+    @Override
+    public <T> Map<String, ListenableFuture<T>> executeOnAll(Callable<T> callable) throws Exception {
+        List<String> nodeIds = new ArrayList<String>();
+        for (ExecutorNode node : getAllNodes()) {
+            nodeIds.add(node.getID());
+        }
+        NodeBroadcast<T> broadcast = new NodeBroadcast<T>(callable, nodeIds);
+        if (nodeIds.isEmpty()) {
+            return broadcast.getFutures();
+        }
+        broadcast.start();
+        try {
+            jppfClient.submit(broadcast.getJob());
+        } catch (Exception ex) {
+            logger.warn("Broadcast job failed.", ex);
+            broadcast.finish(ex);
+        }
+        return broadcast.getFutures();
+    }
+    
+    @Override
+    public CancellationStatistics getCancellationStatistics() {
+        return jobCancellation.getStatistics();
+    }
+    
+    @Override
+    public <I, O, R> R mapReduce(Iterable<I> source, Mapper<I, O> mapper, Combiner<O> combiner, 
+            Reducer<O, R> reducer) throws Exception {
+        Map<String, Object> jobData = Collections.<String, Object>singletonMap(
+                BundleResultCombiner.DATA_PROVIDER_KEY, new CombinerAdapter<O>(combiner));
+        Job<O> job = JobFactory.create("Clustermeister MapReduce", jobData);
+        for (I input : source) {
+            job.addTask(new MapTask<I, O>(mapper, input));
+        }
+        List<O> partialResults = new ArrayList<O>();
+        for (JPPFTask jppfTask : jppfClient.submit(job.getJppfJob())) {
+            Exception exception = jppfTask.getException();
+            if (exception != null) {
+                throw new Exception(exception);
+            }
+            // tasks whose results were combined into another task's result on the node carry a marker
+            if (jppfTask.getResult() != BundleResultCombiner.Marker.COMBINED) {
+                partialResults.add((O) jppfTask.getResult());
+            }
+        }
+        return reducer.reduce(partialResults);
+    }
 
 }
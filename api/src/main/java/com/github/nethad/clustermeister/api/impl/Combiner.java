@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.io.Serializable;
+
+/**
+ * Merges two partial results of {@link com.github.nethad.clustermeister.api.Clustermeister#mapReduce}.
+ * It is executed on the nodes to pre-combine the partial results of a bundle of tasks, 
+ * so it must be associative.
+ * @author thomas
+ */
+public interface Combiner<O> extends Serializable {
+    
+    /**
+     * Merges two partial results.
+     * @param left a partial result.
+     * @param right a partial result.
+     * @return the merged partial result.
+     * @throws Exception 
+     */
+    public O combine(O left, O right) throws Exception;
+    
+}
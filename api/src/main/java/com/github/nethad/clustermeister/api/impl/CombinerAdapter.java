@@ -15,34 +15,27 @@
  */
 package com.github.nethad.clustermeister.api.impl;
 
+import com.github.nethad.clustermeister.node.common.BundleResultCombiner;
 import java.util.List;
-import java.util.concurrent.Callable;
-import org.jppf.client.JPPFResultCollector;
-import org.jppf.server.protocol.JPPFTask;
-import org.jppf.utils.TypedProperties;
 
 /**
- *
+ * Folds the results of a task bundle on the node with a {@link Combiner}.
  * @author thomas
  */
-class ResultCollectorCallable<T> implements Callable<T> {
-    private JPPFResultCollector collector;
+class CombinerAdapter<O> implements BundleResultCombiner {
+    private final Combiner<O> combiner;
 
-    public ResultCollectorCallable(JPPFResultCollector collector) {
-        this.collector = collector;
+    CombinerAdapter(Combiner<O> combiner) {
+        this.combiner = combiner;
     }
 
     @Override
-    public T call() throws Exception {
-        List<JPPFTask> tasks = collector.waitForResults();
-        if (tasks.size() != 1) {
-            throw new Exception("There should only be 1 task.");
-        }
-        JPPFTask task = tasks.get(0);
-        if (task.getException() != null) {
-            throw new Exception(task.getException());
+    public Object combine(List<Object> results) throws Exception {
+        O combined = (O) results.get(0);
+        for (Object result : results.subList(1, results.size())) {
+            combined = combiner.combine(combined, (O) result);
         }
-        return (T) task.getResult();
+        return combined;
     }
     
 }
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary codec that writes strings, boxed primitives, primitive arrays, string arrays,
+ * {@link ArrayList}s and {@link HashMap}s with a one byte tag and varint lengths.
+ *
+ * Other objects are written with Java serialization, but class descriptors are replaced by the class name.
+ * This relies on client and node using the same class versions, which JPPF's remote class loading ensures.
+ *
+ * @author thomas
+ */
+class CompactPayloadSerializer implements PayloadSerializer {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final byte NULL = 0;
+    static final byte STRING = 1;
+    static final byte INTEGER = 2;
+    static final byte LONG = 3;
+    static final byte DOUBLE = 4;
+    static final byte BOOLEAN = 5;
+    static final byte BYTE_ARRAY = 6;
+    static final byte INT_ARRAY = 7;
+    static final byte LONG_ARRAY = 8;
+    static final byte DOUBLE_ARRAY = 9;
+    static final byte STRING_ARRAY = 10;
+    static final byte LIST = 11;
+    static final byte MAP = 12;
+    static final byte OBJECT = 13;
+
+    @Override
+    public byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        write(out, object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return read(in, classLoader);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void write(DataOutputStream out, Object object) throws IOException {
+        if (object == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        // exact class checks, subclasses must keep their type and go through Java serialization
+        Class<?> type = object.getClass();
+        if (type == String.class) {
+            out.writeByte(STRING);
+            writeString(out, (String) object);
+        } else if (type == Integer.class) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) object);
+        } else if (type == Long.class) {
+            out.writeByte(LONG);
+            out.writeLong((Long) object);
+        } else if (type == Double.class) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) object);
+        } else if (type == Boolean.class) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) object);
+        } else if (type == byte[].class) {
+            byte[] array = (byte[]) object;
+            out.writeByte(BYTE_ARRAY);
+            writeVarInt(out, array.length);
+            out.write(array);
+        } else if (type == int[].class) {
+            int[] array = (int[]) object;
+            out.writeByte(INT_ARRAY);
+            writeVarInt(out, array.length);
+            ByteBuffer buffer = ByteBuffer.allocate(array.length * 4);
+            buffer.asIntBuffer().put(array);
+            out.write(buffer.array());
+        } else if (type == long[].class) {
+            long[] array = (long[]) object;
+            out.writeByte(LONG_ARRAY);
+            writeVarInt(out, array.length);
+            ByteBuffer buffer = ByteBuffer.allocate(array.length * 8);
+            buffer.asLongBuffer().put(array);
+            out.write(buffer.array());
+        } else if (type == double[].class) {
+            double[] array = (double[]) object;
+            out.writeByte(DOUBLE_ARRAY);
+            writeVarInt(out, array.length);
+            ByteBuffer buffer = ByteBuffer.allocate(array.length * 8);
+            buffer.asDoubleBuffer().put(array);
+            out.write(buffer.array());
+        } else if (type == String[].class) {
+            String[] array = (String[]) object;
+            out.writeByte(STRING_ARRAY);
+            writeVarInt(out, array.length);
+            for (String string : array) {
+                writeString(out, string);
+            }
+        } else if (type == ArrayList.class) {
+            List<?> list = (List<?>) object;
+            out.writeByte(LIST);
+            writeVarInt(out, list.size());
+            for (Object element : list) {
+                write(out, element);
+            }
+        } else if (type == HashMap.class) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            out.writeByte(MAP);
+            writeVarInt(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(out, entry.getKey());
+                write(out, entry.getValue());
+            }
+        } else {
+            out.writeByte(OBJECT);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream objectOut = new CompactObjectOutputStream(bytes);
+            objectOut.writeObject(object);
+            objectOut.close();
+            writeVarInt(out, bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    private Object read(DataInputStream in, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE_ARRAY: {
+                byte[] array = new byte[readVarInt(in)];
+                in.readFully(array);
+                return array;
+            }
+            case INT_ARRAY: {
+                int[] array = new int[readVarInt(in)];
+                ByteBuffer.wrap(readBytes(in, array.length * 4)).asIntBuffer().get(array);
+                return array;
+            }
+            case LONG_ARRAY: {
+                long[] array = new long[readVarInt(in)];
+                ByteBuffer.wrap(readBytes(in, array.length * 8)).asLongBuffer().get(array);
+                return array;
+            }
+            case DOUBLE_ARRAY: {
+                double[] array = new double[readVarInt(in)];
+                ByteBuffer.wrap(readBytes(in, array.length * 8)).asDoubleBuffer().get(array);
+                return array;
+            }
+            case STRING_ARRAY: {
+                String[] array = new String[readVarInt(in)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = readString(in);
+                }
+                return array;
+            }
+            case LIST: {
+                int size = readVarInt(in);
+                List<Object> list = new ArrayList<Object>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(read(in, classLoader));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = readVarInt(in);
+                Map<Object, Object> map = new HashMap<Object, Object>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) {
+                    map.put(read(in, classLoader), read(in, classLoader));
+                }
+                return map;
+            }
+            case OBJECT: {
+                byte[] bytes = readBytes(in, readVarInt(in));
+                ObjectInputStream objectIn = new CompactObjectInputStream(new ByteArrayInputStream(bytes), classLoader);
+                try {
+                    return objectIn.readObject();
+                } finally {
+                    objectIn.close();
+                }
+            }
+            default:
+                throw new StreamCorruptedException("Unknown tag " + tag);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = string.getBytes(UTF8);
+        // 0 is null, so lengths are shifted by one
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        return new String(readBytes(in, length - 1), UTF8);
+    }
+
+    private static byte[] readBytes(DataInputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed length");
+    }
+
+    /**
+     * Writes only the class name instead of the full class descriptor.
+     */
+    static class CompactObjectOutputStream extends ObjectOutputStream {
+
+        CompactObjectOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+            writeUTF(desc.getName());
+        }
+    }
+
+    /**
+     * Reads class descriptors written by {@link CompactObjectOutputStream}
+     * from the local classes.
+     */
+    static class CompactObjectInputStream extends JavaPayloadSerializer.ClassLoaderObjectInputStream {
+
+        CompactObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+            super(in, classLoader);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            String name = readUTF();
+            ObjectStreamClass desc = ObjectStreamClass.lookupAny(resolveClass(name));
+            if (desc == null) {
+                throw new InvalidClassException(name, "No class descriptor");
+            }
+            return desc;
+        }
+    }
+}
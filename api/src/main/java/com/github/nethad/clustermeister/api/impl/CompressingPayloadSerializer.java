@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflates the output of another {@link PayloadSerializer} if it exceeds a threshold.
+ *
+ * The first byte tells whether the rest is compressed. Compressed payloads store
+ * their uncompressed length in the next four bytes.
+ *
+ * @author thomas
+ */
+class CompressingPayloadSerializer implements PayloadSerializer {
+    static final byte PLAIN = 0;
+    static final byte DEFLATED = 1;
+
+    private final PayloadSerializer delegate;
+    private final int threshold;
+
+    /**
+     * @param delegate the serializer to compress the output of.
+     * @param threshold the payload size in bytes above which payloads are compressed.
+     */
+    CompressingPayloadSerializer(PayloadSerializer delegate, int threshold) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public byte[] serialize(Object object) throws IOException {
+        byte[] bytes = delegate.serialize(object);
+        if (bytes.length > threshold) {
+            byte[] deflated = deflate(bytes);
+            if (deflated.length < bytes.length) {
+                return deflated;
+            }
+        }
+        byte[] plain = new byte[bytes.length + 1];
+        plain[0] = PLAIN;
+        System.arraycopy(bytes, 0, plain, 1, bytes.length);
+        return plain;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+        switch (bytes[0]) {
+            case PLAIN:
+                return delegate.deserialize(Arrays.copyOfRange(bytes, 1, bytes.length), classLoader);
+            case DEFLATED:
+                return delegate.deserialize(inflate(bytes), classLoader);
+            default:
+                throw new StreamCorruptedException("Unknown compression flag " + bytes[0]);
+        }
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 16);
+        out.write(DEFLATED);
+        out.write(bytes.length >>> 24);
+        out.write(bytes.length >>> 16);
+        out.write(bytes.length >>> 8);
+        out.write(bytes.length);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] bytes) throws IOException {
+        int length = ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16)
+                | ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+        byte[] inflated = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, 5, bytes.length - 5);
+            int offset = 0;
+            while (offset < length) {
+                int count = inflater.inflate(inflated, offset, length - offset);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new StreamCorruptedException("Truncated compressed payload");
+                }
+                offset += count;
+            }
+        } catch (DataFormatException ex) {
+            throw new StreamCorruptedException(ex.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return inflated;
+    }
+}
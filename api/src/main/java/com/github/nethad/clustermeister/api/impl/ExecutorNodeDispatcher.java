@@ -0,0 +1,231 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.ExecutorNode;
+import com.github.nethad.clustermeister.api.Loggers;
+import com.github.nethad.clustermeister.api.utils.JPPFProperties;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.jppf.client.JPPFClient;
+import org.jppf.client.JPPFJob;
+import org.jppf.node.policy.Equal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatches {@link Callable}s to a single {@link ExecutorNode},
+ * optionally bundling several of them into one JPPF job.
+ *
+ * The batch size and timeout have the same meaning as for the
+ * {@link org.jppf.client.concurrent.JPPFExecutorService}, see {@link ExecutorServiceMode}.
+ * Without either, every callable is sent immediately in its own job.
+ *
+ * @author thomas
+ */
+public class ExecutorNodeDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(Loggers.API);
+
+    private final JPPFClient client;
+    private final ExecutorNode node;
+    private final ThreadsExecutorService threadsExecutorService;
+    private final PayloadSerializer serializer;
+    private final JobCancellation cancellation;
+    private int batchSize = 0;
+    private long batchTimeout = 0;
+    private List<ExecutorNodeTask<?>> pendingTasks = new ArrayList<ExecutorNodeTask<?>>();
+    private List<SettableFuture<Object>> pendingFutures = new ArrayList<SettableFuture<Object>>();
+    private ScheduledFuture<?> scheduledFlush = null;
+    private ExecutorNodeDispatcher successor = null;
+    private AdaptiveExecutorServiceMode sampleRecorder = null;
+
+    ExecutorNodeDispatcher(JPPFClient client, ExecutorNode node, ThreadsExecutorService threadsExecutorService) {
+        this(client, node, threadsExecutorService, null);
+    }
+
+    ExecutorNodeDispatcher(JPPFClient client, ExecutorNode node, ThreadsExecutorService threadsExecutorService,
+            PayloadSerializer serializer) {
+        this(client, node, threadsExecutorService, serializer, null);
+    }
+
+    /**
+     * @param cancellation cancels jobs whose futures are all cancelled, null to only cancel futures.
+     */
+    ExecutorNodeDispatcher(JPPFClient client, ExecutorNode node, ThreadsExecutorService threadsExecutorService,
+            PayloadSerializer serializer, JobCancellation cancellation) {
+        this.client = client;
+        this.node = node;
+        this.threadsExecutorService = threadsExecutorService;
+        this.serializer = serializer;
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Sets the number of callables to bundle into one job.
+     * @param batchSize the batch size, a value <= 0 disables the size limit.
+     */
+    public synchronized void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the time to wait for further callables before a job is sent.
+     * @param batchTimeout the timeout in milliseconds, a value <= 0 disables the timeout.
+     */
+    public synchronized void setBatchTimeout(long batchTimeout) {
+        this.batchTimeout = batchTimeout;
+    }
+
+    /**
+     * Sets the mode to report the latency and execution time of every succeeded callable to.
+     * @param sampleRecorder the mode, null to stop reporting.
+     */
+    synchronized void setSampleRecorder(AdaptiveExecutorServiceMode sampleRecorder) {
+        this.sampleRecorder = sampleRecorder;
+    }
+
+    /**
+     * Queues a callable for execution on the node.
+     * @param callable the code to execute.
+     * @return a {@link ListenableFuture} with the result from the {@link Callable}.
+     */
+    public <T> ListenableFuture<T> submit(Callable<T> callable) {
+        SettableFuture<Object> future = SettableFuture.create();
+        ExecutorNodeTask<T> task;
+        try {
+            task = new ExecutorNodeTask<T>(callable, serializer);
+        } catch (IOException ex) {
+            future.setException(ex);
+            return (ListenableFuture<T>) (ListenableFuture<?>) future;
+        }
+        enqueue(task, future);
+        return (ListenableFuture<T>) (ListenableFuture<?>) future;
+    }
+
+    /**
+     * Sends the pending callables and forwards all later submissions to a successor. 
+     * Submissions racing the hand-off are either flushed here or queued by the successor, 
+     * none is left behind.
+     * @param successor the dispatcher that replaces this one.
+     */
+    void handOver(ExecutorNodeDispatcher successor) {
+        synchronized (this) {
+            this.successor = successor;
+        }
+        flush();
+    }
+
+    private void enqueue(ExecutorNodeTask<?> task, SettableFuture<Object> future) {
+        boolean flushNow = false;
+        ExecutorNodeDispatcher forwardTo;
+        synchronized (this) {
+            forwardTo = successor;
+            if (forwardTo == null) {
+                flushNow = add(task, future);
+            }
+        }
+        if (forwardTo != null) {
+            forwardTo.enqueue(task, future);
+        } else if (flushNow) {
+            flush();
+        }
+    }
+
+    /**
+     * Queues a task, to be called with the lock held.
+     * @return true if the pending callables are to be sent now.
+     */
+    private boolean add(ExecutorNodeTask<?> task, SettableFuture<Object> future) {
+        pendingTasks.add(task);
+        pendingFutures.add(future);
+        if (batchSize <= 0 && batchTimeout <= 0) {
+            return true;
+        } else if (batchSize > 0 && pendingTasks.size() >= batchSize) {
+            return true;
+        } else if (batchTimeout > 0 && scheduledFlush == null) {
+            scheduledFlush = threadsExecutorService.getScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, batchTimeout, TimeUnit.MILLISECONDS);
+        }
+        return false;
+    }
+
+    /**
+     * Sends all pending callables to the node in one job. 
+     * Callables whose futures were cancelled meanwhile are dropped.
+     */
+    public void flush() {
+        List<ExecutorNodeTask<?>> tasks;
+        List<SettableFuture<Object>> futures;
+        AdaptiveExecutorServiceMode recorder;
+        synchronized (this) {
+            recorder = sampleRecorder;
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            if (pendingTasks.isEmpty()) {
+                return;
+            }
+            tasks = new ArrayList<ExecutorNodeTask<?>>(pendingTasks.size());
+            futures = new ArrayList<SettableFuture<Object>>(pendingFutures.size());
+            for (int i = 0; i < pendingTasks.size(); i++) {
+                if (!pendingFutures.get(i).isCancelled()) {
+                    tasks.add(pendingTasks.get(i));
+                    futures.add(pendingFutures.get(i));
+                }
+            }
+            pendingTasks = new ArrayList<ExecutorNodeTask<?>>();
+            pendingFutures = new ArrayList<SettableFuture<Object>>();
+        }
+        if (!tasks.isEmpty()) {
+            dispatch(tasks, futures, recorder);
+        }
+    }
+
+    private void dispatch(List<ExecutorNodeTask<?>> tasks, List<SettableFuture<Object>> futures,
+            AdaptiveExecutorServiceMode recorder) {
+        JPPFJob job = new JPPFJob();
+        try {
+            for (ExecutorNodeTask<?> task : tasks) {
+                job.addTask(task);
+            }
+            job.setBlocking(false);
+            job.getSLA().setExecutionPolicy(new Equal(JPPFProperties.UUID, true, node.getID()));
+            ExecutorNodeResultCollector collector = new ExecutorNodeResultCollector(
+                    job, futures, threadsExecutorService.getCallbackExecutor(), recorder, System.nanoTime());
+            job.setResultListener(collector);
+            if (cancellation != null) {
+                cancellation.track(job, futures, 0);
+            }
+            client.submit(job);
+        } catch (Exception ex) {
+            logger.error("Could not execute tasks on node " + node.getID(), ex);
+            for (SettableFuture<Object> future : futures) {
+                future.setException(ex);
+            }
+        }
+    }
+}
@@ -19,18 +19,11 @@ import com.github.nethad.clustermeister.api.ExecutorNode;
 import com.github.nethad.clustermeister.api.Node;
 import com.github.nethad.clustermeister.api.NodeCapabilities;
 import com.github.nethad.clustermeister.api.NodeType;
-import com.github.nethad.clustermeister.api.utils.JPPFProperties;
 import com.google.common.util.concurrent.ListenableFuture;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import org.jppf.JPPFException;
 import org.jppf.client.JPPFClient;
-import org.jppf.client.JPPFJob;
-import org.jppf.client.JPPFResultCollector;
-import org.jppf.node.policy.Equal;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  *
@@ -43,12 +36,32 @@ public class ExecutorNodeImpl implements ExecutorNode {
     private Set<String> publicAddresses = new HashSet<String>();
     private Set<String> privateAddresses = new HashSet<String>();
     private final JPPFClient client;
-    private Logger logger = LoggerFactory.getLogger(ExecutorNodeImpl.class);
     private final ThreadsExecutorService threadsExecutorService;
+    private final PayloadSerializer serializer;
+    private final JobCancellation cancellation;
+    private volatile ExecutorNodeDispatcher dispatcher;
 
     public ExecutorNodeImpl(JPPFClient client, ThreadsExecutorService threadsExecutorService) {
+        this(client, threadsExecutorService, null);
+    }
+
+    /**
+     * @param client the JPPF client to submit jobs with.
+     * @param threadsExecutorService provides the threads for callbacks and scheduling.
+     * @param serializer the serializer for callables and results, null for Java serialization.
+     */
+    public ExecutorNodeImpl(JPPFClient client, ThreadsExecutorService threadsExecutorService,
+            PayloadSerializer serializer) {
+        this(client, threadsExecutorService, serializer, null);
+    }
+
+    ExecutorNodeImpl(JPPFClient client, ThreadsExecutorService threadsExecutorService,
+            PayloadSerializer serializer, JobCancellation cancellation) {
         this.client = client;
         this.threadsExecutorService = threadsExecutorService;
+        this.serializer = serializer;
+        this.cancellation = cancellation;
+        this.dispatcher = new ExecutorNodeDispatcher(client, this, threadsExecutorService, serializer, cancellation);
     }
 
     @Override
@@ -62,30 +75,25 @@ public class ExecutorNodeImpl implements ExecutorNode {
 
     @Override
     public <T> ListenableFuture<T> execute(Callable<T> callable) {
-//        JPPFTaskFuture<T> taskFuture = new JPPFTaskFuture<T>(null, 0);
-        
-        
-        JPPFJob job = new JPPFJob();
-        ExecutorNodeTask<T> task = new ExecutorNodeTask<T>(callable);
-        try {
-            job.addTask(task);
-            job.setBlocking(false);
-//            job.getSLA().setCancelUponClientDisconnect(true);
-//            job.getSLA().setMaxNodes(1);
-            job.getSLA().setExecutionPolicy(new Equal(JPPFProperties.UUID, true, getID()));
+        return dispatcher.submit(callable);
+    }
 
-            JPPFResultCollector collector = new JPPFResultCollector(job);
-            job.setResultListener(collector);
-            client.submit(job);
-            
-            ListenableFuture<T> submit = threadsExecutorService.submit(new ResultCollectorCallable<T>(collector));
-            return submit;
-        } catch (JPPFException ex) {
-            logger.error("Could not execute task on node "+getID(), ex);
-        } catch (Exception ex) {
-            logger.error("Could not execute task on node "+getID(), ex);
-        } 
-        return null;
+    @Override
+    public void setExecutorServiceMode(ExecutorServiceMode executorServiceMode) {
+        ExecutorNodeDispatcher newDispatcher = new ExecutorNodeDispatcher(
+                client, this, threadsExecutorService, serializer, cancellation);
+        if (executorServiceMode != null) {
+            executorServiceMode.configureExecutorNodeDispatcher(newDispatcher);
+        } else {
+            ExecutorServiceMode.standard().configureExecutorNodeDispatcher(newDispatcher);
+        }
+        ExecutorNodeDispatcher oldDispatcher;
+        synchronized (this) {
+            oldDispatcher = dispatcher;
+            dispatcher = newDispatcher;
+        }
+        // callables that still reach the old dispatcher are forwarded to the new one
+        oldDispatcher.handOver(newDispatcher);
     }
 
     @Override
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.jppf.client.JPPFJob;
+import org.jppf.client.JPPFResultCollector;
+import org.jppf.client.event.TaskResultEvent;
+import org.jppf.server.protocol.JPPFTask;
+
+/**
+ * Completes the futures of the {@link ExecutorNodeTask}s in a job when their results are received.
+ *
+ * No thread waits for the results. The futures are completed on a callback executor
+ * to keep listeners off the JPPF client's result thread.
+ *
+ * @author thomas
+ */
+class ExecutorNodeResultCollector extends JPPFResultCollector {
+    private final List<SettableFuture<Object>> futures;
+    private final Executor callbackExecutor;
+    private final AdaptiveExecutorServiceMode sampleRecorder;
+    private final long submitTime;
+
+    /**
+     * @param job the job to collect results for.
+     * @param futures one future per task, in the order the tasks were added to the job.
+     * @param callbackExecutor the executor to complete futures on.
+     */
+    ExecutorNodeResultCollector(JPPFJob job, List<SettableFuture<Object>> futures, Executor callbackExecutor) {
+        this(job, futures, callbackExecutor, null, 0);
+    }
+
+    /**
+     * @param job the job to collect results for.
+     * @param futures one future per task, in the order the tasks were added to the job.
+     * @param callbackExecutor the executor to complete futures on.
+     * @param sampleRecorder the mode to report latency and execution time of succeeded tasks to, null for none.
+     * @param submitTime the {@link System#nanoTime()} the job was submitted at.
+     */
+    ExecutorNodeResultCollector(JPPFJob job, List<SettableFuture<Object>> futures, Executor callbackExecutor,
+            AdaptiveExecutorServiceMode sampleRecorder, long submitTime) {
+        super(job);
+        this.futures = futures;
+        this.callbackExecutor = callbackExecutor;
+        this.sampleRecorder = sampleRecorder;
+        this.submitTime = submitTime;
+    }
+
+    @Override
+    public void resultsReceived(TaskResultEvent event) {
+        super.resultsReceived(event);
+        List<JPPFTask> tasks = event.getTaskList();
+        if (tasks == null) {
+            return;
+        }
+        if (sampleRecorder != null) {
+            recordSamples(tasks);
+        }
+        for (final JPPFTask task : tasks) {
+            final SettableFuture<Object> future = futures.get(task.getPosition());
+            try {
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        complete(future, task);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                // shut down, the future must not stay pending
+                future.setException(ex);
+            }
+        }
+    }
+
+    private void recordSamples(List<JPPFTask> tasks) {
+        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitTime);
+        long now = System.currentTimeMillis();
+        for (JPPFTask task : tasks) {
+            // failed tasks are not representative, skip them
+            if (task.getException() == null && task instanceof ExecutorNodeTask) {
+                long executionTime = TimeUnit.NANOSECONDS.toMillis(((ExecutorNodeTask<?>) task).getExecutionTime());
+                sampleRecorder.recordSample(now, latency, executionTime);
+            }
+        }
+    }
+
+    private static void complete(SettableFuture<Object> future, JPPFTask task) {
+        Exception exception = task.getException();
+        if (exception != null) {
+            future.setException(exception);
+            return;
+        }
+        try {
+            future.set(((ExecutorNodeTask<?>) task).decodeResult());
+        } catch (Exception ex) {
+            future.setException(ex);
+        }
+    }
+}
@@ -15,28 +15,93 @@
  */
 package com.github.nethad.clustermeister.api.impl;
 
+import com.github.nethad.clustermeister.node.common.TaskWatchdog;
+import java.io.IOException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import org.jppf.server.protocol.JPPFTask;
 
 /**
  *
  * @author thomas
  */
-public class ExecutorNodeTask<T> extends JPPFTask {
+public class ExecutorNodeTask<T> extends JPPFTask implements CancellableTask {
     private final Callable<T> callable;
+    private final PayloadSerializer serializer;
+    private final byte[] callablePayload;
+    private byte[] resultPayload;
+    private long executionTime = 0;
+    private String cancellationKey;
 
     public ExecutorNodeTask(Callable<T> callable) {
         this.callable = callable;
+        this.serializer = null;
+        this.callablePayload = null;
+    }
+
+    /**
+     * Creates a task that sends the callable and its result encoded by {@code serializer}.
+     * @param callable the code to execute.
+     * @param serializer the serializer for callable and result, null for Java serialization.
+     * @throws IOException if the callable can not be encoded.
+     */
+    public ExecutorNodeTask(Callable<T> callable, PayloadSerializer serializer) throws IOException {
+        this.serializer = serializer;
+        if (serializer == null) {
+            this.callable = callable;
+            this.callablePayload = null;
+        } else {
+            this.callable = null;
+            this.callablePayload = serializer.serialize(callable);
+        }
     }
 
     @Override
     public void run() {
+        long start = System.nanoTime();
+        TaskWatchdog.Watch watch = CancellationCheck.watch(this, cancellationKey);
         try {
-            T result = callable.call();
-            setResult(result);
+            if (serializer == null) {
+                setResult(callable.call());
+            } else {
+                Callable<T> decoded = (Callable<T>) serializer.deserialize(callablePayload, getClass().getClassLoader());
+                resultPayload = serializer.serialize(decoded.call());
+            }
         } catch (Exception ex) {
             setException(ex);
+        } finally {
+            if (watch != null) {
+                watch.stop();
+            }
+        }
+        if (watch != null && watch.isCancelled()) {
+            setException(new CancellationException("Cancelled by the client."));
+        }
+        executionTime = System.nanoTime() - start;
+    }
+
+    @Override
+    public void setCancellationKey(String cancellationKey) {
+        this.cancellationKey = cancellationKey;
+    }
+
+    /**
+     * @return the time the callable ran on the node in nanoseconds, 0 before it ran.
+     */
+    public long getExecutionTime() {
+        return executionTime;
+    }
+
+    /**
+     * @return the result of the callable, decoded if it was sent encoded.
+     * @throws IOException if the result can not be decoded.
+     * @throws ClassNotFoundException if a class of the result can not be found.
+     */
+    public Object decodeResult() throws IOException, ClassNotFoundException {
+        if (resultPayload == null) {
+            return getResult();
         }
+        return serializer.deserialize(resultPayload, getClass().getClassLoader());
     }
     
 }
@@ -15,12 +15,15 @@
  */
 package com.github.nethad.clustermeister.api.impl;
 
+import com.github.nethad.clustermeister.api.ExecutorNode;
 import com.google.common.base.Optional;
 import java.util.concurrent.ExecutorService;
 import org.jppf.client.concurrent.JPPFExecutorService;
 
 /**
  * The ExecutorServiceMode influences the {@link ExecutorService} task scheduling.
+ * It applies the same way to {@link ExecutorNode#execute(java.util.concurrent.Callable)}, 
+ * where tasks are bundled per node.
  * Two parameters can be set: a timeout and a batch size.
  * <ul>
  * <li>If no parameter is set, every task is sent immediately (standard)</li>
@@ -36,6 +39,17 @@ public abstract class ExecutorServiceMode {
     
     abstract protected void configureJppfExecutorService(JPPFExecutorService executorService);
     
+    abstract protected void configureExecutorNodeDispatcher(ExecutorNodeDispatcher dispatcher);
+    
+    /**
+     * Gives a mode the chance to wrap the configured {@link JPPFExecutorService}, e.g. to observe the tasks.
+     * @param executorService the configured executor service.
+     * @return the {@link ExecutorService} handed out to the user.
+     */
+    protected ExecutorService decorate(JPPFExecutorService executorService) {
+        return executorService;
+    }
+    
     /**
      * Executes Callables/Runnables immediately.
      * @return 
@@ -73,6 +87,17 @@ public abstract class ExecutorServiceMode {
         return new GenericExecutorServiceMode(Optional.fromNullable(timeout), Optional.fromNullable(batchSize));
     }
     
+    /**
+     * Starts like {@link #standard()} and then continuously adjusts batch size and timeout 
+     * to maximise throughput while keeping the average task latency within the given target.
+     * The returned mode exposes its current settings and adjustment history.
+     * @param targetLatency the latency budget per task in milliseconds.
+     * @return 
+     */
+    public static AdaptiveExecutorServiceMode adaptive(long targetLatency) {
+        return new AdaptiveExecutorServiceMode(targetLatency);
+    }
+    
     static class GenericExecutorServiceMode extends ExecutorServiceMode {
         private final Optional<Long> timeout;
         private final Optional<Integer> batchSize;
@@ -91,6 +116,16 @@ public abstract class ExecutorServiceMode {
                 executorService.setBatchSize(batchSize.get());
             }
         }
+
+        @Override
+        protected void configureExecutorNodeDispatcher(ExecutorNodeDispatcher dispatcher) {
+            if (timeout.isPresent()) {
+                dispatcher.setBatchTimeout(timeout.get());
+            }
+            if (batchSize.isPresent()) {
+                dispatcher.setBatchSize(batchSize.get());
+            }
+        }
         
     }
 
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Dispatches the tasks of executor services bound to {@link SchedulingQueue}s.
+ *
+ * At most {@link #SLOTS_PER_THREAD} tasks per node thread are in flight. A free slot goes to the
+ * queue with the highest priority, among queues of equal priority to the one with the fewest
+ * tasks in flight relative to its weight. A queue below its minimum share dispatches immediately,
+ * even if all slots are taken. As long as no node thread is known, tasks wait until
+ * {@link #setNodeThreads(int)} signals capacity.
+ * Every task in flight is waited for on the wait executor, so a completion frees its slot at once.
+ * The futures returned to the caller are completed on the callback executor, to keep their
+ * listeners off the threads that dispatch.
+ *
+ * @author thomas
+ */
+class FairShareScheduler {
+    static final int SLOTS_PER_THREAD = 4;
+
+    private final Map<String, QueueState> queues = new LinkedHashMap<String, QueueState>();
+    private final Set<PendingTask<?>> runningTasks = 
+            Collections.newSetFromMap(new ConcurrentHashMap<PendingTask<?>, Boolean>());
+    private final Executor waitExecutor;
+    private final Executor callbackExecutor;
+    private boolean shutdown = false;
+    private int capacity = 0;
+    private int inFlight = 0;
+
+    /**
+     * @param waitExecutor the executor to wait for tasks in flight on, needs one thread per task in flight.
+     * @param callbackExecutor the executor to complete the futures of finished tasks on.
+     */
+    FairShareScheduler(Executor waitExecutor, Executor callbackExecutor) {
+        this.waitExecutor = waitExecutor;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Sets the number of node threads the queues share.
+     * @param nodeThreads the total number of processing threads of all nodes, 0 if there are none.
+     */
+    void setNodeThreads(int nodeThreads) {
+        synchronized (this) {
+            capacity = nodeThreads * SLOTS_PER_THREAD;
+        }
+        start(currentTimeMillis());
+    }
+
+    /**
+     * Registers a queue, or updates the settings of the queue with the same name.
+     * @param queue the queue.
+     * @return the state of the queue.
+     */
+    synchronized QueueState register(SchedulingQueue queue) {
+        QueueState state = queues.get(queue.getName());
+        if (state == null) {
+            state = new QueueState(queue);
+            queues.put(queue.getName(), state);
+        } else {
+            state.queue = queue;
+        }
+        return state;
+    }
+
+    /**
+     * Queues a task.
+     * @param state the queue.
+     * @param delegate the executor service to dispatch the task to.
+     * @param callable the task.
+     * @return a future that completes with the result of the dispatched task.
+     */
+    <T> ListenableFuture<T> submit(QueueState state, ExecutorService delegate, Callable<T> callable) {
+        long now = currentTimeMillis();
+        PendingTask<T> task = new PendingTask<T>(state, delegate, callable, now);
+        synchronized (this) {
+            state.pending.add(task);
+        }
+        start(now);
+        return task.future;
+    }
+
+    /**
+     * Stops dispatching and cancels the tasks in flight.
+     */
+    void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        for (PendingTask<?> task : runningTasks) {
+            task.future.cancel(true);
+        }
+    }
+
+    synchronized Map<String, QueueStatistics> getStatistics() {
+        Map<String, QueueStatistics> statistics = new LinkedHashMap<String, QueueStatistics>();
+        for (QueueState state : queues.values()) {
+            statistics.put(state.queue.getName(), new QueueStatistics(state.pending.size(), state.running,
+                    state.dispatched, state.totalWaitTime, state.maxWaitTime));
+        }
+        return statistics;
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private void start(long now) {
+        for (PendingTask<?> task : select(now)) {
+            runningTasks.add(task);
+            task.start();
+            waitFor(task);
+        }
+    }
+
+    private void waitFor(final PendingTask<?> task) {
+        try {
+            waitExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    task.await();
+                    finished(task);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // tasks in flight can no longer be waited for
+            shutdown();
+            task.future.cancel(true);
+            finished(task);
+        }
+    }
+
+    /**
+     * Completes the future of a finished task and dispatches tasks into its slot.
+     */
+    private void finished(final PendingTask<?> task) {
+        runningTasks.remove(task);
+        synchronized (this) {
+            task.state.running--;
+            inFlight--;
+        }
+        try {
+            callbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    task.complete();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            task.complete();
+        }
+        start(currentTimeMillis());
+    }
+
+    private synchronized List<PendingTask<?>> select(long now) {
+        List<PendingTask<?>> selected = new ArrayList<PendingTask<?>>();
+        while (!shutdown) {
+            QueueState next = null;
+            boolean nextGuaranteed = false;
+            for (QueueState state : queues.values()) {
+                dropCancelled(state);
+                if (state.pending.isEmpty()) {
+                    continue;
+                }
+                boolean guaranteed = state.running < reservedSlots(state);
+                if (!guaranteed && inFlight >= capacity) {
+                    continue;
+                }
+                if (next == null || isBefore(state, guaranteed, next, nextGuaranteed)) {
+                    next = state;
+                    nextGuaranteed = guaranteed;
+                }
+            }
+            if (next == null) {
+                return selected;
+            }
+            PendingTask<?> task = next.pending.poll();
+            long waitTime = Math.max(0, now - task.enqueueTime);
+            next.running++;
+            next.dispatched++;
+            next.totalWaitTime += waitTime;
+            next.maxWaitTime = Math.max(next.maxWaitTime, waitTime);
+            inFlight++;
+            selected.add(task);
+        }
+        return selected;
+    }
+
+    private void dropCancelled(QueueState state) {
+        while (!state.pending.isEmpty() && state.pending.peek().future.isCancelled()) {
+            state.pending.poll();
+        }
+    }
+
+    private int reservedSlots(QueueState state) {
+        return (int) Math.ceil(state.queue.getMinimumShare() * capacity);
+    }
+
+    private static boolean isBefore(QueueState state, boolean guaranteed, QueueState other, boolean otherGuaranteed) {
+        if (guaranteed != otherGuaranteed) {
+            return guaranteed;
+        }
+        if (state.queue.getPriority() != other.queue.getPriority()) {
+            return state.queue.getPriority() > other.queue.getPriority();
+        }
+        return (double) state.running / state.queue.getWeight() 
+                < (double) other.running / other.queue.getWeight();
+    }
+
+    static class QueueState {
+        private volatile SchedulingQueue queue;
+        private final Queue<PendingTask<?>> pending = new ArrayDeque<PendingTask<?>>();
+        private int running = 0;
+        private long dispatched = 0;
+        private long totalWaitTime = 0;
+        private long maxWaitTime = 0;
+
+        QueueState(SchedulingQueue queue) {
+            this.queue = queue;
+        }
+
+        SchedulingQueue getQueue() {
+            return queue;
+        }
+    }
+
+    private static class PendingTask<T> {
+        private final QueueState state;
+        private final ExecutorService delegate;
+        private final Callable<T> callable;
+        private final long enqueueTime;
+        private final SettableFuture<T> future = SettableFuture.create();
+        private volatile Future<T> delegateFuture;
+
+        PendingTask(QueueState state, ExecutorService delegate, Callable<T> callable, long enqueueTime) {
+            this.state = state;
+            this.delegate = delegate;
+            this.callable = callable;
+            this.enqueueTime = enqueueTime;
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    cancelDelegate();
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+
+        void start() {
+            try {
+                delegateFuture = delegate.submit(callable);
+            } catch (RuntimeException ex) {
+                SettableFuture<T> failed = SettableFuture.create();
+                failed.setException(ex);
+                delegateFuture = failed;
+            }
+            // cancelled while being dispatched
+            cancelDelegate();
+        }
+
+        /**
+         * Waits until the dispatched task is done, however it ends.
+         */
+        void await() {
+            try {
+                delegateFuture.get();
+            } catch (ExecutionException ex) {
+                // completed
+            } catch (CancellationException ex) {
+                // completed
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void complete() {
+            if (!delegateFuture.isDone()) {
+                // interrupted while waiting
+                future.cancel(false);
+                return;
+            }
+            try {
+                future.set(delegateFuture.get());
+            } catch (ExecutionException ex) {
+                future.setException(ex.getCause());
+            } catch (CancellationException ex) {
+                future.cancel(false);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                future.setException(ex);
+            }
+        }
+
+        private void cancelDelegate() {
+            if (future.isCancelled() && delegateFuture != null) {
+                delegateFuture.cancel(true);
+            }
+        }
+    }
+}
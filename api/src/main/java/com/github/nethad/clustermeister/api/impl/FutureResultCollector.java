@@ -15,39 +15,151 @@
  */
 package com.github.nethad.clustermeister.api.impl;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.jppf.client.JPPFJob;
-import org.jppf.client.JPPFResultCollector;
 import org.jppf.client.event.TaskResultEvent;
+import org.jppf.client.event.TaskResultListener;
 import org.jppf.server.protocol.JPPFTask;
 
 /**
+ * Completes one future per task of a job as the task results arrive.
+ *
+ * The futures are preallocated when the collector is created,
+ * so receiving results does not take any lock.
+ * A task counts as finished at its first result or when its future is cancelled or expires 
+ * before, so {@link JobResultListener#onComplete()} also follows abandoned tasks.
  *
  * @author thomas
  */
-public class FutureResultCollector<T> extends JPPFResultCollector {
+public class FutureResultCollector<T> implements TaskResultListener {
 
-    List<SettableFuture<T>> futureResults = new ArrayList<SettableFuture<T>>();
+    private final AtomicReferenceArray<SettableFuture<T>> futureResults;
+    private final AtomicIntegerArray finished;
+    private final AtomicInteger pendingCount;
+    private final List<JobResultListener<T>> listeners = new CopyOnWriteArrayList<JobResultListener<T>>();
 
     protected FutureResultCollector(JPPFJob job) {
-        super(job);
-        for (int i = 0; i < job.getTasks().size(); i++) {
-            futureResults.add(SettableFuture.<T>create());
+        int taskCount = job.getTasks().size();
+        futureResults = new AtomicReferenceArray<SettableFuture<T>>(taskCount);
+        finished = new AtomicIntegerArray(taskCount);
+        pendingCount = new AtomicInteger(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            final int position = i;
+            SettableFuture<T> future = SettableFuture.<T>create();
+            futureResults.set(i, future);
+            // cancelled or expired before its result arrived
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    if (finished.compareAndSet(position, 0, 1)) {
+                        taskFinished();
+                    }
+                }
+            }, MoreExecutors.sameThreadExecutor());
         }
     }
 
     @Override
-    public synchronized void resultsReceived(TaskResultEvent event) {
-        super.resultsReceived(event);
-        //System.out.println("Received result, task list size = " + event.getTaskList().size());
-        for (JPPFTask task : event.getTaskList()) {
-            futureResults.get(task.getPosition()).set((T) task.getResult());
+    public void resultsReceived(TaskResultEvent event) {
+        List<JPPFTask> tasks = event.getTaskList();
+        if (tasks == null) {
+            return;
+        }
+        for (JPPFTask task : tasks) {
+            complete(task.getPosition(), task);
         }
     }
 
-    public List<SettableFuture<T>> getFutureList() {
-        return futureResults;
+    /**
+     * Completes the future of a task.
+     * @param position the position of the task in the job.
+     * @param task the task with its result or exception.
+     */
+    void complete(int position, JPPFTask task) {
+        if (!finished.compareAndSet(position, 0, 1)) {
+            // a duplicate, or the future was cancelled or expired
+            return;
+        }
+        SettableFuture<T> future = futureResults.get(position);
+        Exception exception = task.getException();
+        if (exception != null) {
+            if (future.setException(exception)) {
+                for (JobResultListener<T> listener : listeners) {
+                    listener.onFailure(position, exception);
+                }
+            }
+        } else {
+            T result = (T) task.getResult();
+            if (future.set(result)) {
+                for (JobResultListener<T> listener : listeners) {
+                    listener.onEach(position, result);
+                }
+            }
+        }
+        taskFinished();
+    }
+    
+    /**
+     * Fails the future of a task that was not executed, unless it is already finished.
+     * @param position the position of the task in the job.
+     * @param cause the reason the task was not executed.
+     */
+    void fail(int position, Throwable cause) {
+        if (!finished.compareAndSet(position, 0, 1)) {
+            return;
+        }
+        if (futureResults.get(position).setException(cause)) {
+            for (JobResultListener<T> listener : listeners) {
+                listener.onFailure(position, cause);
+            }
+        }
+        taskFinished();
+    }
+    
+    private void taskFinished() {
+        if (pendingCount.decrementAndGet() == 0) {
+            for (JobResultListener<T> listener : listeners) {
+                listener.onComplete();
+            }
+        }
+    }
+
+    /**
+     * Registers a listener for task results.
+     * Listeners only receive results that arrive after they have been added.
+     * @param listener the listener to add.
+     */
+    public void addListener(JobResultListener<T> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the futures of all tasks, in the order the tasks were added to the job.
+     * @return an unmodifiable list view of the futures.
+     */
+    public List<ListenableFuture<T>> getFutureList() {
+        return new FutureList();
+    }
+
+    private class FutureList extends AbstractList<ListenableFuture<T>> implements RandomAccess {
+
+        @Override
+        public ListenableFuture<T> get(int index) {
+            return futureResults.get(index);
+        }
+
+        @Override
+        public int size() {
+            return futureResults.length();
+        }
     }
 }
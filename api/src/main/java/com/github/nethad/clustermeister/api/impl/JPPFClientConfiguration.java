@@ -15,13 +15,17 @@
  */
 package com.github.nethad.clustermeister.api.impl;
 
+import com.github.nethad.clustermeister.api.DriverAddress;
 import com.github.nethad.clustermeister.api.JPPFConstants;
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
-import org.jppf.utils.JPPFConfiguration;
 
 /**
+ * The configuration of the API's JPPF client.
+ * 
+ * The client connects to every given driver with the same priority, 
+ * so concurrently submitted jobs are spread across idle drivers.
  *
  * @author thomas
  */
@@ -29,11 +33,34 @@ public class JPPFClientConfiguration extends AbstractJPPFConfiguration {
 
     private Properties properties = new Properties();
 
+    /**
+     * Connects to a single driver on localhost.
+     */
     public JPPFClientConfiguration() {
-        String driverName = "driver";
-        properties.setProperty(JPPFConstants.DRIVERS, driverName);
-        properties.setProperty(String.format(JPPFConstants.DRIVER_SERVER_HOST_PATTERN, driverName), "localhost");
-        properties.setProperty(String.format(JPPFConstants.DRIVER_SERVER_PORT_PATTERN, driverName), "11111");
+        this(Collections.<DriverAddress>emptyList());
+    }
+
+    /**
+     * @param drivers the drivers to connect to, none for a single driver on localhost.
+     */
+    public JPPFClientConfiguration(List<DriverAddress> drivers) {
+        if (drivers.isEmpty()) {
+            drivers = Collections.singletonList(new DriverAddress("localhost", 
+                    JPPFConstants.DEFAULT_SERVER_PORT, JPPFConstants.DEFAULT_MANAGEMENT_PORT));
+        }
+        StringBuilder driverNames = new StringBuilder();
+        for (int i = 0; i < drivers.size(); i++) {
+            String driverName = i == 0 ? "driver" : "driver" + i;
+            DriverAddress driver = drivers.get(i);
+            driverNames.append(driverName).append(' ');
+            properties.setProperty(String.format(JPPFConstants.DRIVER_SERVER_HOST_PATTERN, driverName), driver.getHost());
+            properties.setProperty(String.format(JPPFConstants.DRIVER_SERVER_PORT_PATTERN, driverName), 
+                    String.valueOf(driver.getServerPort()));
+            properties.setProperty(String.format(JPPFConstants.DRIVER_MANAGEMENT_PORT_PATTERN, driverName), 
+                    String.valueOf(driver.getManagementPort()));
+            properties.setProperty(String.format(JPPFConstants.DRIVER_PRIORITY_PATTERN, driverName), "0");
+        }
+        properties.setProperty(JPPFConstants.DRIVERS, driverNames.toString().trim());
 //        properties.setProperty("reconnect.max.time", "-1");
         properties.setProperty(JPPFConstants.DISCOVERY_ENABLED, "false");
         properties.setProperty(JPPFConstants.LOAD_BALANCING_ALGORITHM, "manual");
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.io.*;
+
+/**
+ * Encodes payloads with standard Java serialization.
+ *
+ * @author thomas
+ */
+class JavaPayloadSerializer implements PayloadSerializer {
+
+    @Override
+    public byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ClassLoaderObjectInputStream(new ByteArrayInputStream(bytes), classLoader);
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Resolves classes with a given class loader instead of the caller's.
+     */
+    static class ClassLoaderObjectInputStream extends ObjectInputStream {
+        private final ClassLoader classLoader;
+
+        ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return resolveClass(desc.getName());
+            } catch (ClassNotFoundException ex) {
+                // primitive types are not found by name
+                return super.resolveClass(desc);
+            }
+        }
+
+        protected Class<?> resolveClass(String name) throws ClassNotFoundException {
+            return Class.forName(name, false, classLoader);
+        }
+    }
+}
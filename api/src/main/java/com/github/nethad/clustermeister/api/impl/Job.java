@@ -26,6 +26,11 @@ import org.jppf.client.JPPFJob;
  * @author thomas
  */
 public abstract class Job<T> {
+    private String affinityKey;
+    private final LocalityStatistics localityStatistics = new LocalityStatistics();
+    private boolean speculativeExecution = false;
+    private final SpeculationStatistics speculationStatistics = new SpeculationStatistics();
+    private long deadline = 0;
         
     /**
      * Adds a task to the job.
@@ -42,6 +47,67 @@ public abstract class Job<T> {
 
     protected abstract void setBlocking(boolean blocking);
     
-    protected abstract FutureResultCollector resultCollector();
+    protected abstract FutureResultCollector<T> resultCollector();
+    
+    /**
+     * Sets the affinity key for all tasks of this job that do not have their own.
+     * @param affinityKey the affinity key, null for none.
+     * @see Task#setAffinityKey(java.lang.String) 
+     */
+    public void setAffinityKey(String affinityKey) {
+        this.affinityKey = affinityKey;
+    }
+    
+    public String getAffinityKey() {
+        return affinityKey;
+    }
+    
+    /**
+     * @return how well the tasks of this job were routed to the nodes holding their data.
+     */
+    public LocalityStatistics getLocalityStatistics() {
+        return localityStatistics;
+    }
+    
+    /**
+     * Enables speculative execution: when most tasks of the job are complete, duplicates of tasks that
+     * run far longer than the others are sent to other nodes and the first result is taken.
+     * Applies to {@link com.github.nethad.clustermeister.api.Clustermeister#executeJobAsyncTasks(Job)} 
+     * for jobs without affinity keys. Tasks should be free of side effects, as they may run twice.
+     * @param speculativeExecution true to enable speculative execution.
+     */
+    public void setSpeculativeExecution(boolean speculativeExecution) {
+        this.speculativeExecution = speculativeExecution;
+    }
+    
+    public boolean isSpeculativeExecution() {
+        return speculativeExecution;
+    }
+    
+    /**
+     * Sets the time after submission at which the job is abandoned. Results still pending then fail 
+     * with a {@link java.util.concurrent.TimeoutException} and the job is cancelled on the driver, 
+     * which interrupts its tasks on the nodes. The driver expires the job on its own as well, 
+     * so nodes are freed even if the client is gone.
+     * Applies to {@link com.github.nethad.clustermeister.api.Clustermeister#executeJobAsyncTasks(Job)}.
+     * @param deadline the deadline in milliseconds after submission, 0 for none.
+     */
+    public void setDeadline(long deadline) {
+        if (deadline < 0) {
+            throw new IllegalArgumentException("Deadline must not be negative, was " + deadline);
+        }
+        this.deadline = deadline;
+    }
+    
+    public long getDeadline() {
+        return deadline;
+    }
+    
+    /**
+     * @return the number of speculative duplicates launched for this job and how many of them won.
+     */
+    public SpeculationStatistics getSpeculationStatistics() {
+        return speculationStatistics;
+    }
     
 }
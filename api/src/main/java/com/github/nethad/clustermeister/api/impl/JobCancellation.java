@@ -0,0 +1,209 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.Loggers;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.github.nethad.clustermeister.node.common.TaskWatchdog;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jppf.client.JPPFClient;
+import org.jppf.client.JPPFJob;
+import org.jppf.scheduling.JPPFSchedule;
+import org.jppf.server.protocol.JPPFTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cancels JPPF jobs on the driver when the client abandons their tasks.
+ *
+ * A task is abandoned when its future is cancelled or when the job's deadline passes, in which case
+ * the future fails with a {@link TimeoutException}. JPPF cancels whole jobs, so the job is cancelled
+ * once all its futures are done and at least one task was abandoned. The driver then interrupts
+ * the tasks still running on nodes. An abandoned {@link CancellableTask} of a job with pending tasks 
+ * is interrupted by the node's {@link TaskWatchdog} instead, which frees its processing thread 
+ * within {@link TaskWatchdog#CHECK_INTERVAL} ms.
+ *
+ * @author thomas
+ */
+class JobCancellation {
+    private static final Logger logger = LoggerFactory.getLogger(Loggers.API);
+
+    /**
+     * Weight of a new sample in the average task latency.
+     */
+    static final double LATENCY_WEIGHT = 0.1;
+
+    /**
+     * Keys of the abandoned tasks of jobs that still have pending tasks.
+     */
+    private static final Set<String> abandonedTasks = 
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final JPPFClient client;
+    private final ScheduledExecutorService scheduler;
+    private final Executor cancelExecutor;
+    private final CancellationStatistics statistics = new CancellationStatistics();
+    private volatile double averageLatency = 0;
+
+    /**
+     * @param client the client to cancel jobs with.
+     * @param scheduler the scheduler to expire deadlines on.
+     * @param cancelExecutor the executor to run the blocking cancel requests on.
+     */
+    JobCancellation(JPPFClient client, ScheduledExecutorService scheduler, Executor cancelExecutor) {
+        this.client = client;
+        this.scheduler = scheduler;
+        this.cancelExecutor = cancelExecutor;
+    }
+
+    /**
+     * Starts tracking the futures of a job. Must be called before the job is submitted,
+     * as the deadline is also set as the job's expiration on the driver.
+     * @param job the job.
+     * @param futures the futures of the job's tasks.
+     * @param deadline the time in milliseconds after which pending tasks expire, 0 for none.
+     */
+    void track(JPPFJob job, List<? extends ListenableFuture<?>> futures, long deadline) {
+        final TrackedJob trackedJob = new TrackedJob(job.getUuid(), futures.size());
+        List<JPPFTask> tasks = job.getTasks();
+        for (int i = 0; i < futures.size(); i++) {
+            final ListenableFuture<?> future = futures.get(i);
+            final String cancellationKey = job.getUuid() + "#" + i;
+            if (i < tasks.size() && tasks.get(i) instanceof CancellableTask) {
+                ((CancellableTask) tasks.get(i)).setCancellationKey(cancellationKey);
+            }
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    trackedJob.onDone(future, cancellationKey);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+        if (deadline > 0) {
+            job.getSLA().setJobExpirationSchedule(new JPPFSchedule(deadline));
+            final List<ListenableFuture<?>> pending = new ArrayList<ListenableFuture<?>>(futures);
+            final long timeout = deadline;
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    for (ListenableFuture<?> future : pending) {
+                        trackedJob.expire(future, timeout);
+                    }
+                }
+            }, deadline, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    CancellationStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @param cancellationKey the key of a {@link CancellableTask}.
+     * @return true if the task was abandoned while other tasks of its job are pending.
+     */
+    static boolean isCancelled(String cancellationKey) {
+        return abandonedTasks.contains(cancellationKey);
+    }
+
+    private void cancelJob(final String jobUuid, final long reclaimedMillis) {
+        cancelExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.cancelJob(jobUuid);
+                    statistics.recordCancelledJob(reclaimedMillis);
+                } catch (Exception ex) {
+                    logger.warn("Could not cancel job " + jobUuid + ".", ex);
+                }
+            }
+        });
+    }
+
+    private class TrackedJob {
+        private final String jobUuid;
+        private final int size;
+        private final long submitTime = System.currentTimeMillis();
+        private final AtomicInteger done = new AtomicInteger();
+        private final AtomicBoolean abandoned = new AtomicBoolean();
+        private long reclaimedMillis = 0;
+        private final List<ListenableFuture<?>> expired = new ArrayList<ListenableFuture<?>>();
+        private final List<String> abandonedKeys = new ArrayList<String>();
+
+        TrackedJob(String jobUuid, int size) {
+            this.jobUuid = jobUuid;
+            this.size = size;
+        }
+
+        void expire(ListenableFuture<?> future, long timeout) {
+            synchronized (this) {
+                if (future.isDone()) {
+                    return;
+                }
+                expired.add(future);
+            }
+            TimeoutException exception = new TimeoutException("Deadline of " + timeout + " ms passed.");
+            if (!(future instanceof SettableFuture && ((SettableFuture<?>) future).setException(exception))) {
+                future.cancel(true);
+            }
+        }
+
+        void onDone(ListenableFuture<?> future, String cancellationKey) {
+            long elapsed = System.currentTimeMillis() - submitTime;
+            boolean isExpired;
+            synchronized (this) {
+                isExpired = expired.contains(future);
+            }
+            if (future.isCancelled() || isExpired) {
+                if (isExpired) {
+                    statistics.recordExpiredTask();
+                } else {
+                    statistics.recordCancelledTask();
+                }
+                abandoned.set(true);
+                synchronized (this) {
+                    reclaimedMillis += Math.max(0, (long) averageLatency - elapsed);
+                    abandonedKeys.add(cancellationKey);
+                }
+                // interrupts the task on the node, the job keeps running for the pending tasks
+                abandonedTasks.add(cancellationKey);
+            } else {
+                averageLatency = averageLatency == 0
+                        ? elapsed : averageLatency * (1 - LATENCY_WEIGHT) + elapsed * LATENCY_WEIGHT;
+            }
+            if (done.incrementAndGet() == size && abandoned.get()) {
+                long reclaimed;
+                synchronized (this) {
+                    reclaimed = reclaimedMillis;
+                    abandonedTasks.removeAll(abandonedKeys);
+                }
+                cancelJob(jobUuid, reclaimed);
+            }
+        }
+    }
+}
@@ -16,8 +16,14 @@
 package com.github.nethad.clustermeister.api.impl;
 
 import com.github.nethad.clustermeister.api.Loggers;
+import com.github.nethad.clustermeister.node.common.ClassCacheManifest;
+import com.github.nethad.clustermeister.node.common.BundleResultCombiner;
 import com.google.common.base.Optional;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.jppf.JPPFException;
 import org.jppf.client.JPPFJob;
 import org.jppf.task.storage.DataProvider;
@@ -27,38 +33,73 @@ import org.slf4j.LoggerFactory;
 
 /**
  *
+ * Job data values with a serialized size of at least {@link #BROADCAST_THRESHOLD} bytes are broadcast:
+ * they are sent to each node only once and cached there across jobs, see {@link BroadcastReference}.
+ * 
+ * The job data also carries a {@link ClassCacheManifest} of the class path entries of the tasks, 
+ * so that nodes load unchanged classes from their persistent class cache.
+ * 
  * @author thomas
  */
 public class JobImpl<T> extends Job<T> {
     public static final String DEFAULT_JOB_NAME = "Clustermeister Job";
+    public static final long BROADCAST_THRESHOLD = 64 * 1024;
     private static final Logger logger = LoggerFactory.getLogger(Loggers.API);
     
     private JPPFJob jppfJob;
+    // keeps the broadcast values registered while this job exists
+    private final List<Object> broadcastValues = new ArrayList<Object>();
+    private final ClassCacheManifest classCacheManifest = new ClassCacheManifest();
+    private final Set<Class<?>> manifestClasses = new HashSet<Class<?>>();
 
     JobImpl(String name, Optional<Map<String, Object>> jobData) {
+        DataProvider dataProvider = new MemoryMapDataProvider();
         if (jobData.isPresent()) {
-            DataProvider dataProvider = dataProviderWith(jobData.get());
-            jppfJob = new JPPFJob(dataProvider);
-        } else {
-            jppfJob = new JPPFJob();
+            addJobData(dataProvider, jobData.get());
+        }
+        try {
+            dataProvider.setValue(ClassCacheManifest.DATA_PROVIDER_KEY, classCacheManifest);
+        } catch (Exception ex) {
+            logger.warn("Could not add class cache manifest.", ex);
         }
+        addToClassCacheManifest(Task.class);
+        jppfJob = new JPPFJob(dataProvider);
         jppfJob.setName(name);
     }
     
-    private DataProvider dataProviderWith(Map<String, Object> jobData) {
-        DataProvider dataProvider = new MemoryMapDataProvider();
+    private void addJobData(DataProvider dataProvider, Map<String, Object> jobData) {
         for (Map.Entry<String, Object> e : jobData.entrySet()) {
             try {
-                dataProvider.setValue(e.getKey(), e.getValue());
+                Object value = e.getValue();
+                if (value != null) {
+                    addToClassCacheManifest(value.getClass());
+                }
+                BroadcastReference reference = null;
+                // the node reads the combiner directly, it must never become a reference
+                if (value != null && !BundleResultCombiner.DATA_PROVIDER_KEY.equals(e.getKey())) {
+                    reference = BroadcastRegistry.getInstance().register(value, BROADCAST_THRESHOLD);
+                }
+                if (reference != null) {
+                    broadcastValues.add(value);
+                    dataProvider.setValue(e.getKey(), reference);
+                } else {
+                    dataProvider.setValue(e.getKey(), value);
+                }
             } catch (Exception ex) {
                 logger.warn("Could not add job data '{}'.", ex);
             }
         }
-        return dataProvider;
+    }
+    
+    private void addToClassCacheManifest(Class<?> type) {
+        if (manifestClasses.add(type)) {
+            ClassCacheManifests.getInstance().addEntryOf(classCacheManifest, type);
+        }
     }
     
     @Override
     public void addTask(final Task<T> task) throws Exception {
+        addToClassCacheManifest(task.getClass());
         try {
             jppfJob.addTask(task.getJppfTask());
         } catch (JPPFException ex) {
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+/**
+ * Receives the task results of a {@link Job} as they arrive.
+ *
+ * Callbacks are invoked on the thread that receives the results from the driver
+ * and should therefore return quickly.
+ *
+ * @author thomas
+ */
+public interface JobResultListener<T> {
+
+    /**
+     * Called once for every task that completed successfully.
+     * @param position the position of the task in the job.
+     * @param result the task result.
+     */
+    public void onEach(int position, T result);
+
+    /**
+     * Called once for every task that failed.
+     * @param position the position of the task in the job.
+     * @param cause the exception thrown by the task.
+     */
+    public void onFailure(int position, Throwable cause);
+
+    /**
+     * Called once after the results of all tasks have been received.
+     */
+    public void onComplete();
+
+}
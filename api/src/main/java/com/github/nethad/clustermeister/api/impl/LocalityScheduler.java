@@ -0,0 +1,279 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.ExecutorNode;
+import com.github.nethad.clustermeister.api.Loggers;
+import com.github.nethad.clustermeister.api.utils.JPPFProperties;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jppf.client.JPPFClient;
+import org.jppf.client.JPPFJob;
+import org.jppf.client.event.TaskResultEvent;
+import org.jppf.client.event.TaskResultListener;
+import org.jppf.node.policy.Equal;
+import org.jppf.server.protocol.JPPFTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Routes the tasks of jobs with affinity keys to the nodes that executed tasks with the same key before.
+ *
+ * A job is split into one sub-job per preferred node, constrained to that node by an execution policy,
+ * and one sub-job without constraint for tasks without a known location. A node is saturated when
+ * it has {@link #SATURATION_FACTOR} tasks per processing thread routed to it and not yet returned;
+ * further tasks for that node go to the unconstrained sub-job. A routed task returns its slot when its
+ * future is done, whether it completed, failed or was cancelled.
+ * If a sub-job can not be submitted, the sub-jobs already submitted are cancelled and all futures 
+ * of the job fail, so every slot is returned.
+ *
+ * @author thomas
+ */
+class LocalityScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(Loggers.API);
+    
+    static final int SATURATION_FACTOR = 4;
+    static final int MAX_AFFINITY_KEYS = 100000;
+
+    private final JPPFClient client;
+    private final JobCancellation cancellation;
+    private final ConcurrentMap<String, String> locations = 
+            CacheBuilder.newBuilder().maximumSize(MAX_AFFINITY_KEYS).<String, String>build().asMap();
+    private final ConcurrentMap<String, AtomicInteger> routedTasks = new ConcurrentHashMap<String, AtomicInteger>();
+    private volatile Map<String, Integer> capacities = Collections.emptyMap();
+
+    LocalityScheduler(JPPFClient client) {
+        this(client, null);
+    }
+
+    /**
+     * @param client the JPPF client to submit sub-jobs with.
+     * @param cancellation cancels sub-jobs whose futures are abandoned, may be null.
+     */
+    LocalityScheduler(JPPFClient client, JobCancellation cancellation) {
+        this.client = client;
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Sets the nodes tasks can be routed to.
+     * @param nodes the currently connected nodes.
+     */
+    void setNodes(Collection<ExecutorNode> nodes) {
+        Map<String, Integer> newCapacities = new HashMap<String, Integer>();
+        for (ExecutorNode node : nodes) {
+            int threads = node.getCapabilities() == null ? 1 : node.getCapabilities().getNumberOfProcessingThreads();
+            newCapacities.put(node.getID(), Math.max(1, threads) * SATURATION_FACTOR);
+        }
+        capacities = newCapacities;
+    }
+
+    /**
+     * @param job a job.
+     * @return true if the job or any of its tasks has an affinity key.
+     */
+    static boolean hasAffinity(Job<?> job) {
+        if (job.getAffinityKey() != null) {
+            return true;
+        }
+        for (JPPFTask jppfTask : job.getJppfJob().getTasks()) {
+            Task<?> task = Task.of(jppfTask);
+            if (task != null && task.getAffinityKey() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Submits the tasks of a job, routed by their affinity keys.
+     * @param job the job to execute.
+     * @param listener receives the task results, may be null.
+     * @return a list of Futures, one per task in the order of the job.
+     * @throws Exception if a sub-job can not be submitted.
+     */
+    <T> List<ListenableFuture<T>> submit(Job<T> job, JobResultListener<T> listener) throws Exception {
+        JPPFJob jppfJob = job.getJppfJob();
+        List<JPPFTask> tasks = new ArrayList<JPPFTask>(jppfJob.getTasks());
+        FutureResultCollector<T> collector = new FutureResultCollector<T>(jppfJob);
+        if (listener != null) {
+            collector.addListener(listener);
+        }
+        LocalityStatistics statistics = job.getLocalityStatistics();
+        String[] keys = new String[tasks.size()];
+        String[] preferredNodes = new String[tasks.size()];
+        Map<String, List<Integer>> groups = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 0; i < tasks.size(); i++) {
+            Task<?> task = Task.of(tasks.get(i));
+            String key = task != null && task.getAffinityKey() != null ? task.getAffinityKey() : job.getAffinityKey();
+            String node = null;
+            if (key != null) {
+                statistics.recordAffinityTask();
+                String location = locations.get(key);
+                if (location != null && capacities.containsKey(location)) {
+                    if (tryAcquire(location)) {
+                        node = location;
+                        statistics.recordRouted();
+                    } else {
+                        statistics.recordFallback();
+                    }
+                }
+                preferredNodes[i] = location;
+            }
+            keys[i] = key;
+            List<Integer> group = groups.get(node);
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                groups.put(node, group);
+            }
+            group.add(i);
+        }
+        for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+            if (group.getKey() != null) {
+                releaseWhenDone(group.getKey(), group.getValue(), collector);
+            }
+        }
+        List<JPPFJob> submitted = new ArrayList<JPPFJob>();
+        try {
+            for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+                submitted.add(dispatch(jppfJob, group.getKey(), group.getValue(), tasks, keys, preferredNodes, 
+                        statistics, collector, job.getDeadline()));
+            }
+        } catch (Exception ex) {
+            for (JPPFJob subJob : submitted) {
+                try {
+                    client.cancelJob(subJob.getUuid());
+                } catch (Exception cancelException) {
+                    logger.warn("Could not cancel sub-job " + subJob.getUuid() + ".", cancelException);
+                }
+            }
+            // returns the slots of all groups and completes the tracked futures
+            for (int i = 0; i < tasks.size(); i++) {
+                collector.fail(i, ex);
+            }
+            throw ex;
+        }
+        return collector.getFutureList();
+    }
+    
+    private <T> void releaseWhenDone(final String node, List<Integer> indexes, FutureResultCollector<T> collector) {
+        Runnable release = new Runnable() {
+            @Override
+            public void run() {
+                release(node);
+            }
+        };
+        for (int index : indexes) {
+            collector.getFutureList().get(index).addListener(release, MoreExecutors.sameThreadExecutor());
+        }
+    }
+
+    private <T> JPPFJob dispatch(JPPFJob jppfJob, final String node, final List<Integer> indexes, List<JPPFTask> tasks,
+            final String[] keys, final String[] preferredNodes, final LocalityStatistics statistics,
+            final FutureResultCollector<T> collector, long deadline) throws Exception {
+        JPPFJob subJob = new JPPFJob(jppfJob.getDataProvider());
+        subJob.setName(jppfJob.getName());
+        for (int index : indexes) {
+            subJob.addTask(tasks.get(index));
+        }
+        subJob.setBlocking(false);
+        if (node != null) {
+            subJob.getSLA().setExecutionPolicy(new Equal(JPPFProperties.UUID, true, node));
+        }
+        subJob.setResultListener(new TaskResultListener() {
+            @Override
+            public void resultsReceived(TaskResultEvent event) {
+                List<JPPFTask> results = event.getTaskList();
+                if (results == null) {
+                    return;
+                }
+                for (JPPFTask result : results) {
+                    int index = indexes.get(result.getPosition());
+                    if (collector.getFutureList().get(index).isDone()) {
+                        continue;
+                    }
+                    learn(keys[index], preferredNodes[index], result, statistics);
+                    collector.complete(index, result);
+                }
+            }
+        });
+        if (cancellation != null) {
+            List<ListenableFuture<T>> futures = new ArrayList<ListenableFuture<T>>(indexes.size());
+            for (int index : indexes) {
+                futures.add(collector.getFutureList().get(index));
+            }
+            cancellation.track(subJob, futures, deadline);
+        }
+        client.submit(subJob);
+        return subJob;
+    }
+
+    private void learn(String key, String preferredNode, JPPFTask result, LocalityStatistics statistics) {
+        Task<?> task = Task.of(result);
+        String executingNode = task == null ? null : task.getExecutingNodeId();
+        if (key == null || executingNode == null) {
+            return;
+        }
+        if (executingNode.equals(preferredNode)) {
+            statistics.recordHit();
+        }
+        locations.put(key, executingNode);
+    }
+
+    private boolean tryAcquire(String node) {
+        AtomicInteger count = routedTasks.get(node);
+        if (count == null) {
+            routedTasks.putIfAbsent(node, new AtomicInteger());
+            count = routedTasks.get(node);
+        }
+        Integer capacity = capacities.get(node);
+        if (capacity == null) {
+            return false;
+        }
+        while (true) {
+            int current = count.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (count.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(String node) {
+        routedTasks.get(node).decrementAndGet();
+    }
+
+    /**
+     * @param key an affinity key.
+     * @return the ID of the node that last executed a task with this key, or null.
+     */
+    String getLocation(String key) {
+        return locations.get(key);
+    }
+}
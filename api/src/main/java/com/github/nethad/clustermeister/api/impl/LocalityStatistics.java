@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts how the tasks of a {@link Job} with affinity keys were routed.
+ *
+ * @author thomas
+ */
+public class LocalityStatistics {
+    private final AtomicInteger affinityTasks = new AtomicInteger();
+    private final AtomicInteger routedTasks = new AtomicInteger();
+    private final AtomicInteger fallbacks = new AtomicInteger();
+    private final AtomicInteger hits = new AtomicInteger();
+
+    void recordAffinityTask() {
+        affinityTasks.incrementAndGet();
+    }
+
+    void recordRouted() {
+        routedTasks.incrementAndGet();
+    }
+
+    void recordFallback() {
+        fallbacks.incrementAndGet();
+    }
+
+    void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * @return the number of tasks with an affinity key.
+     */
+    public int getAffinityTasks() {
+        return affinityTasks.get();
+    }
+
+    /**
+     * @return the number of tasks sent to the node that served their affinity key before.
+     */
+    public int getRoutedTasks() {
+        return routedTasks.get();
+    }
+
+    /**
+     * @return the number of tasks sent to any node because their preferred node was saturated.
+     */
+    public int getFallbacks() {
+        return fallbacks.get();
+    }
+
+    /**
+     * @return the number of tasks executed on the node that served their affinity key before.
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the share of tasks with an affinity key that were executed on their preferred node.
+     */
+    public double getHitRate() {
+        int total = affinityTasks.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("affinityTasks=%d, routed=%d, fallbacks=%d, hits=%d, hitRate=%.2f",
+                getAffinityTasks(), getRoutedTasks(), getFallbacks(), getHits(), getHitRate());
+    }
+}
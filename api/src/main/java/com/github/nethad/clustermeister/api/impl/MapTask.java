@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+/**
+ * Applies a {@link Mapper} to one input chunk.
+ * @author thomas
+ */
+class MapTask<I, O> extends Task<O> {
+    private final Mapper<I, O> mapper;
+    private final I input;
+
+    MapTask(Mapper<I, O> mapper, I input) {
+        this.mapper = mapper;
+        this.input = input;
+    }
+
+    @Override
+    public O execute() throws Exception {
+        return mapper.map(input);
+    }
+    
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.utils.JPPFProperties;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.jppf.client.JPPFJob;
+import org.jppf.client.event.TaskResultEvent;
+import org.jppf.client.event.TaskResultListener;
+import org.jppf.node.NodeRunner;
+import org.jppf.node.policy.OneOf;
+import org.jppf.server.protocol.JPPFTask;
+import org.jppf.utils.JPPFCallable;
+
+/**
+ * Executes a {@link Callable} once on every node with a single broadcast job.
+ *
+ * Every node sends its result back right away through a client callback, so a future completes 
+ * as soon as its node is done rather than when the whole job returns. The job is submitted 
+ * non-blocking, its result listener fails the futures of nodes that did not deliver a result by then.
+ *
+ * @author thomas
+ */
+class NodeBroadcast<T> {
+    private static final ConcurrentMap<String, NodeBroadcast<?>> active = 
+            new ConcurrentHashMap<String, NodeBroadcast<?>>();
+
+    private final String id = UUID.randomUUID().toString();
+    private final Map<String, SettableFuture<T>> futures = new LinkedHashMap<String, SettableFuture<T>>();
+    private final JPPFJob job;
+
+    /**
+     * @param callable the code to execute on every node.
+     * @param nodeIds the IDs of the nodes to execute it on.
+     * @throws Exception if the job can not be created.
+     */
+    NodeBroadcast(Callable<T> callable, Collection<String> nodeIds) throws Exception {
+        for (String nodeId : nodeIds) {
+            futures.put(nodeId, SettableFuture.<T>create());
+        }
+        job = new JPPFJob();
+        job.setName("Clustermeister broadcast " + id);
+        job.getSLA().setBroadcastJob(true);
+        job.getSLA().setExecutionPolicy(new OneOf(JPPFProperties.UUID, true, nodeIds.toArray(new String[nodeIds.size()])));
+        job.addTask(new BroadcastTask<T>(id, callable));
+        job.setBlocking(false);
+        job.setResultListener(new TaskResultListener() {
+            @Override
+            public void resultsReceived(TaskResultEvent event) {
+                finish(null);
+            }
+        });
+    }
+
+    String getId() {
+        return id;
+    }
+
+    JPPFJob getJob() {
+        return job;
+    }
+
+    /**
+     * @return a future per node ID, in the order of the nodes.
+     */
+    Map<String, ListenableFuture<T>> getFutures() {
+        return Collections.<String, ListenableFuture<T>>unmodifiableMap(futures);
+    }
+
+    /**
+     * Makes the broadcast reachable for node callbacks, until {@link #finish()}.
+     */
+    void start() {
+        active.put(id, this);
+    }
+
+    /**
+     * Fails the futures of all nodes that did not deliver a result.
+     * @param cause the reason, e.g. the exception of the job submission, or null.
+     */
+    void finish(Throwable cause) {
+        active.remove(id);
+        for (Map.Entry<String, SettableFuture<T>> entry : futures.entrySet()) {
+            entry.getValue().setException(cause != null ? cause 
+                    : new IllegalStateException("Node " + entry.getKey() + " did not execute the broadcast."));
+        }
+    }
+
+    private void complete(String nodeId, Object result, Throwable exception) {
+        SettableFuture<T> future = futures.get(nodeId);
+        if (future == null) {
+            return;
+        }
+        if (exception != null) {
+            future.setException(exception);
+        } else {
+            future.set((T) result);
+        }
+    }
+
+    /**
+     * Executes the callable on a node and delivers the result to the client.
+     */
+    static class BroadcastTask<T> extends JPPFTask {
+        private final String broadcastId;
+        private final Callable<T> callable;
+
+        BroadcastTask(String broadcastId, Callable<T> callable) {
+            this.broadcastId = broadcastId;
+            this.callable = callable;
+        }
+
+        @Override
+        public void run() {
+            Object result = null;
+            Exception exception = null;
+            try {
+                result = callable.call();
+                setResult(result);
+            } catch (Exception ex) {
+                exception = ex;
+                setException(ex);
+            }
+            try {
+                compute(new ResultDelivery(broadcastId, NodeRunner.getUuid(), result, exception));
+            } catch (Exception ex) {
+                setException(ex);
+            }
+        }
+    }
+
+    /**
+     * Executed on the client on behalf of a node, completes the node's future.
+     */
+    static class ResultDelivery implements JPPFCallable<Boolean> {
+        private final String broadcastId;
+        private final String nodeId;
+        private final Object result;
+        private final Exception exception;
+
+        ResultDelivery(String broadcastId, String nodeId, Object result, Exception exception) {
+            this.broadcastId = broadcastId;
+            this.nodeId = nodeId;
+            this.result = result;
+            this.exception = exception;
+        }
+
+        @Override
+        public Boolean call() throws Exception {
+            NodeBroadcast<?> broadcast = active.get(broadcastId);
+            if (broadcast == null) {
+                return false;
+            }
+            broadcast.complete(nodeId, result, exception);
+            return true;
+        }
+    }
+}
@@ -16,6 +16,9 @@
 package com.github.nethad.clustermeister.api.impl;
 
 import com.github.nethad.clustermeister.api.NodeCapabilities;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 
 /**
  *
@@ -25,12 +28,30 @@ class NodeCapabilitiesImpl implements NodeCapabilities {
 
     private int numberOfProcessors;
     private int numberOfProcessingThreads;
-    private String jppfConfig;
+    private Supplier<String> jppfConfig;
+    private Supplier<NodeTelemetrySample> telemetry;
 
     public NodeCapabilitiesImpl(int numberOfProcessors, int numberOfProcessingThreads, String jppfConfig) {
+        this(numberOfProcessors, numberOfProcessingThreads, Suppliers.ofInstance(jppfConfig));
+    }
+
+    /**
+     * @param jppfConfig supplies the JPPF configuration when it is first asked for.
+     */
+    public NodeCapabilitiesImpl(int numberOfProcessors, int numberOfProcessingThreads, Supplier<String> jppfConfig) {
+        this(numberOfProcessors, numberOfProcessingThreads, jppfConfig, Suppliers.<NodeTelemetrySample>ofInstance(null));
+    }
+
+    /**
+     * @param jppfConfig supplies the JPPF configuration when it is first asked for.
+     * @param telemetry supplies the latest telemetry of the node.
+     */
+    public NodeCapabilitiesImpl(int numberOfProcessors, int numberOfProcessingThreads, Supplier<String> jppfConfig, 
+            Supplier<NodeTelemetrySample> telemetry) {
         this.numberOfProcessors = numberOfProcessors;
         this.numberOfProcessingThreads = numberOfProcessingThreads;
         this.jppfConfig = jppfConfig;
+        this.telemetry = telemetry;
     }
     
     @Override
@@ -45,7 +66,12 @@ class NodeCapabilitiesImpl implements NodeCapabilities {
 
     @Override
     public String getJppfConfig() {
-        return jppfConfig;
+        return jppfConfig.get();
+    }
+
+    @Override
+    public NodeTelemetrySample getTelemetry() {
+        return telemetry.get();
     }
     
 }
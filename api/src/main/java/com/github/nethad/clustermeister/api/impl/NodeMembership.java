@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.ExecutorNode;
+import com.github.nethad.clustermeister.api.Loggers;
+import com.github.nethad.clustermeister.api.NodeSummary;
+import com.github.nethad.clustermeister.api.rmi.IRmiMembershipListener;
+import com.github.nethad.clustermeister.api.rmi.IRmiServerForApi;
+import com.github.nethad.clustermeister.api.rmi.NodeMembershipDelta;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The nodes known to the API, kept up to date with membership deltas from the provisioning server.
+ *
+ * Deltas are pushed through an RMI callback. A delta that does not follow the known version
+ * (e.g. because a push was lost) triggers a fetch of the changes since the known version.
+ * Readers get an immutable snapshot and lookups by node ID go through an index.
+ *
+ * @author thomas
+ */
+class NodeMembership implements IRmiMembershipListener {
+    private static final Logger logger = LoggerFactory.getLogger(Loggers.API);
+
+    private final IRmiServerForApi server;
+    private final NodeFactory nodeFactory;
+    private final Listener listener;
+    private final Map<String, ExecutorNode> nodesById = new LinkedHashMap<String, ExecutorNode>();
+    private volatile Map<String, ExecutorNode> index = Collections.emptyMap();
+    private volatile Collection<ExecutorNode> snapshot = Collections.emptyList();
+    private long version = 0;
+    private IRmiMembershipListener stub;
+
+    /**
+     * @param server the provisioning server.
+     * @param nodeFactory creates the {@link ExecutorNode} for a joined node.
+     * @param listener notified after every change, may be null.
+     */
+    NodeMembership(IRmiServerForApi server, NodeFactory nodeFactory, Listener listener) {
+        this.server = server;
+        this.nodeFactory = nodeFactory;
+        this.listener = listener;
+    }
+
+    /**
+     * Fetches the changes since the known version.
+     * @throws RemoteException if the server is not reachable.
+     */
+    void refresh() throws RemoteException {
+        NodeMembershipDelta delta;
+        synchronized (this) {
+            delta = server.getNodesSince(version);
+            apply(delta);
+        }
+        notifyListener();
+    }
+
+    /**
+     * Exports this object and registers it for membership pushes.
+     * @return true if the registration succeeded.
+     */
+    synchronized boolean register() {
+        return register(true);
+    }
+
+    /**
+     * Registers this object for membership pushes.
+     * @param export whether to export this object through RMI, 
+     *      false if the connection to the server carries callbacks itself.
+     * @return true if the registration succeeded.
+     */
+    synchronized boolean register(boolean export) {
+        try {
+            stub = export ? (IRmiMembershipListener) UnicastRemoteObject.exportObject(this, 0) : this;
+            server.addMembershipListener(stub, version);
+            return true;
+        } catch (RemoteException ex) {
+            logger.warn("Could not register for node membership changes.", ex);
+            return false;
+        }
+    }
+
+    synchronized void close() {
+        if (stub == null) {
+            return;
+        }
+        try {
+            server.removeMembershipListener(stub);
+        } catch (RemoteException ex) {
+            logger.warn("Could not unregister from node membership changes.", ex);
+        }
+        if (stub != this) {
+            try {
+                UnicastRemoteObject.unexportObject(this, true);
+            } catch (NoSuchObjectException ex) {
+                // already unexported
+            }
+        }
+        stub = null;
+    }
+
+    @Override
+    public void onMembershipChanged(NodeMembershipDelta delta) throws RemoteException {
+        synchronized (this) {
+            if (!delta.isFull() && delta.getToVersion() <= version) {
+                return;
+            }
+            if (delta.isFull() || delta.getFromVersion() == version) {
+                apply(delta);
+            } else {
+                apply(server.getNodesSince(version));
+            }
+        }
+        notifyListener();
+    }
+
+    /**
+     * @return the current nodes, an immutable snapshot.
+     */
+    Collection<ExecutorNode> getNodes() {
+        return snapshot;
+    }
+
+    /**
+     * @param nodeId a node ID.
+     * @return the node, or null if it is not connected.
+     */
+    ExecutorNode getNode(String nodeId) {
+        return index.get(nodeId);
+    }
+
+    synchronized long getVersion() {
+        return version;
+    }
+
+    private void apply(NodeMembershipDelta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        if (delta.isFull()) {
+            Map<String, ExecutorNode> previous = new LinkedHashMap<String, ExecutorNode>(nodesById);
+            nodesById.clear();
+            for (NodeSummary summary : delta.getJoined()) {
+                ExecutorNode node = previous.get(summary.getID());
+                nodesById.put(summary.getID(), node != null ? node : nodeFactory.create(summary));
+            }
+        } else {
+            for (String nodeId : delta.getLeft()) {
+                nodesById.remove(nodeId);
+            }
+            for (NodeSummary summary : delta.getJoined()) {
+                nodesById.put(summary.getID(), nodeFactory.create(summary));
+            }
+        }
+        version = delta.getToVersion();
+        index = Collections.unmodifiableMap(new LinkedHashMap<String, ExecutorNode>(nodesById));
+        snapshot = Collections.unmodifiableList(new ArrayList<ExecutorNode>(nodesById.values()));
+        logger.info("Node membership version {}: {} nodes.", version, nodesById.size());
+    }
+
+    private void notifyListener() {
+        if (listener != null) {
+            listener.nodesChanged(snapshot);
+        }
+    }
+
+    interface NodeFactory {
+        ExecutorNode create(NodeSummary summary);
+    }
+
+    interface Listener {
+        void nodesChanged(Collection<ExecutorNode> nodes);
+    }
+}
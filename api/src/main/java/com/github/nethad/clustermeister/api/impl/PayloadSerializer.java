@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Encodes the callables sent to nodes and the results sent back.
+ *
+ * The serializer travels with each task, so implementations must be {@link Serializable}
+ * and must not keep state between calls.
+ *
+ * @see PayloadSerializers
+ * @author thomas
+ */
+public interface PayloadSerializer extends Serializable {
+
+    /**
+     * @param object the object to encode, may be null.
+     * @return the encoded bytes.
+     * @throws IOException if the object can not be encoded.
+     */
+    byte[] serialize(Object object) throws IOException;
+
+    /**
+     * @param bytes bytes produced by {@link #serialize(java.lang.Object)}.
+     * @param classLoader the class loader to resolve classes with.
+     * @return the decoded object.
+     * @throws IOException if the bytes can not be decoded.
+     * @throws ClassNotFoundException if a class of the encoded object can not be found.
+     */
+    Object deserialize(byte[] bytes, ClassLoader classLoader) throws IOException, ClassNotFoundException;
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import static com.google.common.base.Preconditions.*;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Creates {@link PayloadSerializer}s, either directly or from the {@code serialization}
+ * section of the configuration:
+ *
+ * <pre>
+ * serialization:
+ *   codec: compact
+ *   compression_threshold: 16384
+ * </pre>
+ *
+ * The codec is {@code java} (default) or {@code compact}. Payloads larger than the
+ * compression threshold in bytes are deflated, a negative threshold (default) disables compression.
+ *
+ * @author thomas
+ */
+public class PayloadSerializers {
+    public static final String CODEC = "serialization.codec";
+    public static final String COMPRESSION_THRESHOLD = "serialization.compression_threshold";
+
+    public static final String CODEC_JAVA = "java";
+    public static final String CODEC_COMPACT = "compact";
+
+    /**
+     * @return a serializer using standard Java serialization.
+     */
+    public static PayloadSerializer java() {
+        return new JavaPayloadSerializer();
+    }
+
+    /**
+     * @return a serializer using a compact binary codec for common types.
+     */
+    public static PayloadSerializer compact() {
+        return new CompactPayloadSerializer();
+    }
+
+    /**
+     * @param serializer the serializer to compress the output of.
+     * @param threshold the payload size in bytes above which payloads are compressed.
+     * @return a serializer that compresses large payloads.
+     */
+    public static PayloadSerializer compressing(PayloadSerializer serializer, int threshold) {
+        checkArgument(threshold >= 0, "Compression threshold must not be negative, was %s.", threshold);
+        return new CompressingPayloadSerializer(checkNotNull(serializer), threshold);
+    }
+
+    /**
+     * Reads the serializer from the configuration.
+     *
+     * @param configuration the configuration, may be null.
+     * @return the configured serializer, or null if payloads are left to JPPF's default serialization.
+     * @throws IllegalArgumentException if the codec is unknown.
+     */
+    public static PayloadSerializer fromConfiguration(Configuration configuration) {
+        if (configuration == null) {
+            return null;
+        }
+        String codec = configuration.getString(CODEC, CODEC_JAVA);
+        int threshold = configuration.getInt(COMPRESSION_THRESHOLD, -1);
+        PayloadSerializer serializer;
+        if (CODEC_COMPACT.equalsIgnoreCase(codec)) {
+            serializer = compact();
+        } else if (CODEC_JAVA.equalsIgnoreCase(codec)) {
+            if (threshold < 0) {
+                return null;
+            }
+            serializer = java();
+        } else {
+            throw new IllegalArgumentException(String.format("Unknown serialization codec '%s'.", codec));
+        }
+        if (threshold >= 0) {
+            serializer = compressing(serializer, threshold);
+        }
+        return serializer;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+/**
+ * A snapshot of the tasks of a {@link SchedulingQueue} and the time they waited to be dispatched.
+ *
+ * @author thomas
+ */
+public class QueueStatistics {
+    private final int pendingTasks;
+    private final int runningTasks;
+    private final long dispatchedTasks;
+    private final long totalWaitTime;
+    private final long maxWaitTime;
+
+    QueueStatistics(int pendingTasks, int runningTasks, long dispatchedTasks, long totalWaitTime, long maxWaitTime) {
+        this.pendingTasks = pendingTasks;
+        this.runningTasks = runningTasks;
+        this.dispatchedTasks = dispatchedTasks;
+        this.totalWaitTime = totalWaitTime;
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    /**
+     * @return the number of tasks waiting in the queue.
+     */
+    public int getPendingTasks() {
+        return pendingTasks;
+    }
+
+    /**
+     * @return the number of dispatched tasks without result yet.
+     */
+    public int getRunningTasks() {
+        return runningTasks;
+    }
+
+    public long getDispatchedTasks() {
+        return dispatchedTasks;
+    }
+
+    /**
+     * @return the average time in milliseconds a task waited in the queue before it was dispatched.
+     */
+    public double getAverageWaitTime() {
+        return dispatchedTasks == 0 ? 0 : (double) totalWaitTime / dispatchedTasks;
+    }
+
+    /**
+     * @return the longest time in milliseconds a task waited in the queue.
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("pending=%d, running=%d, dispatched=%d, averageWait=%.1fms, maxWait=%dms",
+                pendingTasks, runningTasks, dispatchedTasks, getAverageWaitTime(), maxWaitTime);
+    }
+}
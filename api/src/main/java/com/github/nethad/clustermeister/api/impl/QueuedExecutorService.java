@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.google.common.util.concurrent.ForwardingExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * An executor service whose tasks are dispatched through a {@link FairShareScheduler} queue.
+ *
+ * Only {@code submit} and {@code execute} are scheduled, {@code invokeAll} and {@code invokeAny} are forwarded as is.
+ *
+ * @author thomas
+ */
+class QueuedExecutorService extends ForwardingExecutorService {
+    private final ExecutorService delegate;
+    private final FairShareScheduler scheduler;
+    private final FairShareScheduler.QueueState queue;
+
+    QueuedExecutorService(ExecutorService delegate, FairShareScheduler scheduler, SchedulingQueue queue) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.queue = scheduler.register(queue);
+    }
+
+    @Override
+    protected ExecutorService delegate() {
+        return delegate;
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return scheduler.submit(queue, delegate, task);
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return submit(new AdaptiveExecutorService.RunnableCallable<T>(task, result));
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return submit(task, null);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        submit(command);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.util.List;
+
+/**
+ * The final step of {@link com.github.nethad.clustermeister.api.Clustermeister#mapReduce}.
+ * It is executed on the client with the pre-combined partial results returned from the nodes.
+ * @author thomas
+ */
+public interface Reducer<O, R> {
+    
+    /**
+     * Reduces the partial results to the final result.
+     * @param partialResults the pre-combined partial results, at most one per task bundle.
+     * @return the final result.
+     * @throws Exception 
+     */
+    public R reduce(List<O> partialResults) throws Exception;
+    
+}
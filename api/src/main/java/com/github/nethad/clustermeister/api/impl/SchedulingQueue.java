@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+/**
+ * A named queue that executor services share node threads through.
+ *
+ * Queues are served by priority first. Queues of equal priority share node threads
+ * in proportion to their weights. A queue with a minimum share always gets that fraction
+ * of the node threads, regardless of the load of other queues.
+ * The priority and a node limit are also set on the JPPF jobs of the queue, so the driver
+ * orders them the same way.
+ *
+ * @author thomas
+ */
+public class SchedulingQueue {
+    private final String name;
+    private int weight = 1;
+    private int priority = 0;
+    private double minimumShare = 0;
+    private int maxNodes = 0;
+
+    private SchedulingQueue(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates a queue with weight 1, priority 0, no minimum share and no node limit.
+     * Executor services using queues with the same name share one queue.
+     * @param name the name of the queue.
+     * @return the queue.
+     */
+    public static SchedulingQueue named(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Queue name must not be null.");
+        }
+        return new SchedulingQueue(name);
+    }
+
+    /**
+     * @param weight the share of node threads relative to queues of the same priority.
+     * @return this queue.
+     */
+    public SchedulingQueue withWeight(int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight must be positive, was " + weight);
+        }
+        this.weight = weight;
+        return this;
+    }
+
+    /**
+     * @param priority the priority, higher priorities are served first.
+     * @return this queue.
+     */
+    public SchedulingQueue withPriority(int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * @param minimumShare the fraction of node threads reserved for this queue, between 0 and 1.
+     * @return this queue.
+     */
+    public SchedulingQueue withMinimumShare(double minimumShare) {
+        if (minimumShare < 0 || minimumShare > 1) {
+            throw new IllegalArgumentException("Minimum share must be between 0 and 1, was " + minimumShare);
+        }
+        this.minimumShare = minimumShare;
+        return this;
+    }
+
+    /**
+     * @param maxNodes the maximum number of nodes a job of this queue runs on, 0 for no limit.
+     * @return this queue.
+     */
+    public SchedulingQueue withMaxNodes(int maxNodes) {
+        if (maxNodes < 0) {
+            throw new IllegalArgumentException("Max nodes must not be negative, was " + maxNodes);
+        }
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public double getMinimumShare() {
+        return minimumShare;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the speculative executions of a {@link Job}.
+ *
+ * @author thomas
+ */
+public class SpeculationStatistics {
+    private final AtomicInteger launches = new AtomicInteger();
+    private final AtomicInteger wins = new AtomicInteger();
+
+    void recordLaunch() {
+        launches.incrementAndGet();
+    }
+
+    void recordWin() {
+        wins.incrementAndGet();
+    }
+
+    /**
+     * @return the number of duplicates sent for straggling tasks.
+     */
+    public int getLaunches() {
+        return launches.get();
+    }
+
+    /**
+     * @return the number of duplicates whose result arrived before the original's.
+     */
+    public int getWins() {
+        return wins.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("launches=%d, wins=%d", getLaunches(), getWins());
+    }
+}
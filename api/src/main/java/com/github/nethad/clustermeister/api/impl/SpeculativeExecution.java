@@ -0,0 +1,314 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.Loggers;
+import com.github.nethad.clustermeister.api.utils.JPPFProperties;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.jppf.client.JPPFClient;
+import org.jppf.client.JPPFJob;
+import org.jppf.client.event.TaskResultEvent;
+import org.jppf.client.event.TaskResultListener;
+import org.jppf.node.policy.OneOf;
+import org.jppf.server.protocol.JPPFTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends duplicates of straggling tasks of a job to other nodes.
+ *
+ * Once {@link #COMPLETION_THRESHOLD} of the tasks have returned and the pending tasks have run 
+ * {@link #STRAGGLER_FACTOR} times longer than the median task, every pending task is copied into 
+ * a new job. This job may only run on nodes that have already returned tasks of the job. Such a node 
+ * may have picked up a straggler afterwards: a duplicate of a {@link Task} landing on the node 
+ * that executes its original fails with an {@link OriginalTaskRunningException}, and the next check 
+ * launches it again without that node. The first result wins: 
+ * a duplicate whose original returns first is cancelled, and the original job is cancelled 
+ * when duplicates have completed all its remaining tasks. A failed duplicate is ignored. 
+ * Duplicates still running when all futures are done, e.g. because the job's deadline passed, 
+ * are cancelled.
+ *
+ * Installed as the job's result listener, it forwards all results to the job's {@link FutureResultCollector}.
+ *
+ * @author thomas
+ */
+class SpeculativeExecution implements TaskResultListener {
+    private static final Logger logger = LoggerFactory.getLogger(Loggers.API);
+
+    static final double COMPLETION_THRESHOLD = 0.75;
+    static final double STRAGGLER_FACTOR = 3;
+    static final long MIN_STRAGGLER_TIME = 1000;
+    static final long CHECK_INTERVAL = 100;
+
+    private final JPPFClient client;
+    private final Executor cancelExecutor;
+    private final JPPFJob job;
+    private final FutureResultCollector<?> collector;
+    private final SpeculationStatistics statistics;
+    private final long submitTime;
+    private final long[] latencies;
+    private final Set<String> finishedNodes = new LinkedHashSet<String>();
+    private final Map<Integer, String> speculations = new HashMap<Integer, String>();
+    private final Map<Integer, String> originalNodes = new HashMap<Integer, String>();
+    private int returned = 0;
+    private int wins = 0;
+    private ScheduledFuture<?> scheduledCheck = null;
+    private boolean stopped = false;
+
+    /**
+     * @param client the client to submit duplicates with.
+     * @param job the job to watch.
+     * @param collector the job's result collector.
+     * @param submitTime the time the job was submitted, in milliseconds.
+     * @param cancelExecutor the executor to run the blocking cancel requests on.
+     */
+    SpeculativeExecution(JPPFClient client, Job<?> job, FutureResultCollector<?> collector, long submitTime,
+            Executor cancelExecutor) {
+        this.client = client;
+        this.cancelExecutor = cancelExecutor;
+        this.job = job.getJppfJob();
+        this.collector = collector;
+        this.statistics = job.getSpeculationStatistics();
+        this.submitTime = submitTime;
+        this.latencies = new long[this.job.getTasks().size()];
+        Arrays.fill(latencies, -1);
+        for (JPPFTask task : this.job.getTasks()) {
+            Task<?> cmTask = Task.of(task);
+            if (cmTask != null) {
+                cmTask.setSpeculationKey(this.job.getUuid() + "#" + task.getPosition());
+            }
+        }
+        Runnable stopIfComplete = new Runnable() {
+            @Override
+            public void run() {
+                stopIfComplete();
+            }
+        };
+        for (ListenableFuture<?> future : collector.getFutureList()) {
+            future.addListener(stopIfComplete, MoreExecutors.sameThreadExecutor());
+        }
+    }
+
+    /**
+     * Starts checking for stragglers periodically until all tasks are complete.
+     * @param scheduler the scheduler to run the checks on.
+     */
+    synchronized void start(ScheduledExecutorService scheduler) {
+        if (stopped) {
+            return;
+        }
+        scheduledCheck = scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                check(System.currentTimeMillis());
+            }
+        }, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void resultsReceived(TaskResultEvent event) {
+        List<JPPFTask> tasks = event.getTaskList();
+        if (tasks != null) {
+            onResults(tasks, System.currentTimeMillis());
+        }
+        collector.resultsReceived(event);
+        stopIfComplete();
+    }
+
+    void onResults(List<JPPFTask> tasks, long now) {
+        List<String> losers = new ArrayList<String>();
+        synchronized (this) {
+            for (JPPFTask task : tasks) {
+                int position = task.getPosition();
+                if (latencies[position] < 0) {
+                    latencies[position] = now - submitTime;
+                    returned++;
+                }
+                Task<?> cmTask = Task.of(task);
+                if (cmTask != null && cmTask.getExecutingNodeId() != null) {
+                    finishedNodes.add(cmTask.getExecutingNodeId());
+                }
+                String duplicate = speculations.remove(position);
+                if (duplicate != null && !isDone(position)) {
+                    losers.add(duplicate);
+                }
+            }
+        }
+        for (String duplicate : losers) {
+            cancel(duplicate);
+        }
+    }
+
+    /**
+     * Launches duplicates if the job has stragglers.
+     * @param now the current time in milliseconds.
+     */
+    void check(long now) {
+        Map<Integer, String[]> stragglers = new LinkedHashMap<Integer, String[]>();
+        synchronized (this) {
+            if (stopped || returned < latencies.length * COMPLETION_THRESHOLD || finishedNodes.isEmpty()) {
+                return;
+            }
+            long elapsed = now - submitTime;
+            if (elapsed < Math.max(MIN_STRAGGLER_TIME, STRAGGLER_FACTOR * medianLatency())) {
+                return;
+            }
+            for (int position = 0; position < latencies.length; position++) {
+                if (latencies[position] < 0 && !speculations.containsKey(position) && !isDone(position)) {
+                    Set<String> nodes = new LinkedHashSet<String>(finishedNodes);
+                    nodes.remove(originalNodes.get(position));
+                    if (!nodes.isEmpty()) {
+                        stragglers.put(position, nodes.toArray(new String[nodes.size()]));
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Integer, String[]> straggler : stragglers.entrySet()) {
+            launch(straggler.getKey(), straggler.getValue());
+        }
+    }
+
+    private long medianLatency() {
+        long[] sorted = new long[returned];
+        int i = 0;
+        for (long latency : latencies) {
+            if (latency >= 0) {
+                sorted[i++] = latency;
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private void launch(final int position, String[] nodes) {
+        JPPFJob duplicate = new JPPFJob(job.getDataProvider());
+        try {
+            // a copy, the original task object still belongs to the original job
+            JavaPayloadSerializer serializer = new JavaPayloadSerializer();
+            JPPFTask original = job.getTasks().get(position);
+            JPPFTask copy = (JPPFTask) serializer.deserialize(serializer.serialize(original), 
+                    original.getClass().getClassLoader());
+            Task<?> cmCopy = Task.of(copy);
+            if (cmCopy != null) {
+                cmCopy.markDuplicate();
+            }
+            duplicate.setName(job.getName() + " (speculative #" + position + ")");
+            duplicate.addTask(copy);
+            duplicate.setBlocking(false);
+            duplicate.getSLA().setExecutionPolicy(new OneOf(JPPFProperties.UUID, true, nodes));
+            duplicate.setResultListener(new TaskResultListener() {
+                @Override
+                public void resultsReceived(TaskResultEvent event) {
+                    duplicateReceived(position, event.getTaskList());
+                }
+            });
+            synchronized (this) {
+                speculations.put(position, duplicate.getUuid());
+            }
+            client.submit(duplicate);
+            statistics.recordLaunch();
+            logger.info("Launched speculative duplicate of task {} of job {}.", position, job.getName());
+        } catch (Exception ex) {
+            logger.warn("Could not launch speculative duplicate of task " + position + ".", ex);
+        }
+    }
+
+    private void duplicateReceived(int position, List<JPPFTask> tasks) {
+        if (tasks == null || tasks.isEmpty()) {
+            return;
+        }
+        if (tasks.get(0).getException() instanceof OriginalTaskRunningException) {
+            synchronized (this) {
+                // launched again by the next check, without the node of the original
+                speculations.remove(position);
+                originalNodes.put(position, Task.of(tasks.get(0)).getExecutingNodeId());
+            }
+            return;
+        }
+        if (tasks.get(0).getException() != null) {
+            return;
+        }
+        synchronized (this) {
+            if (speculations.remove(position) == null || isDone(position)) {
+                return;
+            }
+            wins++;
+            collector.complete(position, tasks.get(0));
+        }
+        statistics.recordWin();
+        stopIfComplete();
+    }
+
+    private void stopIfComplete() {
+        boolean duplicatesWon;
+        List<String> running;
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            for (int position = 0; position < latencies.length; position++) {
+                if (!isDone(position)) {
+                    return;
+                }
+            }
+            stopped = true;
+            if (scheduledCheck != null) {
+                scheduledCheck.cancel(false);
+            }
+            // otherwise tasks were abandoned and the job is cancelled by JobCancellation
+            duplicatesWon = returned < latencies.length && returned + wins == latencies.length;
+            running = new ArrayList<String>(speculations.values());
+            speculations.clear();
+        }
+        if (duplicatesWon) {
+            // the original job is still running the tasks the duplicates completed
+            cancel(job.getUuid());
+        }
+        for (String duplicate : running) {
+            cancel(duplicate);
+        }
+    }
+
+    private boolean isDone(int position) {
+        return collector.getFutureList().get(position).isDone();
+    }
+
+    private void cancel(final String jobUuid) {
+        cancelExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.cancelJob(jobUuid);
+                } catch (Exception ex) {
+                    logger.warn("Could not cancel job " + jobUuid + ".", ex);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.Clustermeister;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Executes a stream of {@link Task}s as a sequence of sub-jobs and returns their results in input order.
+ *
+ * At most {@code maxInFlight} tasks are submitted but not yet consumed at any time.
+ * New sub-jobs are submitted as the consumer frees room in that window,
+ * so client memory is bounded by the window and not by the length of the stream.
+ *
+ * @author thomas
+ */
+public class StreamingJobExecutor<T> implements Iterator<T> {
+    /**
+     * The window is refilled in sub-jobs of this fraction of {@code maxInFlight}.
+     */
+    static final int SUB_JOBS_PER_WINDOW = 4;
+
+    private final Clustermeister clustermeister;
+    private final Iterator<? extends Task<T>> tasks;
+    private final int maxInFlight;
+    private final int subJobSize;
+    private final Deque<ListenableFuture<T>> inFlight = new ArrayDeque<ListenableFuture<T>>();
+    private int subJobCount = 0;
+
+    StreamingJobExecutor(Clustermeister clustermeister, Iterator<? extends Task<T>> tasks, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1, was " + maxInFlight);
+        }
+        this.clustermeister = clustermeister;
+        this.tasks = tasks;
+        this.maxInFlight = maxInFlight;
+        this.subJobSize = Math.max(1, maxInFlight / SUB_JOBS_PER_WINDOW);
+    }
+
+    @Override
+    public boolean hasNext() {
+        submitSubJobs();
+        return !inFlight.isEmpty();
+    }
+
+    /**
+     * Returns the next result, blocking until it is available.
+     * @return the result of the next task.
+     * @throws com.google.common.util.concurrent.UncheckedExecutionException if the task failed.
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ListenableFuture<T> head = inFlight.poll();
+        submitSubJobs();
+        return Futures.getUnchecked(head);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private void submitSubJobs() {
+        while (tasks.hasNext() && maxInFlight - inFlight.size() >= subJobSize) {
+            subJobCount++;
+            Job<T> job = JobFactory.create(JobFactory.DEFAULT_JOB_NAME + " #" + subJobCount, null);
+            try {
+                for (int i = 0; i < subJobSize && tasks.hasNext(); i++) {
+                    job.addTask(tasks.next());
+                }
+                inFlight.addAll(clustermeister.executeJobAsyncTasks(job));
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+}
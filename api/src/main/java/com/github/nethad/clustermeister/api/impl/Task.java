@@ -15,7 +15,15 @@
  */
 package com.github.nethad.clustermeister.api.impl;
 
+import com.github.nethad.clustermeister.node.common.TaskWatchdog;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import org.jppf.node.NodeRunner;
+import org.jppf.scheduling.JPPFSchedule;
 import org.jppf.server.protocol.JPPFTask;
 
 /**
@@ -23,34 +31,165 @@ import org.jppf.server.protocol.JPPFTask;
  * @author thomas
  */
 public abstract class Task<T> implements Serializable {
+    /**
+     * Speculation keys of the originals executing on this node.
+     */
+    private static final Set<String> runningOriginals = 
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    
     private JPPFTask jppfTask;
+    private String affinityKey;
+    private String executingNodeId;
+    private long deadline = 0;
+    private String speculationKey;
+    private boolean duplicate = false;
+    private String cancellationKey;
 
     public Task() {
-        jppfTask = new JPPFTask() {
-            @Override
-            public void run() {
-                try {
-                    T result = execute();
-                    setResult(result);
-                } catch (Exception ex) {
-                    setException(ex);
-                }
-            }
-        };
+        jppfTask = new Adapter();
     }
     
     JPPFTask getJppfTask() {
         return jppfTask;
     }
     
+    /**
+     * @param jppfTask a JPPF task.
+     * @return the task the JPPF task executes, or null if it does not belong to a {@link Task}.
+     */
+    static Task<?> of(JPPFTask jppfTask) {
+        if (jppfTask instanceof Task.Adapter) {
+            return ((Task<?>.Adapter) jppfTask).getTask();
+        }
+        return null;
+    }
+    
+    /**
+     * Tasks with the same affinity key are preferably executed on the node that executed 
+     * such a task before, e.g. because it has cached their input. 
+     * Overrides the affinity key of the job.
+     * @param affinityKey the affinity key, null for none.
+     */
+    public void setAffinityKey(String affinityKey) {
+        this.affinityKey = affinityKey;
+    }
+    
+    public String getAffinityKey() {
+        return affinityKey;
+    }
+    
+    /**
+     * Limits the execution time of this task on the node. When the deadline passes, the node 
+     * interrupts the task and its result fails with a {@link TimeoutException}.
+     * @param deadline the maximum execution time in milliseconds, 0 for none.
+     */
+    public void setDeadline(long deadline) {
+        if (deadline < 0) {
+            throw new IllegalArgumentException("Deadline must not be negative, was " + deadline);
+        }
+        this.deadline = deadline;
+        jppfTask.setTimeoutSchedule(deadline == 0 ? null : new JPPFSchedule(deadline));
+    }
+    
+    public long getDeadline() {
+        return deadline;
+    }
+    
+    /**
+     * @return the ID of the node that executed this task, null if it was not executed on a node.
+     */
+    String getExecutingNodeId() {
+        return executingNodeId;
+    }
+    
+    void setExecutingNodeId(String executingNodeId) {
+        this.executingNodeId = executingNodeId;
+    }
+    
+    /**
+     * Identifies this task and its speculative duplicates, see {@link SpeculativeExecution}.
+     * @param speculationKey the key, unique per task of a job.
+     */
+    void setSpeculationKey(String speculationKey) {
+        this.speculationKey = speculationKey;
+    }
+    
+    String getSpeculationKey() {
+        return speculationKey;
+    }
+    
+    /**
+     * Marks this task as a speculative duplicate. A duplicate fails with an 
+     * {@link OriginalTaskRunningException} on the node executing its original.
+     */
+    void markDuplicate() {
+        this.duplicate = true;
+    }
+    
+    /**
+     * Returns a value of the job data. Broadcast values are taken from the node's cache,
+     * only the first access on a node transfers them.
+     * @param key the key of the value in the job data.
+     * @return the value.
+     * @throws Exception if the value can not be retrieved.
+     */
     public Object getValue(String key) throws Exception {
         if (jppfTask == null) {
             return "key not found";
         }
-        return jppfTask.getDataProvider().getValue(key);
+        Object value = jppfTask.getDataProvider().getValue(key);
+        if (value instanceof BroadcastReference) {
+            return ((BroadcastReference) value).resolve(jppfTask);
+        }
+        return value;
     }
     
     public abstract T execute() throws Exception;
     
+    private class Adapter extends JPPFTask implements CancellableTask {
+        @Override
+        public void run() {
+            setExecutingNodeId(NodeRunner.getUuid());
+            if (duplicate && runningOriginals.contains(speculationKey)) {
+                setException(new OriginalTaskRunningException(speculationKey));
+                return;
+            }
+            boolean original = speculationKey != null && !duplicate && runningOriginals.add(speculationKey);
+            TaskWatchdog.Watch watch = CancellationCheck.watch(this, cancellationKey);
+            try {
+                T result = execute();
+                setResult(result);
+            } catch (Exception ex) {
+                // an interrupt caused by the deadline must not replace the timeout
+                if (getException() == null) {
+                    setException(ex);
+                }
+            } finally {
+                if (original) {
+                    runningOriginals.remove(speculationKey);
+                }
+                if (watch != null) {
+                    watch.stop();
+                }
+            }
+            if (watch != null && watch.isCancelled()) {
+                setException(new CancellationException("Cancelled by the client."));
+            }
+        }
+
+        @Override
+        public void setCancellationKey(String key) {
+            cancellationKey = key;
+        }
+        
+        @Override
+        public void onTimeout() {
+            setException(new TimeoutException("Deadline of " + deadline + " ms passed."));
+        }
+        
+        Task<T> getTask() {
+            return Task.this;
+        }
+    }
+    
 }
- 
\ No newline at end of file
@@ -15,33 +15,100 @@
  */
 package com.github.nethad.clustermeister.api.impl;
 
-import com.github.nethad.clustermeister.api.impl.ResultCollectorCallable;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import org.jppf.utils.TypedProperties;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
  * @author thomas
  */
 public class ThreadsExecutorService {
+    /**
+     * Number of threads completing result futures.
+     */
+    static final int CALLBACK_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    
+    /**
+     * Number of pending callbacks before the JPPF result thread completes futures itself.
+     */
+    static final int CALLBACK_QUEUE_CAPACITY = 10000;
+    
     private final ListeningExecutorService threadPoolExecutorService;
+    private final ExecutorService callbackExecutorService;
+    private final ScheduledExecutorService scheduler;
 
     public ThreadsExecutorService() {
         threadPoolExecutorService = MoreExecutors.listeningDecorator(
                 Executors.newCachedThreadPool());
+        callbackExecutorService = new ThreadPoolExecutor(
+                CALLBACK_THREADS, CALLBACK_THREADS, 0L, TimeUnit.MILLISECONDS, 
+                new ArrayBlockingQueue<Runnable>(CALLBACK_QUEUE_CAPACITY), 
+                new ThreadFactoryBuilder().setNameFormat("cm-callback-%d").setDaemon(true).build(), 
+                new CallerRunsUnlessShutdownPolicy());
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("cm-scheduler-%d").setDaemon(true).build());
     }
     
     public <T> ListenableFuture<T> submit(Callable<T> callable) {
         return threadPoolExecutorService.submit(callable);
     }
     
+    /**
+     * A bounded executor to complete result futures on. 
+     * If it is saturated, callbacks run on the submitting thread. 
+     * After {@link #shutdown()}, callbacks are rejected with a {@link RejectedExecutionException}.
+     * @return the callback executor.
+     */
+    public Executor getCallbackExecutor() {
+        return callbackExecutorService;
+    }
+    
+    /**
+     * An unbounded executor for actions that block on the driver, such as job cancellation, 
+     * which must not hold up the scheduler.
+     * @return the blocking executor.
+     */
+    public Executor getBlockingExecutor() {
+        return threadPoolExecutorService;
+    }
+    
+    /**
+     * A single-threaded scheduler for short, non-blocking timer actions such as batch timeouts.
+     * @return the scheduler.
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+    
     public void shutdown() {
         threadPoolExecutorService.shutdown();
+        callbackExecutorService.shutdown();
+        scheduler.shutdown();
     }
     
+    /**
+     * Like {@link ThreadPoolExecutor.CallerRunsPolicy}, but throws instead of silently 
+     * discarding callbacks after shutdown, so their futures can be failed.
+     */
+    static class CallerRunsUnlessShutdownPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("The callback executor is shut down.");
+            }
+            r.run();
+        }
+    }
 }
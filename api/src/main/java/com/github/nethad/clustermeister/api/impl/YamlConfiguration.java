@@ -62,6 +62,7 @@ public class YamlConfiguration extends HierarchicalConfiguration {
             .append("# amazon:\n")
             .append("#   access_key_id: 00accesskey00\n")
             .append("#   secret_key: 00secretkey00\n")
+            .append("#   topology: flat\n")
             .append("#   keypairs:\n")
             .append("#     - my-keypair:\n")
             .append("#         user: ec2-user\n")
@@ -96,6 +97,13 @@ public class YamlConfiguration extends HierarchicalConfiguration {
             .append("# jvm_options:\n")
             .append("#   local_driver: \"-Xmx500m\"\n")
             .append("#   node: \"-Xmx300m\"\n")
+            .append("#\n")
+            .append("# serialization:\n")
+            .append("#   codec: compact\n")
+            .append("#   compression_threshold: 16384\n")
+            .append("#\n")
+            .append("# standby:\n")
+            .append("#   nodes: 0\n")
             .append("#\n");
         return sb.toString();
     }
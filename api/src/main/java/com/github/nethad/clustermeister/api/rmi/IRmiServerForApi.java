@@ -15,10 +15,15 @@
  */
 package com.github.nethad.clustermeister.api.rmi;
 
+import com.github.nethad.clustermeister.api.DriverAddress;
 import com.github.nethad.clustermeister.api.NodeInformation;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.jppf.management.JPPFSystemInformation;
 
 /**
  *
@@ -30,4 +35,41 @@ public interface IRmiServerForApi extends Remote {
     
     public Collection<NodeInformation> getAllNodes() throws RemoteException;
     
+    /**
+     * @param nodeId the ID of a node.
+     * @return the full system information of the node, or null if it is not connected.
+     * @throws RemoteException 
+     */
+    public JPPFSystemInformation getSystemInformation(String nodeId) throws RemoteException;
+    
+    /**
+     * @return the latest telemetry sample of every connected node that sent one, by node ID.
+     * @throws RemoteException 
+     */
+    public Map<String, NodeTelemetrySample> getNodeTelemetry() throws RemoteException;
+    
+    /**
+     * Returns the changes of the node membership since a version.
+     * @param version the last version known to the caller, 0 for none.
+     * @return the delta to the current version.
+     * @throws RemoteException 
+     */
+    public NodeMembershipDelta getNodesSince(long version) throws RemoteException;
+    
+    /**
+     * Registers a callback that receives every change of the node membership.
+     * @param listener the (exported) callback.
+     * @param version the last version known to the listener.
+     * @throws RemoteException 
+     */
+    public void addMembershipListener(IRmiMembershipListener listener, long version) throws RemoteException;
+    
+    public void removeMembershipListener(IRmiMembershipListener listener) throws RemoteException;
+    
+    /**
+     * @return the local drivers jobs are balanced across, empty if none were started.
+     * @throws RemoteException 
+     */
+    public List<DriverAddress> getDriverAddresses() throws RemoteException;
+    
 }
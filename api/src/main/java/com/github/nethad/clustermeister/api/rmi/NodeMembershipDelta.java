@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.rmi;
+
+import com.github.nethad.clustermeister.api.NodeSummary;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The nodes that joined and left between two versions of the node membership.
+ * Joined nodes are sent as {@link NodeSummary}s.
+ *
+ * A full delta contains all current nodes and replaces everything known before, 
+ * e.g. when the requested version is older than the changes still kept by the server.
+ *
+ * @author thomas
+ */
+public class NodeMembershipDelta implements Serializable {
+    private final long fromVersion;
+    private final long toVersion;
+    private final boolean full;
+    private final List<NodeSummary> joined;
+    private final List<String> left;
+
+    public NodeMembershipDelta(long fromVersion, long toVersion, boolean full,
+            Collection<NodeSummary> joined, Collection<String> left) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.full = full;
+        this.joined = new ArrayList<NodeSummary>(joined);
+        this.left = new ArrayList<String>(left);
+    }
+
+    /**
+     * @return the version the delta applies to.
+     */
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    /**
+     * @return the version after applying the delta.
+     */
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    /**
+     * @return true if the delta contains all current nodes.
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * @return the nodes that joined (or rejoined) since the from-version.
+     */
+    public List<NodeSummary> getJoined() {
+        return joined;
+    }
+
+    /**
+     * @return the IDs of the nodes that left since the from-version.
+     */
+    public List<String> getLeft() {
+        return left;
+    }
+
+    public boolean isEmpty() {
+        return !full && joined.isEmpty() && left.isEmpty();
+    }
+}
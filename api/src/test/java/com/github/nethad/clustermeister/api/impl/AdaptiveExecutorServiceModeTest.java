@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import org.jppf.client.concurrent.JPPFExecutorService;
+import static org.hamcrest.Matchers.*;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class AdaptiveExecutorServiceModeTest {
+    private static final long TARGET_LATENCY = 400;
+
+    private JPPFExecutorService executorService;
+    private AdaptiveExecutorServiceMode mode;
+    private long now;
+
+    @Before
+    public void setup() {
+        executorService = mock(JPPFExecutorService.class);
+        mode = ExecutorServiceMode.adaptive(TARGET_LATENCY);
+        now = 0;
+    }
+
+    @Test
+    public void startsWithoutBatching() {
+        mode.configureJppfExecutorService(executorService);
+
+        verify(executorService).setBatchSize(1);
+        verify(executorService).setBatchTimeout(0);
+        assertThat(mode.getHistory().isEmpty(), is(true));
+    }
+
+    @Test
+    public void tinyTasksGrowBatches() {
+        mode.configureJppfExecutorService(executorService);
+
+        recordWindows(3, 20, 0, 10);
+
+        assertThat(mode.getBatchSize(), is(8));
+        assertThat(mode.getBatchTimeout(), is(greaterThan(0L)));
+        assertThat(mode.getBatchTimeout(), is(lessThanOrEqualTo(TARGET_LATENCY / 4)));
+        verify(executorService).setBatchSize(8);
+        assertThat(mode.getHistory().size(), is(3));
+    }
+
+    @Test
+    public void nodeDispatchersFollowAdjustments() {
+        ExecutorNodeDispatcher dispatcher = mock(ExecutorNodeDispatcher.class);
+        mode.configureExecutorNodeDispatcher(dispatcher);
+        verify(dispatcher).setBatchSize(1);
+
+        recordWindows(3, 20, 0, 10);
+
+        verify(dispatcher).setBatchSize(8);
+        verify(dispatcher).setBatchTimeout(mode.getBatchTimeout());
+    }
+
+    @Test
+    public void nodeDispatchersReportSamples() {
+        ExecutorNodeDispatcher dispatcher = mock(ExecutorNodeDispatcher.class);
+        mode.configureExecutorNodeDispatcher(dispatcher);
+
+        verify(dispatcher).setSampleRecorder(mode);
+    }
+
+    @Test
+    public void shutDownExecutorServicesAreReleased() {
+        mode.configureJppfExecutorService(executorService);
+        when(executorService.isShutdown()).thenReturn(true);
+
+        recordWindows(3, 20, 0, 10);
+
+        verify(executorService, never()).setBatchSize(8);
+    }
+
+    @Test
+    public void heavyTasksDoNotGrowBatches() {
+        recordWindows(3, 150, 140, 10);
+
+        assertThat(mode.getBatchSize(), is(1));
+        assertThat(mode.getBatchTimeout(), is(0L));
+    }
+
+    @Test
+    public void latencyAboveTargetShrinksBatches() {
+        recordWindows(4, 20, 0, 10);
+        assertThat(mode.getBatchSize(), is(16));
+
+        recordWindows(1, TARGET_LATENCY * 2, 0, 10);
+
+        assertThat(mode.getBatchSize(), is(8));
+    }
+
+    @Test
+    public void throughputDropShrinksBatches() {
+        recordWindows(2, 20, 0, 10);
+        assertThat(mode.getBatchSize(), is(4));
+
+        recordWindows(1, 20, 0, 100);
+
+        assertThat(mode.getBatchSize(), is(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void targetLatencyMustBePositive() {
+        ExecutorServiceMode.adaptive(0);
+    }
+
+    private void recordWindows(int windows, long latency, long executionTime, long interval) {
+        for (int w = 0; w < windows; w++) {
+            int samples = Math.max(AdaptiveExecutorServiceMode.MIN_SAMPLE_WINDOW, mode.getBatchSize());
+            for (int i = 0; i < samples; i++) {
+                now += interval;
+                mode.recordSample(now, latency, executionTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import static org.hamcrest.Matchers.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class BroadcastRegistryTest {
+    private final BroadcastRegistry registry = BroadcastRegistry.getInstance();
+
+    @Test
+    public void smallValuesAreNotBroadcast() throws Exception {
+        assertThat(registry.register("small", 1024), is(nullValue()));
+    }
+
+    @Test
+    public void equalContentHasEqualHash() throws Exception {
+        int[] table = new int[10000];
+        int[] copy = new int[10000];
+
+        BroadcastReference reference = registry.register(table, 1024);
+
+        assertThat(reference, is(notNullValue()));
+        assertThat(reference.getSize(), is(greaterThan(40000L)));
+        assertThat(registry.register(table, 1024), is(sameInstance(reference)));
+        assertThat(registry.register(copy, 1024).getHash(), is(reference.getHash()));
+        assertThat(registry.get(reference.getHash()), is(notNullValue()));
+    }
+
+    @Test
+    public void differentContentHasDifferentHash() throws Exception {
+        int[] table = new int[10000];
+        int[] other = new int[10000];
+        other[0] = 1;
+
+        assertThat(registry.register(other, 1024).getHash(), is(not(registry.register(table, 1024).getHash())));
+    }
+
+    @Test
+    public void largeJobDataIsReplacedByReference() throws Exception {
+        int[] table = new int[(int) JobImpl.BROADCAST_THRESHOLD];
+        Map<String, Object> jobData = Collections.<String, Object>singletonMap("table", table);
+
+        Job<Integer> job = JobFactory.create(jobData);
+
+        Object value = job.getJppfJob().getDataProvider().getValue("table");
+        assertThat(value, is(instanceOf(BroadcastReference.class)));
+        assertThat(registry.get(((BroadcastReference) value).getHash()), is(sameInstance((Object) table)));
+    }
+}
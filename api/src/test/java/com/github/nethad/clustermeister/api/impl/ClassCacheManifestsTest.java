@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.node.common.ClassCacheManifest;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import java.io.File;
+import java.util.Map;
+import static org.hamcrest.Matchers.*;
+import org.jppf.server.protocol.JPPFTask;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class ClassCacheManifestsTest {
+    private final ClassCacheManifests manifests = ClassCacheManifests.getInstance();
+
+    @Test
+    public void entryOfApplicationClassIsAdded() {
+        ClassCacheManifest manifest = new ClassCacheManifest();
+
+        manifests.addEntryOf(manifest, getClass());
+
+        Map<String, String> entries = manifest.getEntries();
+        assertThat(entries.size(), is(1));
+        assertThat(entries.values().iterator().next(), is(classPathEntryOf(getClass())));
+    }
+
+    @Test
+    public void entriesAvailableOnNodesAreSkipped() {
+        ClassCacheManifest manifest = new ClassCacheManifest();
+
+        manifests.addEntryOf(manifest, String.class);
+        manifests.addEntryOf(manifest, JPPFTask.class);
+        manifests.addEntryOf(manifest, ClassCacheManifest.class);
+
+        assertThat(manifest.getEntries().isEmpty(), is(true));
+    }
+
+    @Test
+    public void hashChangesWithContent() throws Exception {
+        File directory = Files.createTempDir();
+        File classFile = new File(directory, "A.class");
+        try {
+            Files.write("a", classFile, Charsets.UTF_8);
+            String hash = manifests.hashOf(directory, 0);
+            assertThat(manifests.hashOf(directory, ClassCacheManifests.STAMP_INTERVAL), is(hash));
+
+            Files.write("changed", classFile, Charsets.UTF_8);
+
+            assertThat(manifests.hashOf(directory, 2 * ClassCacheManifests.STAMP_INTERVAL), is(not(hash)));
+        } finally {
+            classFile.delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void entryIsStampedOncePerInterval() throws Exception {
+        File directory = Files.createTempDir();
+        File classFile = new File(directory, "A.class");
+        try {
+            Files.write("a", classFile, Charsets.UTF_8);
+            String hash = manifests.hashOf(directory, 0);
+
+            Files.write("changed", classFile, Charsets.UTF_8);
+
+            assertThat(manifests.hashOf(directory, ClassCacheManifests.STAMP_INTERVAL - 1), is(hash));
+            assertThat(manifests.hashOf(directory, ClassCacheManifests.STAMP_INTERVAL), is(not(hash)));
+        } finally {
+            classFile.delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void jobCarriesManifest() throws Exception {
+        Job<String> job = JobFactory.create("manifest", null);
+
+        Object manifest = job.getJppfJob().getDataProvider().getValue(ClassCacheManifest.DATA_PROVIDER_KEY);
+
+        assertThat(manifest, is(instanceOf(ClassCacheManifest.class)));
+    }
+
+    private static String classPathEntryOf(Class<?> type) {
+        try {
+            return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import static org.hamcrest.Matchers.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class CombinerAdapterTest {
+    
+    private final CombinerAdapter<String> concatenation = new CombinerAdapter<String>(new Combiner<String>() {
+        @Override
+        public String combine(String left, String right) throws Exception {
+            return left + right;
+        }
+    });
+
+    @Test
+    public void foldsResultsInOrder() throws Exception {
+        Object combined = concatenation.combine(Arrays.<Object>asList("a", "b", "c"));
+        
+        assertThat(combined, is((Object) "abc"));
+    }
+
+    @Test
+    public void singleResultIsReturnedAsIs() throws Exception {
+        Object combined = concatenation.combine(Collections.<Object>singletonList("a"));
+        
+        assertThat(combined, is((Object) "a"));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.ExecutorNode;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.jppf.client.JPPFClient;
+import org.jppf.client.JPPFJob;
+import org.jppf.client.event.TaskResultEvent;
+import org.jppf.server.protocol.JPPFTask;
+import static org.hamcrest.Matchers.is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class ExecutorNodeDispatcherTest {
+    private JPPFClient client;
+    private ThreadsExecutorService threadsExecutorService;
+    private ExecutorNodeDispatcher dispatcher;
+
+    @Before
+    public void setup() throws Exception {
+        client = mock(JPPFClient.class);
+        ExecutorNode node = mock(ExecutorNode.class);
+        when(node.getID()).thenReturn("node-uuid");
+        threadsExecutorService = new ThreadsExecutorService();
+        dispatcher = new ExecutorNodeDispatcher(client, node, threadsExecutorService);
+    }
+
+    @After
+    public void teardown() {
+        threadsExecutorService.shutdown();
+    }
+
+    @Test
+    public void standardSendsEveryCallable() throws Exception {
+        dispatcher.submit(new Echo("a"));
+        dispatcher.submit(new Echo("b"));
+
+        verify(client, times(2)).submit(any(JPPFJob.class));
+    }
+
+    @Test
+    public void batchSizeBundlesCallables() throws Exception {
+        dispatcher.setBatchSize(3);
+
+        dispatcher.submit(new Echo("a"));
+        dispatcher.submit(new Echo("b"));
+        verify(client, never()).submit(any(JPPFJob.class));
+
+        dispatcher.submit(new Echo("c"));
+        JPPFJob job = submittedJob();
+        assertThat(job.getTasks().size(), is(3));
+    }
+
+    @Test
+    public void batchTimeoutSendsPartialBatch() throws Exception {
+        dispatcher.setBatchSize(100);
+        dispatcher.setBatchTimeout(50);
+
+        dispatcher.submit(new Echo("a"));
+
+        ArgumentCaptor<JPPFJob> captor = ArgumentCaptor.forClass(JPPFJob.class);
+        verify(client, timeout(2000)).submit(captor.capture());
+        assertThat(captor.getValue().getTasks().size(), is(1));
+    }
+
+    @Test
+    public void everyCallableGetsItsOwnResult() throws Exception {
+        dispatcher.setBatchSize(2);
+        ListenableFuture<String> first = dispatcher.submit(new Echo("a"));
+        ListenableFuture<String> second = dispatcher.submit(new Echo("b"));
+
+        JPPFJob job = submittedJob();
+        List<JPPFTask> tasks = job.getTasks();
+        for (JPPFTask task : tasks) {
+            task.run();
+        }
+        TaskResultEvent event = mock(TaskResultEvent.class);
+        when(event.getTaskList()).thenReturn(tasks);
+        job.getResultListener().resultsReceived(event);
+
+        assertThat(first.get(1, TimeUnit.SECONDS), is("a"));
+        assertThat(second.get(1, TimeUnit.SECONDS), is("b"));
+    }
+
+    @Test
+    public void submissionsAfterHandOverGoToTheSuccessor() throws Exception {
+        dispatcher.setBatchSize(100);
+        dispatcher.submit(new Echo("a"));
+        ExecutorNodeDispatcher successor = new ExecutorNodeDispatcher(
+                client, mock(ExecutorNode.class), threadsExecutorService);
+        successor.setBatchSize(2);
+
+        dispatcher.handOver(successor);
+        verify(client, times(1)).submit(any(JPPFJob.class));
+
+        // a submission that still reached the old dispatcher
+        dispatcher.submit(new Echo("b"));
+        successor.submit(new Echo("c"));
+
+        verify(client, times(2)).submit(any(JPPFJob.class));
+    }
+
+    private JPPFJob submittedJob() throws Exception {
+        ArgumentCaptor<JPPFJob> captor = ArgumentCaptor.forClass(JPPFJob.class);
+        verify(client).submit(captor.capture());
+        return captor.getValue();
+    }
+
+    private static class Echo implements Callable<String> {
+        private final String value;
+
+        Echo(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String call() throws Exception {
+            return value;
+        }
+    }
+}
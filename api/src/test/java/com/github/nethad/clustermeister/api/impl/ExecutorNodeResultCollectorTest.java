@@ -0,0 +1,173 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.jppf.client.JPPFJob;
+import org.jppf.client.event.TaskResultEvent;
+import org.jppf.server.protocol.JPPFTask;
+import static org.hamcrest.Matchers.*;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class ExecutorNodeResultCollectorTest {
+    private JPPFJob job;
+    private TaskResultEvent event;
+    private SettableFuture<Object> future;
+
+    @Before
+    public void setup() throws Exception {
+        job = new JPPFJob();
+        event = mock(TaskResultEvent.class);
+        future = SettableFuture.create();
+    }
+
+    @Test
+    public void futureIsPendingUntilResultIsReceived() throws Exception {
+        collectorFor(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "result";
+            }
+        });
+
+        assertThat(future.isDone(), is(false));
+    }
+
+    @Test
+    public void resultCompletesFuture() throws Exception {
+        ExecutorNodeResultCollector collector = collectorFor(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "result";
+            }
+        });
+
+        runAndReceive(collector);
+
+        assertThat(future.isDone(), is(true));
+        assertThat(future.get(), is((Object) "result"));
+    }
+
+    @Test
+    public void exceptionFailsFuture() throws Exception {
+        final IllegalStateException exception = new IllegalStateException("failure");
+        ExecutorNodeResultCollector collector = collectorFor(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw exception;
+            }
+        });
+
+        runAndReceive(collector);
+
+        try {
+            future.get();
+            fail("Expected an ExecutionException.");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), is(sameInstance((Throwable) exception)));
+        }
+    }
+
+    @Test
+    public void succeededTaskIsRecordedAsSample() throws Exception {
+        AdaptiveExecutorServiceMode mode = mock(AdaptiveExecutorServiceMode.class);
+        ExecutorNodeResultCollector collector = collectorFor(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "result";
+            }
+        }, mode);
+
+        runAndReceive(collector);
+
+        verify(mode).recordSample(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void failedTaskIsNotRecordedAsSample() throws Exception {
+        AdaptiveExecutorServiceMode mode = mock(AdaptiveExecutorServiceMode.class);
+        ExecutorNodeResultCollector collector = collectorFor(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw new IllegalStateException("failure");
+            }
+        }, mode);
+
+        runAndReceive(collector);
+
+        verify(mode, never()).recordSample(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void rejectedCallbackFailsFuture() throws Exception {
+        final RejectedExecutionException rejection = new RejectedExecutionException("shut down");
+        job.addTask(new ExecutorNodeTask<String>(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "result";
+            }
+        }));
+        ExecutorNodeResultCollector collector = new ExecutorNodeResultCollector(
+                job, Collections.singletonList(future), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw rejection;
+            }
+        });
+
+        runAndReceive(collector);
+
+        try {
+            future.get();
+            fail("Expected an ExecutionException.");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), is(sameInstance((Throwable) rejection)));
+        }
+    }
+
+    private ExecutorNodeResultCollector collectorFor(Callable<String> callable) throws Exception {
+        job.addTask(new ExecutorNodeTask<String>(callable));
+        return new ExecutorNodeResultCollector(
+                job, Collections.singletonList(future), MoreExecutors.sameThreadExecutor());
+    }
+
+    private ExecutorNodeResultCollector collectorFor(Callable<String> callable, AdaptiveExecutorServiceMode mode) 
+            throws Exception {
+        job.addTask(new ExecutorNodeTask<String>(callable));
+        return new ExecutorNodeResultCollector(job, Collections.singletonList(future), 
+                MoreExecutors.sameThreadExecutor(), mode, System.nanoTime());
+    }
+
+    private void runAndReceive(ExecutorNodeResultCollector collector) {
+        JPPFTask task = job.getTasks().get(0);
+        task.run();
+        when(event.getTaskList()).thenReturn(Collections.singletonList(task));
+        collector.resultsReceived(event);
+    }
+}
@@ -27,11 +27,13 @@ import static org.mockito.Mockito.*;
  */
 public class ExecutorServiceModeTest {
     private JPPFExecutorService executorService;
+    private ExecutorNodeDispatcher dispatcher;
 
 
     @Before
     public void setup() throws Exception {
         executorService = mock(JPPFExecutorService.class);
+        dispatcher = mock(ExecutorNodeDispatcher.class);
     }
 
     @Test
@@ -71,4 +73,24 @@ public class ExecutorServiceModeTest {
         verify(executorService).setBatchTimeout(eq(2323L));
         verify(executorService).setBatchSize(eq(42));
     }
+    
+    @Test
+    public void standardModeOnDispatcher() {
+        ExecutorServiceMode standard = ExecutorServiceMode.standard();
+        
+        standard.configureExecutorNodeDispatcher(dispatcher);
+        
+        verify(dispatcher, never()).setBatchTimeout(anyLong());
+        verify(dispatcher, never()).setBatchSize(anyInt());
+    }
+    
+    @Test
+    public void timeAndBatchConstraintOnDispatcher() {
+        ExecutorServiceMode timeoutAndBatchSizeContraint = ExecutorServiceMode.timeoutAndBatchSizeContraint(2323L, 42);
+        
+        timeoutAndBatchSizeContraint.configureExecutorNodeDispatcher(dispatcher);
+        
+        verify(dispatcher).setBatchTimeout(eq(2323L));
+        verify(dispatcher).setBatchSize(eq(42));
+    }
 }
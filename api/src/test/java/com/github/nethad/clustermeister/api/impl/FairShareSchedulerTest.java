@@ -0,0 +1,279 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import static org.hamcrest.Matchers.is;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class FairShareSchedulerTest {
+    private List<SettableFuture<String>> dispatched;
+    private List<Runnable> waiters;
+    private Executor callbackExecutor;
+    private FairShareScheduler scheduler;
+    private long now;
+
+    @Before
+    public void setup() {
+        dispatched = new ArrayList<SettableFuture<String>>();
+        waiters = new ArrayList<Runnable>();
+        callbackExecutor = MoreExecutors.sameThreadExecutor();
+        Executor waitExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                waiters.add(command);
+            }
+        };
+        Executor callbacks = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                callbackExecutor.execute(command);
+            }
+        };
+        scheduler = new FairShareScheduler(waitExecutor, callbacks) {
+            @Override
+            long currentTimeMillis() {
+                return now;
+            }
+        };
+        now = 0;
+    }
+
+    @Test
+    public void tasksAreHeldBackUntilNodeThreadsAreKnown() {
+        Queue batch = new Queue(SchedulingQueue.named("batch"));
+
+        batch.submit(100);
+        assertThat(batch.dispatched.size(), is(0));
+        scheduler.setNodeThreads(1);
+
+        assertThat(batch.dispatched.size(), is(FairShareScheduler.SLOTS_PER_THREAD));
+    }
+
+    @Test
+    public void inFlightTasksAreBoundedBySlots() {
+        scheduler.setNodeThreads(1);
+        Queue batch = new Queue(SchedulingQueue.named("batch"));
+
+        batch.submit(100);
+
+        assertThat(batch.dispatched.size(), is(FairShareScheduler.SLOTS_PER_THREAD));
+        batch.complete(1);
+        assertThat(batch.dispatched.size(), is(FairShareScheduler.SLOTS_PER_THREAD + 1));
+    }
+
+    @Test
+    public void freedSlotsAreSharedByWeight() {
+        scheduler.setNodeThreads(2);
+        Queue heavy = new Queue(SchedulingQueue.named("heavy").withWeight(3));
+        Queue light = new Queue(SchedulingQueue.named("light").withWeight(1));
+        heavy.submit(100);
+        light.submit(100);
+        assertThat(heavy.dispatched.size(), is(8));
+
+        heavy.complete(8);
+
+        assertThat(heavy.running(), is(6));
+        assertThat(light.running(), is(2));
+    }
+
+    @Test
+    public void higherPriorityIsServedFirst() {
+        scheduler.setNodeThreads(1);
+        Queue batch = new Queue(SchedulingQueue.named("batch"));
+        Queue interactive = new Queue(SchedulingQueue.named("interactive").withPriority(10));
+        batch.submit(100);
+        interactive.submit(10);
+
+        batch.complete(4);
+
+        assertThat(interactive.dispatched.size(), is(4));
+        assertThat(batch.running(), is(0));
+    }
+
+    @Test
+    public void minimumShareIsGuaranteed() {
+        scheduler.setNodeThreads(1);
+        Queue batch = new Queue(SchedulingQueue.named("batch").withPriority(10));
+        Queue interactive = new Queue(SchedulingQueue.named("interactive").withMinimumShare(0.5));
+        batch.submit(100);
+
+        interactive.submit(10);
+
+        assertThat(interactive.dispatched.size(), is(2));
+        assertThat(batch.running(), is(4));
+    }
+
+    @Test
+    public void resultsAndWaitTimesAreReported() throws Exception {
+        scheduler.setNodeThreads(1);
+        Queue batch = new Queue(SchedulingQueue.named("batch"));
+        List<Future<String>> futures = batch.submit(5);
+        now = 100;
+
+        batch.complete(1);
+
+        assertThat(futures.get(0).get(), is("result"));
+        QueueStatistics statistics = scheduler.getStatistics().get("batch");
+        assertThat(statistics.getDispatchedTasks(), is(5L));
+        assertThat(statistics.getMaxWaitTime(), is(100L));
+        assertThat(statistics.getPendingTasks(), is(0));
+        assertThat(statistics.getRunningTasks(), is(4));
+    }
+
+    @Test
+    public void cancelledTasksAreNotDispatched() {
+        scheduler.setNodeThreads(1);
+        Queue batch = new Queue(SchedulingQueue.named("batch"));
+        List<Future<String>> futures = batch.submit(5);
+
+        futures.get(4).cancel(true);
+        batch.complete(1);
+
+        assertThat(batch.dispatched.size(), is(4));
+    }
+
+    @Test
+    public void completionFreesTheSlotWithoutPolling() {
+        scheduler.setNodeThreads(1);
+        Queue batch = new Queue(SchedulingQueue.named("batch"));
+        batch.submit(5);
+        assertThat(waiters.size(), is(FairShareScheduler.SLOTS_PER_THREAD));
+
+        batch.complete(1);
+
+        assertThat(batch.dispatched.size(), is(5));
+        assertThat(waiters.size(), is(5));
+    }
+
+    @Test
+    public void futuresAreCompletedOnTheCallbackExecutor() throws Exception {
+        final List<Runnable> callbacks = new ArrayList<Runnable>();
+        callbackExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                callbacks.add(command);
+            }
+        };
+        scheduler.setNodeThreads(1);
+        Queue batch = new Queue(SchedulingQueue.named("batch"));
+        List<Future<String>> futures = batch.submit(1);
+
+        batch.complete(1);
+        assertThat(futures.get(0).isDone(), is(false));
+        callbacks.get(0).run();
+
+        assertThat(futures.get(0).get(), is("result"));
+    }
+
+    @Test
+    public void cancellingAFutureCancelsTheDispatchedTask() {
+        scheduler.setNodeThreads(1);
+        Queue batch = new Queue(SchedulingQueue.named("batch"));
+        List<Future<String>> futures = batch.submit(1);
+
+        futures.get(0).cancel(true);
+
+        assertThat(batch.dispatched.get(0).isCancelled(), is(true));
+    }
+
+    @Test
+    public void shutdownCancelsTasksInFlight() {
+        scheduler.setNodeThreads(1);
+        Queue batch = new Queue(SchedulingQueue.named("batch"));
+        batch.submit(5);
+
+        scheduler.shutdown();
+        for (Runnable waiter : new ArrayList<Runnable>(waiters)) {
+            waiter.run();
+        }
+
+        assertThat(batch.dispatched.size(), is(4));
+        assertThat(batch.dispatched.get(0).isCancelled(), is(true));
+    }
+
+    private class Queue {
+        private final FairShareScheduler.QueueState state;
+        private final ExecutorService delegate = mock(ExecutorService.class);
+        private final List<SettableFuture<String>> dispatched = new ArrayList<SettableFuture<String>>();
+
+        Queue(SchedulingQueue queue) {
+            state = scheduler.register(queue);
+            when(delegate.submit(any(Callable.class))).thenAnswer(new Answer<Object>() {
+                @Override
+                public Object answer(InvocationOnMock invocation) throws Throwable {
+                    SettableFuture<String> future = SettableFuture.create();
+                    dispatched.add(future);
+                    FairShareSchedulerTest.this.dispatched.add(future);
+                    return future;
+                }
+            });
+        }
+
+        List<Future<String>> submit(int count) {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < count; i++) {
+                futures.add(scheduler.submit(state, delegate, new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return "result";
+                    }
+                }));
+            }
+            return futures;
+        }
+
+        void complete(int count) {
+            List<SettableFuture<String>> completed = new ArrayList<SettableFuture<String>>();
+            for (SettableFuture<String> future : dispatched) {
+                if (completed.size() < count && !future.isDone()) {
+                    future.set("result");
+                    completed.add(future);
+                }
+            }
+            for (SettableFuture<String> future : completed) {
+                waiters.get(FairShareSchedulerTest.this.dispatched.indexOf(future)).run();
+            }
+        }
+
+        int running() {
+            int running = 0;
+            for (SettableFuture<String> future : dispatched) {
+                if (!future.isDone()) {
+                    running++;
+                }
+            }
+            return running;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.jppf.client.event.TaskResultEvent;
+import org.jppf.server.protocol.JPPFTask;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class FutureResultCollectorTest {
+    private Job<String> job;
+    private JobResultListener<String> listener;
+
+    @Before
+    public void setup() throws Exception {
+        job = JobFactory.create(null);
+        job.addTask(new EchoTask("a"));
+        job.addTask(new FailingTask());
+        job.addTask(new EchoTask("c"));
+        listener = mock(JobResultListener.class);
+    }
+
+    @Test
+    public void futuresArePreallocated() throws Exception {
+        FutureResultCollector<String> collector = job.resultCollector();
+
+        List<ListenableFuture<String>> futures = collector.getFutureList();
+        assertThat(futures.size(), is(3));
+        for (ListenableFuture<String> future : futures) {
+            assertThat(future.isDone(), is(false));
+        }
+    }
+
+    @Test
+    public void resultsCompleteFuturesByPosition() throws Exception {
+        FutureResultCollector<String> collector = job.resultCollector();
+
+        receive(collector, 2);
+        receive(collector, 0);
+
+        List<ListenableFuture<String>> futures = collector.getFutureList();
+        assertThat(futures.get(0).get(), is("a"));
+        assertThat(futures.get(1).isDone(), is(false));
+        assertThat(futures.get(2).get(), is("c"));
+    }
+
+    @Test
+    public void exceptionFailsFuture() throws Exception {
+        FutureResultCollector<String> collector = job.resultCollector();
+
+        receive(collector, 1);
+
+        try {
+            collector.getFutureList().get(1).get();
+            fail("Expected an ExecutionException.");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+    }
+
+    @Test
+    public void listenerIsNotifiedOfEveryResult() throws Exception {
+        FutureResultCollector<String> collector = job.resultCollector();
+        collector.addListener(listener);
+
+        receive(collector, 0);
+        receive(collector, 1);
+        verify(listener, never()).onComplete();
+        receive(collector, 2);
+
+        verify(listener).onEach(0, "a");
+        verify(listener).onFailure(eq(1), any(IllegalStateException.class));
+        verify(listener).onEach(2, "c");
+        verify(listener).onComplete();
+    }
+
+    @Test
+    public void duplicateResultIsIgnored() throws Exception {
+        FutureResultCollector<String> collector = job.resultCollector();
+        collector.addListener(listener);
+
+        receive(collector, 0);
+        receive(collector, 0);
+
+        verify(listener, times(1)).onEach(0, "a");
+    }
+
+    @Test
+    public void cancelledTaskCountsAsFinished() throws Exception {
+        FutureResultCollector<String> collector = job.resultCollector();
+        collector.addListener(listener);
+
+        collector.getFutureList().get(1).cancel(true);
+        receive(collector, 0);
+        verify(listener, never()).onComplete();
+        receive(collector, 2);
+        receive(collector, 1);
+
+        verify(listener, times(1)).onComplete();
+        verify(listener, never()).onFailure(eq(1), any(Exception.class));
+        assertThat(collector.getFutureList().get(1).isCancelled(), is(true));
+    }
+
+    private void receive(FutureResultCollector<String> collector, int position) {
+        JPPFTask task = job.getJppfJob().getTasks().get(position);
+        task.run();
+        TaskResultEvent event = mock(TaskResultEvent.class);
+        when(event.getTaskList()).thenReturn(Collections.singletonList(task));
+        collector.resultsReceived(event);
+    }
+
+    private static class EchoTask extends Task<String> {
+        private final String value;
+
+        EchoTask(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String execute() throws Exception {
+            return value;
+        }
+    }
+
+    private static class FailingTask extends Task<String> {
+
+        @Override
+        public String execute() throws Exception {
+            throw new IllegalStateException("failure");
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.DriverAddress;
+import com.github.nethad.clustermeister.api.JPPFConstants;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import static org.hamcrest.Matchers.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class JPPFClientConfigurationTest {
+
+    @Test
+    public void defaultsToOneLocalDriver() {
+        Properties properties = new JPPFClientConfiguration().getProperties();
+
+        assertThat(properties.getProperty(JPPFConstants.DRIVERS), is("driver"));
+        assertThat(properties.getProperty("driver.jppf.server.host"), is("localhost"));
+        assertThat(properties.getProperty("driver.jppf.server.port"), 
+                is(String.valueOf(JPPFConstants.DEFAULT_SERVER_PORT)));
+    }
+
+    @Test
+    public void connectsToEveryDriver() {
+        Properties properties = new JPPFClientConfiguration(Arrays.asList(
+                new DriverAddress("localhost", 11111, 11198), new DriverAddress("localhost", 11112, 11199)))
+                .getProperties();
+
+        assertThat(properties.getProperty(JPPFConstants.DRIVERS), is("driver driver1"));
+        assertThat(properties.getProperty("driver1.jppf.server.port"), is("11112"));
+        assertThat(properties.getProperty("driver1.jppf.management.port"), is("11199"));
+        assertThat(properties.getProperty("driver.priority"), is(properties.getProperty("driver1.priority")));
+    }
+
+    @Test
+    public void noDriversConnectsToTheDefault() {
+        Properties properties = new JPPFClientConfiguration(Collections.<DriverAddress>emptyList()).getProperties();
+
+        assertThat(properties.getProperty("driver.jppf.server.port"), 
+                is(String.valueOf(JPPFConstants.DEFAULT_SERVER_PORT)));
+    }
+
+    @Test
+    public void configurationsAreIndependent() {
+        new JPPFClientConfiguration(Arrays.asList(new DriverAddress("localhost", 11112, 11199)));
+
+        assertThat(new JPPFClientConfiguration().getProperties().getProperty("driver.jppf.server.port"), 
+                is(String.valueOf(JPPFConstants.DEFAULT_SERVER_PORT)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedAddressIsRejected() {
+        DriverAddress.valueOf("localhost:11111");
+    }
+}
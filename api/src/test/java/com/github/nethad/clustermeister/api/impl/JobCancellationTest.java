@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.jppf.client.JPPFClient;
+import org.jppf.client.JPPFJob;
+import org.jppf.server.protocol.JPPFTask;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class JobCancellationTest {
+    private JPPFClient client;
+    private ThreadsExecutorService threadsExecutorService;
+    private JobCancellation cancellation;
+    private JPPFJob job;
+    private SettableFuture<Object> first;
+    private SettableFuture<Object> second;
+
+    @Before
+    public void setup() {
+        client = mock(JPPFClient.class);
+        threadsExecutorService = new ThreadsExecutorService();
+        cancellation = new JobCancellation(client, threadsExecutorService.getScheduler(), 
+                threadsExecutorService.getBlockingExecutor());
+        job = new JPPFJob();
+        first = SettableFuture.create();
+        second = SettableFuture.create();
+    }
+
+    @After
+    public void teardown() {
+        threadsExecutorService.shutdown();
+    }
+
+    @Test
+    public void cancellingAllFuturesCancelsJob() throws Exception {
+        cancellation.track(job, futures(), 0);
+
+        first.cancel(true);
+        second.cancel(true);
+
+        verify(client, timeout(1000)).cancelJob(job.getUuid());
+        assertThat(cancellation.getStatistics().getCancelledTasks(), is(2));
+        assertThat(cancellation.getStatistics().getCancelledJobs(), is(1));
+    }
+
+    @Test
+    public void jobKeepsRunningWhileFuturesArePending() throws Exception {
+        cancellation.track(job, futures(), 0);
+
+        first.cancel(true);
+        Thread.sleep(50);
+        verify(client, never()).cancelJob(anyString());
+
+        second.set("result");
+        verify(client, timeout(1000)).cancelJob(job.getUuid());
+    }
+
+    @Test
+    public void cancelledTaskOfPendingJobIsInterruptedOnTheNode() throws Exception {
+        KeyedTask firstTask = new KeyedTask();
+        KeyedTask secondTask = new KeyedTask();
+        job.addTask(firstTask);
+        job.addTask(secondTask);
+        cancellation.track(job, futures(), 0);
+
+        first.cancel(true);
+
+        assertThat(new CancellationCheck(firstTask.cancellationKey).call(), is(true));
+        assertThat(new CancellationCheck(secondTask.cancellationKey).call(), is(false));
+
+        second.set("result");
+
+        assertThat(new CancellationCheck(firstTask.cancellationKey).call(), is(false));
+    }
+
+    @Test
+    public void completedJobIsNotCancelled() throws Exception {
+        cancellation.track(job, futures(), 0);
+
+        first.set("a");
+        second.set("b");
+        Thread.sleep(50);
+
+        verify(client, never()).cancelJob(anyString());
+        assertThat(cancellation.getStatistics().getCancelledTasks(), is(0));
+    }
+
+    @Test
+    public void deadlineExpiresPendingFutures() throws Exception {
+        cancellation.track(job, futures(), 50);
+        first.set("a");
+
+        try {
+            second.get(1, TimeUnit.SECONDS);
+            fail("Expected the deadline to pass.");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), is(instanceOf(TimeoutException.class)));
+        }
+        verify(client, timeout(1000)).cancelJob(job.getUuid());
+        assertThat(cancellation.getStatistics().getExpiredTasks(), is(1));
+        assertThat(first.get(), is((Object) "a"));
+    }
+
+    private List<SettableFuture<Object>> futures() {
+        return Arrays.asList(first, second);
+    }
+
+    private static class KeyedTask extends JPPFTask implements CancellableTask {
+        private String cancellationKey;
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public void setCancellationKey(String cancellationKey) {
+            this.cancellationKey = cancellationKey;
+        }
+    }
+}
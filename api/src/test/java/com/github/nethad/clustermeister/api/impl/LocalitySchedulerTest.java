@@ -0,0 +1,208 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.ExecutorNode;
+import com.github.nethad.clustermeister.api.NodeCapabilities;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jppf.client.JPPFClient;
+import org.jppf.client.JPPFJob;
+import org.jppf.client.event.TaskResultEvent;
+import org.jppf.node.policy.Equal;
+import org.jppf.server.protocol.JPPFTask;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class LocalitySchedulerTest {
+    private JPPFClient client;
+    private LocalityScheduler scheduler;
+
+    @Before
+    public void setup() {
+        client = mock(JPPFClient.class);
+        scheduler = new LocalityScheduler(client);
+        scheduler.setNodes(Arrays.asList(node("node-1", 1), node("node-2", 1)));
+    }
+
+    @Test
+    public void unknownKeysGoToAnyNode() throws Exception {
+        Job<String> job = job("a", "b");
+
+        scheduler.submit(job, null);
+
+        JPPFJob subJob = submittedJobs(1).get(0);
+        assertThat(subJob.getSLA().getExecutionPolicy(), is(nullValue()));
+        assertThat(subJob.getTasks().size(), is(2));
+    }
+
+    @Test
+    public void knownKeysArePreferred() throws Exception {
+        Job<String> first = job("a");
+        List<ListenableFuture<String>> futures = scheduler.submit(first, null);
+        complete(submittedJobs(1).get(0), "node-2");
+        assertThat(futures.get(0).get(1, TimeUnit.SECONDS), is("a"));
+        assertThat(scheduler.getLocation("a"), is("node-2"));
+
+        Job<String> second = job("a");
+        scheduler.submit(second, null);
+        JPPFJob subJob = submittedJobs(2).get(1);
+        assertThat(subJob.getSLA().getExecutionPolicy(), is(instanceOf(Equal.class)));
+        complete(subJob, "node-2");
+
+        assertThat(second.getLocalityStatistics().getRoutedTasks(), is(1));
+        assertThat(second.getLocalityStatistics().getHitRate(), is(1.0));
+    }
+
+    @Test
+    public void saturatedNodeFallsBackToAnyNode() throws Exception {
+        complete(submit(job("a")), "node-1");
+        int capacity = LocalityScheduler.SATURATION_FACTOR;
+        String[] keys = new String[capacity + 1];
+        Arrays.fill(keys, "a");
+
+        Job<String> job = job(keys);
+        scheduler.submit(job, null);
+
+        assertThat(job.getLocalityStatistics().getRoutedTasks(), is(capacity));
+        assertThat(job.getLocalityStatistics().getFallbacks(), is(1));
+    }
+
+    @Test
+    public void cancelledTasksReleaseTheirNode() throws Exception {
+        complete(submit(job("a")), "node-1");
+        int capacity = LocalityScheduler.SATURATION_FACTOR;
+        String[] keys = new String[capacity];
+        Arrays.fill(keys, "a");
+        for (ListenableFuture<String> future : scheduler.submit(job(keys), null)) {
+            future.cancel(true);
+        }
+
+        Job<String> job = job(keys);
+        scheduler.submit(job, null);
+
+        assertThat(job.getLocalityStatistics().getRoutedTasks(), is(capacity));
+        assertThat(job.getLocalityStatistics().getFallbacks(), is(0));
+    }
+
+    @Test
+    public void failedSubmitReleasesAllNodesAndCancelsSubmittedSubJobs() throws Exception {
+        complete(submit(job("a")), "node-1");
+        complete(submit(job("b")), "node-2");
+        reset(client);
+        IllegalStateException failure = new IllegalStateException("driver down");
+        when(client.submit(any(JPPFJob.class))).thenReturn(null).thenThrow(failure);
+        JobResultListener<String> listener = mock(JobResultListener.class);
+
+        try {
+            scheduler.submit(job("a", "b"), listener);
+            fail("Expected the submit failure.");
+        } catch (IllegalStateException ex) {
+            assertThat(ex, is(failure));
+        }
+        List<JPPFJob> subJobs = submittedJobs(2);
+        verify(client).cancelJob(subJobs.get(0).getUuid());
+        verify(listener).onFailure(0, failure);
+        verify(listener).onFailure(1, failure);
+        verify(listener).onComplete();
+
+        reset(client);
+        int capacity = LocalityScheduler.SATURATION_FACTOR;
+        String[] keys = new String[2 * capacity];
+        Arrays.fill(keys, 0, capacity, "a");
+        Arrays.fill(keys, capacity, 2 * capacity, "b");
+        Job<String> job = job(keys);
+        scheduler.submit(job, null);
+
+        assertThat(job.getLocalityStatistics().getRoutedTasks(), is(2 * capacity));
+    }
+
+    @Test
+    public void jobsWithoutKeysHaveNoAffinity() throws Exception {
+        Job<String> job = JobFactory.create(null);
+        job.addTask(new KeyTask("a", null));
+
+        assertThat(LocalityScheduler.hasAffinity(job), is(false));
+        job.setAffinityKey("job-key");
+        assertThat(LocalityScheduler.hasAffinity(job), is(true));
+    }
+
+    private JPPFJob submit(Job<String> job) throws Exception {
+        reset(client);
+        scheduler.submit(job, null);
+        return submittedJobs(1).get(0);
+    }
+
+    private List<JPPFJob> submittedJobs(int count) throws Exception {
+        ArgumentCaptor<JPPFJob> captor = ArgumentCaptor.forClass(JPPFJob.class);
+        verify(client, times(count)).submit(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private void complete(JPPFJob subJob, String nodeId) {
+        List<JPPFTask> tasks = subJob.getTasks();
+        for (JPPFTask task : tasks) {
+            task.run();
+            Task.of(task).setExecutingNodeId(nodeId);
+        }
+        TaskResultEvent event = mock(TaskResultEvent.class);
+        when(event.getTaskList()).thenReturn(tasks);
+        subJob.getResultListener().resultsReceived(event);
+    }
+
+    private Job<String> job(String... keys) throws Exception {
+        Job<String> job = JobFactory.create(null);
+        for (String key : keys) {
+            job.addTask(new KeyTask(key, key));
+        }
+        return job;
+    }
+
+    private ExecutorNode node(String id, int threads) {
+        ExecutorNode node = mock(ExecutorNode.class);
+        NodeCapabilities capabilities = mock(NodeCapabilities.class);
+        when(capabilities.getNumberOfProcessingThreads()).thenReturn(threads);
+        when(node.getID()).thenReturn(id);
+        when(node.getCapabilities()).thenReturn(capabilities);
+        return node;
+    }
+
+    private static class KeyTask extends Task<String> {
+        private final String result;
+
+        KeyTask(String result, String affinityKey) {
+            this.result = result;
+            setAffinityKey(affinityKey);
+        }
+
+        @Override
+        public String execute() throws Exception {
+            return result;
+        }
+    }
+}
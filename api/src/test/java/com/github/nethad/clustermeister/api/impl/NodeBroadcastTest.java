@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import org.jppf.client.event.TaskResultEvent;
+import static org.hamcrest.Matchers.*;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ *
+ * @author thomas
+ */
+public class NodeBroadcastTest {
+    private NodeBroadcast<String> broadcast;
+
+    @Before
+    public void setup() throws Exception {
+        broadcast = new NodeBroadcast<String>(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "result";
+            }
+        }, Arrays.asList("node-1", "node-2"));
+    }
+
+    @Test
+    public void runsAsOneBroadcastJob() {
+        assertThat(broadcast.getJob().getSLA().isBroadcastJob(), is(true));
+        assertThat(broadcast.getJob().getTasks().size(), is(1));
+        assertThat(new ArrayList<String>(broadcast.getFutures().keySet()), is(Arrays.asList("node-1", "node-2")));
+    }
+
+    @Test
+    public void futuresCompletePerNode() throws Exception {
+        broadcast.start();
+
+        deliver("node-1", "a", null);
+
+        assertThat(broadcast.getFutures().get("node-1").get(), is("a"));
+        assertThat(broadcast.getFutures().get("node-2").isDone(), is(false));
+    }
+
+    @Test
+    public void failureOnNodeFailsItsFuture() throws Exception {
+        broadcast.start();
+
+        deliver("node-2", null, new IllegalStateException("failure"));
+
+        try {
+            broadcast.getFutures().get("node-2").get();
+            fail("Expected the node's exception.");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+    }
+
+    @Test
+    public void finishFailsNodesWithoutResult() throws Exception {
+        broadcast.start();
+        deliver("node-1", "a", null);
+
+        broadcast.finish(null);
+
+        assertThat(broadcast.getFutures().get("node-1").get(), is("a"));
+        try {
+            broadcast.getFutures().get("node-2").get();
+            fail("Expected node-2 to fail.");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+        assertThat(deliver("node-2", "late", null), is(false));
+    }
+
+    @Test
+    public void returnedJobFinishesTheBroadcast() throws Exception {
+        broadcast.start();
+        deliver("node-1", "a", null);
+
+        broadcast.getJob().getResultListener().resultsReceived(mock(TaskResultEvent.class));
+
+        assertThat(broadcast.getJob().isBlocking(), is(false));
+        assertThat(broadcast.getFutures().get("node-2").isDone(), is(true));
+        assertThat(deliver("node-2", "late", null), is(false));
+    }
+
+    private boolean deliver(String nodeId, String result, Exception exception) throws Exception {
+        return new NodeBroadcast.ResultDelivery(broadcast.getId(), nodeId, result, exception).call();
+    }
+}
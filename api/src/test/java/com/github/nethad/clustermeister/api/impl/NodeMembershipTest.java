@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.ExecutorNode;
+import com.github.nethad.clustermeister.api.NodeSummary;
+import com.github.nethad.clustermeister.api.rmi.IRmiServerForApi;
+import com.github.nethad.clustermeister.api.rmi.NodeMembershipDelta;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import static org.hamcrest.Matchers.*;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author thomas
+ */
+public class NodeMembershipTest {
+    private IRmiServerForApi server;
+    private NodeMembership membership;
+    private int notifications;
+
+    @Before
+    public void setup() throws Exception {
+        server = mock(IRmiServerForApi.class);
+        notifications = 0;
+        membership = new NodeMembership(server, new NodeMembership.NodeFactory() {
+            @Override
+            public ExecutorNode create(NodeSummary summary) {
+                ExecutorNode node = mock(ExecutorNode.class);
+                when(node.getID()).thenReturn(summary.getID());
+                return node;
+            }
+        }, new NodeMembership.Listener() {
+            @Override
+            public void nodesChanged(Collection<ExecutorNode> nodes) {
+                notifications++;
+            }
+        });
+        when(server.getNodesSince(0)).thenReturn(delta(0, 2, true, joined("a", "b"), left()));
+        membership.refresh();
+    }
+
+    @Test
+    public void refreshLoadsAllNodes() {
+        assertThat(ids(), is(Arrays.asList("a", "b")));
+        assertThat(membership.getVersion(), is(2L));
+        assertThat(membership.getNode("b").getID(), is("b"));
+        assertThat(notifications, is(1));
+    }
+
+    @Test
+    public void pushedDeltaIsApplied() throws Exception {
+        membership.onMembershipChanged(delta(2, 4, false, joined("c"), left("a")));
+
+        assertThat(ids(), is(Arrays.asList("b", "c")));
+        assertThat(membership.getNode("a"), is(nullValue()));
+        assertThat(membership.getVersion(), is(4L));
+    }
+
+    @Test
+    public void staleDeltaIsIgnored() throws Exception {
+        membership.onMembershipChanged(delta(1, 2, false, joined(), left("a")));
+
+        assertThat(ids(), is(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    public void gapIsFilledFromServer() throws Exception {
+        when(server.getNodesSince(2)).thenReturn(delta(2, 5, false, joined("c", "d"), left("b")));
+
+        membership.onMembershipChanged(delta(4, 5, false, joined("d"), left()));
+
+        assertThat(ids(), is(Arrays.asList("a", "c", "d")));
+        assertThat(membership.getVersion(), is(5L));
+    }
+
+    @Test
+    public void fullDeltaKeepsExistingNodes() throws Exception {
+        ExecutorNode a = membership.getNode("a");
+
+        membership.onMembershipChanged(delta(3, 9, true, joined("a", "c"), left()));
+
+        assertThat(ids(), is(Arrays.asList("a", "c")));
+        assertThat(membership.getNode("a"), is(sameInstance(a)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotIsImmutable() {
+        membership.getNodes().clear();
+    }
+
+    private List<String> ids() {
+        List<String> ids = new ArrayList<String>();
+        for (ExecutorNode node : membership.getNodes()) {
+            ids.add(node.getID());
+        }
+        return ids;
+    }
+
+    private NodeMembershipDelta delta(long from, long to, boolean full, List<NodeSummary> joined, List<String> left) {
+        return new NodeMembershipDelta(from, to, full, joined, left);
+    }
+
+    private List<NodeSummary> joined(String... ids) {
+        List<NodeSummary> nodes = new ArrayList<NodeSummary>();
+        for (String id : ids) {
+            nodes.add(new NodeSummary(id, null, 2, 2, 0));
+        }
+        return nodes;
+    }
+
+    private List<String> left(String... ids) {
+        return ids.length == 0 ? Collections.<String>emptyList() : Arrays.asList(ids);
+    }
+}
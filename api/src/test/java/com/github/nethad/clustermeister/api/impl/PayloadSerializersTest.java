@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import java.io.Serializable;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import static org.hamcrest.Matchers.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class PayloadSerializersTest {
+    private final ClassLoader classLoader = getClass().getClassLoader();
+
+    @Test
+    public void compactRoundTrips() throws Exception {
+        PayloadSerializer serializer = PayloadSerializers.compact();
+        List<Object> list = new ArrayList<Object>(Arrays.asList("a", 1, null));
+        Map<Object, Object> map = new HashMap<Object, Object>();
+        map.put("key", 2L);
+        Object[] values = {null, "", "text é", 42, Long.MAX_VALUE, 1.5, true,
+            list, map, new IntCallable(7)};
+        for (Object value : values) {
+            assertThat(serializer.deserialize(serializer.serialize(value), classLoader), is(equalTo(value)));
+        }
+    }
+
+    @Test
+    public void compactRoundTripsArrays() throws Exception {
+        PayloadSerializer serializer = PayloadSerializers.compact();
+        byte[] bytes = {1, 2, 3};
+        int[] ints = {1, -2, Integer.MAX_VALUE};
+        long[] longs = {1L, Long.MIN_VALUE};
+        double[] doubles = {0.5, Double.NaN};
+        String[] strings = {"a", null, "b"};
+
+        assertArrayEquals(bytes, (byte[]) serializer.deserialize(serializer.serialize(bytes), classLoader));
+        assertArrayEquals(ints, (int[]) serializer.deserialize(serializer.serialize(ints), classLoader));
+        assertArrayEquals(longs, (long[]) serializer.deserialize(serializer.serialize(longs), classLoader));
+        assertArrayEquals(doubles, (double[]) serializer.deserialize(serializer.serialize(doubles), 
+                classLoader), 0);
+        assertArrayEquals(strings, (String[]) serializer.deserialize(serializer.serialize(strings), classLoader));
+    }
+
+    @Test
+    public void compactIsSmallerThanJava() throws Exception {
+        PayloadSerializer java = PayloadSerializers.java();
+        PayloadSerializer compact = PayloadSerializers.compact();
+
+        assertThat(compact.serialize("result").length, is(lessThan(java.serialize("result").length)));
+        assertThat(compact.serialize(new IntCallable(1)).length, 
+                is(lessThan(java.serialize(new IntCallable(1)).length)));
+    }
+
+    @Test
+    public void largePayloadsAreCompressed() throws Exception {
+        PayloadSerializer compact = PayloadSerializers.compact();
+        PayloadSerializer compressing = PayloadSerializers.compressing(compact, 1024);
+        double[] large = new double[10000];
+
+        byte[] bytes = compressing.serialize(large);
+
+        assertThat(bytes.length, is(lessThan(compact.serialize(large).length / 10)));
+        assertArrayEquals(large, (double[]) compressing.deserialize(bytes, classLoader), 0);
+        assertThat((String) compressing.deserialize(compressing.serialize("small"), classLoader), is("small"));
+    }
+
+    @Test
+    public void serializerIsReadFromConfiguration() {
+        assertThat(PayloadSerializers.fromConfiguration(null), is(nullValue()));
+        assertThat(PayloadSerializers.fromConfiguration(yaml("jvm_options:\n  node: -Xmx32m\n")), is(nullValue()));
+        assertThat(PayloadSerializers.fromConfiguration(yaml("serialization:\n  codec: compact\n")),
+                is(instanceOf(CompactPayloadSerializer.class)));
+        assertThat(PayloadSerializers.fromConfiguration(
+                yaml("serialization:\n  codec: java\n  compression_threshold: 100\n")),
+                is(instanceOf(CompressingPayloadSerializer.class)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownCodecIsRejected() {
+        PayloadSerializers.fromConfiguration(yaml("serialization:\n  codec: unknown\n"));
+    }
+
+    @Test
+    public void executorNodeTaskEncodesCallableAndResult() throws Exception {
+        ExecutorNodeTask<Integer> task = new ExecutorNodeTask<Integer>(new IntCallable(3), PayloadSerializers.compact());
+
+        task.run();
+
+        assertThat(task.getException(), is(nullValue()));
+        assertThat(task.getResult(), is(nullValue()));
+        assertThat((Integer) task.decodeResult(), is(3));
+    }
+
+    private YamlConfiguration yaml(String document) {
+        YamlConfiguration configuration = new YamlConfiguration();
+        configuration.load(new StringReader(document));
+        return configuration;
+    }
+
+    private static class IntCallable implements Callable<Integer>, Serializable {
+        private final int value;
+
+        IntCallable(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof IntCallable && ((IntCallable) obj).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import org.jppf.client.JPPFClient;
+import org.jppf.client.JPPFJob;
+import org.jppf.client.event.TaskResultEvent;
+import org.jppf.node.policy.OneOf;
+import org.jppf.server.protocol.JPPFTask;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class SpeculativeExecutionTest {
+    private static final long SUBMIT_TIME = 0;
+
+    private JPPFClient client;
+    private Job<Integer> job;
+    private FutureResultCollector<Integer> collector;
+    private SpeculativeExecution speculation;
+    private List<JPPFTask> tasks;
+
+    @Before
+    public void setup() throws Exception {
+        client = mock(JPPFClient.class);
+        job = JobFactory.create(null);
+        for (int i = 0; i < 4; i++) {
+            job.addTask(new ValueTask(i));
+        }
+        collector = job.resultCollector();
+        speculation = new SpeculativeExecution(client, job, collector, SUBMIT_TIME, 
+                MoreExecutors.sameThreadExecutor());
+        tasks = job.getJppfJob().getTasks();
+    }
+
+    @Test
+    public void noSpeculationBeforeMostTasksReturned() throws Exception {
+        receive(100, tasks.get(0), tasks.get(1));
+
+        speculation.check(10000);
+
+        verify(client, never()).submit(any(JPPFJob.class));
+    }
+
+    @Test
+    public void noSpeculationWithinStragglerFactor() throws Exception {
+        receive(1000, tasks.get(0), tasks.get(1), tasks.get(2));
+
+        speculation.check(2000);
+
+        verify(client, never()).submit(any(JPPFJob.class));
+    }
+
+    @Test
+    public void duplicateWinsAndCancelsOriginal() throws Exception {
+        receive(100, tasks.get(0), tasks.get(1), tasks.get(2));
+
+        speculation.check(5000);
+
+        JPPFJob duplicate = submittedJob();
+        assertThat(duplicate.getSLA().getExecutionPolicy(), is(instanceOf(OneOf.class)));
+        duplicate.getTasks().get(0).run();
+        duplicate.getResultListener().resultsReceived(event(duplicate.getTasks()));
+
+        assertThat(collector.getFutureList().get(3).get(), is(3));
+        assertThat(job.getSpeculationStatistics().getLaunches(), is(1));
+        assertThat(job.getSpeculationStatistics().getWins(), is(1));
+        verify(client).cancelJob(job.getJppfJob().getUuid());
+    }
+
+    @Test
+    public void originalWinsAndCancelsDuplicate() throws Exception {
+        receive(100, tasks.get(0), tasks.get(1), tasks.get(2));
+        speculation.check(5000);
+        JPPFJob duplicate = submittedJob();
+
+        receive(6000, tasks.get(3));
+        duplicate.getTasks().get(0).run();
+        duplicate.getResultListener().resultsReceived(event(duplicate.getTasks()));
+
+        assertThat(job.getSpeculationStatistics().getWins(), is(0));
+        verify(client).cancelJob(duplicate.getUuid());
+        verify(client, never()).cancelJob(job.getJppfJob().getUuid());
+    }
+
+    @Test
+    public void tasksAreDuplicatedOnce() throws Exception {
+        receive(100, tasks.get(0), tasks.get(1), tasks.get(2));
+
+        speculation.check(5000);
+        speculation.check(6000);
+
+        verify(client, times(1)).submit(any(JPPFJob.class));
+        verify(client, never()).cancelJob(anyString());
+    }
+
+    @Test
+    public void runningDuplicatesAreCancelledWhenTheDeadlinePasses() throws Exception {
+        receive(100, tasks.get(0), tasks.get(1), tasks.get(2));
+        speculation.check(5000);
+        JPPFJob duplicate = submittedJob();
+
+        ((SettableFuture<Integer>) collector.getFutureList().get(3)).setException(new TimeoutException());
+
+        verify(client).cancelJob(duplicate.getUuid());
+        verify(client, never()).cancelJob(job.getJppfJob().getUuid());
+    }
+
+    @Test
+    public void duplicateOnTheOriginalsNodeIsLaunchedAgain() throws Exception {
+        receive(100, tasks.get(0), tasks.get(1), tasks.get(2));
+        speculation.check(5000);
+        JPPFJob duplicate = submittedJob();
+
+        JPPFTask rejected = duplicate.getTasks().get(0);
+        Task.of(rejected).setExecutingNodeId("node-1");
+        rejected.setException(new OriginalTaskRunningException("3"));
+        duplicate.getResultListener().resultsReceived(event(duplicate.getTasks()));
+        speculation.check(6000);
+
+        assertThat(collector.getFutureList().get(3).isDone(), is(false));
+        verify(client, times(2)).submit(any(JPPFJob.class));
+    }
+
+    @Test
+    public void duplicateFailsOnTheNodeRunningItsOriginal() throws Exception {
+        receive(100, tasks.get(0), tasks.get(1), tasks.get(2));
+        speculation.check(5000);
+        JPPFTask duplicate = submittedJob().getTasks().get(0);
+        JPPFTask original = new BlockingTask(duplicate).getJppfTask();
+        Task.of(original).setSpeculationKey(Task.of(tasks.get(3)).getSpeculationKey());
+
+        original.run();
+
+        assertThat(duplicate.getException(), is(instanceOf(OriginalTaskRunningException.class)));
+    }
+
+    private void receive(long now, JPPFTask... received) {
+        List<JPPFTask> list = new ArrayList<JPPFTask>();
+        for (JPPFTask task : received) {
+            task.run();
+            Task.of(task).setExecutingNodeId("node-" + task.getPosition());
+            list.add(task);
+        }
+        speculation.onResults(list, now);
+        collector.resultsReceived(event(list));
+    }
+
+    private TaskResultEvent event(List<JPPFTask> list) {
+        TaskResultEvent event = mock(TaskResultEvent.class);
+        when(event.getTaskList()).thenReturn(Collections.unmodifiableList(list));
+        return event;
+    }
+
+    private JPPFJob submittedJob() throws Exception {
+        ArgumentCaptor<JPPFJob> captor = ArgumentCaptor.forClass(JPPFJob.class);
+        verify(client).submit(captor.capture());
+        return captor.getValue();
+    }
+
+    /**
+     * Runs the duplicate while executing, as if both ran on the same node.
+     */
+    private static class BlockingTask extends Task<Integer> {
+        private final JPPFTask duplicate;
+
+        BlockingTask(JPPFTask duplicate) {
+            this.duplicate = duplicate;
+        }
+
+        @Override
+        public Integer execute() throws Exception {
+            duplicate.run();
+            return 0;
+        }
+    }
+
+    private static class ValueTask extends Task<Integer> {
+        private final int value;
+
+        ValueTask(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public Integer execute() throws Exception {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.api.impl;
+
+import com.github.nethad.clustermeister.api.Clustermeister;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.jppf.server.protocol.JPPFTask;
+import static org.hamcrest.Matchers.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author thomas
+ */
+public class StreamingJobExecutorTest {
+    private Clustermeister clustermeister;
+    private List<Integer> subJobSizes;
+
+    @Before
+    public void setup() throws Exception {
+        clustermeister = mock(Clustermeister.class);
+        subJobSizes = new ArrayList<Integer>();
+        when(clustermeister.executeJobAsyncTasks(org.mockito.Matchers.any(Job.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                Job<Integer> job = (Job<Integer>) invocation.getArguments()[0];
+                List<JPPFTask> jppfTasks = job.getJppfJob().getTasks();
+                subJobSizes.add(jppfTasks.size());
+                List<ListenableFuture<Integer>> futures = new ArrayList<ListenableFuture<Integer>>();
+                for (JPPFTask jppfTask : jppfTasks) {
+                    jppfTask.run();
+                    if (jppfTask.getException() != null) {
+                        futures.add(Futures.<Integer>immediateFailedFuture(jppfTask.getException()));
+                    } else {
+                        futures.add(Futures.immediateFuture((Integer) jppfTask.getResult()));
+                    }
+                }
+                return futures;
+            }
+        });
+    }
+
+    @Test
+    public void resultsAreReturnedInOrder() {
+        StreamingJobExecutor<Integer> stream = new StreamingJobExecutor<Integer>(clustermeister, tasks(100, -1), 16);
+
+        int expected = 0;
+        while (stream.hasNext()) {
+            assertThat(stream.next(), is(expected));
+            expected++;
+        }
+        assertThat(expected, is(100));
+    }
+
+    @Test
+    public void inFlightTasksAreBoundedByWindow() {
+        StreamingJobExecutor<Integer> stream = new StreamingJobExecutor<Integer>(clustermeister, tasks(1000, -1), 16);
+
+        while (stream.hasNext()) {
+            assertThat(stream.getInFlightCount(), is(lessThanOrEqualTo(16)));
+            stream.next();
+        }
+        for (Integer subJobSize : subJobSizes) {
+            assertThat(subJobSize, is(lessThanOrEqualTo(16 / StreamingJobExecutor.SUB_JOBS_PER_WINDOW)));
+        }
+    }
+
+    @Test
+    public void inputIsConsumedLazily() {
+        Iterator<Task<Integer>> tasks = tasks(1000, -1);
+        StreamingJobExecutor<Integer> stream = new StreamingJobExecutor<Integer>(clustermeister, tasks, 8);
+
+        stream.next();
+
+        assertThat(tasks.hasNext(), is(true));
+        int submitted = 0;
+        for (Integer subJobSize : subJobSizes) {
+            submitted += subJobSize;
+        }
+        assertThat(submitted, is(lessThanOrEqualTo(9)));
+    }
+
+    @Test(expected = UncheckedExecutionException.class)
+    public void failedTaskThrows() {
+        StreamingJobExecutor<Integer> stream = new StreamingJobExecutor<Integer>(clustermeister, tasks(10, 3), 4);
+
+        for (int i = 0; i < 4; i++) {
+            stream.next();
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void exhaustedStreamThrows() {
+        StreamingJobExecutor<Integer> stream = new StreamingJobExecutor<Integer>(clustermeister, tasks(1, -1), 4);
+
+        stream.next();
+        stream.next();
+    }
+
+    private Iterator<Task<Integer>> tasks(final int count, final int failingIndex) {
+        return new Iterator<Task<Integer>>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public Task<Integer> next() {
+                return new IndexTask(index++, failingIndex);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static class IndexTask extends Task<Integer> {
+        private final int index;
+        private final int failingIndex;
+
+        IndexTask(int index, int failingIndex) {
+            this.index = index;
+            this.failingIndex = failingIndex;
+        }
+
+        @Override
+        public Integer execute() throws Exception {
+            if (index == failingIndex) {
+                throw new IllegalStateException("failure");
+            }
+            return index;
+        }
+    }
+}
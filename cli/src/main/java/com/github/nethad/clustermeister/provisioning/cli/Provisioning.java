@@ -17,6 +17,7 @@ package com.github.nethad.clustermeister.provisioning.cli;
 
 import com.github.nethad.clustermeister.api.Loggers;
 import com.github.nethad.clustermeister.api.impl.YamlConfiguration;
+import com.github.nethad.clustermeister.node.common.Constants;
 import com.github.nethad.clustermeister.provisioning.CommandLineArguments;
 import com.github.nethad.clustermeister.provisioning.CommandLineEvaluation;
 import com.github.nethad.clustermeister.provisioning.CommandLineHandle;
@@ -115,7 +116,11 @@ public class Provisioning {
         } catch (ConfigurationException ex) {
             throw new RuntimeException(ex);
         }
-        
+        String controlTransport = configuration.getString(ConfigurationKeys.CONTROL_TRANSPORT, null);
+        if (controlTransport != null) {
+            // picked up by the driver launcher
+            System.setProperty(Constants.CLUSTERMEISTER_CONTROL_TRANSPORT, controlTransport);
+        }
     }
     
     private void startRemoteLogging() {
@@ -133,19 +138,25 @@ public class Provisioning {
     }
 
     private void startAmazon() {
-        commandLineEvaluation = AmazonNodeManager.commandLineEvaluation(configuration, commandLineHandle, rmiInfrastructure);
+        // EC2 nodes are tunneled to the port the local driver actually got
+        jppfLocalDriver = new JPPFLocalDriver(configuration);
         startLocalDriver();
+        commandLineEvaluation = AmazonNodeManager.commandLineEvaluation(configuration, commandLineHandle, 
+                jppfLocalDriver, rmiInfrastructure);
     }
 
     private void startLocalDriver() {
-        jppfLocalDriver = new JPPFLocalDriver(configuration);
+        if (jppfLocalDriver == null) {
+            jppfLocalDriver = new JPPFLocalDriver(configuration);
+        }
         jppfLocalDriver.execute();
+        rmiInfrastructure.getRmiServerForApiObject().setDriverAddresses(jppfLocalDriver.getDriverAddresses());
     }
 
     private void startTorque() {
         jppfLocalDriver = new JPPFLocalDriver(configuration);
         commandLineEvaluation = TorqueNodeManager.commandLineEvaluation(configuration, commandLineHandle, jppfLocalDriver, rmiInfrastructure.getRmiServerForApiObject());
-        jppfLocalDriver.execute();
+        startLocalDriver();
     }
     
     private void startTestSetup() {
@@ -165,7 +176,9 @@ public class Provisioning {
     
     private void startLocalSetup() {
         logger.info("start local setup.");
-        commandLineEvaluation = LocalNodeManager.commandLineEvaluation(configuration, commandLineHandle, rmiInfrastructure.getRmiServerForApiObject());
+        jppfLocalDriver = new JPPFLocalDriver(configuration);
+        commandLineEvaluation = LocalNodeManager.commandLineEvaluation(configuration, commandLineHandle, 
+                jppfLocalDriver, rmiInfrastructure.getRmiServerForApiObject());
         startLocalDriver();
         jppfLocalDriver.update(null, "127.0.0.1");
     }
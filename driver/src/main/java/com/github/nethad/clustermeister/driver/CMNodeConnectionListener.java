@@ -15,32 +15,42 @@
  */
 package com.github.nethad.clustermeister.driver;
 
-import com.github.nethad.clustermeister.driver.rmi.IRmiServerForDriver;
+import com.github.nethad.clustermeister.driver.rmi.NodeEvent;
 import com.github.nethad.clustermeister.node.common.Constants;
-import java.rmi.AccessException;
-import java.rmi.NotBoundException;
-import java.rmi.Remote;
-import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
-import java.util.Arrays;
+import com.github.nethad.clustermeister.node.common.control.ControlEndpoint;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import org.jppf.management.JPPFManagementInfo;
-import org.jppf.management.JPPFSystemInformation;
 import org.jppf.server.event.NodeConnectionEvent;
 import org.jppf.server.event.NodeConnectionListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Forwards node (dis)connects to the provisioning server, through RMI or the control channel 
+ * as selected by {@link Constants#CLUSTERMEISTER_CONTROL_TRANSPORT}. The control channel is reached 
+ * on {@link Constants#CLUSTERMEISTER_CONTROL_PORT} with the secret of the local {@link ControlEndpoint}. 
+ * Events are queued and sent in batches by a {@link NodeEventQueue}, 
+ * so the driver's event thread never waits for RMI. The server is looked up again 
+ * after a failure by the {@link ProvisioningServerConnection}.
+ * The latest {@link NodeTelemetry} is forwarded every second by a {@link NodeTelemetryForwarder}, 
+ * telemetry is only accepted from connected nodes. The telemetry and {@link DriverJobMetrics} 
+ * of a disconnected node are dropped. 
+ * Peer drivers, e.g. a tier driver connected to the local driver, are not forwarded.
  *
  * @author thomas
  */
 public class CMNodeConnectionListener implements NodeConnectionListener  {
     private final Logger logger = LoggerFactory.getLogger(CMNodeConnectionListener.class);
     
-    private Registry registry;
-    private IRmiServerForDriver server;
-    private boolean successfulInit = false;
+    private ProvisioningServerConnection connection;
+    private NodeEventQueue eventQueue;
+    private ScheduledExecutorService telemetryScheduler;
 
     public CMNodeConnectionListener() {
         if (Boolean.parseBoolean(System.getProperty(
@@ -51,42 +61,75 @@ public class CMNodeConnectionListener implements NodeConnectionListener  {
     }
     
     private void initializeRmi() {
+        String transport = System.getProperty(Constants.CLUSTERMEISTER_CONTROL_TRANSPORT, 
+                Constants.CONTROL_TRANSPORT_RMI);
+        connection = new ProvisioningServerConnection(transport);
+        eventQueue = new NodeEventQueue(connection);
+        eventQueue.start();
+        registerMBean();
+        startTelemetryForwarder();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                shutdown();
+            }
+        }, "cm-node-connection-listener-shutdown"));
+    }
+    
+    /**
+     * Stops the event queue and the telemetry forwarder and closes the connection to the server.
+     */
+    void shutdown() {
+        eventQueue.stop();
+        telemetryScheduler.shutdownNow();
+        connection.close();
+    }
+    
+    private void registerMBean() {
         try {
-            registry = LocateRegistry.getRegistry("localhost", 61111);
-            server = (IRmiServerForDriver) registry.lookup(IRmiServerForDriver.NAME);
-            successfulInit = true;
-        } catch (NotBoundException ex) {
-            logger.error("", ex);
-        } catch (AccessException ex) {
-            logger.error("", ex);
-        } catch (RemoteException ex) {
-            logger.error("", ex);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    eventQueue, new ObjectName(NodeEventQueueMBean.MBEAN_NAME));
+        } catch (JMException ex) {
+            logger.warn("Could not register node event queue MBean.", ex);
         }
     }
 
+    private void startTelemetryForwarder() {
+        telemetryScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "cm-telemetry-forwarder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        telemetryScheduler.scheduleWithFixedDelay(new NodeTelemetryForwarder(connection, NodeTelemetry.getInstance()), 
+                NodeTelemetryForwarder.INTERVAL, NodeTelemetryForwarder.INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public void nodeConnected(NodeConnectionEvent event) {
-        if (successfulInit && server != null) {
-            JPPFManagementInfo nodeInformation = event.getNodeInformation();
-            JPPFSystemInformation systemInformation = nodeInformation.getSystemInfo();
-            try {
-                server.onNodeConnected(nodeInformation, systemInformation);
-            } catch (RemoteException ex) {
-                logger.error("Could not send node disconnected message to server.", ex);
-            }
+        JPPFManagementInfo nodeInformation = event.getNodeInformation();
+        if (!isPeerDriver(nodeInformation)) {
+            NodeTelemetry.getInstance().nodeConnected(nodeInformation.getId(), nodeInformation.getHost());
+        }
+        if (eventQueue != null && !isPeerDriver(nodeInformation)) {
+            eventQueue.add(NodeEvent.connected(nodeInformation, nodeInformation.getSystemInfo()));
         }
     }
 
     @Override
     public void nodeDisconnected(NodeConnectionEvent event) {
-        if (successfulInit && server != null) {
-            try {
-                server.onNodeDisconnected(event.getNodeInformation());
-            } catch (RemoteException ex) {
-                logger.error("Could not send node disconnected message to server.", ex);
-            }
+        JPPFManagementInfo nodeInformation = event.getNodeInformation();
+        NodeTelemetry.getInstance().remove(nodeInformation.getId());
+        DriverJobMetrics.getInstance().nodeDisconnected(nodeInformation.getId());
+        if (eventQueue != null && !isPeerDriver(nodeInformation)) {
+            eventQueue.add(NodeEvent.disconnected(nodeInformation));
         }
-        
+    }
+
+    private boolean isPeerDriver(JPPFManagementInfo nodeInformation) {
+        return nodeInformation.getType() == JPPFManagementInfo.DRIVER;
     }
 
 }
@@ -18,13 +18,22 @@ package com.github.nethad.clustermeister.driver;
 import com.github.nethad.clustermeister.node.common.Constants;
 import com.github.nethad.clustermeister.node.common.MBeanUtils;
 import com.github.nethad.clustermeister.node.common.ShutdownHandler;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import org.jppf.server.JPPFDriver;
 import org.jppf.server.job.management.DriverJobManagementMBean;
 import org.jppf.startup.JPPFDriverStartupSPI;
+import org.jppf.utils.JPPFConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +47,12 @@ public class ClustermeisterDriverStartUp implements JPPFDriverStartupSPI {
     protected final static Logger logger =
             LoggerFactory.getLogger(ClustermeisterDriverStartUp.class);
     
+    private static final String METRICS_CSV = "driver-metrics.csv";
+    private static final String METRICS_CSV_PER_PORT = "driver-metrics-%d.csv";
+    private static final int DEFAULT_SERVER_PORT = 11111;
+    private static final long METRICS_CSV_INTERVAL = 60;
+    private static final long METRICS_CSV_MAX_BYTES = 10 * 1024 * 1024;
+    
     @Override
     public void run() {
         printUUIDToSystemOut();
@@ -52,11 +67,70 @@ public class ClustermeisterDriverStartUp implements JPPFDriverStartupSPI {
             logger.info("System.in shutdown command handler started.");
         }
         
+        DriverJobMetrics metrics = DriverJobMetrics.getInstance();
+        registerMetrics(metrics);
         JPPFDriver.getInstance().getJobManager().addJobListener(
                 new DriverJobListener(ManagementFactory.getPlatformMBeanServer(),
-                MBeanUtils.objectNameFor(logger, DriverJobManagementMBean.MBEAN_NAME)));
+                MBeanUtils.objectNameFor(logger, DriverJobManagementMBean.MBEAN_NAME), metrics));
         logger.info("Job listener registered.");
         
+        startTelemetryReceiver();
+    }
+
+    /**
+     * Start receiving node telemetry and register the telemetry MBean.
+     */
+    protected void startTelemetryReceiver() {
+        int port = Integer.getInteger(Constants.CLUSTERMEISTER_TELEMETRY_PORT, 
+                JPPFConfiguration.getProperties().getInt("jppf.server.port", DEFAULT_SERVER_PORT) 
+                + Constants.TELEMETRY_PORT_OFFSET);
+        NodeTelemetry telemetry = NodeTelemetry.getInstance();
+        try {
+            new NodeTelemetryReceiver(port, telemetry).start();
+            logger.info("Receiving node telemetry on TCP port {}.", port);
+        } catch (IOException ex) {
+            logger.warn("Could not receive node telemetry on TCP port {}.", port, ex);
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    telemetry, new ObjectName(NodeTelemetryMBean.MBEAN_NAME));
+        } catch (JMException ex) {
+            logger.warn("Could not register node telemetry MBean.", ex);
+        }
+    }
+
+    /**
+     * Register the metrics MBean and schedule writing the metrics to a CSV file.
+     * 
+     * @param metrics the metrics.
+     */
+    protected void registerMetrics(DriverJobMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    metrics, new ObjectName(DriverMetricsMBean.MBEAN_NAME));
+        } catch (JMException ex) {
+            logger.warn("Could not register driver metrics MBean.", ex);
+        }
+        long interval = Long.getLong(Constants.CLUSTERMEISTER_METRICS_CSV_INTERVAL, METRICS_CSV_INTERVAL);
+        if (interval > 0) {
+            // several local drivers share a working directory
+            int serverPort = JPPFConfiguration.getProperties().getInt("jppf.server.port", DEFAULT_SERVER_PORT);
+            String defaultFile = serverPort == DEFAULT_SERVER_PORT ? METRICS_CSV 
+                    : String.format(METRICS_CSV_PER_PORT, serverPort);
+            File file = new File(System.getProperty(Constants.CLUSTERMEISTER_METRICS_CSV, defaultFile));
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "cm-metrics-csv");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduler.scheduleWithFixedDelay(new MetricsCsvWriter(metrics, file, METRICS_CSV_MAX_BYTES), 
+                    interval, interval, TimeUnit.SECONDS);
+            logger.info("Writing driver metrics to {} every {} s.", file, interval);
+        }
     }
 
     /**
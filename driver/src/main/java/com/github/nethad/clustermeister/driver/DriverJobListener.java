@@ -27,6 +27,9 @@ import org.slf4j.LoggerFactory;
 /**
  * Utility class to listen to job life-cycle events.
  * 
+ * Records every event in {@link DriverJobMetrics} and cancels jobs 
+ * carrying a shutdown or restart marker once they returned.
+ * 
  * @author daniel
  */
 public class DriverJobListener implements JobListener {
@@ -41,6 +44,10 @@ public class DriverJobListener implements JobListener {
      * Name of the job management MBean.
      */
     protected final ObjectName jobManagementName;
+    /**
+     * The metrics job events are recorded in.
+     */
+    protected final DriverJobMetrics metrics;
 
     /**
      * Creates a new job listener.
@@ -49,18 +56,31 @@ public class DriverJobListener implements JobListener {
      * @param jobManagementName the name of the job management MBean.
      */
     public DriverJobListener(MBeanServer mBeanServer, ObjectName jobManagementName) {
+        this(mBeanServer, jobManagementName, DriverJobMetrics.getInstance());
+    }
+
+    /**
+     * Creates a new job listener.
+     *
+     * @param mBeanServer the MBean server to use.
+     * @param jobManagementName the name of the job management MBean.
+     * @param metrics the metrics to record job events in.
+     */
+    public DriverJobListener(MBeanServer mBeanServer, ObjectName jobManagementName, 
+            DriverJobMetrics metrics) {
         this.mBeanServer = mBeanServer;
         this.jobManagementName = jobManagementName;
+        this.metrics = metrics;
     }
 
     @Override
     public void jobQueued(JobNotification event) {
-        //nop
+        metrics.jobQueued(event.getJobInformation().getJobUuid(), System.currentTimeMillis());
     }
 
     @Override
     public void jobEnded(JobNotification event) {
-        //nop
+        metrics.jobEnded(event.getJobInformation().getJobUuid(), System.currentTimeMillis());
     }
 
     @Override
@@ -70,11 +90,18 @@ public class DriverJobListener implements JobListener {
 
     @Override
     public void jobDispatched(JobNotification event) {
-        //nop
+        if (event.getNodeInfo() != null) {
+            metrics.bundleDispatched(event.getJobInformation().getJobUuid(), event.getNodeInfo().getId(), 
+                    event.getJobInformation().getTaskCount(), System.currentTimeMillis());
+        }
     }
 
     @Override
     public void jobReturned(JobNotification event) {
+        if (event.getNodeInfo() != null) {
+            metrics.bundleReturned(event.getJobInformation().getJobUuid(), event.getNodeInfo().getId(), 
+                    System.currentTimeMillis());
+        }
         if (containsMarker(event, Constants.JOB_MARKER_SHUTDOWN) || 
                 containsMarker(event, Constants.JOB_MARKER_RESTART)) {
             MBeanUtils.invoke(logger, mBeanServer, jobManagementName, "cancelJob", 
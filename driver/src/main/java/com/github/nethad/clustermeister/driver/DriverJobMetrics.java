@@ -0,0 +1,375 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+import com.github.nethad.clustermeister.node.common.Histogram;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records queue wait, dispatch-to-return latency, bundle sizes and throughput of jobs, 
+ * overall and per node. All state is kept in concurrent maps, atomic counters 
+ * and {@link Histogram}s, so recording never blocks the driver. 
+ * The last {@link #RECENT_JOBS} ended jobs are kept for a per-job view, 
+ * the metrics of a node are dropped when it disconnects. 
+ * Outstanding bundles are indexed by job and by node, so ending a job 
+ * or disconnecting a node only touches its own bundles.
+ *
+ * @author daniel
+ */
+public class DriverJobMetrics implements DriverMetricsMBean {
+    
+    static final int RECENT_JOBS = 100;
+    
+    private static final DriverJobMetrics INSTANCE = new DriverJobMetrics();
+    
+    private final long startTime;
+    private final ConcurrentMap<String, JobState> jobs = new ConcurrentHashMap<String, JobState>();
+    private final ConcurrentMap<String, ConcurrentMap<String, Dispatch>> dispatchesByJob = 
+            new ConcurrentHashMap<String, ConcurrentMap<String, Dispatch>>();
+    private final ConcurrentMap<String, Set<String>> jobsByNode = new ConcurrentHashMap<String, Set<String>>();
+    private final ConcurrentMap<String, NodeMetrics> nodes = new ConcurrentHashMap<String, NodeMetrics>();
+    private final Histogram queueWait = new Histogram();
+    private final Histogram dispatchLatency = new Histogram();
+    private final Histogram bundleSize = new Histogram();
+    private final AtomicLong jobsQueued = new AtomicLong();
+    private final AtomicLong jobsEnded = new AtomicLong();
+    private final AtomicLong tasksReturned = new AtomicLong();
+    private final Deque<JobState> recentJobs = new ArrayDeque<JobState>();
+
+    /**
+     * @return the metrics of this driver.
+     */
+    public static DriverJobMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public DriverJobMetrics() {
+        this(System.currentTimeMillis());
+    }
+
+    DriverJobMetrics(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public void jobQueued(String jobUuid, long now) {
+        if (jobs.putIfAbsent(jobUuid, new JobState(jobUuid, now)) == null) {
+            jobsQueued.incrementAndGet();
+        }
+    }
+
+    public void bundleDispatched(String jobUuid, String nodeId, int tasks, long now) {
+        JobState job = jobs.get(jobUuid);
+        if (job != null) {
+            if (job.firstDispatch.compareAndSet(0, now)) {
+                queueWait.record(now - job.queuedAt);
+            }
+            job.bundles.incrementAndGet();
+        }
+        dispatchesOf(jobUuid).put(nodeId, new Dispatch(now, tasks));
+        jobsOf(nodeId).add(jobUuid);
+        bundleSize.record(tasks);
+    }
+
+    public void bundleReturned(String jobUuid, String nodeId, long now) {
+        ConcurrentMap<String, Dispatch> jobDispatches = dispatchesByJob.get(jobUuid);
+        Dispatch dispatch = jobDispatches == null ? null : jobDispatches.remove(nodeId);
+        if (dispatch == null) {
+            return;
+        }
+        Set<String> nodeJobs = jobsByNode.get(nodeId);
+        if (nodeJobs != null) {
+            nodeJobs.remove(jobUuid);
+        }
+        long latency = now - dispatch.time;
+        dispatchLatency.record(latency);
+        tasksReturned.addAndGet(dispatch.tasks);
+        JobState job = jobs.get(jobUuid);
+        if (job != null) {
+            job.tasksReturned.addAndGet(dispatch.tasks);
+        }
+        NodeMetrics node = nodes.get(nodeId);
+        if (node == null) {
+            NodeMetrics created = new NodeMetrics(nodeId, dispatch.time);
+            node = nodes.putIfAbsent(nodeId, created);
+            if (node == null) {
+                node = created;
+            }
+        }
+        node.record(latency, dispatch.tasks);
+    }
+
+    public void jobEnded(String jobUuid, long now) {
+        JobState job = jobs.remove(jobUuid);
+        if (job != null) {
+            jobsEnded.incrementAndGet();
+            job.endedAt = now;
+            synchronized (recentJobs) {
+                recentJobs.addFirst(job);
+                if (recentJobs.size() > RECENT_JOBS) {
+                    recentJobs.removeLast();
+                }
+            }
+        }
+        // bundles of cancelled jobs may never return
+        ConcurrentMap<String, Dispatch> jobDispatches = dispatchesByJob.remove(jobUuid);
+        if (jobDispatches != null) {
+            for (String nodeId : jobDispatches.keySet()) {
+                Set<String> nodeJobs = jobsByNode.get(nodeId);
+                if (nodeJobs != null) {
+                    nodeJobs.remove(jobUuid);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the metrics of a node and its outstanding bundles.
+     * 
+     * @param nodeId the ID of the disconnected node.
+     */
+    public void nodeDisconnected(String nodeId) {
+        nodes.remove(nodeId);
+        Set<String> nodeJobs = jobsByNode.remove(nodeId);
+        if (nodeJobs != null) {
+            for (String jobUuid : nodeJobs) {
+                ConcurrentMap<String, Dispatch> jobDispatches = dispatchesByJob.get(jobUuid);
+                if (jobDispatches != null) {
+                    jobDispatches.remove(nodeId);
+                }
+            }
+        }
+    }
+
+    private ConcurrentMap<String, Dispatch> dispatchesOf(String jobUuid) {
+        ConcurrentMap<String, Dispatch> jobDispatches = dispatchesByJob.get(jobUuid);
+        if (jobDispatches == null) {
+            ConcurrentMap<String, Dispatch> created = new ConcurrentHashMap<String, Dispatch>();
+            jobDispatches = dispatchesByJob.putIfAbsent(jobUuid, created);
+            if (jobDispatches == null) {
+                jobDispatches = created;
+            }
+        }
+        return jobDispatches;
+    }
+
+    private Set<String> jobsOf(String nodeId) {
+        Set<String> nodeJobs = jobsByNode.get(nodeId);
+        if (nodeJobs == null) {
+            Set<String> created = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            nodeJobs = jobsByNode.putIfAbsent(nodeId, created);
+            if (nodeJobs == null) {
+                nodeJobs = created;
+            }
+        }
+        return nodeJobs;
+    }
+
+    /**
+     * @return the number of outstanding bundles.
+     */
+    int getOutstandingBundles() {
+        int outstanding = 0;
+        for (Map<String, Dispatch> jobDispatches : dispatchesByJob.values()) {
+            outstanding += jobDispatches.size();
+        }
+        return outstanding;
+    }
+
+    Histogram getQueueWait() {
+        return queueWait;
+    }
+
+    Histogram getDispatchLatency() {
+        return dispatchLatency;
+    }
+
+    Histogram getBundleSize() {
+        return bundleSize;
+    }
+
+    /**
+     * @return the metrics of all nodes that returned a bundle, by node ID.
+     */
+    Map<String, NodeMetrics> getNodes() {
+        return Collections.unmodifiableMap(nodes);
+    }
+
+    @Override
+    public long getJobsQueued() {
+        return jobsQueued.get();
+    }
+
+    @Override
+    public long getJobsEnded() {
+        return jobsEnded.get();
+    }
+
+    @Override
+    public long getBundlesReturned() {
+        return dispatchLatency.getCount();
+    }
+
+    @Override
+    public long getTasksReturned() {
+        return tasksReturned.get();
+    }
+
+    @Override
+    public double getThroughput() {
+        return tasksReturned.get() * 1000.0 / Math.max(1, System.currentTimeMillis() - startTime);
+    }
+
+    @Override
+    public long getQueueWaitMedian() {
+        return queueWait.getPercentile(50);
+    }
+
+    @Override
+    public long getQueueWait99thPercentile() {
+        return queueWait.getPercentile(99);
+    }
+
+    @Override
+    public long getQueueWaitMax() {
+        return queueWait.getMax();
+    }
+
+    @Override
+    public long getDispatchLatencyMedian() {
+        return dispatchLatency.getPercentile(50);
+    }
+
+    @Override
+    public long getDispatchLatency99thPercentile() {
+        return dispatchLatency.getPercentile(99);
+    }
+
+    @Override
+    public long getDispatchLatencyMax() {
+        return dispatchLatency.getMax();
+    }
+
+    @Override
+    public double getBundleSizeMean() {
+        return bundleSize.getMean();
+    }
+
+    @Override
+    public long getBundleSizeMax() {
+        return bundleSize.getMax();
+    }
+
+    @Override
+    public String[] getNodeStatistics() {
+        List<String> statistics = new ArrayList<String>();
+        long now = System.currentTimeMillis();
+        for (NodeMetrics node : nodes.values()) {
+            statistics.add(String.format("%s bundles=%d tasks=%d latency p50=%dms p99=%dms max=%dms throughput=%.1f/s", 
+                    node.getNodeId(), node.getLatency().getCount(), node.getTasks(), 
+                    node.getLatency().getPercentile(50), node.getLatency().getPercentile(99), 
+                    node.getLatency().getMax(), node.getThroughput(now)));
+        }
+        Collections.sort(statistics);
+        return statistics.toArray(new String[statistics.size()]);
+    }
+
+    @Override
+    public String[] getRecentJobs() {
+        List<String> statistics = new ArrayList<String>();
+        synchronized (recentJobs) {
+            for (JobState job : recentJobs) {
+                long firstDispatch = job.firstDispatch.get();
+                statistics.add(String.format("%s queued=%d wait=%dms duration=%dms bundles=%d tasks=%d", 
+                        job.jobUuid, job.queuedAt, 
+                        firstDispatch == 0 ? -1 : firstDispatch - job.queuedAt, 
+                        job.endedAt - job.queuedAt, job.bundles.get(), job.tasksReturned.get()));
+            }
+        }
+        return statistics.toArray(new String[statistics.size()]);
+    }
+
+    private static class JobState {
+        private final String jobUuid;
+        private final long queuedAt;
+        private final AtomicLong firstDispatch = new AtomicLong();
+        private final AtomicLong bundles = new AtomicLong();
+        private final AtomicLong tasksReturned = new AtomicLong();
+        private volatile long endedAt;
+
+        JobState(String jobUuid, long queuedAt) {
+            this.jobUuid = jobUuid;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    private static class Dispatch {
+        private final long time;
+        private final int tasks;
+
+        Dispatch(long time, int tasks) {
+            this.time = time;
+            this.tasks = tasks;
+        }
+    }
+
+    /**
+     * Dispatch latency and returned tasks of one node.
+     */
+    static class NodeMetrics {
+        private final String nodeId;
+        private final long firstDispatch;
+        private final Histogram latency = new Histogram();
+        private final AtomicLong tasks = new AtomicLong();
+
+        NodeMetrics(String nodeId, long firstDispatch) {
+            this.nodeId = nodeId;
+            this.firstDispatch = firstDispatch;
+        }
+
+        void record(long latency, int tasks) {
+            this.latency.record(latency);
+            this.tasks.addAndGet(tasks);
+        }
+
+        String getNodeId() {
+            return nodeId;
+        }
+
+        Histogram getLatency() {
+            return latency;
+        }
+
+        long getTasks() {
+            return tasks.get();
+        }
+
+        /**
+         * @return the returned tasks per second since the node's first dispatch.
+         */
+        double getThroughput(long now) {
+            return tasks.get() * 1000.0 / Math.max(1, now - firstDispatch);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+/**
+ * Job and task metrics of the driver, recorded by {@link DriverJobListener}. 
+ * Times are in milliseconds.
+ *
+ * @author daniel
+ */
+public interface DriverMetricsMBean {
+    
+    public static final String MBEAN_NAME = "com.github.nethad.clustermeister:name=DriverMetrics,type=driver";
+
+    public long getJobsQueued();
+
+    public long getJobsEnded();
+
+    public long getBundlesReturned();
+
+    public long getTasksReturned();
+
+    /**
+     * @return the returned tasks per second since the driver started.
+     */
+    public double getThroughput();
+
+    /**
+     * @return the time from queuing a job to its first dispatch, 50th percentile.
+     */
+    public long getQueueWaitMedian();
+
+    public long getQueueWait99thPercentile();
+
+    public long getQueueWaitMax();
+
+    /**
+     * @return the time from dispatching a bundle to a node to its return, 50th percentile.
+     */
+    public long getDispatchLatencyMedian();
+
+    public long getDispatchLatency99thPercentile();
+
+    public long getDispatchLatencyMax();
+
+    public double getBundleSizeMean();
+
+    public long getBundleSizeMax();
+
+    /**
+     * @return one line of bundles, tasks, latency percentiles and throughput per node.
+     */
+    public String[] getNodeStatistics();
+
+    /**
+     * @return one line of queue wait, duration, bundles and returned tasks per recently ended job, 
+     *      the latest first. A wait of -1 means the job was never dispatched.
+     */
+    public String[] getRecentJobs();
+}
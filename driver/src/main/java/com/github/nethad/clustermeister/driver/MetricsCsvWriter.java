@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+import com.github.nethad.clustermeister.driver.DriverJobMetrics.NodeMetrics;
+import com.github.nethad.clustermeister.node.common.Histogram;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends the current {@link DriverJobMetrics} to a CSV file each time it runs, 
+ * one row for the whole driver and one per node. 
+ * Throughput is measured over the interval since the previous run. 
+ * The driver row has the scope {@link #SCOPE_DRIVER}, which no node ID takes. 
+ * When the file exceeds its size limit it is renamed with the suffix {@code .1}, 
+ * replacing the previous one, and a new file is started.
+ *
+ * @author daniel
+ */
+public class MetricsCsvWriter implements Runnable {
+    private final static Logger logger = LoggerFactory.getLogger(MetricsCsvWriter.class);
+    
+    static final String HEADER = "timestamp,scope,jobs_queued,jobs_ended,bundles,tasks,tasks_per_second,"
+            + "queue_wait_p50,queue_wait_p99,queue_wait_max,latency_p50,latency_p99,latency_max,"
+            + "bundle_size_mean,bundle_size_max";
+    static final String SCOPE_DRIVER = "<driver>";
+    
+    private final DriverJobMetrics metrics;
+    private final File file;
+    private final long maxBytes;
+    private final Map<NodeMetrics, Long> previousNodeTasks = new HashMap<NodeMetrics, Long>();
+    private long previousTasks = 0;
+    private long previousTime;
+
+    /**
+     * @param metrics the metrics to write.
+     * @param file the CSV file.
+     * @param maxBytes the size at which the file is rolled over.
+     */
+    public MetricsCsvWriter(DriverJobMetrics metrics, File file, long maxBytes) {
+        this.metrics = metrics;
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.previousTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public void run() {
+        try {
+            write(System.currentTimeMillis());
+        } catch (IOException ex) {
+            logger.warn("Could not write metrics to {}.", file, ex);
+        }
+    }
+
+    synchronized void write(long now) throws IOException {
+        rollIfNecessary();
+        boolean newFile = !file.exists() || file.length() == 0;
+        Writer writer = new FileWriter(file, true);
+        try {
+            if (newFile) {
+                writer.write(HEADER);
+                writer.write('\n');
+            }
+            long interval = Math.max(1, now - previousTime);
+            long tasks = metrics.getTasksReturned();
+            writer.write(row(now, SCOPE_DRIVER, 
+                    metrics.getJobsQueued() + "," + metrics.getJobsEnded(), 
+                    tasks, previousTasks, interval, metrics.getQueueWait(), 
+                    metrics.getDispatchLatency(), metrics.getBundleSize()));
+            previousTasks = tasks;
+            Collection<NodeMetrics> nodes = metrics.getNodes().values();
+            // disconnected nodes are dropped, a reconnected node starts over
+            previousNodeTasks.keySet().retainAll(nodes);
+            for (NodeMetrics node : nodes) {
+                long nodeTasks = node.getTasks();
+                Long previous = previousNodeTasks.put(node, nodeTasks);
+                writer.write(row(now, node.getNodeId(), ",", nodeTasks, previous == null ? 0 : previous, 
+                        interval, null, node.getLatency(), null));
+            }
+        } finally {
+            writer.close();
+        }
+        previousTime = now;
+    }
+
+    private String row(long now, String scope, String jobs, long tasks, long previousTasks, long interval, 
+            Histogram queueWait, Histogram latency, Histogram bundleSize) {
+        double tasksPerSecond = (tasks - previousTasks) * 1000.0 / interval;
+        StringBuilder row = new StringBuilder();
+        row.append(now).append(',').append(scope).append(',').append(jobs).append(',')
+                .append(latency.getCount()).append(',').append(tasks).append(',')
+                .append(String.format(Locale.ENGLISH, "%.2f", tasksPerSecond)).append(',');
+        appendPercentiles(row, queueWait).append(',');
+        appendPercentiles(row, latency).append(',');
+        if (bundleSize != null) {
+            row.append(String.format(Locale.ENGLISH, "%.2f", bundleSize.getMean())).append(',').append(bundleSize.getMax());
+        } else {
+            row.append(',');
+        }
+        return row.append('\n').toString();
+    }
+
+    private StringBuilder appendPercentiles(StringBuilder row, Histogram histogram) {
+        if (histogram == null) {
+            return row.append(",,");
+        }
+        return row.append(histogram.getPercentile(50)).append(',')
+                .append(histogram.getPercentile(99)).append(',').append(histogram.getMax());
+    }
+
+    private void rollIfNecessary() {
+        if (file.length() < maxBytes) {
+            return;
+        }
+        File rolled = new File(file.getPath() + ".1");
+        if (rolled.exists() && !rolled.delete()) {
+            logger.warn("Could not delete {}.", rolled);
+        }
+        if (!file.renameTo(rolled)) {
+            logger.warn("Could not roll {} over.", file);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+import com.github.nethad.clustermeister.driver.rmi.IRmiServerForDriver;
+import com.github.nethad.clustermeister.driver.rmi.NodeEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends node events to the provisioning server in batches, off the driver's event thread.
+ * 
+ * A single sender thread waits for an event, lets a burst accumulate for {@link #BATCH_INTERVAL} 
+ * milliseconds and sends everything queued so far with one RMI call. A batch that can not be sent 
+ * is retried, with a delay doubling from {@link #MIN_RETRY_DELAY} up to {@link #MAX_RETRY_DELAY}, 
+ * before any later event, so that the provisioning server sees the events in order. 
+ * After a failure the {@link ProvisioningServerConnection} is reset and the server looked up again. 
+ * The queue is bounded and never blocks the driver, when it is full the oldest event is dropped.
+ *
+ * @author thomas
+ */
+public class NodeEventQueue implements NodeEventQueueMBean {
+    
+    static final int CAPACITY = 10000;
+    static final int MAX_BATCH_SIZE = 1000;
+    static final long BATCH_INTERVAL = 5;
+    static final long MIN_RETRY_DELAY = 100;
+    static final long MAX_RETRY_DELAY = 10000;
+    
+    private final Logger logger = LoggerFactory.getLogger(NodeEventQueue.class);
+    
+    private final ProvisioningServerConnection connection;
+    private final BlockingQueue<NodeEvent> queue = new ArrayBlockingQueue<NodeEvent>(CAPACITY);
+    private final Thread sender;
+    private volatile long lag = 0;
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong eventsSent = new AtomicLong();
+    private final AtomicLong eventsFailed = new AtomicLong();
+    private final AtomicLong eventsDropped = new AtomicLong();
+
+    public NodeEventQueue(ProvisioningServerConnection connection) {
+        this.connection = connection;
+        sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sendBatches();
+            }
+        }, "cm-node-event-sender");
+        sender.setDaemon(true);
+    }
+    
+    public void start() {
+        sender.start();
+    }
+    
+    public void stop() {
+        sender.interrupt();
+    }
+
+    /**
+     * Queues an event, drops the oldest queued event if the queue is full.
+     * @param event the event.
+     */
+    public void add(NodeEvent event) {
+        while (!queue.offer(event)) {
+            NodeEvent dropped = queue.poll();
+            if (dropped != null && eventsDropped.getAndIncrement() % CAPACITY == 0) {
+                logger.warn("Node event queue is full ({} events), dropping the oldest events.", CAPACITY);
+            }
+        }
+    }
+
+    private void sendBatches() {
+        List<NodeEvent> batch = new ArrayList<NodeEvent>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                Thread.sleep(BATCH_INTERVAL);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                send(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException ex) {
+            logger.info("Node event sender stopped with {} events queued.", queue.size() + batch.size());
+        }
+    }
+
+    private void send(List<NodeEvent> batch) throws InterruptedException {
+        long retryDelay = MIN_RETRY_DELAY;
+        while (true) {
+            lag = System.currentTimeMillis() - batch.get(0).getTimestamp();
+            IRmiServerForDriver server = null;
+            try {
+                server = connection.get();
+                server.onNodeEvents(batch);
+                batchesSent.incrementAndGet();
+                eventsSent.addAndGet(batch.size());
+                return;
+            } catch (IOException ex) {
+                failed(batch, retryDelay, ex);
+                connection.reset(server);
+            } catch (RuntimeException ex) {
+                failed(batch, retryDelay, ex);
+                connection.reset(server);
+            }
+            Thread.sleep(retryDelay);
+            retryDelay = Math.min(MAX_RETRY_DELAY, retryDelay * 2);
+        }
+    }
+
+    private void failed(List<NodeEvent> batch, long retryDelay, Exception ex) {
+        logger.error("Could not send " + batch.size() + " node events to server, retrying in " 
+                + retryDelay + " ms.", ex);
+        eventsFailed.addAndGet(batch.size());
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public long getLag() {
+        return lag;
+    }
+
+    @Override
+    public long getBatchesSent() {
+        return batchesSent.get();
+    }
+
+    @Override
+    public long getEventsSent() {
+        return eventsSent.get();
+    }
+
+    @Override
+    public long getEventsFailed() {
+        return eventsFailed.get();
+    }
+
+    @Override
+    public long getEventsDropped() {
+        return eventsDropped.get();
+    }
+}
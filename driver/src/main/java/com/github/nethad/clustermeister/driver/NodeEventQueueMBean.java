@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+/**
+ * Metrics of the {@link NodeEventQueue}.
+ *
+ * @author thomas
+ */
+public interface NodeEventQueueMBean {
+    
+    public static final String MBEAN_NAME = "com.github.nethad.clustermeister:name=NodeEventQueue,type=driver";
+
+    /**
+     * @return the number of events waiting to be sent.
+     */
+    public int getQueueDepth();
+
+    /**
+     * @return the age of the oldest event of the last batch when it was sent, in milliseconds.
+     */
+    public long getLag();
+
+    public long getBatchesSent();
+
+    public long getEventsSent();
+
+    /**
+     * @return the number of events in batches that could not be sent and were retried.
+     */
+    public long getEventsFailed();
+
+    /**
+     * @return the number of events dropped because the queue was full.
+     */
+    public long getEventsDropped();
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the latest telemetry sample of every connected node, for the load balancers of the driver 
+ * and to be forwarded to the provisioning server.
+ * 
+ * Only samples of nodes the driver reported as connected are kept. A sample older than the kept 
+ * one by the node's clock is ignored. Samples of nodes the driver received nothing from for 
+ * {@link #STALE_AFTER} milliseconds, by the driver's clock, are dropped.
+ *
+ * @author daniel
+ */
+public class NodeTelemetry implements NodeTelemetryMBean {
+    
+    static final long STALE_AFTER = 60000;
+    
+    private static final NodeTelemetry INSTANCE = new NodeTelemetry();
+    
+    private final ConcurrentMap<String, String> connectedNodes = new ConcurrentHashMap<String, String>();
+    private final ConcurrentMap<String, Received> samples = new ConcurrentHashMap<String, Received>();
+    private final Set<String> updated = 
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicLong samplesReceived = new AtomicLong();
+    private final AtomicLong samplesRejected = new AtomicLong();
+
+    /**
+     * @return the telemetry of this driver.
+     */
+    public static NodeTelemetry getInstance() {
+        return INSTANCE;
+    }
+    
+    NodeTelemetry() {
+    }
+    
+    /**
+     * @param nodeId the UUID of a node that connected to the driver.
+     * @param host the management host of the node.
+     */
+    public void nodeConnected(String nodeId, String host) {
+        connectedNodes.put(nodeId, host);
+    }
+    
+    /**
+     * @param nodeId the UUID of a node.
+     * @return the management host of the node, or null if it is not connected.
+     */
+    public String getHost(String nodeId) {
+        return connectedNodes.get(nodeId);
+    }
+    
+    /**
+     * @param sample a sample received from a node.
+     * @return false if the node is not connected and the sample was rejected.
+     */
+    public boolean update(NodeTelemetrySample sample) {
+        return update(sample, System.currentTimeMillis());
+    }
+    
+    boolean update(NodeTelemetrySample sample, long receivedAt) {
+        String nodeId = sample.getNodeId();
+        if (!connectedNodes.containsKey(nodeId)) {
+            rejected();
+            return false;
+        }
+        samplesReceived.incrementAndGet();
+        Received received = new Received(sample, receivedAt);
+        while (true) {
+            Received current = samples.putIfAbsent(nodeId, received);
+            if (current == null) {
+                break;
+            }
+            if (current.sample.getTimestamp() > sample.getTimestamp()) {
+                return true;
+            }
+            if (samples.replace(nodeId, current, received)) {
+                break;
+            }
+        }
+        if (!connectedNodes.containsKey(nodeId)) {
+            // disconnected meanwhile
+            samples.remove(nodeId, received);
+            return false;
+        }
+        updated.add(nodeId);
+        return true;
+    }
+    
+    void rejected() {
+        samplesRejected.incrementAndGet();
+    }
+    
+    /**
+     * @param nodeId the UUID of a node.
+     * @return the latest sample of the node, or null if none was received.
+     */
+    public NodeTelemetrySample get(String nodeId) {
+        Received received = samples.get(nodeId);
+        return received == null ? null : received.sample;
+    }
+    
+    /**
+     * @param nodeId the UUID of a node that disconnected.
+     */
+    public void remove(String nodeId) {
+        connectedNodes.remove(nodeId);
+        samples.remove(nodeId);
+        updated.remove(nodeId);
+    }
+    
+    /**
+     * Returns the samples received since the last call and drops the stale ones.
+     * 
+     * @return the latest sample of every node that sent one since the last call.
+     */
+    public List<NodeTelemetrySample> drainUpdates() {
+        return drainUpdates(System.currentTimeMillis());
+    }
+    
+    List<NodeTelemetrySample> drainUpdates(long now) {
+        List<NodeTelemetrySample> updates = new ArrayList<NodeTelemetrySample>();
+        for (Iterator<String> iterator = updated.iterator(); iterator.hasNext();) {
+            Received received = samples.get(iterator.next());
+            iterator.remove();
+            if (received != null) {
+                updates.add(received.sample);
+            }
+        }
+        long staleTime = now - STALE_AFTER;
+        for (Map.Entry<String, Received> entry : samples.entrySet()) {
+            if (entry.getValue().receivedAt < staleTime) {
+                samples.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        return updates;
+    }
+
+    @Override
+    public int getNodeCount() {
+        return samples.size();
+    }
+
+    @Override
+    public long getSamplesReceived() {
+        return samplesReceived.get();
+    }
+
+    @Override
+    public long getSamplesRejected() {
+        return samplesRejected.get();
+    }
+
+    @Override
+    public String[] getNodeTelemetry() {
+        List<String> lines = new ArrayList<String>();
+        for (Received received : samples.values()) {
+            lines.add(received.sample.getNodeId() + " " + received.sample);
+        }
+        Collections.sort(lines);
+        return lines.toArray(new String[lines.size()]);
+    }
+    
+    private static class Received {
+        private final NodeTelemetrySample sample;
+        private final long receivedAt;
+
+        Received(NodeTelemetrySample sample, long receivedAt) {
+            this.sample = sample;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+import com.github.nethad.clustermeister.driver.rmi.IRmiServerForDriver;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Forwards the telemetry samples received since the last run to the provisioning server, 
+ * in their compact binary form and with one call. 
+ * The {@link ProvisioningServerConnection} is reset after a failure.
+ *
+ * @author daniel
+ */
+public class NodeTelemetryForwarder implements Runnable {
+    
+    static final long INTERVAL = 1000;
+    
+    private final Logger logger = LoggerFactory.getLogger(NodeTelemetryForwarder.class);
+    
+    private final ProvisioningServerConnection connection;
+    private final NodeTelemetry telemetry;
+
+    public NodeTelemetryForwarder(ProvisioningServerConnection connection, NodeTelemetry telemetry) {
+        this.connection = connection;
+        this.telemetry = telemetry;
+    }
+
+    @Override
+    public void run() {
+        List<NodeTelemetrySample> updates = telemetry.drainUpdates();
+        if (updates.isEmpty()) {
+            return;
+        }
+        List<byte[]> samples = new ArrayList<byte[]>(updates.size());
+        for (NodeTelemetrySample sample : updates) {
+            samples.add(sample.toBytes());
+        }
+        IRmiServerForDriver server = null;
+        try {
+            server = connection.get();
+            server.onNodeTelemetry(samples);
+        } catch (IOException ex) {
+            logger.warn("Could not forward telemetry of {} nodes.", samples.size(), ex);
+            connection.reset(server);
+        } catch (RuntimeException ex) {
+            // keep the forwarder scheduled
+            logger.warn("Could not forward telemetry of {} nodes.", samples.size(), ex);
+            connection.reset(server);
+        }
+    }
+}
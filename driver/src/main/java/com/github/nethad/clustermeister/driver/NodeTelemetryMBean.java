@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+/**
+ * The latest telemetry received from the nodes, see {@link NodeTelemetry}.
+ *
+ * @author daniel
+ */
+public interface NodeTelemetryMBean {
+    
+    public static final String MBEAN_NAME = "com.github.nethad.clustermeister:name=NodeTelemetry,type=driver";
+
+    /**
+     * @return the number of nodes with telemetry.
+     */
+    public int getNodeCount();
+
+    public long getSamplesReceived();
+
+    /**
+     * @return the number of samples rejected as malformed, of a node that is not connected 
+     *         or from another host than the node's.
+     */
+    public long getSamplesRejected();
+
+    /**
+     * @return one line with the latest sample per node.
+     */
+    public String[] getNodeTelemetry();
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives the telemetry of the nodes and updates the {@link NodeTelemetry}.
+ * 
+ * Every node keeps a TCP connection and sends each sample as an unsigned short length 
+ * followed by {@link NodeTelemetrySample#toBytes()}. TCP, unlike UDP, passes the SOCKS tunnels 
+ * of nodes on EC2. A connection carries the samples of the first node it sent one for, 
+ * and a sample is only accepted if its node is connected to the driver and the connection 
+ * comes from the node's management host or through a local tunnel. 
+ * Other connections are closed.
+ *
+ * @author daniel
+ */
+public class NodeTelemetryReceiver {
+    
+    static final int MAX_SAMPLE_SIZE = 1024;
+    
+    private final Logger logger = LoggerFactory.getLogger(NodeTelemetryReceiver.class);
+    
+    private final ServerSocket serverSocket;
+    private final NodeTelemetry telemetry;
+    private final Thread acceptor;
+    private final Set<Socket> connections = 
+            Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    /**
+     * @param port the TCP port to receive on.
+     * @param telemetry the telemetry to update.
+     * @throws IOException if the port can not be bound.
+     */
+    public NodeTelemetryReceiver(int port, NodeTelemetry telemetry) throws IOException {
+        this.serverSocket = new ServerSocket(port);
+        this.telemetry = telemetry;
+        acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "cm-telemetry-receiver");
+        acceptor.setDaemon(true);
+    }
+    
+    public void start() {
+        acceptor.start();
+    }
+    
+    /**
+     * @return the port the receiver is bound to.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException ex) {
+            logger.debug("Could not close telemetry socket.", ex);
+        }
+        for (Socket connection : connections) {
+            close(connection);
+        }
+    }
+    
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket connection = serverSocket.accept();
+                connections.add(connection);
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            receive(connection);
+                        } finally {
+                            connections.remove(connection);
+                            close(connection);
+                        }
+                    }
+                }, "cm-telemetry-receiver-" + connection.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException ex) {
+                if (!serverSocket.isClosed()) {
+                    logger.warn("Could not accept telemetry connection.", ex);
+                }
+            }
+        }
+        logger.info("Telemetry receiver stopped.");
+    }
+    
+    private void receive(Socket connection) {
+        InetAddress remoteAddress = connection.getInetAddress();
+        String nodeId = null;
+        try {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(connection.getInputStream()));
+            byte[] buffer = new byte[MAX_SAMPLE_SIZE];
+            while (true) {
+                int length = in.readUnsignedShort();
+                if (length > MAX_SAMPLE_SIZE) {
+                    logger.debug("Rejected telemetry of {} bytes from {}.", length, remoteAddress);
+                    telemetry.rejected();
+                    return;
+                }
+                in.readFully(buffer, 0, length);
+                NodeTelemetrySample sample = NodeTelemetrySample.fromBytes(buffer, 0, length);
+                if (nodeId == null) {
+                    if (!isFromNode(sample.getNodeId(), remoteAddress)) {
+                        logger.debug("Rejected telemetry of node {} from {}.", 
+                                sample.getNodeId(), remoteAddress);
+                        telemetry.rejected();
+                        return;
+                    }
+                    nodeId = sample.getNodeId();
+                } else if (!nodeId.equals(sample.getNodeId())) {
+                    logger.debug("Rejected telemetry of node {} on the connection of node {}.", 
+                            sample.getNodeId(), nodeId);
+                    telemetry.rejected();
+                    return;
+                }
+                if (!telemetry.update(sample)) {
+                    // the node disconnected, it reconnects when it is back
+                    return;
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            logger.debug("Rejected telemetry from {}.", remoteAddress, ex);
+            telemetry.rejected();
+        } catch (EOFException ex) {
+            logger.debug("Telemetry connection from {} closed.", remoteAddress);
+        } catch (IOException ex) {
+            if (!serverSocket.isClosed()) {
+                logger.debug("Could not receive telemetry from {}.", remoteAddress, ex);
+            }
+        }
+    }
+    
+    /**
+     * @param nodeId the UUID a sample claims to be from.
+     * @param remoteAddress the address the sample was received from.
+     * @return true if the node is connected and the address is the node's host or local.
+     */
+    boolean isFromNode(String nodeId, InetAddress remoteAddress) {
+        String host = telemetry.getHost(nodeId);
+        if (host == null) {
+            return false;
+        }
+        if (remoteAddress.isLoopbackAddress()) {
+            return true;
+        }
+        try {
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (address.equals(remoteAddress)) {
+                    return true;
+                }
+            }
+        } catch (UnknownHostException ex) {
+            logger.debug("Could not resolve host {} of node {}.", host, nodeId);
+        }
+        return false;
+    }
+    
+    private void close(Socket connection) {
+        try {
+            connection.close();
+        } catch (IOException ex) {
+            logger.debug("Could not close telemetry connection.", ex);
+        }
+    }
+}
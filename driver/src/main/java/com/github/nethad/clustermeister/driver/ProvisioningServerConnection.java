@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+import com.github.nethad.clustermeister.driver.rmi.IRmiServerForDriver;
+import com.github.nethad.clustermeister.node.common.Constants;
+import com.github.nethad.clustermeister.node.common.control.ControlClient;
+import com.github.nethad.clustermeister.node.common.control.ControlEndpoint;
+import java.io.IOException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The driver's connection to the provisioning server, through RMI or the control channel 
+ * as selected by {@link Constants#CLUSTERMEISTER_CONTROL_TRANSPORT}.
+ * 
+ * The server is looked up on first use. After a failed call the caller {@link #reset(IRmiServerForDriver) resets} 
+ * the connection and the next use looks the server up again, so a restarted provisioning server 
+ * is found without restarting the driver.
+ *
+ * @author thomas
+ */
+public class ProvisioningServerConnection {
+    private final Logger logger = LoggerFactory.getLogger(ProvisioningServerConnection.class);
+    
+    private final String transport;
+    private IRmiServerForDriver server = null;
+    private ControlClient client = null;
+    private boolean closed = false;
+
+    /**
+     * @param transport {@link Constants#CONTROL_TRANSPORT_RMI} or {@link Constants#CONTROL_TRANSPORT_NIO}.
+     */
+    public ProvisioningServerConnection(String transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * @return the server, looked up if there is no current connection.
+     * @throws IOException if the server can not be reached or the connection is closed.
+     */
+    public synchronized IRmiServerForDriver get() throws IOException {
+        if (closed) {
+            throw new IOException("Connection to provisioning server closed");
+        }
+        if (server == null) {
+            server = connect();
+        }
+        return server;
+    }
+
+    /**
+     * Drops the connection after a failed call, unless another caller already replaced it.
+     * 
+     * @param failed the server the failed call was made on.
+     */
+    public synchronized void reset(IRmiServerForDriver failed) {
+        if (server != failed) {
+            return;
+        }
+        disconnect();
+    }
+
+    public synchronized void close() {
+        closed = true;
+        disconnect();
+    }
+
+    /**
+     * @return the server.
+     * @throws IOException if the server can not be reached.
+     */
+    protected IRmiServerForDriver connect() throws IOException {
+        if (Constants.CONTROL_TRANSPORT_NIO.equalsIgnoreCase(transport)) {
+            ControlEndpoint endpoint = ControlEndpoint.read(ControlEndpoint.DEFAULT_FILE);
+            int port = Integer.getInteger(Constants.CLUSTERMEISTER_CONTROL_PORT, endpoint.getPort());
+            client = ControlClient.connect("localhost", port, endpoint.getSecret());
+            return client.getService(IRmiServerForDriver.class);
+        }
+        Registry registry = LocateRegistry.getRegistry("localhost", Constants.RMI_REGISTRY_PORT);
+        try {
+            return (IRmiServerForDriver) registry.lookup(IRmiServerForDriver.NAME);
+        } catch (NotBoundException ex) {
+            throw new RemoteException(IRmiServerForDriver.NAME + " is not bound", ex);
+        }
+    }
+
+    private void disconnect() {
+        if (client != null) {
+            logger.debug("Closing control client.");
+            client.close();
+            client = null;
+        }
+        server = null;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver.loadbalancing;
+
+import com.github.nethad.clustermeister.driver.NodeTelemetry;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import org.jppf.management.JPPFSystemInformation;
+import org.jppf.server.JPPFDriver;
+import org.jppf.server.queue.JPPFQueue;
+import org.jppf.server.scheduler.bundle.AbstractBundler;
+import org.jppf.server.scheduler.bundle.Bundler;
+import org.jppf.server.scheduler.bundle.NodeAwareness;
+
+/**
+ * Sizes the bundles of one node from its measured task throughput, its processing threads 
+ * and the variation of its task times.
+ * 
+ * Faster nodes get proportionally larger bundles, so heterogeneous instance types 
+ * finish their bundles at about the same time. Nodes whose {@link NodeTelemetry} reports 
+ * a nearly full heap get no more than one task per processing thread.
+ *
+ * @author daniel
+ */
+public class ThroughputBundler extends AbstractBundler implements NodeAwareness {
+    
+    private static final int DEFAULT_MAX_SIZE = 300;
+    private static final float MAX_HEAP_USAGE = 0.9f;
+    
+    private final ThroughputRegistry registry;
+    private final ThroughputEstimate estimate;
+    private JPPFSystemInformation nodeConfiguration = null;
+    private volatile int processingThreads = 1;
+    private volatile String nodeId = null;
+    private volatile int bundleSize;
+
+    ThroughputBundler(ThroughputProfile profile, ThroughputRegistry registry) {
+        super(profile);
+        this.registry = registry;
+        this.estimate = new ThroughputEstimate(profile.getSmoothing());
+        resize();
+    }
+
+    @Override
+    public int getBundleSize() {
+        return bundleSize;
+    }
+
+    @Override
+    public void feedback(int nbTasks, double totalTime) {
+        estimate.record(nbTasks, totalTime);
+        resize();
+    }
+
+    @Override
+    public Bundler copy() {
+        return new ThroughputBundler((ThroughputProfile) profile.copy(), registry);
+    }
+
+    @Override
+    public void setup() {
+        registry.add(estimate);
+    }
+
+    @Override
+    public void dispose() {
+        registry.remove(estimate);
+    }
+
+    @Override
+    protected int maxSize() {
+        JPPFQueue queue = JPPFDriver.getQueue();
+        if (queue == null || queue.getMaxBundleSize() <= 0) {
+            return DEFAULT_MAX_SIZE;
+        }
+        return queue.getMaxBundleSize();
+    }
+
+    @Override
+    public JPPFSystemInformation getNodeConfiguration() {
+        return nodeConfiguration;
+    }
+
+    @Override
+    public void setNodeConfiguration(JPPFSystemInformation nodeConfiguration) {
+        this.nodeConfiguration = nodeConfiguration;
+        if (nodeConfiguration != null) {
+            int availableProcessors = nodeConfiguration.getRuntime().getInt("availableProcessors", 1);
+            processingThreads = Math.max(1, 
+                    nodeConfiguration.getJppf().getInt("processing.threads", availableProcessors));
+            nodeId = nodeConfiguration.getUuid().getString("jppf.uuid");
+        }
+        resize();
+    }
+
+    private void resize() {
+        ThroughputProfile throughputProfile = (ThroughputProfile) profile;
+        bundleSize = estimate.bundleSize(processingThreads, registry.share(estimate), maxSize(), 
+                throughputProfile.getTargetLatency(), throughputProfile.getVarianceFactor(), 
+                throughputProfile.getInitialSize());
+        NodeTelemetrySample telemetry = nodeId == null ? null : NodeTelemetry.getInstance().get(nodeId);
+        if (telemetry != null && telemetry.getHeapUsage() > MAX_HEAP_USAGE) {
+            bundleSize = Math.min(bundleSize, processingThreads);
+        }
+    }
+}
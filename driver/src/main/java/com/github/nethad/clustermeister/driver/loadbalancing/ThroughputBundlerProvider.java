@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver.loadbalancing;
+
+import org.jppf.server.scheduler.bundle.Bundler;
+import org.jppf.server.scheduler.bundle.LoadBalancingProfile;
+import org.jppf.server.scheduler.bundle.spi.JPPFBundlerProvider;
+import org.jppf.utils.TypedProperties;
+
+/**
+ * Registers the {@link ThroughputBundler} with the driver 
+ * as load balancing algorithm {@value #ALGORITHM}.
+ *
+ * @author daniel
+ */
+public class ThroughputBundlerProvider implements JPPFBundlerProvider {
+    
+    public static final String ALGORITHM = "cm_throughput";
+    
+    private final ThroughputRegistry registry = new ThroughputRegistry();
+
+    @Override
+    public String getAlgorithmName() {
+        return ALGORITHM;
+    }
+
+    @Override
+    public Bundler createBundler(LoadBalancingProfile profile) {
+        return new ThroughputBundler((ThroughputProfile) profile, registry);
+    }
+
+    @Override
+    public LoadBalancingProfile createProfile(TypedProperties configuration) {
+        return new ThroughputProfile(configuration);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver.loadbalancing;
+
+/**
+ * Smoothed task throughput and task time variance of one node, 
+ * and the bundle size derived from them.
+ *
+ * @author daniel
+ */
+class ThroughputEstimate {
+    
+    /**
+     * Bundles that finish faster than this (in milliseconds) are counted as taking this long.
+     */
+    static final double MIN_TIME = 0.01;
+    
+    private final double smoothing;
+    private double throughput = 0;
+    private double taskTime = 0;
+    private double taskTimeVariance = 0;
+    private int samples = 0;
+
+    /**
+     * @param smoothing the weight of a new sample, between 0 (exclusive) and 1.
+     */
+    ThroughputEstimate(double smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * @param tasks the number of tasks in the returned bundle.
+     * @param totalTime the time the bundle took, in milliseconds.
+     */
+    synchronized void record(int tasks, double totalTime) {
+        if (tasks <= 0) {
+            return;
+        }
+        double time = Math.max(MIN_TIME, totalTime);
+        double sampleThroughput = tasks / time;
+        double sampleTaskTime = time / tasks;
+        if (samples == 0) {
+            throughput = sampleThroughput;
+            taskTime = sampleTaskTime;
+        } else {
+            double deviation = sampleTaskTime - taskTime;
+            throughput += smoothing * (sampleThroughput - throughput);
+            taskTime += smoothing * deviation;
+            taskTimeVariance = (1 - smoothing) * (taskTimeVariance + smoothing * deviation * deviation);
+        }
+        samples++;
+    }
+
+    /**
+     * @return the tasks completed per millisecond, 0 before the first sample.
+     */
+    synchronized double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * @return the standard deviation of the task time relative to its mean.
+     */
+    synchronized double getVariation() {
+        return taskTime == 0 ? 0 : Math.sqrt(taskTimeVariance) / taskTime;
+    }
+
+    synchronized int getSamples() {
+        return samples;
+    }
+
+    /**
+     * The bundle size is the smaller of the tasks the node completes within the target latency 
+     * and its share of {@code maxSize} by throughput, shrunk by the task time variation. 
+     * It is at least one task per processing thread and at most {@code maxSize}.
+     * 
+     * @param processingThreads the processing threads of the node.
+     * @param share the node's part of the total throughput of all nodes.
+     * @param maxSize the largest allowed bundle size.
+     * @param targetLatency the time a bundle should take, in milliseconds.
+     * @param varianceFactor how strongly task time variation shrinks bundles.
+     * @param initialSize the size before the first sample, 0 for one task per processing thread.
+     * @return the bundle size.
+     */
+    synchronized int bundleSize(int processingThreads, double share, int maxSize, 
+            long targetLatency, double varianceFactor, int initialSize) {
+        int minSize = Math.max(1, Math.min(processingThreads, maxSize));
+        if (samples == 0) {
+            return Math.max(1, Math.min(maxSize, initialSize > 0 ? initialSize : minSize));
+        }
+        double size = Math.min(throughput * targetLatency, share * maxSize);
+        size /= 1 + varianceFactor * getVariation();
+        return (int) Math.max(minSize, Math.min(maxSize, Math.round(size)));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver.loadbalancing;
+
+import org.jppf.server.scheduler.bundle.LoadBalancingProfile;
+import org.jppf.utils.TypedProperties;
+
+/**
+ * Parameters of the {@link ThroughputBundler}, read from the 
+ * {@code strategy.<name>.*} driver properties.
+ *
+ * @author daniel
+ */
+public class ThroughputProfile implements LoadBalancingProfile {
+    
+    private long targetLatency = 1000;
+    private int initialSize = 0;
+    private double varianceFactor = 1;
+    private double smoothing = 0.3;
+
+    public ThroughputProfile() {
+    }
+
+    public ThroughputProfile(TypedProperties config) {
+        targetLatency = Math.max(1, config.getLong("targetLatency", targetLatency));
+        initialSize = Math.max(0, config.getInt("initialSize", initialSize));
+        varianceFactor = Math.max(0, config.getDouble("varianceFactor", varianceFactor));
+        smoothing = Math.min(1, Math.max(0.01, config.getDouble("smoothing", smoothing)));
+    }
+
+    @Override
+    public LoadBalancingProfile copy() {
+        ThroughputProfile copy = new ThroughputProfile();
+        copy.targetLatency = targetLatency;
+        copy.initialSize = initialSize;
+        copy.varianceFactor = varianceFactor;
+        copy.smoothing = smoothing;
+        return copy;
+    }
+
+    /**
+     * @return the time a bundle should take on a node, in milliseconds.
+     */
+    public long getTargetLatency() {
+        return targetLatency;
+    }
+
+    /**
+     * @return the bundle size before the first feedback, 0 for one task per processing thread.
+     */
+    public int getInitialSize() {
+        return initialSize;
+    }
+
+    /**
+     * @return how strongly task time variation shrinks bundles, 0 to ignore it.
+     */
+    public double getVarianceFactor() {
+        return varianceFactor;
+    }
+
+    /**
+     * @return the weight of a new sample in the smoothed throughput.
+     */
+    public double getSmoothing() {
+        return smoothing;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver.loadbalancing;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * The throughput estimates of all connected nodes, to size bundles in proportion.
+ *
+ * @author daniel
+ */
+class ThroughputRegistry {
+    private final Set<ThroughputEstimate> estimates = new CopyOnWriteArraySet<ThroughputEstimate>();
+
+    void add(ThroughputEstimate estimate) {
+        estimates.add(estimate);
+    }
+
+    void remove(ThroughputEstimate estimate) {
+        estimates.remove(estimate);
+    }
+
+    /**
+     * @param estimate a registered estimate.
+     * @return its part of the total throughput of all nodes with samples, 1 if it is the only one.
+     */
+    double share(ThroughputEstimate estimate) {
+        double total = 0;
+        for (ThroughputEstimate other : estimates) {
+            total += other.getThroughput();
+        }
+        double throughput = estimate.getThroughput();
+        return total <= 0 || throughput >= total ? 1 : throughput / total;
+    }
+}
@@ -17,6 +17,7 @@ package com.github.nethad.clustermeister.driver.rmi;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 import org.jppf.management.JPPFManagementInfo;
 import org.jppf.management.JPPFSystemInformation;
 
@@ -34,4 +35,18 @@ public interface IRmiServerForDriver extends Remote {
 
     public void onNodeConnected(JPPFManagementInfo nodeInformation, JPPFSystemInformation systemInformation) throws RemoteException;
     
+    /**
+     * Applies a batch of node events in order.
+     * @param events the events, oldest first.
+     * @throws RemoteException 
+     */
+    public void onNodeEvents(List<NodeEvent> events) throws RemoteException;
+    
+    /**
+     * Receives the latest telemetry of the nodes that sent some since the last call.
+     * @param samples the samples in the form of {@code NodeTelemetrySample.toBytes()}.
+     * @throws RemoteException 
+     */
+    public void onNodeTelemetry(List<byte[]> samples) throws RemoteException;
+    
 }
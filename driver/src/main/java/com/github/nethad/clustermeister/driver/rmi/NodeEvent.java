@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver.rmi;
+
+import java.io.Serializable;
+import org.jppf.management.JPPFManagementInfo;
+import org.jppf.management.JPPFSystemInformation;
+
+/**
+ * A node connect or disconnect observed by the driver.
+ *
+ * @author thomas
+ */
+public class NodeEvent implements Serializable {
+
+    public enum Type {
+        CONNECTED, DISCONNECTED
+    }
+
+    private final Type type;
+    private final JPPFManagementInfo managementInfo;
+    private final JPPFSystemInformation systemInformation;
+    private final long timestamp;
+
+    private NodeEvent(Type type, JPPFManagementInfo managementInfo, JPPFSystemInformation systemInformation) {
+        this.type = type;
+        this.managementInfo = managementInfo;
+        this.systemInformation = systemInformation;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public static NodeEvent connected(JPPFManagementInfo managementInfo, JPPFSystemInformation systemInformation) {
+        return new NodeEvent(Type.CONNECTED, managementInfo, systemInformation);
+    }
+
+    public static NodeEvent disconnected(JPPFManagementInfo managementInfo) {
+        return new NodeEvent(Type.DISCONNECTED, managementInfo, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public JPPFManagementInfo getManagementInfo() {
+        return managementInfo;
+    }
+
+    /**
+     * @return the system information of a connected node, null for a disconnect.
+     */
+    public JPPFSystemInformation getSystemInformation() {
+        return systemInformation;
+    }
+
+    /**
+     * @return the time the driver observed the event, in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + managementInfo.getId();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class DriverJobMetricsTest {
+    
+    private DriverJobMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new DriverJobMetrics(0);
+    }
+
+    @Test
+    public void bundlesAreAggregatedOverallAndPerNode() {
+        metrics.jobQueued("job", 100);
+        metrics.bundleDispatched("job", "node1", 4, 150);
+        metrics.bundleDispatched("job", "node2", 2, 160);
+        metrics.bundleReturned("job", "node1", 250);
+        metrics.bundleReturned("job", "node2", 200);
+        
+        assertEquals(1, metrics.getJobsQueued());
+        assertEquals(2, metrics.getBundlesReturned());
+        assertEquals(6, metrics.getTasksReturned());
+        assertEquals(50, metrics.getQueueWaitMax());
+        assertEquals(100, metrics.getDispatchLatencyMax());
+        assertEquals(4, metrics.getBundleSizeMax());
+        assertEquals(3.0, metrics.getBundleSizeMean(), 0.0001);
+        assertEquals(4, metrics.getNodes().get("node1").getTasks());
+        assertEquals(2, metrics.getNodes().get("node2").getTasks());
+        assertEquals(40, metrics.getNodes().get("node2").getLatency().getMax());
+    }
+
+    @Test
+    public void queueWaitIsRecordedOnlyForTheFirstDispatch() {
+        metrics.jobQueued("job", 0);
+        metrics.bundleDispatched("job", "node1", 1, 10);
+        metrics.bundleDispatched("job", "node2", 1, 500);
+        
+        assertEquals(1, metrics.getQueueWait().getCount());
+        assertEquals(10, metrics.getQueueWaitMax());
+    }
+
+    @Test
+    public void bundlesOfEndedJobsAreNotCounted() {
+        metrics.jobQueued("job", 0);
+        metrics.bundleDispatched("job", "node1", 3, 10);
+        metrics.jobEnded("job", 20);
+        metrics.bundleReturned("job", "node1", 30);
+        
+        assertEquals(1, metrics.getJobsEnded());
+        assertEquals(0, metrics.getBundlesReturned());
+        assertEquals(0, metrics.getTasksReturned());
+    }
+
+    @Test
+    public void endedJobsAreListedLatestFirst() {
+        metrics.jobQueued("first", 0);
+        metrics.bundleDispatched("first", "node1", 3, 10);
+        metrics.bundleReturned("first", "node1", 30);
+        metrics.jobEnded("first", 40);
+        metrics.jobQueued("second", 50);
+        metrics.jobEnded("second", 60);
+        
+        String[] recent = metrics.getRecentJobs();
+        
+        assertEquals(2, recent.length);
+        assertEquals("second queued=50 wait=-1ms duration=10ms bundles=0 tasks=0", recent[0]);
+        assertEquals("first queued=0 wait=10ms duration=40ms bundles=1 tasks=3", recent[1]);
+    }
+
+    @Test
+    public void recentJobsAreBounded() {
+        for (int i = 0; i < DriverJobMetrics.RECENT_JOBS + 10; i++) {
+            metrics.jobQueued("job" + i, i);
+            metrics.jobEnded("job" + i, i);
+        }
+        
+        String[] recent = metrics.getRecentJobs();
+        
+        assertEquals(DriverJobMetrics.RECENT_JOBS, recent.length);
+        assertTrue(recent[0].startsWith("job" + (DriverJobMetrics.RECENT_JOBS + 9) + " "));
+        assertTrue(recent[recent.length - 1].startsWith("job10 "));
+    }
+
+    @Test
+    public void disconnectedNodesAreEvicted() {
+        metrics.jobQueued("job", 0);
+        metrics.bundleDispatched("job", "node1", 1, 10);
+        metrics.bundleReturned("job", "node1", 20);
+        metrics.bundleDispatched("job", "node1", 1, 30);
+        metrics.bundleDispatched("job", "node2", 1, 30);
+        
+        metrics.nodeDisconnected("node1");
+        metrics.bundleReturned("job", "node1", 40);
+        metrics.bundleReturned("job", "node2", 40);
+        
+        assertFalse(metrics.getNodes().containsKey("node1"));
+        assertTrue(metrics.getNodes().containsKey("node2"));
+        assertEquals(2, metrics.getBundlesReturned());
+        assertEquals(1, metrics.getNodeStatistics().length);
+    }
+
+    @Test
+    public void outstandingBundlesAreReleasedByJobAndByNode() {
+        metrics.jobQueued("job1", 0);
+        metrics.jobQueued("job2", 0);
+        metrics.bundleDispatched("job1", "node1", 1, 10);
+        metrics.bundleDispatched("job1", "node2", 1, 10);
+        metrics.bundleDispatched("job2", "node1", 1, 10);
+        metrics.bundleDispatched("job2", "node2", 1, 10);
+        assertEquals(4, metrics.getOutstandingBundles());
+        
+        metrics.jobEnded("job1", 20);
+        assertEquals(2, metrics.getOutstandingBundles());
+        metrics.nodeDisconnected("node1");
+        assertEquals(1, metrics.getOutstandingBundles());
+        metrics.bundleReturned("job2", "node2", 30);
+        
+        assertEquals(0, metrics.getOutstandingBundles());
+        assertEquals(1, metrics.getBundlesReturned());
+    }
+}
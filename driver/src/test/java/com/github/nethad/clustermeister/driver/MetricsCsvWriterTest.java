@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class MetricsCsvWriterTest {
+    
+    private DriverJobMetrics metrics;
+    private File file;
+    private File rolled;
+
+    @Before
+    public void setUp() throws IOException {
+        metrics = new DriverJobMetrics(0);
+        file = File.createTempFile("driver-metrics", ".csv");
+        file.delete();
+        rolled = new File(file.getPath() + ".1");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        rolled.delete();
+    }
+
+    @Test
+    public void writesHeaderAndOneRowPerNode() throws IOException {
+        metrics.jobQueued("job", 0);
+        metrics.bundleDispatched("job", "node1", 2, 10);
+        metrics.bundleReturned("job", "node1", 20);
+        MetricsCsvWriter writer = new MetricsCsvWriter(metrics, file, Long.MAX_VALUE);
+        
+        writer.write(System.currentTimeMillis());
+        writer.write(System.currentTimeMillis());
+        
+        List<String> lines = readLines(file);
+        assertEquals(5, lines.size());
+        assertEquals(MetricsCsvWriter.HEADER, lines.get(0));
+        assertTrue(lines.get(1).contains("," + MetricsCsvWriter.SCOPE_DRIVER + ",1,0,1,2,"));
+        assertTrue(lines.get(2).contains(",node1,,,1,2,"));
+        assertEquals(MetricsCsvWriter.HEADER.split(",", -1).length, lines.get(1).split(",", -1).length);
+        assertEquals(MetricsCsvWriter.HEADER.split(",", -1).length, lines.get(2).split(",", -1).length);
+    }
+
+    @Test
+    public void reconnectedNodeStartsOver() throws IOException {
+        metrics.jobQueued("job", 0);
+        metrics.bundleDispatched("job", "node1", 2, 10);
+        metrics.bundleReturned("job", "node1", 20);
+        MetricsCsvWriter writer = new MetricsCsvWriter(metrics, file, Long.MAX_VALUE);
+        writer.write(1000);
+        
+        metrics.nodeDisconnected("node1");
+        metrics.bundleDispatched("job", "node1", 1, 1100);
+        metrics.bundleReturned("job", "node1", 1200);
+        writer.write(2000);
+        
+        List<String> lines = readLines(file);
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(4).contains(",node1,,,1,1,1.00,"));
+    }
+
+    @Test
+    public void nodeNamedDriverIsNotTheDriver() throws IOException {
+        metrics.jobQueued("job", 0);
+        metrics.bundleDispatched("job", "driver", 2, 10);
+        metrics.bundleReturned("job", "driver", 20);
+        MetricsCsvWriter writer = new MetricsCsvWriter(metrics, file, Long.MAX_VALUE);
+        
+        writer.write(1000);
+        
+        List<String> lines = readLines(file);
+        assertTrue(lines.get(1).contains("," + MetricsCsvWriter.SCOPE_DRIVER + ",1,0,1,2,"));
+        assertTrue(lines.get(2).contains(",driver,,,1,2,"));
+    }
+
+    @Test
+    public void rollsOverWhenTheFileIsFull() throws IOException {
+        MetricsCsvWriter writer = new MetricsCsvWriter(metrics, file, 1);
+        
+        writer.write(1000);
+        writer.write(2000);
+        writer.write(3000);
+        
+        List<String> current = readLines(file);
+        List<String> previous = readLines(rolled);
+        assertEquals(2, current.size());
+        assertEquals(MetricsCsvWriter.HEADER, current.get(0));
+        assertTrue(current.get(1).startsWith("3000,"));
+        assertEquals(2, previous.size());
+        assertTrue(previous.get(1).startsWith("2000,"));
+    }
+
+    @Test
+    public void doesNotRollBelowTheLimit() throws IOException {
+        MetricsCsvWriter writer = new MetricsCsvWriter(metrics, file, Long.MAX_VALUE);
+        
+        writer.write(1000);
+        writer.write(2000);
+        
+        assertFalse(rolled.exists());
+        assertEquals(3, readLines(file).size());
+    }
+
+    private List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+import com.github.nethad.clustermeister.driver.rmi.IRmiServerForDriver;
+import com.github.nethad.clustermeister.driver.rmi.NodeEvent;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jppf.management.JPPFManagementInfo;
+import org.jppf.management.JPPFSystemInformation;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author thomas
+ */
+public class NodeEventQueueTest {
+
+    @Test
+    public void fullQueueDropsTheOldestEvents() {
+        NodeEventQueue queue = new NodeEventQueue(new FakeConnection(0));
+        for (int i = 0; i < NodeEventQueue.CAPACITY + 5; i++) {
+            queue.add(event(i));
+        }
+        
+        assertEquals(NodeEventQueue.CAPACITY, queue.getQueueDepth());
+        assertEquals(5, queue.getEventsDropped());
+    }
+
+    @Test
+    public void eventsAreSentAfterAnOutage() throws Exception {
+        FakeConnection connection = new FakeConnection(3);
+        NodeEventQueue queue = new NodeEventQueue(connection);
+        queue.start();
+        try {
+            queue.add(event(1));
+            queue.add(event(2));
+            
+            long deadline = System.currentTimeMillis() + 10000;
+            while (queue.getEventsSent() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, queue.getEventsSent());
+            assertEquals(2, connection.server.received.size());
+            assertEquals("node1", connection.server.received.get(0).getManagementInfo().getId());
+            assertEquals(4, connection.connects.get());
+        } finally {
+            queue.stop();
+        }
+    }
+
+    private NodeEvent event(int index) {
+        return NodeEvent.disconnected(new JPPFManagementInfo("localhost", 0, "node" + index));
+    }
+    
+    /**
+     * Fails the first calls, each on a newly connected server: with an exception of the connection, 
+     * a runtime exception and a remote exception.
+     */
+    private static class FakeConnection extends ProvisioningServerConnection {
+        private final AtomicInteger connects = new AtomicInteger();
+        private final FakeServer server = new FakeServer();
+        private final int failures;
+
+        FakeConnection(int failures) {
+            super(null);
+            this.failures = failures;
+        }
+
+        @Override
+        protected IRmiServerForDriver connect() throws IOException {
+            int connect = connects.incrementAndGet();
+            if (connect == 1 && failures > 0) {
+                throw new IOException("provisioning server down");
+            }
+            server.failing = connect <= failures;
+            return server;
+        }
+    }
+    
+    private static class FakeServer implements IRmiServerForDriver {
+        private final List<NodeEvent> received = new CopyOnWriteArrayList<NodeEvent>();
+        private volatile boolean failing = false;
+        private boolean failedAtRuntime = false;
+
+        @Override
+        public void onNodeEvents(List<NodeEvent> events) throws RemoteException {
+            if (failing) {
+                if (!failedAtRuntime) {
+                    failedAtRuntime = true;
+                    throw new IllegalStateException("error frame");
+                }
+                throw new RemoteException("connection lost");
+            }
+            received.addAll(events);
+        }
+
+        @Override
+        public void onNodeDisconnected(JPPFManagementInfo managementInfo) {
+        }
+
+        @Override
+        public void onNodeConnected(JPPFManagementInfo nodeInformation, 
+                JPPFSystemInformation systemInformation) {
+        }
+
+        @Override
+        public void onNodeTelemetry(List<byte[]> samples) {
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver;
+
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import java.net.InetAddress;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class NodeTelemetryTest {
+    
+    private NodeTelemetry telemetry;
+
+    @Before
+    public void setUp() {
+        telemetry = new NodeTelemetry();
+    }
+
+    @Test
+    public void sampleOfUnconnectedNodeIsRejected() {
+        assertFalse(telemetry.update(sample("node", 1), 0));
+        
+        assertNull(telemetry.get("node"));
+        assertEquals(1, telemetry.getSamplesRejected());
+    }
+
+    @Test
+    public void olderSampleIsIgnored() {
+        telemetry.nodeConnected("node", "localhost");
+        telemetry.update(sample("node", 2000), 0);
+        telemetry.update(sample("node", 1000), 10);
+        
+        assertEquals(2000, telemetry.get("node").getTimestamp());
+    }
+
+    @Test
+    public void stalenessUsesTheReceiveTime() {
+        telemetry.nodeConnected("node", "localhost");
+        // the node's clock is far behind the driver's
+        telemetry.update(sample("node", 0), 100000);
+        
+        List<NodeTelemetrySample> updates = telemetry.drainUpdates(100000 + NodeTelemetry.STALE_AFTER);
+        assertEquals(1, updates.size());
+        assertNotNull(telemetry.get("node"));
+        telemetry.drainUpdates(100001 + NodeTelemetry.STALE_AFTER);
+        assertNull(telemetry.get("node"));
+    }
+
+    @Test
+    public void removedNodeIsNoLongerAccepted() {
+        telemetry.nodeConnected("node", "localhost");
+        telemetry.update(sample("node", 1), 0);
+        telemetry.remove("node");
+        
+        assertFalse(telemetry.update(sample("node", 2), 0));
+        assertNull(telemetry.get("node"));
+        assertTrue(telemetry.drainUpdates(0).isEmpty());
+    }
+
+    @Test
+    public void receiverAcceptsOnlyTheNodesHost() throws Exception {
+        NodeTelemetryReceiver receiver = new NodeTelemetryReceiver(0, telemetry);
+        try {
+            telemetry.nodeConnected("node", "192.0.2.1");
+            
+            assertTrue(receiver.isFromNode("node", InetAddress.getByName("192.0.2.1")));
+            assertTrue(receiver.isFromNode("node", InetAddress.getByName("127.0.0.1")));
+            assertFalse(receiver.isFromNode("node", InetAddress.getByName("192.0.2.2")));
+            assertFalse(receiver.isFromNode("other", InetAddress.getByName("127.0.0.1")));
+        } finally {
+            receiver.stop();
+        }
+    }
+
+    private NodeTelemetrySample sample(String nodeId, long timestamp) {
+        return new NodeTelemetrySample(nodeId, timestamp, 0.5f, 1, 10, 100, 0, 1, 0, 0);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.driver.loadbalancing;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class ThroughputEstimateTest {
+
+    @Test
+    public void initialSizeIsUsedBeforeTheFirstSample() {
+        ThroughputEstimate estimate = new ThroughputEstimate(0.5);
+        
+        assertEquals(8, estimate.bundleSize(4, 1, 100, 1000, 1, 8));
+        assertEquals(4, estimate.bundleSize(4, 1, 100, 1000, 1, 0));
+        assertEquals(5, estimate.bundleSize(4, 1, 5, 1000, 1, 8));
+    }
+
+    @Test
+    public void steadyNodeFillsTheTargetLatency() {
+        ThroughputEstimate estimate = new ThroughputEstimate(0.5);
+        for (int i = 0; i < 5; i++) {
+            estimate.record(10, 100);
+        }
+        
+        assertEquals(0.1, estimate.getThroughput(), 0.0001);
+        assertEquals(0.0, estimate.getVariation(), 0.0001);
+        assertEquals(100, estimate.bundleSize(1, 1, 1000, 1000, 1, 0));
+    }
+
+    @Test
+    public void varianceShrinksTheBundle() {
+        ThroughputEstimate estimate = new ThroughputEstimate(0.5);
+        estimate.record(10, 100);
+        estimate.record(10, 300);
+        
+        // task time 20 ms with a standard deviation of 10 ms
+        assertEquals(0.5, estimate.getVariation(), 0.0001);
+        assertEquals(67, estimate.bundleSize(1, 1, 1000, 1000, 0, 0));
+        assertEquals(44, estimate.bundleSize(1, 1, 1000, 1000, 1, 0));
+        assertEquals(33, estimate.bundleSize(1, 1, 1000, 1000, 2, 0));
+    }
+
+    @Test
+    public void bundleIsLimitedToTheNodesShare() {
+        ThroughputEstimate estimate = new ThroughputEstimate(0.5);
+        estimate.record(10, 100);
+        
+        assertEquals(100, estimate.bundleSize(1, 1, 200, 1000, 1, 0));
+        assertEquals(50, estimate.bundleSize(1, 0.25, 200, 1000, 1, 0));
+    }
+
+    @Test
+    public void bundleIsClampedToTheMaximumSize() {
+        ThroughputEstimate estimate = new ThroughputEstimate(0.5);
+        estimate.record(1000, 10);
+        
+        assertEquals(64, estimate.bundleSize(1, 1, 64, 1000, 1, 0));
+    }
+
+    @Test
+    public void bundleHasAtLeastOneTaskPerProcessingThread() {
+        ThroughputEstimate estimate = new ThroughputEstimate(0.5);
+        estimate.record(1, 1000);
+        
+        assertEquals(4, estimate.bundleSize(4, 1, 100, 100, 1, 0));
+        assertEquals(2, estimate.bundleSize(4, 1, 2, 100, 1, 0));
+    }
+
+    @Test
+    public void instantBundlesCountAsMinimumTime() {
+        ThroughputEstimate estimate = new ThroughputEstimate(0.5);
+        estimate.record(1, 0);
+        estimate.record(0, 100);
+        
+        assertEquals(1, estimate.getSamples());
+        assertEquals(1 / ThroughputEstimate.MIN_TIME, estimate.getThroughput(), 0.0001);
+    }
+}
@@ -15,7 +15,9 @@
  */
 package com.github.nethad.clustermeister.integration;
 
+import com.github.nethad.clustermeister.api.DriverAddress;
 import com.github.nethad.clustermeister.provisioning.rmi.NodeConnectionListener;
+import java.util.List;
 import org.jppf.management.JPPFManagementInfo;
 import org.jppf.management.JPPFSystemInformation;
 import org.slf4j.Logger;
@@ -29,12 +31,16 @@ public abstract class AbstractScenario implements NodeConnectionListener {
     
     private JPPFTestDriver driver;
     private JPPFTestNode node;
+    private List<DriverAddress> driverAddresses;
     private StringBuilder report = new StringBuilder("EXECUTION REPORT:\n");
     private boolean scenarioStarted = false;
     private boolean shuttingDown = false;
     private boolean startNode = true;
     
     private int numberOfNodes = 1;
+    private int[] nodeProcessingThreads = null;
+    private int numberOfDrivers = 1;
+    private int standbyNodes = 0;
     
     public abstract void runScenario() throws Exception;
     
@@ -44,6 +50,8 @@ public abstract class AbstractScenario implements NodeConnectionListener {
 
     public void execute() throws InterruptedException {
         startDriver();
+        driverAddresses = driver.awaitDriverAddresses();
+        beforeNodesStarted();
         if (startNode) {
             startNode();
         }
@@ -69,16 +77,67 @@ public abstract class AbstractScenario implements NodeConnectionListener {
     	return this;
     }
 
+    /**
+     * Starts one node per entry, each with the given number of processing threads.
+     */
+    public AbstractScenario withNodeProcessingThreads(int... processingThreads) {
+        this.nodeProcessingThreads = processingThreads;
+        this.numberOfNodes = processingThreads.length;
+        return this;
+    }
+
+    /**
+     * Starts several local drivers and spreads the nodes across them.
+     */
+    public AbstractScenario withNumberOfDrivers(int numberOfDrivers) {
+        this.numberOfDrivers = numberOfDrivers;
+        return this;
+    }
+
+    /**
+     * Lets every node keep the given number of pre-started standby JVMs to serve its restarts.
+     */
+    public AbstractScenario withStandbyNodes(int standbyNodes) {
+        this.standbyNodes = standbyNodes;
+        return this;
+    }
+
+    /**
+     * Called after the driver has been started and before the nodes are started.
+     */
+    protected void beforeNodesStarted() {
+    }
+
+    /**
+     * Returns the addresses of the started drivers, available from {@link #beforeNodesStarted()} on.
+     */
+    protected List<DriverAddress> getDriverAddresses() {
+        return driverAddresses;
+    }
+
+    /**
+     * Returns the server port the node with the given index connects to.
+     */
+    protected int getNodeServerPort(int nodeIndex) {
+        return driverAddresses.get(nodeIndex % driverAddresses.size()).getServerPort();
+    }
+
     private void startDriver() {
-        driver = new JPPFTestDriver(this);
+        driver = new JPPFTestDriver(this, numberOfDrivers);
         driver.startDriver();
     }
 
     private void startNode() throws RuntimeException {
         node = new JPPFTestNode();
+        node.setStandbyNodes(standbyNodes);
         node.prepare();
         for (int i=0; i<numberOfNodes; i++) {
-            node.startNewNode();
+            int serverPort = getNodeServerPort(i);
+            if (nodeProcessingThreads == null) {
+                node.startNewNode(JPPFTestNode.DEFAULT_PROCESSING_THREADS, serverPort);
+            } else {
+                node.startNewNode(nodeProcessingThreads[i], serverPort);
+            }
         }
     }
 
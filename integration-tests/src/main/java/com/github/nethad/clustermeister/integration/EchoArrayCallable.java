@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.integration;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+
+/**
+ * Carries an array of doubles and returns it scaled by two.
+ * 
+ * @author thomas
+ */
+public class EchoArrayCallable implements Callable<double[]>, Serializable {
+    private final double[] values;
+
+    public EchoArrayCallable(int size) {
+        values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i * 0.5;
+        }
+    }
+
+    @Override
+    public double[] call() throws Exception {
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] * 2;
+        }
+        return result;
+    }
+    
+}
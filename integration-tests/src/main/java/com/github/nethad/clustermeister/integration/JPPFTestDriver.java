@@ -15,22 +15,37 @@
  */
 package com.github.nethad.clustermeister.integration;
 
+import com.github.nethad.clustermeister.api.DriverAddress;
 import com.github.nethad.clustermeister.provisioning.cli.Provider;
 import com.github.nethad.clustermeister.provisioning.cli.Provisioning;
 import com.github.nethad.clustermeister.provisioning.rmi.NodeConnectionListener;
 import com.github.nethad.clustermeister.provisioning.rmi.RmiInfrastructure;
+import com.github.nethad.clustermeister.provisioning.rmi.RmiServerForApi;
 import com.github.nethad.clustermeister.provisioning.rmi.RmiServerForDriver;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
 /**
  *
  * @author thomas
  */
 public class JPPFTestDriver {
+    private static final long DRIVER_POLL_MILLIS = 100;
+    
     private final NodeConnectionListener nodeConnectionListener;
+    private final int numberOfDrivers;
     private DriverRunnable driverRunnable;
 
     public JPPFTestDriver(NodeConnectionListener nodeConnectionListener) {
+        this(nodeConnectionListener, 1);
+    }
+
+    public JPPFTestDriver(NodeConnectionListener nodeConnectionListener, int numberOfDrivers) {
         this.nodeConnectionListener = nodeConnectionListener;
+        this.numberOfDrivers = numberOfDrivers;
     }
     
     public void startDriver() {
@@ -42,16 +57,33 @@ public class JPPFTestDriver {
         driverRunnable.shutdown();
     }
     
+    /**
+     * Waits until the provisioning has started its drivers.
+     * 
+     * @return the addresses of the started drivers.
+     * @throws InterruptedException 
+     */
+    public List<DriverAddress> awaitDriverAddresses() throws InterruptedException {
+        while (true) {
+            RmiServerForApi rmiServerForApi = driverRunnable.rmiServerForApi;
+            if (rmiServerForApi != null && !rmiServerForApi.getDriverAddresses().isEmpty()) {
+                return rmiServerForApi.getDriverAddresses();
+            }
+            Thread.sleep(DRIVER_POLL_MILLIS);
+        }
+    }
+    
     public class DriverRunnable implements Runnable {
         private Provisioning provisioning;
+        private volatile RmiServerForApi rmiServerForApi;
         
         @Override
         public void run() {
-            provisioning = new Provisioning(getClass().getResource("/testConfiguration.yml").getPath(), 
-            		Provider.TEST, null);
+            provisioning = new Provisioning(getConfigurationPath(), Provider.TEST, null);
             RmiInfrastructure rmiInfrastructure = provisioning.getRmiInfrastructure();
             RmiServerForDriver rmiServerForDriver = rmiInfrastructure.getRmiServerForDriverObject();
             rmiServerForDriver.addNodeConnectionListener(nodeConnectionListener);
+            rmiServerForApi = rmiInfrastructure.getRmiServerForApiObject();
             provisioning.execute();
         }
         
@@ -59,6 +91,23 @@ public class JPPFTestDriver {
             provisioning.commandShutdown(null);
         }
         
+        private String getConfigurationPath() {
+            String path = getClass().getResource("/testConfiguration.yml").getPath();
+            if (numberOfDrivers == 1) {
+                return path;
+            }
+            try {
+                File configuration = File.createTempFile("testConfiguration", ".yml");
+                configuration.deleteOnExit();
+                Files.copy(new File(path), configuration);
+                Files.append(String.format("local_driver:%n  count: %d%n", numberOfDrivers), 
+                        configuration, Charsets.UTF_8);
+                return configuration.getPath();
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        
     }
     
 }
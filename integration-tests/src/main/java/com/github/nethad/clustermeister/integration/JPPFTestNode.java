@@ -16,6 +16,7 @@
 package com.github.nethad.clustermeister.integration;
 
 import com.github.nethad.clustermeister.api.JPPFConstants;
+import com.github.nethad.clustermeister.node.common.Constants;
 import com.github.nethad.clustermeister.provisioning.jppf.JPPFConfiguratedComponentFactory;
 import com.github.nethad.clustermeister.provisioning.jppf.JPPFManagementByJobsClient;
 import com.github.nethad.clustermeister.provisioning.jppf.JPPFNodeConfiguration;
@@ -36,6 +37,7 @@ public class JPPFTestNode {
     private final Logger logger = LoggerFactory.getLogger(JPPFTestNode.class);
     
     private static final String AKKA_ZIP = "akka-libs.tar.bz2";
+    static final int DEFAULT_PROCESSING_THREADS = 4;
     
     private Process nodeProcess;
     private NodeProcessOutputter nodeProcessOutputterStdOut;
@@ -45,6 +47,7 @@ public class JPPFTestNode {
     
     private int managementPort = 12001;
     private int currentNodeNumber = 0;
+    private int standbyNodes = 0;
     private String currentNodeConfig;
     private File libDir;
     
@@ -54,17 +57,40 @@ public class JPPFTestNode {
         preloadLibraries();
     }
     
+    /**
+     * Sets the number of pre-started standby JVMs each node keeps to serve its restarts.
+     */
+    public void setStandbyNodes(int standbyNodes) {
+        this.standbyNodes = standbyNodes;
+    }
+    
     public void startNewNode() {
-        prepareNodeConfiguration();
+        startNewNode(DEFAULT_PROCESSING_THREADS);
+    }
+    
+    public void startNewNode(int processingThreads) {
+        startNewNode(processingThreads, JPPFConstants.DEFAULT_SERVER_PORT);
+    }
+    
+    public void startNewNode(int processingThreads, int serverPort) {
+        prepareNodeConfiguration(processingThreads, serverPort);
         startNode();
     }
 
     public void prepareNodeConfiguration() throws RuntimeException {
+        prepareNodeConfiguration(DEFAULT_PROCESSING_THREADS, JPPFConstants.DEFAULT_SERVER_PORT);
+    }
+
+    public void prepareNodeConfiguration(int processingThreads, int serverPort) throws RuntimeException {
         JPPFNodeConfiguration nodeConfiguration = new JPPFNodeConfiguration();
         nodeConfiguration.setProperty(JPPFConstants.SERVER_HOST, "localhost")
+                .setProperty(JPPFConstants.SERVER_PORT, String.valueOf(serverPort))
                 .setProperty(JPPFConstants.MANAGEMENT_PORT, String.valueOf(managementPort++))
                 .setProperty(JPPFConstants.RESOURCE_CACHE_DIR, "/tmp/.jppf/node-" + System.currentTimeMillis())
-                .setProperty(JPPFConstants.PROCESSING_THREADS, String.valueOf(4));
+                .setProperty(JPPFConstants.PROCESSING_THREADS, String.valueOf(processingThreads));
+        if (standbyNodes > 0) {
+            nodeConfiguration.setProperty(Constants.CLUSTERMEISTER_STANDBY_NODES, String.valueOf(standbyNodes));
+        }
         
         currentNodeConfig = "config/jppf-node-"+(currentNodeNumber++)+".properties";
         final File propertiesFile = new File(targetDir, "/jppf-node/"+currentNodeConfig);
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.integration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * TCP proxy that delays all data by a fixed one-way latency, to simulate a WAN link on localhost.
+ * 
+ * Data is delayed, not throttled: several chunks can be in flight at the same time.
+ *
+ * @author thomas
+ */
+public class LatencyProxy {
+    private final Logger logger = LoggerFactory.getLogger(LatencyProxy.class);
+    
+    private static final int BUFFER_SIZE = 8192;
+    
+    private final int localPort;
+    private final String targetHost;
+    private final int targetPort;
+    private final long delayMillis;
+    private ServerSocket serverSocket;
+
+    public LatencyProxy(int localPort, String targetHost, int targetPort, long delayMillis) {
+        this.localPort = localPort;
+        this.targetHost = targetHost;
+        this.targetPort = targetPort;
+        this.delayMillis = delayMillis;
+    }
+    
+    public LatencyProxy start() throws IOException {
+        serverSocket = new ServerSocket(localPort);
+        startDaemon("latency-proxy-" + localPort, new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket client = serverSocket.accept();
+                        Socket target = new Socket(targetHost, targetPort);
+                        client.setTcpNoDelay(true);
+                        target.setTcpNoDelay(true);
+                        pipe(client, target);
+                        pipe(target, client);
+                    } catch (IOException ex) {
+                        if (!serverSocket.isClosed()) {
+                            logger.warn("Could not proxy connection.", ex);
+                        }
+                    }
+                }
+            }
+        });
+        logger.info("Proxying port {} to {}:{} with {}ms delay.", 
+                new Object[]{localPort, targetHost, targetPort, delayMillis});
+        return this;
+    }
+    
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException ex) {
+            logger.warn("Could not close proxy socket.", ex);
+        }
+    }
+    
+    private void pipe(final Socket from, final Socket to) throws IOException {
+        final InputStream in = from.getInputStream();
+        final OutputStream out = to.getOutputStream();
+        final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<Chunk>();
+        startDaemon("latency-proxy-reader", new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                try {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        chunks.add(new Chunk(Arrays.copyOf(buffer, read), System.nanoTime()));
+                    }
+                } catch (IOException ex) {
+                    // connection closed
+                }
+                chunks.add(Chunk.END);
+            }
+        });
+        startDaemon("latency-proxy-writer", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Chunk chunk = chunks.take();
+                        if (chunk == Chunk.END) {
+                            break;
+                        }
+                        long wait = chunk.received + TimeUnit.MILLISECONDS.toNanos(delayMillis) - System.nanoTime();
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+                        out.write(chunk.data);
+                        out.flush();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException ex) {
+                    // connection closed
+                } finally {
+                    closeQuietly(from);
+                    closeQuietly(to);
+                }
+            }
+        });
+    }
+    
+    private static void startDaemon(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            // ignore
+        }
+    }
+    
+    private static class Chunk {
+        static final Chunk END = new Chunk(new byte[0], 0);
+        
+        final byte[] data;
+        final long received;
+
+        Chunk(byte[] data, long received) {
+            this.data = data;
+            this.received = received;
+        }
+    }
+}
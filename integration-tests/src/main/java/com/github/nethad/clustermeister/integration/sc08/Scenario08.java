@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.integration.sc08;
+
+import com.github.nethad.clustermeister.api.Clustermeister;
+import com.github.nethad.clustermeister.api.ExecutorNode;
+import com.github.nethad.clustermeister.api.impl.ClustermeisterFactory;
+import com.github.nethad.clustermeister.integration.AbstractScenario;
+import com.github.nethad.clustermeister.integration.Assertions;
+import com.github.nethad.clustermeister.integration.ReturnStringCallable;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Stress scenario that keeps 100'000 {@link ExecutorNode#execute(java.util.concurrent.Callable)}
+ * futures outstanding against local nodes and reports the peak number of client threads.
+ *
+ * @author thomas
+ */
+public class Scenario08 extends AbstractScenario {
+
+    private static final int NUMBER_OF_CALLABLES = 100000;
+    private static final int MAX_CLIENT_THREADS = 500;
+
+    private final Logger logger = LoggerFactory.getLogger(Scenario08.class);
+
+    public static void main(String... args) throws InterruptedException {
+        new Scenario08().withNumberOfNodes(2).execute();
+    }
+
+    @Override
+    public void runScenario() throws Exception {
+        logger.info("Run scenario.");
+
+        Clustermeister clustermeister = ClustermeisterFactory.create();
+        try {
+            List<ExecutorNode> allNodes = new ArrayList<ExecutorNode>(clustermeister.getAllNodes());
+            addToReport("node size", allNodes.size());
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            threadMXBean.resetPeakThreadCount();
+
+            List<ListenableFuture<String>> futures = new ArrayList<ListenableFuture<String>>(NUMBER_OF_CALLABLES);
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < NUMBER_OF_CALLABLES; i++) {
+                ExecutorNode executorNode = allNodes.get(i % allNodes.size());
+                futures.add(executorNode.execute(new ReturnStringCallable(String.valueOf(i))));
+            }
+            long submitted = System.currentTimeMillis();
+            addToReport("submit time (ms)", submitted - start);
+
+            List<String> results = Futures.allAsList(futures).get(30, TimeUnit.MINUTES);
+            long completed = System.currentTimeMillis();
+            addToReport("completion time (ms)", completed - start);
+            addToReport("results", results.size());
+            addToReport("peak thread count", threadMXBean.getPeakThreadCount());
+
+            Assertions.assertEquals(NUMBER_OF_CALLABLES, results.size(), "Number of results not as expected");
+            Assertions.assertEquals(String.valueOf(NUMBER_OF_CALLABLES - 1), results.get(NUMBER_OF_CALLABLES - 1),
+                    "Last result not as expected");
+            if (threadMXBean.getPeakThreadCount() > MAX_CLIENT_THREADS) {
+                throw new AssertionError("Too many client threads: " + threadMXBean.getPeakThreadCount());
+            }
+        } finally {
+            clustermeister.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.integration.sc09;
+
+import com.github.nethad.clustermeister.api.Clustermeister;
+import com.github.nethad.clustermeister.api.impl.AdaptiveExecutorServiceMode;
+import com.github.nethad.clustermeister.api.impl.ClustermeisterFactory;
+import com.github.nethad.clustermeister.api.impl.ExecutorServiceMode;
+import com.github.nethad.clustermeister.integration.AbstractScenario;
+import com.github.nethad.clustermeister.integration.ReturnStringCallable;
+import com.github.nethad.clustermeister.integration.SpinCallable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Benchmark that compares the static {@link ExecutorServiceMode}s to the adaptive mode,
+ * on tiny callables and on heavy (CPU bound) callables.
+ *
+ * @author thomas
+ */
+public class Scenario09 extends AbstractScenario {
+
+    private static final int TINY_CALLABLES = 5000;
+    private static final int HEAVY_CALLABLES = 200;
+    private static final long HEAVY_CALLABLE_MILLIS = 50;
+    private static final long TARGET_LATENCY = 500;
+
+    private final Logger logger = LoggerFactory.getLogger(Scenario09.class);
+
+    public static void main(String... args) throws InterruptedException {
+        new Scenario09().withNumberOfNodes(2).execute();
+    }
+
+    @Override
+    public void runScenario() throws Exception {
+        logger.info("Run scenario.");
+
+        Clustermeister clustermeister = ClustermeisterFactory.create();
+        try {
+            addToReport("node size", clustermeister.getAllNodes().size());
+            runWorkload(clustermeister, "tiny", new CallableFactory() {
+                @Override
+                public Callable<?> create(int index) {
+                    return new ReturnStringCallable(String.valueOf(index));
+                }
+            }, TINY_CALLABLES);
+            runWorkload(clustermeister, "heavy", new CallableFactory() {
+                @Override
+                public Callable<?> create(int index) {
+                    return new SpinCallable(HEAVY_CALLABLE_MILLIS);
+                }
+            }, HEAVY_CALLABLES);
+        } finally {
+            clustermeister.shutdown();
+        }
+    }
+
+    private void runWorkload(Clustermeister clustermeister, String workload,
+            CallableFactory callableFactory, int count) throws Exception {
+        AdaptiveExecutorServiceMode adaptive = ExecutorServiceMode.adaptive(TARGET_LATENCY);
+        Map<String, ExecutorServiceMode> modes = new LinkedHashMap<String, ExecutorServiceMode>();
+        modes.put("standard", ExecutorServiceMode.standard());
+        modes.put("batch(100)", ExecutorServiceMode.batchSizeContraint(100));
+        modes.put("timeout(50ms)+batch(100)", ExecutorServiceMode.timeoutAndBatchSizeContraint(50, 100));
+        modes.put("adaptive(" + TARGET_LATENCY + "ms)", adaptive);
+
+        for (Map.Entry<String, ExecutorServiceMode> mode : modes.entrySet()) {
+            ExecutorService executorService = clustermeister.getExecutorService(mode.getValue());
+            try {
+                long start = System.currentTimeMillis();
+                List<Future<?>> futures = new ArrayList<Future<?>>(count);
+                for (int i = 0; i < count; i++) {
+                    futures.add(executorService.submit(callableFactory.create(i)));
+                }
+                for (Future<?> future : futures) {
+                    future.get(10, TimeUnit.MINUTES);
+                }
+                long duration = Math.max(1, System.currentTimeMillis() - start);
+                addToReport(workload + " " + mode.getKey() + " (ms)", duration);
+                addToReport(workload + " " + mode.getKey() + " (tasks/s)", count * 1000L / duration);
+            } finally {
+                executorService.shutdown();
+            }
+        }
+        addToReport(workload + " adaptive final batch size", adaptive.getBatchSize());
+        addToReport(workload + " adaptive final batch timeout", adaptive.getBatchTimeout());
+        for (AdaptiveExecutorServiceMode.Adjustment adjustment : adaptive.getHistory()) {
+            logger.info("{} adaptive: {}", workload, adjustment);
+        }
+    }
+
+    private interface CallableFactory {
+        Callable<?> create(int index);
+    }
+
+}
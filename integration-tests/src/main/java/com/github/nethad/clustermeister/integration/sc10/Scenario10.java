@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.integration.sc10;
+
+import com.github.nethad.clustermeister.api.Clustermeister;
+import com.github.nethad.clustermeister.api.ExecutorNode;
+import com.github.nethad.clustermeister.api.impl.ClustermeisterFactory;
+import com.github.nethad.clustermeister.api.impl.ExecutorNodeTask;
+import com.github.nethad.clustermeister.api.impl.PayloadSerializers;
+import com.github.nethad.clustermeister.api.impl.YamlConfiguration;
+import com.github.nethad.clustermeister.integration.AbstractScenario;
+import com.github.nethad.clustermeister.integration.EchoArrayCallable;
+import com.github.nethad.clustermeister.integration.ReturnStringCallable;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Benchmark that compares the payload serializers to default Java serialization,
+ * in bytes per task on the wire and in tasks per second, on small string callables and on large arrays.
+ *
+ * @author thomas
+ */
+public class Scenario10 extends AbstractScenario {
+
+    private static final int STRING_CALLABLES = 5000;
+    private static final int ARRAY_CALLABLES = 200;
+    private static final int ARRAY_SIZE = 100000;
+
+    private final Logger logger = LoggerFactory.getLogger(Scenario10.class);
+
+    public static void main(String... args) throws InterruptedException {
+        new Scenario10().withNumberOfNodes(2).execute();
+    }
+
+    @Override
+    public void runScenario() throws Exception {
+        logger.info("Run scenario.");
+
+        Map<String, Configuration> codecs = new LinkedHashMap<String, Configuration>();
+        codecs.put("java (default)", null);
+        codecs.put("compact", yaml("serialization:\n  codec: compact\n"));
+        codecs.put("compact+deflate", yaml("serialization:\n  codec: compact\n  compression_threshold: 16384\n"));
+
+        for (Map.Entry<String, Configuration> codec : codecs.entrySet()) {
+            runWorkload(codec.getKey(), codec.getValue(), "string", new CallableFactory() {
+                @Override
+                public Callable<?> create(int index) {
+                    return new ReturnStringCallable("result " + index);
+                }
+            }, STRING_CALLABLES);
+            runWorkload(codec.getKey(), codec.getValue(), "array", new CallableFactory() {
+                @Override
+                public Callable<?> create(int index) {
+                    return new EchoArrayCallable(ARRAY_SIZE);
+                }
+            }, ARRAY_CALLABLES);
+        }
+    }
+
+    private void runWorkload(String codec, Configuration configuration, String workload,
+            CallableFactory callableFactory, int count) throws Exception {
+        String prefix = workload + " " + codec;
+        ExecutorNodeTask<?> task = new ExecutorNodeTask(
+                callableFactory.create(0), PayloadSerializers.fromConfiguration(configuration));
+        addToReport(prefix + " request (bytes)", serializedSize(task));
+        task.run();
+        addToReport(prefix + " response (bytes)", serializedSize(task));
+
+        Clustermeister clustermeister = ClustermeisterFactory.create(configuration);
+        try {
+            List<ExecutorNode> nodes = new ArrayList<ExecutorNode>(clustermeister.getAllNodes());
+            long start = System.currentTimeMillis();
+            List<ListenableFuture<?>> futures = new ArrayList<ListenableFuture<?>>(count);
+            for (int i = 0; i < count; i++) {
+                futures.add(nodes.get(i % nodes.size()).execute(callableFactory.create(i)));
+            }
+            for (ListenableFuture<?> future : futures) {
+                future.get(10, TimeUnit.MINUTES);
+            }
+            long duration = Math.max(1, System.currentTimeMillis() - start);
+            addToReport(prefix + " (ms)", duration);
+            addToReport(prefix + " (tasks/s)", count * 1000L / duration);
+        } finally {
+            clustermeister.shutdown();
+        }
+    }
+
+    /**
+     * The size of a task as JPPF puts it on the wire.
+     */
+    private static int serializedSize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.size();
+    }
+
+    private static Configuration yaml(String document) {
+        YamlConfiguration configuration = new YamlConfiguration();
+        configuration.load(new StringReader(document));
+        return configuration;
+    }
+
+    private interface CallableFactory {
+        Callable<?> create(int index);
+    }
+
+}
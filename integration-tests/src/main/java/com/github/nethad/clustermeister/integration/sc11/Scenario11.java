@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.integration.sc11;
+
+import com.github.nethad.clustermeister.driver.rmi.IRmiServerForDriver;
+import com.github.nethad.clustermeister.driver.rmi.NodeEvent;
+import com.github.nethad.clustermeister.node.common.control.ControlClient;
+import com.github.nethad.clustermeister.provisioning.rmi.RmiInfrastructure;
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.jppf.management.JPPFManagementInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Benchmark of the driver's node events through the RMI registry and through the control channel.
+ * Measures the latency of single events sent one after another, 
+ * and the events per second sent by several threads at once.
+ * Needs no driver or nodes.
+ *
+ * @author thomas
+ */
+public class Scenario11 {
+    
+    private static final int WARMUP_CALLS = 2000;
+    private static final int LATENCY_CALLS = 10000;
+    private static final int THROUGHPUT_THREADS = 8;
+    private static final int THROUGHPUT_CALLS_PER_THREAD = 5000;
+    
+    private final Logger logger = LoggerFactory.getLogger(Scenario11.class);
+    private final StringBuilder report = new StringBuilder("EXECUTION REPORT:\n");
+
+    public static void main(String... args) throws Exception {
+        new Scenario11().execute();
+        System.exit(0);
+    }
+
+    public void execute() throws Exception {
+        RmiInfrastructure rmiInfrastructure = new RmiInfrastructure();
+        rmiInfrastructure.initialize();
+        
+        IRmiServerForDriver rmiServer = (IRmiServerForDriver) LocateRegistry.getRegistry(
+                rmiInfrastructure.getRegistryPort()).lookup(IRmiServerForDriver.NAME);
+        ControlClient controlClient = ControlClient.connect("localhost", rmiInfrastructure.getControlPort(), 
+                rmiInfrastructure.getControlEndpoint().getSecret());
+        IRmiServerForDriver controlServer = controlClient.getService(IRmiServerForDriver.class);
+        
+        runBenchmark("rmi", rmiServer);
+        runBenchmark("nio", controlServer);
+        
+        controlClient.close();
+        System.out.println(report.toString());
+    }
+
+    private void runBenchmark(String transport, final IRmiServerForDriver server) throws Exception {
+        logger.info("Benchmark {}.", transport);
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            sendEvent(server, "warmup", i);
+        }
+        
+        long[] latencies = new long[LATENCY_CALLS];
+        for (int i = 0; i < LATENCY_CALLS; i++) {
+            long start = System.nanoTime();
+            sendEvent(server, "latency", i);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        addToReport(transport + " latency p50 (us)", latencies[LATENCY_CALLS / 2] / 1000);
+        addToReport(transport + " latency p99 (us)", latencies[LATENCY_CALLS * 99 / 100] / 1000);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(THROUGHPUT_THREADS);
+        List<Callable<Void>> senders = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < THROUGHPUT_THREADS; t++) {
+            final String prefix = "throughput" + t;
+            senders.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int i = 0; i < THROUGHPUT_CALLS_PER_THREAD; i++) {
+                        sendEvent(server, prefix, i);
+                    }
+                    return null;
+                }
+            });
+        }
+        long start = System.currentTimeMillis();
+        for (Future<Void> future : executor.invokeAll(senders)) {
+            future.get();
+        }
+        long duration = Math.max(1, System.currentTimeMillis() - start);
+        executor.shutdown();
+        addToReport(transport + " throughput (events/s)", 
+                (long) THROUGHPUT_THREADS * THROUGHPUT_CALLS_PER_THREAD * 1000 / duration);
+    }
+
+    /**
+     * Connects a node and disconnects the previous one, so the registry stays small.
+     */
+    private void sendEvent(IRmiServerForDriver server, String prefix, int index) throws Exception {
+        NodeEvent event = index % 2 == 0 
+                ? NodeEvent.connected(new JPPFManagementInfo("localhost", 0, prefix + index), null)
+                : NodeEvent.disconnected(new JPPFManagementInfo("localhost", 0, prefix + (index - 1)));
+        server.onNodeEvents(Collections.singletonList(event));
+    }
+
+    private void addToReport(String key, Object value) {
+        report.append(key).append("\t").append(value.toString()).append("\n");
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.integration.sc12;
+
+import com.github.nethad.clustermeister.api.Clustermeister;
+import com.github.nethad.clustermeister.api.impl.ClustermeisterFactory;
+import com.github.nethad.clustermeister.api.impl.Job;
+import com.github.nethad.clustermeister.api.impl.JobFactory;
+import com.github.nethad.clustermeister.api.impl.Task;
+import com.github.nethad.clustermeister.api.utils.NodeManagementConnector;
+import com.github.nethad.clustermeister.integration.AbstractScenario;
+import com.github.nethad.clustermeister.provisioning.jppf.JPPFLocalDriver;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.jppf.management.JMXDriverConnectionWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Benchmark that compares the built-in JPPF load balancing algorithms to {@code cm_throughput}.
+ * 
+ * The nodes have different numbers of processing threads to emulate heterogeneous instance types.
+ * Each algorithm is set on the running driver over JMX and executes the same jobs of tasks 
+ * with varying durations.
+ *
+ * @author thomas
+ */
+public class Scenario12 extends AbstractScenario {
+    
+    private static final int JOBS = 5;
+    private static final int TASKS_PER_JOB = 400;
+    private static final long MIN_TASK_MILLIS = 2;
+    private static final long MAX_TASK_MILLIS = 40;
+    
+    private final Logger logger = LoggerFactory.getLogger(Scenario12.class);
+
+    public static void main(String... args) throws InterruptedException {
+        new Scenario12().withNodeProcessingThreads(1, 2, 4).execute();
+    }
+
+    @Override
+    public void runScenario() throws Exception {
+        logger.info("Run scenario.");
+        
+        Map<String, Map<String, String>> algorithms = new LinkedHashMap<String, Map<String, String>>();
+        algorithms.put("manual", parameters("size", "20"));
+        algorithms.put("nodethreads", parameters("multiplicator", "1"));
+        algorithms.put("proportional", parameters("size", "5", "performanceCacheSize", "300", 
+                "proportionalityFactor", "1"));
+        algorithms.put("autotuned", parameters("size", "5", "minSamplesToAnalyse", "100", 
+                "minSamplesToCheckConvergence", "50", "maxDeviation", "0.2", "maxGuessToStable", "50", 
+                "sizeRatioDeviation", "1.5", "decreaseRatio", "0.2"));
+        algorithms.put("cm_throughput", parameters("targetLatency", "500", "varianceFactor", "1"));
+
+        Clustermeister clustermeister = ClustermeisterFactory.create();
+        JMXDriverConnectionWrapper driver = NodeManagementConnector.openDriverConnection(
+                "localhost", JPPFLocalDriver.MANAGEMENT_PORT);
+        try {
+            addToReport("node size", clustermeister.getAllNodes().size());
+            for (Map.Entry<String, Map<String, String>> algorithm : algorithms.entrySet()) {
+                String result = driver.changeLoadBalancerSettings(algorithm.getKey(), algorithm.getValue());
+                logger.info("{}: {}", algorithm.getKey(), result);
+                runJobs(clustermeister, algorithm.getKey());
+            }
+        } finally {
+            driver.close();
+            clustermeister.shutdown();
+        }
+    }
+
+    private void runJobs(Clustermeister clustermeister, String algorithm) throws Exception {
+        // the same task durations for every algorithm
+        Random random = new Random(42);
+        long start = System.currentTimeMillis();
+        long spinTime = 0;
+        for (int j = 0; j < JOBS; j++) {
+            Job<Long> job = JobFactory.create(algorithm + "-" + j, null);
+            for (int i = 0; i < TASKS_PER_JOB; i++) {
+                long millis = MIN_TASK_MILLIS + (long) (random.nextDouble() * (MAX_TASK_MILLIS - MIN_TASK_MILLIS));
+                spinTime += millis;
+                job.addTask(new SpinTask(millis));
+            }
+            List<Long> results = clustermeister.executeJob(job);
+            if (results.size() != TASKS_PER_JOB) {
+                throw new IllegalStateException("Expected " + TASKS_PER_JOB + " results, got " + results.size());
+            }
+        }
+        long duration = Math.max(1, System.currentTimeMillis() - start);
+        addToReport(algorithm + " (ms)", duration);
+        addToReport(algorithm + " (tasks/s)", JOBS * TASKS_PER_JOB * 1000L / duration);
+        addToReport(algorithm + " (spin time / duration)", String.format("%.2f", (double) spinTime / duration));
+    }
+
+    private static Map<String, String> parameters(String... keyValues) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            parameters.put(keyValues[i], keyValues[i + 1]);
+        }
+        return parameters;
+    }
+
+    private static class SpinTask extends Task<Long> {
+        private final long millis;
+
+        SpinTask(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public Long execute() throws Exception {
+            long end = System.nanoTime() + millis * 1000000L;
+            long iterations = 0;
+            while (System.nanoTime() < end) {
+                iterations++;
+            }
+            return iterations;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.integration.sc13;
+
+import com.github.nethad.clustermeister.api.Clustermeister;
+import com.github.nethad.clustermeister.api.impl.ClustermeisterFactory;
+import com.github.nethad.clustermeister.api.impl.Job;
+import com.github.nethad.clustermeister.api.impl.JobFactory;
+import com.github.nethad.clustermeister.api.impl.Task;
+import com.github.nethad.clustermeister.integration.AbstractScenario;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Benchmark of the dispatch throughput with several local drivers.
+ * 
+ * Submits many small jobs of trivial tasks from concurrent threads, so the drivers' dispatching 
+ * and not the tasks dominate. The number of drivers is the first argument (default 1),
+ * run it with 1 to 4 to compare.
+ *
+ * @author thomas
+ */
+public class Scenario13 extends AbstractScenario {
+    
+    private static final int NODES = 4;
+    private static final int SUBMITTERS = 8;
+    private static final int JOBS_PER_SUBMITTER = 100;
+    private static final int TASKS_PER_JOB = 50;
+    
+    private final Logger logger = LoggerFactory.getLogger(Scenario13.class);
+    private final int numberOfDrivers;
+
+    public Scenario13(int numberOfDrivers) {
+        this.numberOfDrivers = numberOfDrivers;
+    }
+
+    public static void main(String... args) throws InterruptedException {
+        int drivers = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        new Scenario13(drivers).withNumberOfDrivers(drivers).withNumberOfNodes(NODES).execute();
+    }
+
+    @Override
+    public void runScenario() throws Exception {
+        logger.info("Run scenario with {} drivers.", numberOfDrivers);
+        
+        final Clustermeister clustermeister = ClustermeisterFactory.create();
+        ExecutorService submitters = Executors.newFixedThreadPool(SUBMITTERS);
+        try {
+            addToReport("drivers", numberOfDrivers);
+            addToReport("node size", clustermeister.getAllNodes().size());
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            long start = System.currentTimeMillis();
+            for (int s = 0; s < SUBMITTERS; s++) {
+                final int submitter = s;
+                futures.add(submitters.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int j = 0; j < JOBS_PER_SUBMITTER; j++) {
+                            Job<Integer> job = JobFactory.create("dispatch-" + submitter + "-" + j, null);
+                            for (int i = 0; i < TASKS_PER_JOB; i++) {
+                                job.addTask(new IdentityTask(i));
+                            }
+                            List<Integer> results = clustermeister.executeJob(job);
+                            if (results.size() != TASKS_PER_JOB) {
+                                throw new IllegalStateException("Expected " + TASKS_PER_JOB 
+                                        + " results, got " + results.size());
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.MINUTES);
+            }
+            long duration = Math.max(1, System.currentTimeMillis() - start);
+            int jobs = SUBMITTERS * JOBS_PER_SUBMITTER;
+            addToReport("duration (ms)", duration);
+            addToReport("jobs/s", jobs * 1000L / duration);
+            addToReport("tasks/s", (long) jobs * TASKS_PER_JOB * 1000L / duration);
+        } finally {
+            submitters.shutdownNow();
+            clustermeister.shutdown();
+        }
+    }
+
+    private static class IdentityTask extends Task<Integer> {
+        private final int value;
+
+        IdentityTask(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public Integer execute() throws Exception {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.integration.sc14;
+
+import com.github.nethad.clustermeister.api.Clustermeister;
+import com.github.nethad.clustermeister.api.JPPFConstants;
+import com.github.nethad.clustermeister.api.impl.ClustermeisterFactory;
+import com.github.nethad.clustermeister.api.impl.Job;
+import com.github.nethad.clustermeister.api.impl.JobFactory;
+import com.github.nethad.clustermeister.api.impl.Task;
+import com.github.nethad.clustermeister.integration.AbstractScenario;
+import com.github.nethad.clustermeister.integration.LatencyProxy;
+import com.github.nethad.clustermeister.integration.SpinCallable;
+import com.github.nethad.clustermeister.node.common.ClustermeisterLauncher;
+import com.github.nethad.clustermeister.provisioning.jppf.LocalDriverBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Simulates the flat and the tiered EC2 topology on localhost.
+ * 
+ * A {@link LatencyProxy} in front of the local driver plays the WAN link. In the flat topology 
+ * (default) every node connects through it. In the tiered topology (first argument "tiered") 
+ * one driver per tier is peered with the local driver through the proxy, and the nodes connect 
+ * to their tier driver directly, so the WAN is crossed once per bundle instead of once per node.
+ *
+ * @author thomas
+ */
+public class Scenario14 extends AbstractScenario {
+    
+    private static final int TIERS = 2;
+    private static final int NODES_PER_TIER = 2;
+    private static final long WAN_DELAY_MILLIS = 40;
+    private static final int WAN_PORT = 11150;
+    private static final int TIER_SERVER_PORT = 11160;
+    private static final int TIER_MANAGEMENT_PORT = 11260;
+    private static final long SETTLE_MILLIS = 15000;
+    
+    private static final int JOBS = 20;
+    private static final int TASKS_PER_JOB = 200;
+    private static final long TASK_MILLIS = 5;
+    
+    private final Logger logger = LoggerFactory.getLogger(Scenario14.class);
+    private final boolean tiered;
+    private final List<ClustermeisterLauncher> tierDrivers = new ArrayList<ClustermeisterLauncher>();
+    private LatencyProxy wan;
+
+    public Scenario14(boolean tiered) {
+        this.tiered = tiered;
+    }
+
+    public static void main(String... args) throws InterruptedException {
+        boolean tiered = args.length > 0 && "tiered".equalsIgnoreCase(args[0]);
+        new Scenario14(tiered).withNumberOfNodes(TIERS * NODES_PER_TIER).execute();
+    }
+
+    @Override
+    protected void beforeNodesStarted() {
+        try {
+            wan = new LatencyProxy(WAN_PORT, "localhost", 
+                    getDriverAddresses().get(0).getServerPort(), WAN_DELAY_MILLIS).start();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        if (!tiered) {
+            return;
+        }
+        for (int tier = 0; tier < TIERS; tier++) {
+            LocalDriverBuilder builder = new LocalDriverBuilder(
+                    TIER_SERVER_PORT + tier, TIER_MANAGEMENT_PORT + tier, null);
+            builder.setDriverProperty(JPPFConstants.PEERS, "local")
+                    .setDriverProperty(String.format(JPPFConstants.PEER_SERVER_HOST_PATTERN, "local"), "localhost")
+                    .setDriverProperty(String.format(JPPFConstants.PEER_SERVER_PORT_PATTERN, "local"), 
+                            String.valueOf(WAN_PORT));
+            tierDrivers.add(builder.build());
+        }
+    }
+
+    @Override
+    protected int getNodeServerPort(int nodeIndex) {
+        if (tiered) {
+            return TIER_SERVER_PORT + nodeIndex / NODES_PER_TIER;
+        }
+        return WAN_PORT;
+    }
+
+    @Override
+    public void runScenario() throws Exception {
+        logger.info("Run scenario with {} topology.", tiered ? "tiered" : "flat");
+        // the first connection is not necessarily the last node
+        Thread.sleep(SETTLE_MILLIS);
+        
+        Clustermeister clustermeister = ClustermeisterFactory.create();
+        try {
+            addToReport("topology", tiered ? "tiered" : "flat");
+            addToReport("WAN delay (ms)", WAN_DELAY_MILLIS);
+            long start = System.currentTimeMillis();
+            for (int j = 0; j < JOBS; j++) {
+                Job<Long> job = JobFactory.create("topology-" + j, null);
+                for (int i = 0; i < TASKS_PER_JOB; i++) {
+                    job.addTask(new SpinTask(TASK_MILLIS));
+                }
+                List<Long> results = clustermeister.executeJob(job);
+                if (results.size() != TASKS_PER_JOB) {
+                    throw new IllegalStateException("Expected " + TASKS_PER_JOB 
+                            + " results, got " + results.size());
+                }
+            }
+            long duration = Math.max(1, System.currentTimeMillis() - start);
+            addToReport("duration (ms)", duration);
+            addToReport("tasks/s", (long) JOBS * TASKS_PER_JOB * 1000L / duration);
+        } finally {
+            clustermeister.shutdown();
+            for (ClustermeisterLauncher tierDriver : tierDrivers) {
+                tierDriver.shutdownProcess();
+            }
+            wan.stop();
+        }
+    }
+
+    private static class SpinTask extends Task<Long> {
+        private final long millis;
+
+        SpinTask(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public Long execute() throws Exception {
+            return new SpinCallable(millis).call();
+        }
+    }
+}
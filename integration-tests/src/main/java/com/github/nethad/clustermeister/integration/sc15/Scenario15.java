@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.integration.sc15;
+
+import com.github.nethad.clustermeister.api.Clustermeister;
+import com.github.nethad.clustermeister.api.impl.ClustermeisterFactory;
+import com.github.nethad.clustermeister.api.impl.Job;
+import com.github.nethad.clustermeister.api.impl.JobFactory;
+import com.github.nethad.clustermeister.api.impl.Task;
+import com.github.nethad.clustermeister.integration.AbstractScenario;
+import com.github.nethad.clustermeister.provisioning.jppf.JPPFConfiguratedComponentFactory;
+import com.github.nethad.clustermeister.provisioning.jppf.JPPFManagementByJobsClient;
+import java.util.List;
+import org.jppf.management.JPPFManagementInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Measures the time from a node restart until the node executes its first task again.
+ * 
+ * The first argument is the number of standby JVMs the node keeps (default 0). 
+ * With standby JVMs the restarted node attaches to an already running, warmed up JVM 
+ * instead of starting a new one.
+ *
+ * @author thomas
+ */
+public class Scenario15 extends AbstractScenario {
+    
+    private static final int RESTARTS = 5;
+    private static final long SETTLE_MILLIS = 10000;
+    
+    private final Logger logger = LoggerFactory.getLogger(Scenario15.class);
+    private final int standbyNodes;
+    private volatile boolean restarting = false;
+
+    public Scenario15(int standbyNodes) {
+        this.standbyNodes = standbyNodes;
+    }
+
+    public static void main(String... args) throws InterruptedException {
+        int standbyNodes = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        new Scenario15(standbyNodes).withStandbyNodes(standbyNodes).execute();
+    }
+
+    @Override
+    public void runScenario() throws Exception {
+        logger.info("Run scenario with {} standby nodes.", standbyNodes);
+        
+        Clustermeister clustermeister = ClustermeisterFactory.create();
+        JPPFManagementByJobsClient managementClient = JPPFConfiguratedComponentFactory.getInstance()
+                .createManagementByJobsClient("localhost", 11111);
+        try {
+            addToReport("standby nodes", standbyNodes);
+            executeProbe(clustermeister, "warmup");
+            long total = 0;
+            for (int i = 0; i < RESTARTS; i++) {
+                // let the standby pool refill
+                Thread.sleep(SETTLE_MILLIS);
+                restarting = true;
+                long start = System.currentTimeMillis();
+                managementClient.restartAllNodes();
+                executeProbe(clustermeister, "restart-" + i);
+                long duration = System.currentTimeMillis() - start;
+                restarting = false;
+                addToReport("restart " + i + " to first task (ms)", duration);
+                total += duration;
+            }
+            addToReport("average restart to first task (ms)", total / RESTARTS);
+        } finally {
+            restarting = true;
+            managementClient.close();
+            clustermeister.shutdown();
+        }
+    }
+
+    @Override
+    public void onNodeDisconnected(JPPFManagementInfo jppfmi) {
+        if (!restarting) {
+            super.onNodeDisconnected(jppfmi);
+        }
+    }
+
+    private void executeProbe(Clustermeister clustermeister, String name) throws Exception {
+        Job<String> job = JobFactory.create(name, null);
+        job.addTask(new ProbeTask(name));
+        List<String> results = clustermeister.executeJob(job);
+        if (results.size() != 1 || !name.equals(results.get(0))) {
+            throw new IllegalStateException("Unexpected result " + results + " for " + name);
+        }
+    }
+
+    private static class ProbeTask extends Task<String> {
+        private final String value;
+
+        ProbeTask(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String execute() throws Exception {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.integration.sc16;
+
+import com.github.nethad.clustermeister.api.Clustermeister;
+import com.github.nethad.clustermeister.api.impl.ClustermeisterFactory;
+import com.github.nethad.clustermeister.api.impl.Job;
+import com.github.nethad.clustermeister.api.impl.JobFactory;
+import com.github.nethad.clustermeister.api.impl.Task;
+import com.github.nethad.clustermeister.integration.AbstractScenario;
+import com.github.nethad.clustermeister.node.common.ClassCacheStatistics;
+import com.github.nethad.clustermeister.provisioning.jppf.JPPFConfiguratedComponentFactory;
+import com.github.nethad.clustermeister.provisioning.jppf.JPPFManagementByJobsClient;
+import java.util.List;
+import java.util.Map;
+import org.jppf.management.JPPFManagementInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Executes the same job before and after a node restart and reports the 
+ * node's class cache statistics. After the restart, the classes of the job 
+ * are expected to be loaded from the class cache.
+ *
+ * @author thomas
+ */
+public class Scenario16 extends AbstractScenario {
+    
+    private static final int TASKS = 20;
+    private static final long RESTART_MILLIS = 15000;
+    
+    private final Logger logger = LoggerFactory.getLogger(Scenario16.class);
+    private volatile boolean restarting = false;
+
+    public static void main(String... args) throws InterruptedException {
+        new Scenario16().execute();
+    }
+
+    @Override
+    public void runScenario() throws Exception {
+        logger.info("Run scenario.");
+        
+        Clustermeister clustermeister = ClustermeisterFactory.create();
+        JPPFManagementByJobsClient managementClient = JPPFConfiguratedComponentFactory.getInstance()
+                .createManagementByJobsClient("localhost", 11111);
+        try {
+            addToReport("first run (ms)", executeJob(clustermeister, "first"));
+            addToReport("second run (ms)", executeJob(clustermeister, "second"));
+            reportStatistics(clustermeister, "before restart");
+            
+            restarting = true;
+            managementClient.restartAllNodes();
+            Thread.sleep(RESTART_MILLIS);
+            restarting = false;
+            
+            addToReport("run after restart (ms)", executeJob(clustermeister, "restarted"));
+            reportStatistics(clustermeister, "after restart");
+        } finally {
+            restarting = true;
+            managementClient.close();
+            clustermeister.shutdown();
+        }
+    }
+
+    @Override
+    public void onNodeDisconnected(JPPFManagementInfo jppfmi) {
+        if (!restarting) {
+            super.onNodeDisconnected(jppfmi);
+        }
+    }
+
+    private long executeJob(Clustermeister clustermeister, String name) throws Exception {
+        long start = System.currentTimeMillis();
+        Job<String> job = JobFactory.create(name, null);
+        for (int i = 0; i < TASKS; i++) {
+            job.addTask(new GreetingTask(i));
+        }
+        List<String> results = clustermeister.executeJob(job);
+        if (results.size() != TASKS) {
+            throw new IllegalStateException("Expected " + TASKS + " results, got " + results.size());
+        }
+        return System.currentTimeMillis() - start;
+    }
+    
+    private void reportStatistics(Clustermeister clustermeister, String label) throws Exception {
+        Map<String, ClassCacheStatistics> statistics = clustermeister.getClassCacheStatistics();
+        for (Map.Entry<String, ClassCacheStatistics> entry : statistics.entrySet()) {
+            addToReport("class cache " + label + " " + entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static class GreetingTask extends Task<String> {
+        private final int index;
+
+        GreetingTask(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String execute() throws Exception {
+            return new Greeting(index).toString();
+        }
+    }
+    
+    private static class Greeting {
+        private final int index;
+
+        Greeting(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String toString() {
+            return "Hello from task " + index;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.integration.sc17;
+
+import com.github.nethad.clustermeister.api.Clustermeister;
+import com.github.nethad.clustermeister.api.ExecutorNode;
+import com.github.nethad.clustermeister.api.impl.ClustermeisterFactory;
+import com.github.nethad.clustermeister.api.impl.ExecutorServiceMode;
+import com.github.nethad.clustermeister.integration.AbstractScenario;
+import com.github.nethad.clustermeister.integration.SpinCallable;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Reports the node telemetry while the nodes are idle and while they are busy with 
+ * more tasks than processing threads, and the highest sampling overhead observed.
+ *
+ * @author thomas
+ */
+public class Scenario17 extends AbstractScenario {
+    
+    private static final int CALLABLES = 400;
+    private static final long CALLABLE_MILLIS = 100;
+    private static final long POLL_INTERVAL = 1000;
+    
+    private final Logger logger = LoggerFactory.getLogger(Scenario17.class);
+    private float maxOverhead = 0;
+
+    public static void main(String... args) throws InterruptedException {
+        new Scenario17().withNumberOfNodes(2).execute();
+    }
+
+    @Override
+    public void runScenario() throws Exception {
+        logger.info("Run scenario.");
+        
+        Clustermeister clustermeister = ClustermeisterFactory.create();
+        try {
+            addToReport("node size", clustermeister.getAllNodes().size());
+            // let every node send a few samples
+            Thread.sleep(3 * POLL_INTERVAL);
+            reportTelemetry(clustermeister, "idle");
+            
+            ExecutorService executorService = clustermeister.getExecutorService(
+                    ExecutorServiceMode.batchSizeContraint(CALLABLES / 4));
+            try {
+                List<Future<Long>> futures = new ArrayList<Future<Long>>(CALLABLES);
+                for (int i = 0; i < CALLABLES; i++) {
+                    futures.add(executorService.submit(new SpinCallable(CALLABLE_MILLIS)));
+                }
+                int polls = 0;
+                while (!futures.get(futures.size() - 1).isDone()) {
+                    Thread.sleep(POLL_INTERVAL);
+                    reportTelemetry(clustermeister, "busy " + polls++);
+                }
+                for (Future<Long> future : futures) {
+                    future.get(10, TimeUnit.MINUTES);
+                }
+            } finally {
+                executorService.shutdown();
+            }
+            addToReport("max sampling overhead (%)", String.format("%.4f", maxOverhead * 100));
+        } finally {
+            clustermeister.shutdown();
+        }
+    }
+    
+    private void reportTelemetry(Clustermeister clustermeister, String label) {
+        for (ExecutorNode node : clustermeister.getAllNodes()) {
+            NodeTelemetrySample telemetry = node.getCapabilities().getTelemetry();
+            if (telemetry == null) {
+                addToReport(label + " " + node.getID(), "no telemetry");
+                continue;
+            }
+            addToReport(label + " " + node.getID(), telemetry);
+            maxOverhead = Math.max(maxOverhead, telemetry.getSamplingOverhead());
+        }
+    }
+}
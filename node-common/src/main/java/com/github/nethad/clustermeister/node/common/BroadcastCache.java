@@ -0,0 +1,204 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A node-local cache for broadcast values, shared by all jobs executed on the node.
+ * 
+ * Values are identified by the content hash computed on the client and by an owner, 
+ * usually the class loader of the requesting task, so that values are not shared 
+ * between clients with different class loaders. Owners are only weakly referenced, 
+ * values whose owner has been collected are dropped. The least recently used values are 
+ * evicted when the cache exceeds its memory budget.
+ * 
+ * The budget in bytes is read from the system property {@link #BUDGET_PROPERTY} 
+ * and defaults to a quarter of the maximum heap.
+ *
+ * @author daniel
+ */
+public class BroadcastCache {
+    
+    /**
+     * System property for the memory budget in bytes.
+     */
+    public static final String BUDGET_PROPERTY = 
+            "com.github.nethad.clustermeister.broadcastCacheBudget";
+    
+    private static final BroadcastCache INSTANCE = new BroadcastCache(
+            Long.getLong(BUDGET_PROPERTY, Runtime.getRuntime().maxMemory() / 4));
+    
+    private final long budget;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private final Map<Key, FutureTask<Object>> loading = new HashMap<Key, FutureTask<Object>>();
+    private final ReferenceQueue<Object> collectedOwners = new ReferenceQueue<Object>();
+    private long usedBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    BroadcastCache(long budget) {
+        this.budget = budget;
+    }
+    
+    /**
+     * @return the cache of this node.
+     */
+    public static BroadcastCache getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Returns a cached value, or loads and caches it.
+     * 
+     * Concurrent requests for the same value wait for a single load.
+     * 
+     * @param hash      the content hash of the value.
+     * @param owner     the owner of the value, compared by identity.
+     * @param size      the (serialized) size of the value in bytes.
+     * @param loader    loads the value on a miss.
+     * @return the value.
+     * @throws Exception if the value can not be loaded.
+     */
+    public Object get(String hash, Object owner, long size, Callable<?> loader) throws Exception {
+        Key key = new Key(hash, owner, collectedOwners);
+        FutureTask<Object> load;
+        boolean loadHere = false;
+        synchronized (this) {
+            purgeCollectedOwners();
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                return entry.value;
+            }
+            load = loading.get(key);
+            if (load == null) {
+                misses++;
+                load = new FutureTask<Object>((Callable<Object>) loader);
+                loading.put(key, load);
+                loadHere = true;
+            } else {
+                // no further transfer, another task is loading the value
+                hits++;
+            }
+        }
+        if (loadHere) {
+            load.run();
+            synchronized (this) {
+                loading.remove(key);
+                try {
+                    store(key, load.get(), size);
+                } catch (ExecutionException ex) {
+                    // failed loads are not cached, the failure is thrown below
+                }
+            }
+        }
+        try {
+            return load.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw ex;
+        }
+    }
+    
+    private void purgeCollectedOwners() {
+        Key key;
+        while ((key = (Key) collectedOwners.poll()) != null) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                usedBytes -= entry.size;
+            }
+        }
+    }
+    
+    private void store(Key key, Object value, long size) {
+        if (size > budget) {
+            return;
+        }
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (usedBytes + size > budget && iterator.hasNext()) {
+            usedBytes -= iterator.next().size;
+            iterator.remove();
+            evictions++;
+        }
+        entries.put(key, new Entry(value, size));
+        usedBytes += size;
+    }
+    
+    /**
+     * @return a snapshot of the cache counters.
+     */
+    public synchronized BroadcastCacheStatistics getStatistics() {
+        purgeCollectedOwners();
+        return new BroadcastCacheStatistics(hits, misses, evictions, entries.size(), usedBytes, budget);
+    }
+    
+    /**
+     * Weakly references the owner so that a cached value does not keep 
+     * a client class loader alive on its own.
+     */
+    private static class Key extends WeakReference<Object> {
+        private final String hash;
+        private final int hashCode;
+
+        Key(String hash, Object owner, ReferenceQueue<Object> queue) {
+            super(owner, queue);
+            this.hash = hash;
+            this.hashCode = hash.hashCode() * 31 + System.identityHashCode(owner);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            Object owner = get();
+            // a collected owner only equals its own key
+            return owner != null && hash.equals(other.hash) && owner == other.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+    
+    private static class Entry {
+        private final Object value;
+        private final long size;
+
+        Entry(Object value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
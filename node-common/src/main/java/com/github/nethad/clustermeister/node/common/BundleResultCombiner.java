@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Combines the results of all tasks of a job bundle on the node, 
+ * before they are returned to the driver.
+ * 
+ * A job enables this by putting a combiner into its data provider 
+ * under {@link #DATA_PROVIDER_KEY}. After combining, the first successful task 
+ * of the bundle carries the combined result and the other successful tasks carry 
+ * {@link Marker#COMBINED}, so a null result of a task that was not combined stays distinguishable.
+ * Failed tasks are returned unchanged.
+ *
+ * @author daniel
+ */
+public interface BundleResultCombiner extends Serializable {
+    
+    /**
+     * The data provider key for a job's combiner.
+     */
+    public static final String DATA_PROVIDER_KEY = "com.github.nethad.clustermeister.bundleResultCombiner";
+    
+    /**
+     * The result of a task whose result was combined into another task's result.
+     */
+    public enum Marker {
+        COMBINED
+    }
+    
+    /**
+     * Combines task results.
+     * 
+     * @param results the results of the successful tasks of a bundle, in task order.
+     * @return the combined result.
+     * @throws Exception if the results can not be combined.
+     */
+    public Object combine(List<Object> results) throws Exception;
+    
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import org.jppf.utils.JPPFConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent node-side cache for the class path entries (jars and class directories) 
+ * of clients, so that their classes are not loaded remotely again after a node restart.
+ * 
+ * Entries are stored as jars named by the content hash computed on the client, 
+ * see {@link ClassPathEntries#hash(File)}, in the directory {@link #DIRECTORY_NAME} 
+ * below the JPPF resource cache directory. The least recently used entries are 
+ * deleted when the cache exceeds its budget.
+ * 
+ * The directory is shared by all nodes on a host. A JVM holds a shared file lock on every 
+ * entry it adds to a class path, see {@link #addToClassLoader(File, ClassLoader)}, for as long 
+ * as it runs. Entries are only deleted under an exclusive lock, so an entry on the class path 
+ * of any JVM is never evicted.
+ * 
+ * The budget in bytes is read from the system property {@link #BUDGET_PROPERTY} 
+ * and defaults to 256 MB. Entries larger than {@link #MAX_ENTRY_SIZE_PROPERTY} 
+ * (32 MB by default) or the budget are not cached.
+ *
+ * @author daniel
+ */
+public class ClassCache {
+    
+    /**
+     * System property for the disk budget in bytes.
+     */
+    public static final String BUDGET_PROPERTY = 
+            "com.github.nethad.clustermeister.classCacheBudget";
+    
+    /**
+     * System property for the size in bytes of the largest entry to cache.
+     */
+    public static final String MAX_ENTRY_SIZE_PROPERTY = 
+            "com.github.nethad.clustermeister.classCacheMaxEntrySize";
+    
+    /**
+     * The directory of the cache below the JPPF resource cache directory.
+     */
+    public static final String DIRECTORY_NAME = "clustermeister-classes";
+    
+    private static final String RESOURCE_CACHE_DIR = "jppf.resource.cache.dir";
+    private static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+    private static final long DEFAULT_MAX_ENTRY_SIZE = 32L * 1024 * 1024;
+    private static final String SUFFIX = ".jar";
+    
+    private static final Logger logger = LoggerFactory.getLogger(ClassCache.class);
+    
+    private static ClassCache instance = null;
+    
+    /**
+     * The locks on the entries on a class path of this JVM.
+     */
+    private static final Map<File, FileLock> inUse = new HashMap<File, FileLock>();
+    
+    private final File directory;
+    private final long budget;
+    private final long maxEntrySize;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long fetchedBytes = 0;
+
+    ClassCache(File directory, long budget) {
+        this(directory, budget, budget);
+    }
+    
+    ClassCache(File directory, long budget, long maxEntrySize) {
+        this.directory = directory;
+        this.budget = budget;
+        this.maxEntrySize = Math.min(maxEntrySize, budget);
+    }
+    
+    /**
+     * @return the cache of this node.
+     */
+    public static synchronized ClassCache getInstance() {
+        if (instance == null) {
+            String resourceCacheDir = JPPFConfiguration.getProperties().getString(
+                    RESOURCE_CACHE_DIR, System.getProperty("java.io.tmpdir"));
+            instance = new ClassCache(new File(resourceCacheDir, DIRECTORY_NAME), 
+                    Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET), 
+                    Long.getLong(MAX_ENTRY_SIZE_PROPERTY, DEFAULT_MAX_ENTRY_SIZE));
+        }
+        return instance;
+    }
+    
+    /**
+     * Looks up a cached entry and counts a hit or a miss.
+     * 
+     * @param hash the content hash of the entry.
+     * @return the cached jar, or null if it is not cached.
+     */
+    public synchronized File get(String hash) {
+        File file = fileFor(hash);
+        if (file.isFile()) {
+            hits++;
+            file.setLastModified(System.currentTimeMillis());
+            return file;
+        }
+        misses++;
+        return null;
+    }
+    
+    /**
+     * @param hash the content hash of the entry.
+     * @return whether the entry is cached, without counting a hit or a miss.
+     */
+    public synchronized boolean contains(String hash) {
+        return fileFor(hash).isFile();
+    }
+    
+    /**
+     * @return the size in bytes of the largest entry the cache takes.
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+    
+    /**
+     * Stores an entry fetched from a client.
+     * 
+     * @param hash the content hash of the entry.
+     * @param content the content, see {@link ClassPathEntries#toJar(File)}.
+     * @return the cached jar.
+     * @throws IOException if the entry can not be written.
+     */
+    public File store(String hash, byte[] content) throws IOException {
+        File file = fileFor(hash);
+        directory.mkdirs();
+        // written aside and renamed, a crash must not leave a truncated entry
+        File temp = File.createTempFile("entry-", ".tmp", directory);
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        synchronized (this) {
+            // an existing entry may be in use, it has the same content and is not replaced
+            if (file.isFile() || !temp.renameTo(file)) {
+                temp.delete();
+                if (!file.isFile()) {
+                    throw new IOException("Could not store " + file + ".");
+                }
+            }
+            fetchedBytes += content.length;
+            evict(file);
+        }
+        return file;
+    }
+    
+    private void evict(File keep) {
+        File[] files = cachedFiles();
+        long usedBytes = 0;
+        for (File file : files) {
+            usedBytes += file.length();
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.valueOf(o1.lastModified()).compareTo(o2.lastModified());
+            }
+        });
+        for (int i = 0; i < files.length && usedBytes > budget; i++) {
+            if (files[i].equals(keep)) {
+                continue;
+            }
+            long length = files[i].length();
+            if (deleteUnused(files[i])) {
+                usedBytes -= length;
+                evictions++;
+            }
+        }
+    }
+    
+    /**
+     * Deletes an entry unless a JVM has it on its class path.
+     */
+    private static boolean deleteUnused(File file) {
+        synchronized (inUse) {
+            if (inUse.containsKey(file)) {
+                return false;
+            }
+            try {
+                RandomAccessFile access = new RandomAccessFile(file, "rw");
+                try {
+                    FileLock lock = access.getChannel().tryLock();
+                    if (lock == null) {
+                        // on the class path of another JVM
+                        return false;
+                    }
+                    return file.delete();
+                } finally {
+                    access.close();
+                }
+            } catch (OverlappingFileLockException ex) {
+                return false;
+            } catch (IOException ex) {
+                logger.warn("Could not evict {}.", file, ex);
+                return false;
+            }
+        }
+    }
+    
+    private File[] cachedFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+    
+    private File fileFor(String hash) {
+        if (!hash.matches("[0-9a-f]+")) {
+            throw new IllegalArgumentException("Not a content hash: " + hash);
+        }
+        return new File(directory, hash + SUFFIX);
+    }
+    
+    /**
+     * Adds a cached jar to the class path of a class loader. 
+     * The jar is locked against eviction for the life time of this JVM.
+     * 
+     * @param file the cached jar.
+     * @param classLoader the class loader, usually the JPPF class loader of a client.
+     * @return whether the jar could be added.
+     */
+    public static boolean addToClassLoader(File file, ClassLoader classLoader) {
+        if (!(classLoader instanceof URLClassLoader) || !lock(file)) {
+            return false;
+        }
+        try {
+            Method addURL;
+            try {
+                // the JPPF class loaders expose addURL
+                addURL = classLoader.getClass().getMethod("addURL", URL.class);
+            } catch (NoSuchMethodException ex) {
+                addURL = URLClassLoader.class.getDeclaredMethod("addURL", URL.class);
+                addURL.setAccessible(true);
+            }
+            addURL.invoke(classLoader, file.toURI().toURL());
+            return true;
+        } catch (Exception ex) {
+            logger.warn("Could not add {} to the class path.", file, ex);
+            return false;
+        }
+    }
+    
+    /**
+     * Takes a shared lock on an entry, unless this JVM already holds one.
+     * 
+     * @return false if the entry was evicted before it could be locked.
+     */
+    private static boolean lock(File file) {
+        synchronized (inUse) {
+            if (inUse.containsKey(file)) {
+                return true;
+            }
+            try {
+                // closing the channel would release the lock, it stays open
+                FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+                try {
+                    FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+                    if (file.isFile()) {
+                        inUse.put(file, lock);
+                        return true;
+                    }
+                } catch (IOException ex) {
+                    channel.close();
+                    throw ex;
+                }
+                // evicted while waiting for the lock
+                channel.close();
+                return false;
+            } catch (IOException ex) {
+                logger.warn("Could not lock {}.", file, ex);
+                return false;
+            }
+        }
+    }
+    
+    /**
+     * @return a snapshot of the cache counters.
+     */
+    public synchronized ClassCacheStatistics getStatistics() {
+        File[] files = cachedFiles();
+        long usedBytes = 0;
+        for (File file : files) {
+            usedBytes += file.length();
+        }
+        return new ClassCacheStatistics(hits, misses, evictions, files.length, 
+                usedBytes, budget, fetchedBytes);
+    }
+}
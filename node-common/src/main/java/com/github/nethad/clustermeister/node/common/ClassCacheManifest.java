@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jppf.classloader.AbstractJPPFClassLoader;
+
+/**
+ * Lists the client class path entries a job's code is loaded from, by content hash. 
+ * Sent in the job's data provider to validate the node's {@link ClassCache}.
+ * 
+ * The manifest is deserialized on the node before the tasks of the job. The cached 
+ * entries are then added to the class path of the client's class loader, 
+ * so the classes of unchanged entries are not loaded remotely.
+ *
+ * @author daniel
+ */
+public class ClassCacheManifest implements Serializable {
+    
+    /**
+     * The key of the manifest in a job's data provider.
+     */
+    public static final String DATA_PROVIDER_KEY = "clustermeister.classCacheManifest";
+    
+    private final Map<String, String> entries = new LinkedHashMap<String, String>();
+    private transient List<String> missing = null;
+    
+    /**
+     * Adds a client class path entry.
+     * 
+     * @param hash the content hash of the entry.
+     * @param location the path of the entry on the client.
+     */
+    public synchronized void add(String hash, String location) {
+        entries.put(hash, location);
+    }
+    
+    /**
+     * @return the client class path entries by content hash.
+     */
+    public synchronized Map<String, String> getEntries() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, String>(entries));
+    }
+    
+    /**
+     * Adds the cached entries to the class path of a class loader. Only the first call has an effect.
+     * 
+     * @param classLoader the class loader of the client.
+     * @return the hashes of the entries that are not cached.
+     */
+    public synchronized List<String> install(ClassLoader classLoader) {
+        if (missing == null) {
+            missing = new ArrayList<String>();
+            ClassCache cache = ClassCache.getInstance();
+            for (String hash : entries.keySet()) {
+                File file = cache.get(hash);
+                if (file == null || !ClassCache.addToClassLoader(file, classLoader)) {
+                    missing.add(hash);
+                }
+            }
+        }
+        return Collections.unmodifiableList(missing);
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // the node deserializes the job's objects with the client's class loader as context
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader instanceof AbstractJPPFClassLoader) {
+            install(classLoader);
+        }
+    }
+}
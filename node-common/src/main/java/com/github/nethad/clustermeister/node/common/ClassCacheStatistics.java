@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.Serializable;
+
+/**
+ * A snapshot of the counters of a node's {@link ClassCache}.
+ *
+ * @author daniel
+ */
+public class ClassCacheStatistics implements Serializable {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int entries;
+    private final long usedBytes;
+    private final long budgetBytes;
+    private final long fetchedBytes;
+
+    public ClassCacheStatistics(long hits, long misses, long evictions, int entries, 
+            long usedBytes, long budgetBytes, long fetchedBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.usedBytes = usedBytes;
+        this.budgetBytes = budgetBytes;
+        this.fetchedBytes = fetchedBytes;
+    }
+
+    /**
+     * @return the number of class path entries served from the cache.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of class path entries that were not cached.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * @return the number of bytes fetched from clients to fill the cache since the node started.
+     */
+    public long getFetchedBytes() {
+        return fetchedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, evictions=%d, entries=%d, used=%d/%d bytes, fetched=%d bytes", 
+                hits, misses, evictions, entries, usedBytes, budgetBytes, fetchedBytes);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Content hashes and transfer of class path entries (jars and class directories).
+ *
+ * @author daniel
+ */
+public class ClassPathEntries {
+    
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    /**
+     * Computes the content hash of a class path entry.
+     * 
+     * For a directory, the hash covers the relative path and the content 
+     * of every file below it.
+     * 
+     * @param entry a jar file or a directory.
+     * @return the hex encoded SHA-1 hash.
+     * @throws IOException if the entry can not be read.
+     */
+    public static String hash(File entry) throws IOException {
+        MessageDigest digest = sha1();
+        if (entry.isDirectory()) {
+            hashDirectory(entry, "", digest);
+        } else {
+            update(digest, entry);
+        }
+        return toHex(digest.digest());
+    }
+    
+    /**
+     * Returns a value that changes when the entry is modified, 
+     * cheaper to compute than the hash.
+     * 
+     * @param entry a jar file or a directory.
+     * @return the stamp of the entry.
+     */
+    public static long stamp(File entry) {
+        if (!entry.isDirectory()) {
+            return entry.lastModified() * 31 + entry.length();
+        }
+        long stamp = entry.lastModified();
+        File[] files = entry.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                stamp = stamp * 31 + stamp(file);
+            }
+        }
+        return stamp;
+    }
+    
+    /**
+     * Returns the size of a class path entry, the total size of its files 
+     * for a directory.
+     * 
+     * @param entry a jar file or a directory.
+     * @return the size in bytes.
+     */
+    public static long size(File entry) {
+        if (!entry.isDirectory()) {
+            return entry.length();
+        }
+        long size = 0;
+        File[] files = entry.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += size(file);
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Returns the content of a class path entry as it is stored in a class cache, 
+     * a directory is packed into a jar.
+     * 
+     * @param entry a jar file or a directory.
+     * @return the content.
+     * @throws IOException if the entry can not be read.
+     */
+    public static byte[] toJar(File entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (entry.isDirectory()) {
+            JarOutputStream jar = new JarOutputStream(bytes);
+            try {
+                addDirectory(entry, "", jar);
+            } finally {
+                jar.close();
+            }
+        } else {
+            InputStream in = new FileInputStream(entry);
+            try {
+                copy(in, bytes);
+            } finally {
+                in.close();
+            }
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static void hashDirectory(File directory, String path, MessageDigest digest) 
+            throws IOException {
+        for (File file : sortedFiles(directory)) {
+            String name = path + file.getName();
+            if (file.isDirectory()) {
+                hashDirectory(file, name + "/", digest);
+            } else {
+                digest.update(name.getBytes(Constants.UTF8));
+                digest.update((byte) 0);
+                update(digest, file);
+            }
+        }
+    }
+    
+    private static void addDirectory(File directory, String path, JarOutputStream jar) 
+            throws IOException {
+        for (File file : sortedFiles(directory)) {
+            String name = path + file.getName();
+            if (file.isDirectory()) {
+                jar.putNextEntry(new JarEntry(name + "/"));
+                jar.closeEntry();
+                addDirectory(file, name + "/", jar);
+            } else {
+                jar.putNextEntry(new JarEntry(name));
+                InputStream in = new FileInputStream(file);
+                try {
+                    copy(in, jar);
+                } finally {
+                    in.close();
+                }
+                jar.closeEntry();
+            }
+        }
+    }
+    
+    private static File[] sortedFiles(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+    
+    private static void update(MessageDigest digest, File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+    }
+    
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+    }
+    
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.File;
+import org.jppf.utils.JPPFCallable;
+
+/**
+ * Executed on the client on behalf of a node, returns a class path entry 
+ * for the node's {@link ClassCache}, or null if it is larger than the node takes.
+ *
+ * @author daniel
+ */
+public class ClassPathEntryFetch implements JPPFCallable<byte[]> {
+    private final String location;
+    private final String hash;
+    private final long maxSize;
+
+    /**
+     * @param location the path of the entry on the client.
+     * @param hash the expected content hash of the entry.
+     * @param maxSize the size in bytes of the largest entry the node takes.
+     */
+    public ClassPathEntryFetch(String location, String hash, long maxSize) {
+        this.location = location;
+        this.hash = hash;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public byte[] call() throws Exception {
+        File entry = new File(location);
+        if (ClassPathEntries.size(entry) > maxSize) {
+            return null;
+        }
+        // the content is cached by the hash, it must not have changed since the job was sent
+        if (!hash.equals(ClassPathEntries.hash(entry))) {
+            throw new IllegalStateException("Class path entry " + location + " has changed.");
+        }
+        return ClassPathEntries.toJar(entry);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Loads (without initializing) the classes of given packages found on a class path.
+ *
+ * @author daniel
+ */
+class ClassPreloader {
+    
+    private static final String CLASS_SUFFIX = ".class";
+    
+    /**
+     * Loads all classes on the class path whose name starts with one of the prefixes.
+     * 
+     * Classes that can not be loaded are skipped.
+     * 
+     * @param classPath the class path, entries separated by the path separator.
+     * @param prefixes the package prefixes, e.g. {@code org.jppf.}.
+     * @param classLoader the class loader to load the classes with.
+     * @return the number of loaded classes.
+     */
+    static int preload(String classPath, List<String> prefixes, ClassLoader classLoader) {
+        int loaded = 0;
+        if(classPath == null || prefixes.isEmpty()) {
+            return loaded;
+        }
+        for(String element : classPath.split(File.pathSeparator)) {
+            File file = new File(element);
+            if(file.isDirectory()) {
+                loaded += preloadDirectory(file, "", prefixes, classLoader);
+            } else if(file.isFile()) {
+                loaded += preloadJar(file, prefixes, classLoader);
+            }
+        }
+        return loaded;
+    }
+    
+    private static int preloadDirectory(File directory, String packageName, 
+            List<String> prefixes, ClassLoader classLoader) {
+        int loaded = 0;
+        File[] files = directory.listFiles();
+        if(files == null) {
+            return loaded;
+        }
+        for(File file : files) {
+            if(file.isDirectory()) {
+                loaded += preloadDirectory(file, packageName + file.getName() + ".", 
+                        prefixes, classLoader);
+            } else if(file.getName().endsWith(CLASS_SUFFIX)) {
+                loaded += load(packageName + file.getName(), prefixes, classLoader);
+            }
+        }
+        return loaded;
+    }
+    
+    private static int preloadJar(File file, List<String> prefixes, ClassLoader classLoader) {
+        int loaded = 0;
+        JarFile jar = null;
+        try {
+            jar = new JarFile(file);
+            Enumeration<JarEntry> entries = jar.entries();
+            while(entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if(name.endsWith(CLASS_SUFFIX)) {
+                    loaded += load(name.replace('/', '.'), prefixes, classLoader);
+                }
+            }
+        } catch(IOException ex) {
+            // not a jar, nothing to preload
+        } finally {
+            if(jar != null) {
+                try {
+                    jar.close();
+                } catch(IOException ex) {
+                    // ignore
+                }
+            }
+        }
+        return loaded;
+    }
+    
+    private static int load(String fileName, List<String> prefixes, ClassLoader classLoader) {
+        String className = fileName.substring(0, fileName.length() - CLASS_SUFFIX.length());
+        for(String prefix : prefixes) {
+            if(className.startsWith(prefix)) {
+                try {
+                    Class.forName(className, false, classLoader);
+                    return 1;
+                } catch(Throwable ex) {
+                    // missing optional dependencies, skip
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -26,6 +26,7 @@ import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.PrintStream;
 import java.util.Observable;
+import org.jppf.utils.JPPFConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -146,7 +147,22 @@ public abstract class ClustermeisterLauncher extends Observable {
     }
     
     protected ClustermeisterProcessLauncher createProcessLauncher() {
-       return new ClustermeisterProcessLauncher(getRunner());
+        int standbyProcesses = getConfiguredStandbyProcesses();
+        if(standbyProcesses > 0) {
+            return new ClustermeisterProcessLauncher(getRunner(), standbyProcesses);
+        }
+        return new ClustermeisterProcessLauncher(getRunner());
+    }
+    
+    /**
+     * Returns the number of standby processes to keep for restarts, 
+     * configured in {@link Constants#CLUSTERMEISTER_STANDBY_NODES}.
+     * 
+     * @return the number of standby processes, 0 if disabled.
+     */
+    protected static int getConfiguredStandbyProcesses() {
+        return Math.max(0, JPPFConfiguration.getProperties().getInt(
+                Constants.CLUSTERMEISTER_STANDBY_NODES, 0));
     }
     
      /**
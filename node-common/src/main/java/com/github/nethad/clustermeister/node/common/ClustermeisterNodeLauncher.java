@@ -15,6 +15,8 @@
  */
 package com.github.nethad.clustermeister.node.common;
 
+import java.io.IOException;
+
 /**
  * Launches a JPPF-Node in a new spawned process (JVM)
  *
@@ -32,7 +34,11 @@ public class ClustermeisterNodeLauncher extends ClustermeisterLauncher {
      * 
      * The main method will spawn a new process for the JPPF-node.
      * If an independent process is launched it will kill this JVM as soon as it 
-     * obtained the UUID. Otherwise it will block until the child process dies.
+     * obtained the UUID, unless standby processes are configured 
+     * ({@link Constants#CLUSTERMEISTER_STANDBY_NODES}). Then the node is attached to 
+     * a standby process of the {@link StandbyHost} of this host and user and this JVM exits. 
+     * If there is none, this JVM stays to restart the node and becomes the standby host. 
+     * Otherwise it will block until the child process dies.
      * 
      * @param args 
      *      the first argument "false" to launch an independent process or 
@@ -44,16 +50,37 @@ public class ClustermeisterNodeLauncher extends ClustermeisterLauncher {
     public static void main(String... args) {
         boolean launchAsChildProcess = getBooleanArgument(args, 0, true);
         boolean printUUID = getBooleanArgument(args, 1, false);
-        ClustermeisterLauncher launcher = new ClustermeisterNodeLauncher();
+        boolean serveStandbyProcesses = !launchAsChildProcess && getConfiguredStandbyProcesses() > 0;
+        if(serveStandbyProcesses) {
+            String uuidLine = StandbyHost.requestAttach(StandbyHost.DEFAULT_FILE);
+            if(uuidLine != null) {
+                if(printUUID) {
+                    System.out.println(uuidLine);
+                }
+                //The node runs in a standby process of another launcher.
+                System.exit(0);
+            }
+        }
+        ClustermeisterNodeLauncher launcher = new ClustermeisterNodeLauncher();
         launcher.setPrintUUIDtoStdOut(printUUID);
         launcher.doLaunch(launchAsChildProcess, null);
         
-        if(!launchAsChildProcess) {
+        if(serveStandbyProcesses) {
+            launcher.startStandbyHost();
+        } else if(!launchAsChildProcess) {
             //Exit from this JVM. The spawned process continues to run.
             System.exit(0);
         }
     }
     
+    private void startStandbyHost() {
+        try {
+            new StandbyHost(processLauncher).start(StandbyHost.DEFAULT_FILE);
+        } catch (IOException ex) {
+            logger.warn("Can not serve standby processes to other launchers.", ex);
+        }
+    }
+    
     @Override
     protected String getRunner() {
         return NODE_RUNNER;
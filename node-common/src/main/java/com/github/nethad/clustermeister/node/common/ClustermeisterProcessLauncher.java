@@ -15,6 +15,10 @@
  */
 package com.github.nethad.clustermeister.node.common;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import org.jppf.process.ProcessLauncher;
 import org.jppf.process.event.ProcessWrapperEvent;
 import org.jppf.utils.JPPFConfiguration;
@@ -56,6 +60,13 @@ public class ClustermeisterProcessLauncher extends ProcessLauncher {
     protected Process process = null;
     private boolean useRmi;
     
+    private final String standbyMainClass;
+    private final int standbyProcesses;
+    private StandbyPool standbyPool = null;
+    private final StandbyPool sharedStandbyPool;
+    private String configuredJvmOptions = null;
+    private final Map<String, String> attachSettings;
+    
     /**
      * Constructor.
      * 
@@ -64,15 +75,97 @@ public class ClustermeisterProcessLauncher extends ProcessLauncher {
      */
     public ClustermeisterProcessLauncher(String mainClass) {
         super(mainClass);
+        this.standbyMainClass = null;
+        this.standbyProcesses = 0;
+        this.sharedStandbyPool = null;
+        this.attachSettings = Collections.emptyMap();
+    }
+    
+    /**
+     * Creates a launcher that keeps pre-started standby processes to 
+     * serve the (re)starts of the process.
+     * 
+     * @param mainClass 
+     *      The fully qualified class name of the class to run in a new process. 
+     * @param standbyProcesses 
+     *      The number of standby processes to keep.
+     */
+    public ClustermeisterProcessLauncher(String mainClass, int standbyProcesses) {
+        super(StandbyRunner.class.getName());
+        this.standbyMainClass = mainClass;
+        this.standbyProcesses = standbyProcesses;
+        this.sharedStandbyPool = null;
+        this.attachSettings = Collections.emptyMap();
+    }
+    
+    /**
+     * Creates a launcher that (re)starts the process from the standby 
+     * processes of another launcher.
+     * 
+     * @param standbyPool the standby processes to attach.
+     * @param attachSettings the settings the process is attached with, 
+     *      see {@link StandbyPool#take(java.util.Map)}.
+     */
+    ClustermeisterProcessLauncher(StandbyPool standbyPool, Map<String, String> attachSettings) {
+        super(StandbyRunner.class.getName());
+        this.standbyMainClass = null;
+        this.standbyProcesses = 0;
+        this.sharedStandbyPool = standbyPool;
+        this.attachSettings = new HashMap<String, String>(attachSettings);
     }
 
     @Override
     public Process buildProcess() throws Exception {
-        TypedProperties config = JPPFConfiguration.getProperties();
-        String jvmOptions = config.getString(Constants.JPPF_JVM_OPTIONS);
-        if(jvmOptions == null) {
-            jvmOptions = "";
+        if(sharedStandbyPool != null) {
+            this.process = sharedStandbyPool.take(attachSettings);
+        } else if(standbyProcesses > 0) {
+            this.process = getStandbyPool().take(attachSettings);
+        } else {
+            this.process = buildNewProcess();
+        }
+        return process;
+    }
+    
+    /**
+     * Returns the pool of standby processes, started on first use.
+     * 
+     * @return the standby pool.
+     */
+    synchronized StandbyPool getStandbyPool() {
+        if(standbyPool == null) {
+            logger.info("Keeping {} standby processes.", standbyProcesses);
+            standbyPool = new StandbyPool(standbyProcesses, new Callable<Process>() {
+                @Override
+                public Process call() throws Exception {
+                    return buildNewProcess();
+                }
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    standbyPool.close();
+                }
+            }));
         }
+        return standbyPool;
+    }
+    
+    /**
+     * Returns the JVM options of the JPPF configuration, before the options 
+     * of this launcher are added.
+     * 
+     * @return the configured JVM options.
+     */
+    synchronized String getConfiguredJvmOptions() {
+        if(configuredJvmOptions == null) {
+            configuredJvmOptions = JPPFConfiguration.getProperties().getString(Constants.JPPF_JVM_OPTIONS, "");
+        }
+        return configuredJvmOptions;
+    }
+    
+    private synchronized Process buildNewProcess() throws Exception {
+        TypedProperties config = JPPFConfiguration.getProperties();
+        String jvmOptions = getConfiguredJvmOptions();
         StringBuilder options = new StringBuilder(jvmOptions.length() + 
                 Constants.CLUSTERMEISTER_DIVERT_STREAMS_TO_FILE.length() + 
                 Constants.CLUSTERMEISTER_USE_RMI.length() + 16);
@@ -97,10 +190,28 @@ public class ClustermeisterProcessLauncher extends ProcessLauncher {
                     append("=false");
         }
         
-        config.setProperty(Constants.JPPF_JVM_OPTIONS, options.toString().trim());
-        this.process = super.buildProcess();
+        String controlTransport = System.getProperty(Constants.CLUSTERMEISTER_CONTROL_TRANSPORT);
+        if (controlTransport != null) {
+            options.append(" -D").
+                    append(Constants.CLUSTERMEISTER_CONTROL_TRANSPORT).
+                    append("=").append(controlTransport);
+        }
         
-        return process;
+        String controlPort = System.getProperty(Constants.CLUSTERMEISTER_CONTROL_PORT);
+        if (controlPort != null) {
+            options.append(" -D").
+                    append(Constants.CLUSTERMEISTER_CONTROL_PORT).
+                    append("=").append(controlPort);
+        }
+        
+        if (standbyMainClass != null) {
+            options.append(" -D").
+                    append(Constants.CLUSTERMEISTER_STANDBY_MAIN).
+                    append("=").append(standbyMainClass);
+        }
+        
+        config.setProperty(Constants.JPPF_JVM_OPTIONS, options.toString().trim());
+        return super.buildProcess();
     }
 
     @Override
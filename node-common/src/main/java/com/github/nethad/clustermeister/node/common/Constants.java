@@ -61,6 +61,103 @@ public class Constants {
     public static final String CLUSTERMEISTER_USE_RMI = 
             "com.github.nethad.clustermeister.useRmi";
     
+    /**
+     * System property configuration selecting how the driver reaches provisioning components, 
+     * {@link #CONTROL_TRANSPORT_RMI} (default) or {@link #CONTROL_TRANSPORT_NIO}.
+     */
+    public static final String CLUSTERMEISTER_CONTROL_TRANSPORT = 
+            "com.github.nethad.clustermeister.controlTransport";
+    
+    /**
+     * System property configuration of the port the control channel of the provisioning components 
+     * is bound to, {@link #CONTROL_CHANNEL_PORT} by default.
+     */
+    public static final String CLUSTERMEISTER_CONTROL_PORT = 
+            "com.github.nethad.clustermeister.controlPort";
+    
+    /**
+     * Control transport through the RMI registry.
+     */
+    public static final String CONTROL_TRANSPORT_RMI = "rmi";
+    
+    /**
+     * Control transport through the binary control channel.
+     */
+    public static final String CONTROL_TRANSPORT_NIO = "nio";
+    
+    /**
+     * Port of the RMI registry of the provisioning components.
+     */
+    public static final int RMI_REGISTRY_PORT = 61111;
+    
+    /**
+     * Port of the control channel of the provisioning components, 
+     * the next free port above it if it is taken.
+     */
+    public static final int CONTROL_CHANNEL_PORT = 61112;
+    
+    /**
+     * System property configuration of the file the driver appends its job metrics to, 
+     * {@code driver-metrics.csv} by default.
+     */
+    public static final String CLUSTERMEISTER_METRICS_CSV = 
+            "com.github.nethad.clustermeister.metricsCsv";
+    
+    /**
+     * System property configuration of the interval in seconds at which the driver writes 
+     * its job metrics, 0 disables writing. 60 by default.
+     */
+    public static final String CLUSTERMEISTER_METRICS_CSV_INTERVAL = 
+            "com.github.nethad.clustermeister.metricsCsvInterval";
+    
+    /**
+     * JPPF node configuration property with the number of pre-started standby JVMs
+     * the node launcher keeps to serve node restarts and the nodes added later on the same host
+     * (see {@link StandbyHost}). 0 (default) disables the pool.
+     */
+    public static final String CLUSTERMEISTER_STANDBY_NODES = "clustermeister.node.standby";
+
+    /**
+     * System property configuration of the directory a node writes {@link #STDOUT_LOG} and
+     * {@link #STDERR_LOG} to, the working directory by default. Set for nodes attached to
+     * a standby JVM started in another node's directory.
+     */
+    public static final String CLUSTERMEISTER_NODE_DIRECTORY =
+            "com.github.nethad.clustermeister.nodeDirectory";
+
+    /**
+     * System property configuration of the main class a standby JVM runs once attached.
+     */
+    public static final String CLUSTERMEISTER_STANDBY_MAIN = 
+            "com.github.nethad.clustermeister.standbyMain";
+    
+    /**
+     * System property configuration of the comma separated package prefixes 
+     * a standby JVM loads ahead, {@code org.jppf.} by default.
+     */
+    public static final String CLUSTERMEISTER_STANDBY_PRELOAD = 
+            "com.github.nethad.clustermeister.standbyPreload";
+    
+    /**
+     * System property configuration of the interval in milliseconds at which a node samples
+     * and sends its telemetry to the driver, 0 disables telemetry. 1000 by default.
+     */
+    public static final String CLUSTERMEISTER_TELEMETRY_INTERVAL =
+            "com.github.nethad.clustermeister.telemetryInterval";
+
+    /**
+     * System property configuration of the TCP port the driver receives node telemetry on,
+     * the driver's {@code jppf.server.port} plus {@link #TELEMETRY_PORT_OFFSET} by default.
+     */
+    public static final String CLUSTERMEISTER_TELEMETRY_PORT =
+            "com.github.nethad.clustermeister.telemetryPort";
+
+    /**
+     * Offset of the default telemetry port to the driver's {@code jppf.server.port}, 
+     * clear of the consecutive server ports of several local drivers.
+     */
+    public static final int TELEMETRY_PORT_OFFSET = 2000;
+
     /**
      * JPPF System property configuration for additional JVM options.
      */
@@ -70,7 +167,12 @@ public class Constants {
      * JPPF System property configuration configuration source.
      */
     public static final String JPPF_CONFIG_PLUGIN = "jppf.config.plugin";
-    
+
+    /**
+     * JPPF System property configuration file.
+     */
+    public static final String JPPF_CONFIG = "jppf.config";
+
     /**
      * If a job's name contains this string, the node will be shut down.
      */
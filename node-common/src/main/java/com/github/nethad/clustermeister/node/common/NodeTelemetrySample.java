@@ -0,0 +1,206 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * The health and load of a node at one point in time, as sampled by a {@link NodeTelemetrySampler}.
+ * 
+ * Samples are sent from the nodes to the driver in the compact binary form of {@link #toBytes()}.
+ *
+ * @author daniel
+ */
+public class NodeTelemetrySample implements Serializable {
+    
+    static final byte VERSION = 1;
+    
+    /**
+     * The value of a load that could not be measured.
+     */
+    public static final float UNKNOWN = -1;
+    
+    private final String nodeId;
+    private final long timestamp;
+    private final float cpuLoad;
+    private final float systemLoadAverage;
+    private final long heapUsed;
+    private final long heapMax;
+    private final int gcTime;
+    private final int activeTasks;
+    private final int queueLength;
+    private final float samplingOverhead;
+
+    public NodeTelemetrySample(String nodeId, long timestamp, float cpuLoad, float systemLoadAverage, 
+            long heapUsed, long heapMax, int gcTime, int activeTasks, int queueLength, float samplingOverhead) {
+        this.nodeId = nodeId;
+        this.timestamp = timestamp;
+        this.cpuLoad = cpuLoad;
+        this.systemLoadAverage = systemLoadAverage;
+        this.heapUsed = heapUsed;
+        this.heapMax = heapMax;
+        this.gcTime = gcTime;
+        this.activeTasks = activeTasks;
+        this.queueLength = queueLength;
+        this.samplingOverhead = samplingOverhead;
+    }
+
+    /**
+     * @return the UUID of the node.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return the time the sample was taken, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the CPU used by the node's JVM across all processors since the last sample, 
+     * between 0 and 1, or {@link #UNKNOWN}.
+     */
+    public float getCpuLoad() {
+        return cpuLoad;
+    }
+
+    /**
+     * @return the system load average of the node's machine, or {@link #UNKNOWN}.
+     */
+    public float getSystemLoadAverage() {
+        return systemLoadAverage;
+    }
+
+    public long getHeapUsed() {
+        return heapUsed;
+    }
+
+    /**
+     * @return the maximum heap size, or -1 if it is undefined.
+     */
+    public long getHeapMax() {
+        return heapMax;
+    }
+
+    /**
+     * @return the used part of the maximum heap, between 0 and 1, or {@link #UNKNOWN}.
+     */
+    public float getHeapUsage() {
+        return heapMax > 0 ? (float) heapUsed / heapMax : UNKNOWN;
+    }
+
+    /**
+     * @return the time spent in garbage collections since the last sample, in milliseconds.
+     */
+    public int getGcTime() {
+        return gcTime;
+    }
+
+    /**
+     * @return the number of tasks being executed.
+     */
+    public int getActiveTasks() {
+        return activeTasks;
+    }
+
+    /**
+     * @return the number of tasks received and waiting for a processing thread.
+     */
+    public int getQueueLength() {
+        return queueLength;
+    }
+
+    /**
+     * @return the CPU time spent on sampling and sending telemetry relative to the elapsed time.
+     */
+    public float getSamplingOverhead() {
+        return samplingOverhead;
+    }
+
+    /**
+     * @return the sample in a compact binary form.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeUTF(nodeId);
+            out.writeLong(timestamp);
+            out.writeFloat(cpuLoad);
+            out.writeFloat(systemLoadAverage);
+            out.writeLong(heapUsed);
+            out.writeLong(heapMax);
+            out.writeInt(gcTime);
+            out.writeInt(activeTasks);
+            out.writeInt(queueLength);
+            out.writeFloat(samplingOverhead);
+            out.flush();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not write to memory.", ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a sample written by {@link #toBytes()}.
+     * 
+     * @param data the buffer.
+     * @param offset the start of the sample in the buffer.
+     * @param length the length of the sample.
+     * @return the sample.
+     * @throws IllegalArgumentException if the data is not a sample of a known version.
+     */
+    public static NodeTelemetrySample fromBytes(byte[] data, int offset, int length) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+        try {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException(String.format("Unknown telemetry version %d.", version));
+            }
+            return new NodeTelemetrySample(in.readUTF(), in.readLong(), in.readFloat(), in.readFloat(), 
+                    in.readLong(), in.readLong(), in.readInt(), in.readInt(), in.readInt(), in.readFloat());
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Truncated telemetry sample.", ex);
+        }
+    }
+
+    /**
+     * @see #fromBytes(byte[], int, int) 
+     */
+    public static NodeTelemetrySample fromBytes(byte[] data) {
+        return fromBytes(data, 0, data.length);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cpu %s, load %s, heap %d/%d MB, gc %d ms, tasks %d, queued %d, overhead %.2f%%", 
+                percent(cpuLoad), systemLoadAverage < 0 ? "?" : String.format("%.2f", systemLoadAverage), 
+                heapUsed >> 20, heapMax >> 20, gcTime, activeTasks, queueLength, samplingOverhead * 100);
+    }
+    
+    private static String percent(float value) {
+        return value < 0 ? "?" : String.format("%.0f%%", value * 100);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Samples the health and load of the node's JVM from the platform MXBeans.
+ * 
+ * The CPU load and the garbage collection time are measured since the previous sample. 
+ * The sampler also measures its own cost: the CPU time the sampling thread used between 
+ * two samples relative to the elapsed time. Samples must therefore always be taken 
+ * by the same thread, which should do nothing but sample and send them.
+ *
+ * @author daniel
+ */
+public class NodeTelemetrySampler {
+    
+    /**
+     * The maximum CPU time spent on telemetry relative to the elapsed time.
+     */
+    public static final float MAX_OVERHEAD = 0.01f;
+    
+    /**
+     * The factor by which the interval may grow to keep the overhead below {@link #MAX_OVERHEAD}.
+     */
+    static final int MAX_INTERVAL_FACTOR = 16;
+    
+    private final String nodeId;
+    private final int processingThreads;
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final int processors = Runtime.getRuntime().availableProcessors();
+    
+    private long lastTime = -1;
+    private long lastProcessCpuTime = -1;
+    private long lastGcTime = 0;
+    private long lastSamplerCpuTime = -1;
+    private long samplerThreadId = -1;
+
+    /**
+     * @param nodeId the UUID of the node.
+     * @param processingThreads the processing threads of the node.
+     */
+    public NodeTelemetrySampler(String nodeId, int processingThreads) {
+        this.nodeId = nodeId;
+        this.processingThreads = Math.max(1, processingThreads);
+    }
+    
+    /**
+     * @param count the number of tasks the node received.
+     */
+    public void tasksReceived(int count) {
+        pendingTasks.addAndGet(count);
+    }
+    
+    /**
+     * @param count the number of received tasks that completed.
+     */
+    public void tasksCompleted(int count) {
+        pendingTasks.addAndGet(-count);
+    }
+
+    /**
+     * @return a sample of the current state of the node.
+     */
+    public synchronized NodeTelemetrySample sample() {
+        long now = System.nanoTime();
+        long samplerCpuTime = samplerCpuTime();
+        long processCpuTime = processCpuTime();
+        long gcTime = gcTime();
+        
+        float cpuLoad = NodeTelemetrySample.UNKNOWN;
+        float overhead = 0;
+        int gcDelta = 0;
+        if (lastTime >= 0) {
+            double elapsed = Math.max(1, now - lastTime);
+            if (processCpuTime >= 0 && lastProcessCpuTime >= 0) {
+                cpuLoad = (float) Math.min(1, (processCpuTime - lastProcessCpuTime) / elapsed / processors);
+            }
+            if (samplerCpuTime >= 0 && lastSamplerCpuTime >= 0) {
+                overhead = (float) ((samplerCpuTime - lastSamplerCpuTime) / elapsed);
+            }
+            gcDelta = (int) Math.max(0, gcTime - lastGcTime);
+        }
+        lastTime = now;
+        lastProcessCpuTime = processCpuTime;
+        lastSamplerCpuTime = samplerCpuTime;
+        lastGcTime = gcTime;
+        
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        int pending = Math.max(0, pendingTasks.get());
+        int active = Math.min(pending, processingThreads);
+        return new NodeTelemetrySample(nodeId, System.currentTimeMillis(), cpuLoad, 
+                (float) os.getSystemLoadAverage(), heap.getUsed(), heap.getMax(), gcDelta, 
+                active, pending - active, overhead);
+    }
+    
+    /**
+     * Backs off the sampling interval while the measured overhead exceeds {@link #MAX_OVERHEAD} 
+     * and returns to the configured interval once it is well below.
+     * 
+     * @param interval the current interval.
+     * @param baseInterval the configured interval.
+     * @param overhead the overhead measured at the current interval.
+     * @return the next interval.
+     */
+    public static long adjustInterval(long interval, long baseInterval, float overhead) {
+        if (overhead > MAX_OVERHEAD) {
+            return Math.min(interval * 2, baseInterval * MAX_INTERVAL_FACTOR);
+        }
+        if (overhead < MAX_OVERHEAD / 4 && interval > baseInterval) {
+            return Math.max(baseInterval, interval / 2);
+        }
+        return interval;
+    }
+    
+    private long samplerCpuTime() {
+        long threadId = Thread.currentThread().getId();
+        if (threadId != samplerThreadId) {
+            // the CPU times of different threads can not be compared
+            samplerThreadId = threadId;
+            lastSamplerCpuTime = -1;
+        }
+        if (!threads.isCurrentThreadCpuTimeSupported()) {
+            return -1;
+        }
+        return threads.getCurrentThreadCpuTime();
+    }
+
+    private long processCpuTime() {
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+    
+    private long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return time;
+    }
+}
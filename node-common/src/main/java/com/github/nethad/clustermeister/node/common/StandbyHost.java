@@ -0,0 +1,227 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import com.github.nethad.clustermeister.node.common.ClustermeisterProcessLauncher.StreamSink;
+import com.github.nethad.clustermeister.node.common.control.ControlClient;
+import com.github.nethad.clustermeister.node.common.control.ControlEndpoint;
+import com.github.nethad.clustermeister.node.common.control.ControlServer;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.jppf.process.event.ProcessWrapperEvent;
+import org.jppf.utils.JPPFConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the standby processes of a node launcher to the launchers of nodes added 
+ * later on the same host, so scaling up attaches pre-started JVMs as well.
+ * 
+ * The host registers a {@link StandbyService} on a {@link ControlServer} and writes 
+ * its endpoint to {@link #DEFAULT_FILE}, readable by its user only. A later launcher 
+ * of the same user {@link #requestAttach(java.io.File) requests} its node to be attached 
+ * with the node's configuration file, and thus its management port, and directory. 
+ * The host supervises the attached node like its own and the later launcher exits 
+ * with the node's UUID. The node logs through the logging configuration of the host.
+ * A launcher whose JVM options or libraries differ from the host's, or that can not 
+ * reach a host, starts its node itself.
+ *
+ * @author daniel
+ */
+public class StandbyHost implements StandbyService {
+    
+    /**
+     * The file the endpoint of the standby host of this user is written to.
+     */
+    public static final File DEFAULT_FILE = 
+            new File(System.getProperty("user.home"), ".clustermeister/standby.properties");
+    
+    static final long UUID_TIMEOUT = 30000;
+    
+    private static final String DEFAULT_JPPF_CONFIG = "jppf.properties";
+    
+    private final static Logger logger =
+            LoggerFactory.getLogger(StandbyHost.class);
+    
+    private final ClustermeisterProcessLauncher processLauncher;
+    private final String jvmOptions;
+    private final List<String> libraries;
+    private ControlServer server = null;
+
+    /**
+     * @param processLauncher the launcher that keeps the standby processes.
+     */
+    public StandbyHost(ClustermeisterProcessLauncher processLauncher) {
+        this.processLauncher = processLauncher;
+        this.jvmOptions = processLauncher.getConfiguredJvmOptions();
+        this.libraries = getLibraries();
+    }
+    
+    /**
+     * Starts serving the standby processes.
+     * 
+     * @param endpointFile the file to write the endpoint to.
+     * @throws IOException when the server can not be started or the endpoint not written.
+     */
+    public synchronized void start(File endpointFile) throws IOException {
+        byte[] secret = ControlEndpoint.generateSecret();
+        server = new ControlServer(0, secret);
+        server.register(StandbyService.class, this);
+        server.start();
+        new ControlEndpoint(server.getPort(), secret).write(endpointFile);
+        logger.info("Serving standby processes to other launchers on port {}.", server.getPort());
+    }
+    
+    /**
+     * Stops serving the standby processes. Attached nodes are not affected.
+     */
+    public synchronized void stop() {
+        if(server != null) {
+            server.stop();
+        }
+    }
+
+    @Override
+    public String attach(Map<String, String> settings, String jvmOptions, List<String> libraries) {
+        if(!this.jvmOptions.equals(jvmOptions) || !this.libraries.equals(libraries)) {
+            logger.info("Not attaching a node with other JVM options or libraries.");
+            return null;
+        }
+        final BlockingQueue<String> uuidLines = new LinkedBlockingQueue<String>();
+        final ClustermeisterProcessLauncher launcher = 
+                new ClustermeisterProcessLauncher(processLauncher.getStandbyPool(), settings) {
+            @Override
+            public void outputStreamAltered(ProcessWrapperEvent event) {
+                String content = event.getContent();
+                if(!content.contains(Constants.UUID_PREFIX)) {
+                    super.outputStreamAltered(event);
+                    return;
+                }
+                for(String line : content.split("\n")) {
+                    if(line.startsWith(Constants.UUID_PREFIX)) {
+                        uuidLines.offer(line.trim());
+                    }
+                }
+            }
+        };
+        launcher.setLaunchAsChildProcess(false);
+        launcher.setStreamSink(StreamSink.FILE);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                launcher.run();
+            }
+        });
+        thread.setName(String.format("CMAttachedLauncherThread-%s", thread.getId()));
+        thread.start();
+        try {
+            String uuidLine = uuidLines.poll(UUID_TIMEOUT, TimeUnit.MILLISECONDS);
+            if(uuidLine != null) {
+                logger.info("Attached node {}.", uuidLine);
+                return uuidLine;
+            }
+            logger.warn("Attached node did not start within {}ms.", UUID_TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        Process process = launcher.getProcess();
+        if(process != null) {
+            process.destroy();
+        }
+        return null;
+    }
+    
+    /**
+     * Asks the standby host of this user to attach the node configured for this JVM.
+     * 
+     * @param endpointFile the file the host wrote its endpoint to.
+     * @return the UUID line of the attached node, or null if this JVM has to start the node itself.
+     */
+    public static String requestAttach(File endpointFile) {
+        if(!endpointFile.isFile()) {
+            return null;
+        }
+        Map<String, String> settings = getNodeSettings();
+        if(settings == null) {
+            logger.info("Can not locate the node configuration, starting the node.");
+            return null;
+        }
+        String nodeJvmOptions = JPPFConfiguration.getProperties().getString(Constants.JPPF_JVM_OPTIONS, "");
+        ControlClient client = null;
+        try {
+            ControlEndpoint endpoint = ControlEndpoint.read(endpointFile);
+            client = ControlClient.connect("localhost", endpoint.getPort(), endpoint.getSecret());
+            return client.getService(StandbyService.class).attach(settings, nodeJvmOptions, getLibraries());
+        } catch (IOException ex) {
+            logger.info("No standby host available ({}), starting the node.", ex.getMessage());
+            return null;
+        } finally {
+            if(client != null) {
+                client.close();
+            }
+        }
+    }
+    
+    private static Map<String, String> getNodeSettings() {
+        File config = locate(System.getProperty(Constants.JPPF_CONFIG, DEFAULT_JPPF_CONFIG));
+        if(config == null) {
+            return null;
+        }
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(Constants.JPPF_CONFIG, config.getAbsolutePath());
+        settings.put(Constants.CLUSTERMEISTER_NODE_DIRECTORY, 
+                new File(System.getProperty("user.dir")).getAbsolutePath());
+        return settings;
+    }
+    
+    /**
+     * Locates a file like JPPF does, in the working directory or on the class path.
+     */
+    private static File locate(String name) {
+        File file = new File(name);
+        if(file.isFile()) {
+            return file;
+        }
+        URL url = ClassLoader.getSystemResource(name);
+        if(url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException ex) {
+            return null;
+        }
+    }
+    
+    private static List<String> getLibraries() {
+        List<String> libraries = new ArrayList<String>();
+        for(String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            libraries.add(new File(entry).getName());
+        }
+        Collections.sort(libraries);
+        return libraries;
+    }
+}
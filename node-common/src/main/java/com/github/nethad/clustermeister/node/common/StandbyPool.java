@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a number of pre-started standby processes (running {@link StandbyRunner}) 
+ * that are attached on demand.
+ * 
+ * Taken processes are replaced in the background. A process is attached with 
+ * the settings of the node it runs (see {@link StandbyRunner}), so one pool can 
+ * serve several nodes of a host.
+ *
+ * @author daniel
+ */
+public class StandbyPool {
+    
+    private final static Logger logger =
+            LoggerFactory.getLogger(StandbyPool.class);
+    
+    private final int size;
+    private final Callable<Process> processFactory;
+    private final BlockingQueue<Process> standbyProcesses = new LinkedBlockingQueue<Process>();
+    private final ExecutorService refiller;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a new pool and starts filling it.
+     * 
+     * @param size the number of standby processes to keep.
+     * @param processFactory starts a new standby process.
+     */
+    public StandbyPool(int size, Callable<Process> processFactory) {
+        this.size = size;
+        this.processFactory = processFactory;
+        this.refiller = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CMStandbyPool");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        for(int i = 0; i < size; i++) {
+            scheduleRefill();
+        }
+    }
+    
+    /**
+     * Attaches a standby process, or a newly started one if none is available.
+     * 
+     * @return the attached process.
+     * @throws Exception when a new process can not be started or attached.
+     */
+    public Process take() throws Exception {
+        return take(Collections.<String, String>emptyMap());
+    }
+    
+    /**
+     * Attaches a standby process, or a newly started one if none is available, 
+     * with the settings of a node.
+     * 
+     * @param settings the system properties to set in the process before it 
+     *      runs its main class.
+     * @return the attached process.
+     * @throws Exception when a new process can not be started or attached.
+     * @throws IllegalArgumentException when a setting contains a line break 
+     *      or its key is empty or contains '='.
+     */
+    public Process take(Map<String, String> settings) throws Exception {
+        String command = attachCommand(settings);
+        Process process = standbyProcesses.poll();
+        while(process != null && !isAlive(process)) {
+            logger.warn("Discarding terminated standby process.");
+            process = standbyProcesses.poll();
+        }
+        if(process == null) {
+            logger.info("No standby process available, starting a new one.");
+            process = processFactory.call();
+        }
+        attach(process, command);
+        scheduleRefill();
+        return process;
+    }
+    
+    /**
+     * Returns the number of standby processes ready to be attached.
+     * 
+     * @return the number of standby processes.
+     */
+    public int getStandbyCount() {
+        return standbyProcesses.size();
+    }
+    
+    /**
+     * Destroys all standby processes. Attached processes are not affected.
+     */
+    public void close() {
+        closed = true;
+        refiller.shutdownNow();
+        Process process;
+        while((process = standbyProcesses.poll()) != null) {
+            process.destroy();
+        }
+    }
+    
+    private void scheduleRefill() {
+        if(closed) {
+            return;
+        }
+        try {
+            refiller.execute(new Refill());
+        } catch(RejectedExecutionException ex) {
+            // closed concurrently
+        }
+    }
+    
+    static String attachCommand(Map<String, String> settings) {
+        StringBuilder command = new StringBuilder(StandbyRunner.ATTACH_COMMAND).append('\n');
+        for(Map.Entry<String, String> setting : settings.entrySet()) {
+            String key = setting.getKey();
+            String value = setting.getValue();
+            if(key.isEmpty() || key.indexOf('=') >= 0 || isMultiLine(key) || isMultiLine(value)) {
+                throw new IllegalArgumentException("Invalid setting " + key + ".");
+            }
+            command.append(key).append('=').append(value).append('\n');
+        }
+        return command.append('\n').toString();
+    }
+    
+    private static boolean isMultiLine(String string) {
+        return string.indexOf('\n') >= 0 || string.indexOf('\r') >= 0;
+    }
+    
+    private static void attach(Process process, String command) throws IOException {
+        OutputStream outputStream = process.getOutputStream();
+        outputStream.write(command.getBytes(Constants.UTF8));
+        outputStream.flush();
+    }
+    
+    private static boolean isAlive(Process process) {
+        try {
+            process.exitValue();
+            return false;
+        } catch(IllegalThreadStateException ex) {
+            return true;
+        }
+    }
+    
+    private class Refill implements Runnable {
+        @Override
+        public void run() {
+            if(closed || standbyProcesses.size() >= size) {
+                return;
+            }
+            try {
+                standbyProcesses.add(processFactory.call());
+            } catch(Exception ex) {
+                logger.warn("Could not start standby process.", ex);
+            }
+            if(closed) {
+                close();
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Main class of a pre-started standby JVM.
+ * 
+ * Loads the classes of the configured packages ahead and waits for 
+ * {@link #ATTACH_COMMAND} on a single line of stdin. It is followed by the 
+ * settings of the node, one {@code key=value} line each, and an empty line. 
+ * The settings are set as system properties, e.g. {@code jppf.config} with the 
+ * node's configuration file and thus its management port. Then it runs the main 
+ * class configured in {@link Constants#CLUSTERMEISTER_STANDBY_MAIN} with its 
+ * own arguments. The JVM exits if stdin is closed or {@link ShutdownHandler#SHUTDOWN_STRING} 
+ * is read before that.
+ *
+ * @author daniel
+ */
+public class StandbyRunner {
+    
+    /**
+     * The exact string that makes a standby JVM run its main class.
+     */
+    public static final String ATTACH_COMMAND = "CMAttachCommand";
+    
+    private static final String DEFAULT_PRELOAD = "org.jppf.";
+    
+    private final static Logger logger =
+            LoggerFactory.getLogger(StandbyRunner.class);
+    
+    public static void main(String... args) throws Exception {
+        String mainClass = System.getProperty(Constants.CLUSTERMEISTER_STANDBY_MAIN);
+        if(mainClass == null) {
+            System.err.println("No main class configured in " + Constants.CLUSTERMEISTER_STANDBY_MAIN + ".");
+            System.exit(1);
+        }
+        startPreloading(getPreloadPrefixes());
+        
+        String line;
+        while((line = readLine(System.in)) != null) {
+            if(line.equals(ATTACH_COMMAND)) {
+                if(!readSettings(System.in)) {
+                    break;
+                }
+                ShutdownHandler shutdownHandler = new ShutdownHandler(System.in);
+                shutdownHandler.setDaemon(true);
+                shutdownHandler.start();
+                runMain(mainClass, args);
+                return;
+            } else if(line.equals(ShutdownHandler.SHUTDOWN_STRING)) {
+                break;
+            }
+        }
+        System.exit(0);
+    }
+    
+    /**
+     * Sets the settings following the attach command as system properties.
+     * 
+     * @return false if stdin was closed before the end of the settings.
+     */
+    private static boolean readSettings(InputStream in) throws IOException {
+        String line;
+        while((line = readLine(in)) != null) {
+            if(line.isEmpty()) {
+                return true;
+            }
+            int separator = line.indexOf('=');
+            if(separator > 0) {
+                System.setProperty(line.substring(0, separator), line.substring(separator + 1));
+            } else {
+                logger.warn("Ignoring invalid setting {}.", line);
+            }
+        }
+        return false;
+    }
+    
+    private static List<String> getPreloadPrefixes() {
+        List<String> prefixes = new ArrayList<String>();
+        String preload = System.getProperty(Constants.CLUSTERMEISTER_STANDBY_PRELOAD, DEFAULT_PRELOAD);
+        for(String prefix : preload.split(",")) {
+            if(!prefix.trim().isEmpty()) {
+                prefixes.add(prefix.trim());
+            }
+        }
+        return prefixes;
+    }
+    
+    private static void startPreloading(final List<String> prefixes) {
+        Thread preloader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                int loaded = ClassPreloader.preload(System.getProperty("java.class.path"), prefixes, 
+                        StandbyRunner.class.getClassLoader());
+                logger.info("Preloaded {} classes in {}ms.", loaded, System.currentTimeMillis() - start);
+            }
+        }, "CMStandbyPreloader");
+        preloader.setDaemon(true);
+        preloader.start();
+    }
+    
+    private static void runMain(String mainClass, String[] args) throws Exception {
+        Method main = Class.forName(mainClass).getMethod("main", String[].class);
+        try {
+            main.invoke(null, (Object) args);
+        } catch(InvocationTargetException ex) {
+            if(ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+    
+    /**
+     * Reads a line without buffering ahead, the rest of the stream is 
+     * read by the {@link ShutdownHandler} after attaching.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while((b = in.read()) != -1) {
+            if(b == '\n') {
+                return line.toString(Constants.UTF8).trim();
+            }
+            line.write(b);
+        }
+        return line.size() == 0 ? null : line.toString(Constants.UTF8).trim();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Attaches the nodes of other launchers to the standby processes of a {@link StandbyHost}.
+ *
+ * @author daniel
+ */
+public interface StandbyService {
+    
+    /**
+     * Attaches a node to a standby process and supervises it, including restarts.
+     * 
+     * @param settings the settings of the node, see {@link StandbyPool#take(java.util.Map)}.
+     * @param jvmOptions the JVM options configured for the node.
+     * @param libraries the file names of the node's class path entries.
+     * @return the UUID line of the attached node, or null if it was not attached.
+     * @throws IOException if the call fails.
+     */
+    public String attach(Map<String, String> settings, String jvmOptions, List<String> libraries) 
+            throws IOException;
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Interrupts tasks running on the node that were cancelled on the client.
+ * 
+ * JPPF only cancels whole jobs, so a task cancelled while other tasks of its job are pending 
+ * would keep its processing thread until it finishes. A watched task is asked every 
+ * {@link #CHECK_INTERVAL} ms whether it was cancelled, by a single daemon thread shared 
+ * by all jobs on the node. Tasks that finish within the interval are never checked.
+ *
+ * @author daniel
+ */
+public class TaskWatchdog {
+    private final static Logger logger = LoggerFactory.getLogger(TaskWatchdog.class);
+    
+    public static final long CHECK_INTERVAL = 1000;
+    
+    private static final TaskWatchdog INSTANCE = new TaskWatchdog(CHECK_INTERVAL);
+    
+    private final long interval;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "cm-task-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    TaskWatchdog(long interval) {
+        this.interval = interval;
+    }
+    
+    /**
+     * @return the watchdog of this node.
+     */
+    public static TaskWatchdog getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Watches the calling thread until {@link Watch#stop()} is called.
+     * 
+     * @param cancelled asks the client whether the task was cancelled.
+     * @return the watch, to be stopped when the task finishes.
+     */
+    public Watch watch(Callable<Boolean> cancelled) {
+        Watch watch = new Watch(Thread.currentThread(), cancelled);
+        watch.check = scheduler.scheduleWithFixedDelay(watch, interval, interval, TimeUnit.MILLISECONDS);
+        return watch;
+    }
+
+    /**
+     * The watch of one running task.
+     */
+    public static class Watch implements Runnable {
+        private final Thread thread;
+        private final Callable<Boolean> cancelled;
+        private volatile ScheduledFuture<?> check;
+        private boolean stopped = false;
+        private boolean interrupted = false;
+
+        Watch(Thread thread, Callable<Boolean> cancelled) {
+            this.thread = thread;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public void run() {
+            boolean isCancelled;
+            try {
+                isCancelled = Boolean.TRUE.equals(cancelled.call());
+            } catch (Exception ex) {
+                logger.debug("Could not check whether a task was cancelled.", ex);
+                return;
+            }
+            if (isCancelled) {
+                interrupt();
+            }
+        }
+
+        private synchronized void interrupt() {
+            // the thread may execute another task once stopped
+            if (!stopped) {
+                interrupted = true;
+                thread.interrupt();
+                if (check != null) {
+                    check.cancel(false);
+                }
+            }
+        }
+
+        /**
+         * Stops watching, to be called by the task's thread. 
+         * Clears the interrupt of a cancelled task, so it does not hit the next task.
+         */
+        public synchronized void stop() {
+            stopped = true;
+            if (check != null) {
+                check.cancel(false);
+            }
+            if (interrupted) {
+                Thread.interrupted();
+            }
+        }
+
+        /**
+         * @return true if the task was interrupted because it was cancelled on the client.
+         */
+        public synchronized boolean isCancelled() {
+            return interrupted;
+        }
+    }
+}
@@ -61,7 +61,7 @@ public class JPPFClientBuilder extends PropertyConfiguratedJPPFComponentBuilder<
         if(uuid == null) {
             client = new JPPFClient(clientListeners);
         } else {
-            client = new JPPFClient(null, clientListeners);
+            client = new JPPFClient(uuid, clientListeners);
         }
         
         return client;
@@ -81,9 +81,9 @@ public abstract class PropertyConfiguratedJPPFComponentBuilder <T>
             method.append("java.util.Properties properties = new java.util.Properties(); ");
             for (Map.Entry<Object, Object> entry : properties.entrySet()) {
                 method.append("properties.setProperty(\"");
-                method.append(entry.getKey());
+                method.append(escape(entry.getKey().toString()));
                 method.append("\", \"");
-                method.append(entry.getValue());
+                method.append(escape(entry.getValue().toString()));
                 method.append("\"); ");
             }
             method.append("java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream(); ");
@@ -99,4 +99,11 @@ public abstract class PropertyConfiguratedJPPFComponentBuilder <T>
         }
     }
 
+    /**
+     * Escapes a value for a Java string literal, e.g. JVM options with quoted paths.
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
 }
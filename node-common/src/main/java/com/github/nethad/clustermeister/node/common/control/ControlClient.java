@@ -0,0 +1,443 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common.control;
+
+import com.github.nethad.clustermeister.node.common.control.ControlProtocol.CallbackReference;
+import com.github.nethad.clustermeister.node.common.control.ControlProtocol.Frame;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Calls services of a {@link ControlServer} through proxies over a single socket.
+ * 
+ * Any number of threads can call at the same time; requests are pipelined and 
+ * responses matched by request ID. Arguments whose parameter type extends {@link Remote} 
+ * are kept locally and receive the server's pushes, in order, on a separate thread.
+ * Failures are reported as {@link RemoteException} if the method declares it.
+ * 
+ * A lost connection is re-established in the background, with growing delays, and by the next call.
+ * Requests in progress when the connection is lost fail and are not repeated. The server forgets 
+ * the callbacks of a lost connection, {@link Listener}s are notified to register them again.
+ *
+ * @author daniel
+ */
+public class ControlClient {
+    private final static Logger logger = LoggerFactory.getLogger(ControlClient.class);
+    
+    static final long RESPONSE_TIMEOUT = 60000;
+    static final long RECONNECT_DELAY = 500;
+    static final long MAX_RECONNECT_DELAY = 30000;
+    
+    private final String host;
+    private final int port;
+    private final byte[] secret;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Object, Integer> callbackIds = new IdentityHashMap<Object, Integer>();
+    private final Map<Integer, Object> callbacks = new ConcurrentHashMap<Integer, Object>();
+    private final Map<String, Method> callbackMethods = new HashMap<String, Method>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private final ExecutorService pushExecutor;
+    private final Object connectLock = new Object();
+    private volatile Link link = null;
+    private volatile boolean closed = false;
+
+    private ControlClient(String host, int port, byte[] secret) {
+        this.host = host;
+        this.port = port;
+        this.secret = secret.clone();
+        pushExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "cm-control-push");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Connects to a control server.
+     * 
+     * @param host the host of the server.
+     * @param port the port of the server.
+     * @param secret the secret of the server, see {@link ControlEndpoint}.
+     * @return the connected client.
+     * @throws IOException if the connection fails.
+     */
+    public static ControlClient connect(String host, int port, byte[] secret) throws IOException {
+        ControlClient client = new ControlClient(host, port, secret);
+        client.link = client.open();
+        return client;
+    }
+
+    /**
+     * @param <T> the service type.
+     * @param service the service interface, as registered on the server.
+     * @return a proxy calling the service on the server.
+     */
+    public <T> T getService(final Class<T> service) {
+        return service.cast(Proxy.newProxyInstance(service.getClassLoader(), new Class<?>[]{service}, 
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return ControlServer.invokeObjectMethod(proxy, method, args);
+                }
+                return call(ControlProtocol.methodKey(service, method), method, args);
+            }
+        }));
+    }
+
+    /**
+     * @param listener notified on the push thread whenever a lost connection has been re-established.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void close() {
+        synchronized (connectLock) {
+            closed = true;
+            if (link != null) {
+                link.close(new IOException("Control client closed"));
+            }
+        }
+        pushExecutor.shutdown();
+    }
+
+    private Link open() throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        try {
+            channel.socket().setTcpNoDelay(true);
+            ByteBuffer handshake = ControlProtocol.encodeSecret(secret);
+            while (handshake.hasRemaining()) {
+                channel.write(handshake);
+            }
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        Link opened = new Link(channel);
+        opened.reader.start();
+        return opened;
+    }
+
+    /**
+     * Replaces a lost connection, unless that happened already.
+     * @param lost the connection that was lost.
+     * @return the current connection.
+     * @throws IOException if the client is closed or the server can not be reached.
+     */
+    private Link reconnect(Link lost) throws IOException {
+        Link current;
+        synchronized (connectLock) {
+            if (closed) {
+                throw new IOException("Control client closed");
+            }
+            if (link != lost) {
+                return link;
+            }
+            current = open();
+            link = current;
+        }
+        logger.info("Control connection to {}:{} re-established.", host, port);
+        for (final Listener listener : listeners) {
+            try {
+                pushExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            listener.reconnected(ControlClient.this);
+                        } catch (RuntimeException ex) {
+                            logger.warn("Reconnect listener failed.", ex);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                // closed meanwhile
+            }
+        }
+        return current;
+    }
+
+    private Object call(String methodKey, Method method, Object[] args) throws Throwable {
+        int id = nextId.incrementAndGet();
+        PendingRequest request = new PendingRequest();
+        Link current = link;
+        try {
+            if (current.failure != null) {
+                current = reconnect(current);
+            }
+            current.pendingRequests.put(id, request);
+            ByteBuffer frame = ControlProtocol.encode(ControlProtocol.REQUEST, id, methodKey, 
+                    referenceCallbacks(method, args));
+            current.write(frame);
+            Frame response = request.await(RESPONSE_TIMEOUT);
+            if (response.type == ControlProtocol.ERROR) {
+                throw declaredOrWrapped(method, (Throwable) response.payload);
+            }
+            return response.payload;
+        } catch (IOException ex) {
+            throw declaredOrWrapped(method, ex);
+        } finally {
+            current.pendingRequests.remove(id);
+        }
+    }
+
+    private Object[] referenceCallbacks(Method method, Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Object[] arguments = args.clone();
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] != null && parameterTypes[i].isInterface() 
+                    && Remote.class.isAssignableFrom(parameterTypes[i])) {
+                arguments[i] = new CallbackReference(callbackId(arguments[i]), parameterTypes[i].getName());
+            }
+        }
+        return arguments;
+    }
+
+    private int callbackId(Object callback) {
+        synchronized (callbackIds) {
+            Integer id = callbackIds.get(callback);
+            if (id == null) {
+                id = callbackIds.size() + 1;
+                callbackIds.put(callback, id);
+                callbacks.put(id, callback);
+            }
+            return id;
+        }
+    }
+
+    private void push(final Frame frame) {
+        final Object callback = callbacks.get(frame.id);
+        if (callback == null) {
+            logger.warn("Push for unknown callback {}.", frame.id);
+            return;
+        }
+        pushExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    callbackMethod(callback, frame.method).invoke(callback, (Object[]) frame.payload);
+                } catch (Exception ex) {
+                    logger.warn("Callback {} failed.", frame.method, ex);
+                }
+            }
+        });
+    }
+
+    private Method callbackMethod(Object callback, String methodKey) throws NoSuchMethodException {
+        Method method = callbackMethods.get(methodKey);
+        if (method == null) {
+            for (Class<?> type : callback.getClass().getInterfaces()) {
+                for (Method candidate : type.getMethods()) {
+                    callbackMethods.put(ControlProtocol.methodKey(type, candidate), candidate);
+                }
+            }
+            method = callbackMethods.get(methodKey);
+            if (method == null) {
+                throw new NoSuchMethodException(methodKey);
+            }
+        }
+        return method;
+    }
+
+    private Throwable declaredOrWrapped(Method method, Throwable error) {
+        if (error instanceof RuntimeException || error instanceof Error) {
+            return error;
+        }
+        for (Class<?> exceptionType : method.getExceptionTypes()) {
+            if (exceptionType.isInstance(error)) {
+                return error;
+            }
+        }
+        for (Class<?> exceptionType : method.getExceptionTypes()) {
+            if (exceptionType.isAssignableFrom(RemoteException.class)) {
+                return new RemoteException("Control channel call failed", error);
+            }
+        }
+        return new UndeclaredThrowableException(error);
+    }
+
+    /**
+     * Notified about the connection of a {@link ControlClient}.
+     */
+    public interface Listener {
+        /**
+         * Called after a lost connection has been re-established, callbacks have to be registered again.
+         * @param client the client.
+         */
+        void reconnected(ControlClient client);
+    }
+
+    /**
+     * One connection to the server, with its own reader thread.
+     */
+    private class Link {
+        private final SocketChannel channel;
+        private final Object writeLock = new Object();
+        private final Map<Integer, PendingRequest> pendingRequests = new ConcurrentHashMap<Integer, PendingRequest>();
+        private final Thread reader;
+        private volatile IOException failure = null;
+
+        Link(SocketChannel channel) {
+            this.channel = channel;
+            reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    readFrames();
+                    reconnectInBackground();
+                }
+            }, "cm-control-reader");
+            reader.setDaemon(true);
+        }
+
+        void write(ByteBuffer frame) throws IOException {
+            synchronized (writeLock) {
+                if (failure != null) {
+                    throw failure;
+                }
+                try {
+                    while (frame.hasRemaining()) {
+                        channel.write(frame);
+                    }
+                } catch (IOException ex) {
+                    close(ex);
+                    throw ex;
+                }
+            }
+        }
+
+        void close(IOException reason) {
+            if (failure == null) {
+                failure = reason;
+            }
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                logger.debug("Could not close channel.", ex);
+            }
+        }
+
+        private void readFrames() {
+            try {
+                DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+                while (true) {
+                    int length = in.readInt();
+                    if (length <= 0 || length > ControlProtocol.MAX_FRAME_LENGTH) {
+                        throw new IOException("Invalid frame length " + length);
+                    }
+                    byte[] body = new byte[length];
+                    in.readFully(body);
+                    Frame frame = ControlProtocol.decode(body);
+                    if (frame.type == ControlProtocol.PUSH) {
+                        push(frame);
+                    } else {
+                        PendingRequest request = pendingRequests.get(frame.id);
+                        if (request != null) {
+                            request.complete(frame);
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                if (failure == null) {
+                    logger.warn("Control connection lost.", ex);
+                }
+                close(ex instanceof EOFException ? new IOException("Control server closed the connection", ex) : ex);
+            } catch (RuntimeException ex) {
+                logger.warn("Control connection failed.", ex);
+                close(new IOException("Control connection failed", ex));
+            }
+            for (PendingRequest request : pendingRequests.values()) {
+                request.complete(null, failure);
+            }
+        }
+
+        private void reconnectInBackground() {
+            long delay = RECONNECT_DELAY;
+            while (!closed && link == this) {
+                try {
+                    Thread.sleep(delay);
+                    reconnect(this);
+                } catch (IOException ex) {
+                    logger.debug("Could not re-establish control connection.", ex);
+                    delay = Math.min(MAX_RECONNECT_DELAY, delay * 2);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class PendingRequest {
+        private Frame response = null;
+        private IOException failure = null;
+        private boolean done = false;
+
+        synchronized void complete(Frame response) {
+            this.response = response;
+            this.done = true;
+            notifyAll();
+        }
+
+        synchronized void complete(Frame response, IOException failure) {
+            this.failure = failure;
+            complete(response);
+        }
+
+        synchronized Frame await(long timeout) throws IOException, InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (!done) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException("No response within " + timeout + " ms");
+                }
+                wait(remaining);
+            }
+            if (response == null) {
+                throw failure != null ? failure : new IOException("Control connection lost");
+            }
+            return response;
+        }
+    }
+}
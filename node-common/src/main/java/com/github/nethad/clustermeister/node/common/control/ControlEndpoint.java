@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common.control;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.Properties;
+
+/**
+ * The port of a {@link ControlServer} and the shared secret its clients authenticate with.
+ * 
+ * The provisioning writes the endpoint to {@link #DEFAULT_FILE}, readable by its user only, 
+ * and the driver and the API on the same host read it from there.
+ *
+ * @author daniel
+ */
+public class ControlEndpoint {
+    
+    /**
+     * The file the endpoint of the local provisioning is written to.
+     */
+    public static final File DEFAULT_FILE = 
+            new File(System.getProperty("user.home"), ".clustermeister/control.properties");
+    
+    static final int SECRET_LENGTH = 32;
+    
+    private static final String PORT = "port";
+    private static final String SECRET = "secret";
+    
+    private final int port;
+    private final byte[] secret;
+
+    public ControlEndpoint(int port, byte[] secret) {
+        this.port = port;
+        this.secret = secret.clone();
+    }
+    
+    /**
+     * @return a new random secret.
+     */
+    public static byte[] generateSecret() {
+        byte[] secret = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public byte[] getSecret() {
+        return secret.clone();
+    }
+    
+    /**
+     * Writes the endpoint to a file only its owner can read.
+     * @param file the file.
+     * @throws IOException if the file can not be written.
+     */
+    public void write(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create " + directory);
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Can not replace " + file);
+        }
+        // restricted before the secret is written
+        if (!file.createNewFile() || !file.setReadable(false, false) || !file.setReadable(true, true)
+                || !file.setWritable(false, false) || !file.setWritable(true, true)) {
+            throw new IOException("Can not restrict access to " + file);
+        }
+        Properties properties = new Properties();
+        properties.setProperty(PORT, Integer.toString(port));
+        properties.setProperty(SECRET, toHex(secret));
+        OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, "Clustermeister control channel");
+        } finally {
+            out.close();
+        }
+    }
+    
+    /**
+     * @param file a file written by {@link #write(java.io.File)}.
+     * @return the endpoint.
+     * @throws IOException if the file can not be read.
+     */
+    public static ControlEndpoint read(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        String port = properties.getProperty(PORT);
+        String secret = properties.getProperty(SECRET);
+        if (port == null || secret == null) {
+            throw new IOException("Incomplete control endpoint in " + file);
+        }
+        try {
+            return new ControlEndpoint(Integer.parseInt(port), fromHex(secret));
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid control endpoint in " + file, ex);
+        }
+    }
+    
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+    
+    private static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd number of hex digits");
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
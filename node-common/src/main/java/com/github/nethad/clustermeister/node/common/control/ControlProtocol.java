@@ -0,0 +1,178 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common.control;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Frame layout of the control channel.
+ * 
+ * Every frame is a 4 byte length followed by that many bytes: 
+ * a 1 byte type, a 4 byte request (or callback) ID, the method key as modified UTF-8 
+ * and the Java serialized payload (arguments, result or exception).
+ * The first frame of a connection is the raw shared secret of the {@link ControlEndpoint}, 
+ * nothing is deserialized before it has been checked. Payloads may only contain classes 
+ * of the {@link #ALLOWED_PACKAGES}.
+ *
+ * @author daniel
+ */
+class ControlProtocol {
+    
+    static final byte REQUEST = 1;
+    static final byte RESPONSE = 2;
+    static final byte ERROR = 3;
+    static final byte PUSH = 4;
+    
+    static final int LENGTH_FIELD = 4;
+    static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+    
+    /**
+     * Package prefixes of the classes a payload may contain.
+     */
+    static final String[] ALLOWED_PACKAGES = {
+        "java.lang.", "java.util.", "java.io.", "java.net.", "java.rmi.", 
+        "com.github.nethad.clustermeister.", "org.jppf.", "com.google.common.collect."
+    };
+
+    static ByteBuffer encodeSecret(byte[] secret) {
+        ByteBuffer frame = ByteBuffer.allocate(LENGTH_FIELD + secret.length);
+        frame.putInt(secret.length).put(secret);
+        frame.flip();
+        return frame;
+    }
+
+    static ByteBuffer encode(byte type, int id, String method, Object payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(type);
+        out.writeInt(id);
+        out.writeUTF(method);
+        ObjectOutputStream objectOut = new ObjectOutputStream(out);
+        objectOut.writeObject(payload);
+        objectOut.flush();
+        ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+        frame.putInt(0, frame.remaining() - LENGTH_FIELD);
+        return frame;
+    }
+
+    /**
+     * Decodes the body of a frame, without the length field.
+     */
+    static Frame decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        int id = in.readInt();
+        String method = in.readUTF();
+        try {
+            Object payload = new FilteringObjectInputStream(in).readObject();
+            return new Frame(type, id, method, payload);
+        } catch (ClassNotFoundException ex) {
+            throw new IOException("Can not decode payload of " + method, ex);
+        }
+    }
+
+    static String methodKey(Class<?> service, Method method) {
+        StringBuilder key = new StringBuilder(service.getName()).append('#').append(method.getName()).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(parameterTypes[i].getName());
+        }
+        return key.append(')').toString();
+    }
+
+    /**
+     * Refuses classes outside the {@link #ALLOWED_PACKAGES} before they are loaded.
+     */
+    private static class FilteringObjectInputStream extends ObjectInputStream {
+
+        FilteringObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException {
+            String name = description.getName();
+            int dimensions = 0;
+            while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+                dimensions++;
+            }
+            // primitive arrays are named like [B, object arrays like [Ljava.lang.String;
+            boolean primitiveArray = dimensions > 0 && name.length() == dimensions + 1;
+            if (!primitiveArray && !isAllowed(name.substring(dimensions > 0 ? dimensions + 1 : 0))) {
+                throw new InvalidClassException(name, "Not allowed on the control channel");
+            }
+            return super.resolveClass(description);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            throw new InvalidClassException("Proxies are not allowed on the control channel");
+        }
+
+        private static boolean isAllowed(String className) {
+            for (String allowed : ALLOWED_PACKAGES) {
+                if (className.startsWith(allowed)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static class Frame {
+        final byte type;
+        final int id;
+        final String method;
+        final Object payload;
+
+        Frame(byte type, int id, String method, Object payload) {
+            this.type = type;
+            this.id = id;
+            this.method = method;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Stands in for a callback object passed as an argument. 
+     * The receiving side replaces it with a proxy that pushes invocations back.
+     */
+    static class CallbackReference implements Serializable {
+        final int id;
+        final String interfaceName;
+
+        CallbackReference(int id, String interfaceName) {
+            this.id = id;
+            this.interfaceName = interfaceName;
+        }
+    }
+}
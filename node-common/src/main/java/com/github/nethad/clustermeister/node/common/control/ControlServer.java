@@ -0,0 +1,470 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common.control;
+
+import com.github.nethad.clustermeister.node.common.control.ControlProtocol.CallbackReference;
+import com.github.nethad.clustermeister.node.common.control.ControlProtocol.Frame;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.ConnectException;
+import java.rmi.RemoteException;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves registered services over the control channel, an alternative to an RMI registry.
+ * 
+ * The server only listens on the loopback interface, remote drivers reach it through their 
+ * SSH tunnel. A connection has to present the shared secret before its requests are read.
+ * One selector thread does all socket I/O. Requests are decoded and executed on a bounded thread pool, 
+ * so several requests of one connection can be in progress and answered in any order. 
+ * A connection is not read while {@link #MAX_PENDING_REQUESTS} of its requests are in progress, 
+ * and it is closed if more than {@link #MAX_OUTGOING_FRAMES} frames wait to be sent to it. 
+ * A failing connection is closed without affecting the others. 
+ * Callback arguments (interfaces extending {@link java.rmi.Remote}) are replaced by proxies 
+ * that push their invocations to the client.
+ *
+ * @author daniel
+ */
+public class ControlServer {
+    private final static Logger logger = LoggerFactory.getLogger(ControlServer.class);
+    
+    static final int WORKER_THREADS = 16;
+    static final int MAX_PENDING_REQUESTS = 64;
+    static final int MAX_OUTGOING_FRAMES = 1024;
+    
+    private final int port;
+    private final byte[] secret;
+    private final Map<String, Invocation> methods = new ConcurrentHashMap<String, Invocation>();
+    // connections whose interest in reads or writes changed since the last selection
+    private final Queue<Connection> pendingUpdates = new ConcurrentLinkedQueue<Connection>();
+    private final ThreadPoolExecutor workers = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), daemonThreads("cm-control-worker"));
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running = false;
+
+    /**
+     * @param port the port to listen on, 0 for any free port.
+     * @param secret the secret clients have to present, see {@link ControlEndpoint}.
+     */
+    public ControlServer(int port, byte[] secret) {
+        this.port = port;
+        this.secret = secret.clone();
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Makes all methods of {@code service} callable on {@code target}.
+     * 
+     * @param <T> the service type.
+     * @param service the service interface.
+     * @param target the implementation.
+     */
+    public <T> void register(Class<T> service, T target) {
+        for (Method method : service.getMethods()) {
+            methods.put(ControlProtocol.methodKey(service, method), new Invocation(method, target));
+        }
+    }
+
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        // null is the loopback address
+        serverChannel.socket().bind(new InetSocketAddress(InetAddress.getByName(null), port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                select();
+            }
+        }, "cm-control-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        logger.info("Control server listening on port {}.", getPort());
+    }
+
+    /**
+     * @return the port the server listens on.
+     */
+    public int getPort() {
+        return serverChannel == null ? port : serverChannel.socket().getLocalPort();
+    }
+
+    public void stop() {
+        running = false;
+        workers.shutdownNow();
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    private void select() {
+        try {
+            while (running) {
+                selector.select();
+                Connection connection;
+                while ((connection = pendingUpdates.poll()) != null) {
+                    try {
+                        connection.updateInterest();
+                    } catch (CancelledKeyException ex) {
+                        connection.close();
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.write();
+                            }
+                        }
+                    } catch (IOException ex) {
+                        closeOnFailure(key, ex);
+                    } catch (RuntimeException ex) {
+                        // e.g. a key cancelled meanwhile, only this connection is affected
+                        closeOnFailure(key, ex);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("Control server failed.", ex);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void closeOnFailure(SelectionKey key, Exception failure) {
+        if (key.attachment() == null) {
+            logger.warn("Could not accept control connection.", failure);
+        } else {
+            logger.debug("Control connection closed.", failure);
+            ((Connection) key.attachment()).close();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException ex) {
+                logger.debug("Could not close channel.", ex);
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException ex) {
+            logger.debug("Could not close selector.", ex);
+        }
+    }
+
+    private void execute(final Connection connection, final byte[] body) {
+        workers.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Frame request;
+                    try {
+                        request = ControlProtocol.decode(body);
+                    } catch (IOException ex) {
+                        logger.warn("Closing control connection after an undecodable frame.", ex);
+                        connection.close();
+                        return;
+                    } catch (RuntimeException ex) {
+                        logger.warn("Closing control connection after an undecodable frame.", ex);
+                        connection.close();
+                        return;
+                    }
+                    if (request.type == ControlProtocol.REQUEST) {
+                        invoke(connection, request);
+                    } else {
+                        logger.warn("Ignoring unexpected frame of type {}.", request.type);
+                    }
+                } finally {
+                    connection.requestFinished();
+                }
+            }
+        });
+    }
+
+    private void invoke(Connection connection, Frame request) {
+        Invocation invocation = methods.get(request.method);
+        try {
+            if (invocation == null) {
+                throw new UnsupportedOperationException("Unknown method " + request.method);
+            }
+            Object[] arguments = connection.resolveCallbacks((Object[]) request.payload);
+            Object result = invocation.method.invoke(invocation.target, arguments);
+            connection.send(ControlProtocol.encode(ControlProtocol.RESPONSE, request.id, "", result));
+        } catch (InvocationTargetException ex) {
+            sendError(connection, request, ex.getCause());
+        } catch (Exception ex) {
+            sendError(connection, request, ex);
+        }
+    }
+
+    private void sendError(Connection connection, Frame request, Throwable error) {
+        try {
+            connection.send(ControlProtocol.encode(ControlProtocol.ERROR, request.id, "", error));
+        } catch (IOException ex) {
+            logger.warn("Could not send error for {}.", request.method, ex);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static class Invocation {
+        private final Method method;
+        private final Object target;
+
+        Invocation(Method method, Object target) {
+            this.method = method;
+            this.target = target;
+        }
+    }
+
+    private class Connection {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private final ByteBuffer header = ByteBuffer.allocate(ControlProtocol.LENGTH_FIELD);
+        private ByteBuffer body = null;
+        private final Queue<ByteBuffer> outgoing = new ConcurrentLinkedQueue<ByteBuffer>();
+        private final AtomicInteger outgoingFrames = new AtomicInteger();
+        private final AtomicInteger pendingRequests = new AtomicInteger();
+        private final Map<Integer, Object> callbacks = new ConcurrentHashMap<Integer, Object>();
+        private boolean authenticated = false;
+        private volatile boolean closed = false;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            while (true) {
+                if (body == null) {
+                    if (channel.read(header) < 0) {
+                        throw new IOException("End of stream");
+                    }
+                    if (header.hasRemaining()) {
+                        return;
+                    }
+                    header.flip();
+                    int length = header.getInt();
+                    header.clear();
+                    if (length <= 0 || length > ControlProtocol.MAX_FRAME_LENGTH
+                            || (!authenticated && length != secret.length)) {
+                        throw new IOException("Invalid frame length " + length);
+                    }
+                    body = ByteBuffer.allocate(length);
+                }
+                if (channel.read(body) < 0) {
+                    throw new IOException("End of stream");
+                }
+                if (body.hasRemaining()) {
+                    return;
+                }
+                if (!authenticated) {
+                    if (!MessageDigest.isEqual(secret, body.array())) {
+                        throw new IOException("Control client presented a wrong secret");
+                    }
+                    authenticated = true;
+                    body = null;
+                    continue;
+                }
+                byte[] frame = body.array();
+                body = null;
+                pendingRequests.incrementAndGet();
+                execute(this, frame);
+                if (pendingRequests.get() >= MAX_PENDING_REQUESTS) {
+                    // read again once a request finished
+                    updateInterest();
+                    return;
+                }
+            }
+        }
+
+        void write() throws IOException {
+            ByteBuffer buffer;
+            while ((buffer = outgoing.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return;
+                }
+                outgoing.poll();
+                outgoingFrames.decrementAndGet();
+            }
+            // a frame queued meanwhile has also queued an update
+            updateInterest();
+        }
+
+        /**
+         * Reads unless too many requests are in progress and writes while frames are queued, 
+         * to be called on the selector thread.
+         */
+        void updateInterest() {
+            if (!key.isValid()) {
+                return;
+            }
+            int interestOps = 0;
+            if (pendingRequests.get() < MAX_PENDING_REQUESTS) {
+                interestOps |= SelectionKey.OP_READ;
+            }
+            if (!outgoing.isEmpty()) {
+                interestOps |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(interestOps);
+        }
+
+        void requestFinished() {
+            if (pendingRequests.getAndDecrement() == MAX_PENDING_REQUESTS) {
+                scheduleUpdate();
+            }
+        }
+
+        void send(ByteBuffer frame) throws ConnectException {
+            if (closed) {
+                throw new ConnectException("Control connection is closed");
+            }
+            if (outgoingFrames.incrementAndGet() > MAX_OUTGOING_FRAMES) {
+                logger.warn("Closing control connection, {} frames wait to be sent.", MAX_OUTGOING_FRAMES);
+                close();
+                throw new ConnectException("Control client does not keep up");
+            }
+            outgoing.add(frame);
+            scheduleUpdate();
+        }
+
+        private void scheduleUpdate() {
+            pendingUpdates.add(this);
+            selector.wakeup();
+        }
+
+        void close() {
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                logger.debug("Could not close channel.", ex);
+            }
+        }
+
+        Object[] resolveCallbacks(Object[] arguments) throws ClassNotFoundException {
+            if (arguments == null) {
+                return null;
+            }
+            for (int i = 0; i < arguments.length; i++) {
+                if (arguments[i] instanceof CallbackReference) {
+                    arguments[i] = callback((CallbackReference) arguments[i]);
+                }
+            }
+            return arguments;
+        }
+
+        /**
+         * The same reference always yields the same proxy, so callbacks can be used as map keys.
+         */
+        private synchronized Object callback(final CallbackReference reference) throws ClassNotFoundException {
+            Object callback = callbacks.get(reference.id);
+            if (callback != null) {
+                return callback;
+            }
+            final Class<?> type = Class.forName(reference.interfaceName, false, ControlServer.class.getClassLoader());
+            callback = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return invokeObjectMethod(proxy, method, args);
+                    }
+                    if (method.getReturnType() != void.class) {
+                        throw new UnsupportedOperationException("Callbacks can not return values: " + method);
+                    }
+                    send(ControlProtocol.encode(ControlProtocol.PUSH, reference.id, 
+                            ControlProtocol.methodKey(type, method), args));
+                    return null;
+                }
+            });
+            callbacks.put(reference.id, callback);
+            return callback;
+        }
+    }
+
+    static Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        if (method.getName().equals("equals")) {
+            return proxy == args[0];
+        } else if (method.getName().equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        } else {
+            return proxy.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+    }
+}
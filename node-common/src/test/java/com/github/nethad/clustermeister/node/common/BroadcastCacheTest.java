@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class BroadcastCacheTest {
+    
+    private BroadcastCache cache;
+    private Object owner;
+    private AtomicInteger loads;
+
+    @Before
+    public void setUp() {
+        cache = new BroadcastCache(100);
+        owner = new Object();
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void testValueIsLoadedOnce() throws Exception {
+        assertEquals("a", cache.get("hash-a", owner, 10, loader("a")));
+        assertEquals("a", cache.get("hash-a", owner, 10, loader("a")));
+        
+        assertEquals(1, loads.get());
+        BroadcastCacheStatistics statistics = cache.getStatistics();
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(10, statistics.getUsedBytes());
+    }
+    
+    @Test
+    public void testOwnersDoNotShareValues() throws Exception {
+        cache.get("hash-a", owner, 10, loader("a"));
+        cache.get("hash-a", new Object(), 10, loader("a"));
+        
+        assertEquals(2, loads.get());
+    }
+    
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        cache.get("hash-a", owner, 40, loader("a"));
+        cache.get("hash-b", owner, 40, loader("b"));
+        cache.get("hash-a", owner, 40, loader("a"));
+        cache.get("hash-c", owner, 40, loader("c"));
+        cache.get("hash-a", owner, 40, loader("a"));
+        cache.get("hash-b", owner, 40, loader("b"));
+        
+        assertEquals(4, loads.get());
+        BroadcastCacheStatistics statistics = cache.getStatistics();
+        assertEquals(2, statistics.getEvictions());
+        assertEquals(80, statistics.getUsedBytes());
+    }
+    
+    @Test
+    public void testValuesAboveBudgetAreNotCached() throws Exception {
+        assertEquals("a", cache.get("hash-a", owner, 200, loader("a")));
+        
+        assertEquals(0, cache.getStatistics().getEntries());
+    }
+    
+    @Test
+    public void testFailedLoadIsNotCached() throws Exception {
+        try {
+            cache.get("hash-a", owner, 10, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    throw new IllegalStateException("unavailable");
+                }
+            });
+            fail("Expected IllegalStateException.");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        
+        assertEquals("a", cache.get("hash-a", owner, 10, loader("a")));
+    }
+    
+    @Test
+    public void testValuesOfCollectedOwnersAreDropped() throws Exception {
+        cache.get("hash-a", new Object(), 10, loader("a"));
+        
+        for (int i = 0; i < 50 && cache.getStatistics().getEntries() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        
+        assertEquals(0, cache.getStatistics().getEntries());
+        assertEquals(0, cache.getStatistics().getUsedBytes());
+    }
+    
+    private Callable<Object> loader(final String value) {
+        return new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                loads.incrementAndGet();
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLClassLoader;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class ClassCacheTest {
+    
+    private File directory;
+    private ClassCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("class-cache", "");
+        directory.delete();
+        directory.mkdirs();
+        cache = new ClassCache(new File(directory, ClassCache.DIRECTORY_NAME), 100);
+    }
+    
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Test
+    public void testStoredEntryIsFound() throws Exception {
+        assertNull(cache.get("aa"));
+        File file = cache.store("aa", new byte[10]);
+        
+        assertEquals(file, cache.get("aa"));
+        ClassCacheStatistics statistics = cache.getStatistics();
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(1, statistics.getEntries());
+        assertEquals(10, statistics.getFetchedBytes());
+    }
+    
+    @Test
+    public void testEntriesSurviveTheCacheInstance() throws Exception {
+        cache.store("aa", new byte[10]);
+        
+        ClassCache restarted = new ClassCache(new File(directory, ClassCache.DIRECTORY_NAME), 100);
+        
+        assertNotNull(restarted.get("aa"));
+        assertEquals(0, restarted.getStatistics().getFetchedBytes());
+    }
+    
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        File a = cache.store("aa", new byte[40]);
+        File b = cache.store("bb", new byte[40]);
+        a.setLastModified(System.currentTimeMillis() - 20000);
+        b.setLastModified(System.currentTimeMillis() - 10000);
+        cache.get("aa");
+        cache.store("cc", new byte[40]);
+        
+        assertTrue(cache.contains("aa"));
+        assertFalse(cache.contains("bb"));
+        assertTrue(cache.contains("cc"));
+        assertEquals(1, cache.getStatistics().getEvictions());
+    }
+    
+    @Test
+    public void testEntryOnAClassPathIsNotEvicted() throws Exception {
+        File a = cache.store("aa", new byte[40]);
+        cache.store("bb", new byte[40]);
+        a.setLastModified(System.currentTimeMillis() - 20000);
+        assertTrue(ClassCache.addToClassLoader(a, new PublicURLClassLoader()));
+        cache.store("cc", new byte[40]);
+        
+        assertTrue(cache.contains("aa"));
+        assertFalse(cache.contains("bb"));
+    }
+    
+    @Test
+    public void testEntryLockedByAnotherProcessIsNotEvicted() throws Exception {
+        File a = cache.store("aa", new byte[40]);
+        cache.store("bb", new byte[40]);
+        a.setLastModified(System.currentTimeMillis() - 20000);
+        // the lock another node takes when it puts the entry on its class path
+        RandomAccessFile otherProcess = new RandomAccessFile(a, "r");
+        try {
+            otherProcess.getChannel().lock(0, Long.MAX_VALUE, true);
+            cache.store("cc", new byte[40]);
+        } finally {
+            otherProcess.close();
+        }
+        
+        assertTrue(cache.contains("aa"));
+        assertFalse(cache.contains("bb"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testHashMustNotBeAPath() throws Exception {
+        cache.store("../aa", new byte[1]);
+    }
+    
+    @Test
+    public void testMaxEntrySizeIsLimitedByBudget() {
+        assertEquals(50, new ClassCache(directory, 100, 50).getMaxEntrySize());
+        assertEquals(100, new ClassCache(directory, 100, 500).getMaxEntrySize());
+    }
+
+    @Test
+    public void testOversizedEntryIsNotFetched() throws Exception {
+        File classes = new File(directory, "classes");
+        write(new File(classes, "a/A.class"), "abc");
+        String hash = ClassPathEntries.hash(classes);
+
+        assertEquals(3, ClassPathEntries.size(classes));
+        assertNull(new ClassPathEntryFetch(classes.getPath(), hash, 2).call());
+        assertNotNull(new ClassPathEntryFetch(classes.getPath(), hash, 3).call());
+    }
+
+    @Test
+    public void testDirectoryHashCoversPathsAndContent() throws Exception {
+        File classes = new File(directory, "classes");
+        write(new File(classes, "a/A.class"), "a");
+        String hash = ClassPathEntries.hash(classes);
+        
+        assertEquals(hash, ClassPathEntries.hash(classes));
+        write(new File(classes, "a/A.class"), "b");
+        assertFalse(hash.equals(ClassPathEntries.hash(classes)));
+        write(new File(classes, "a/A.class"), "a");
+        new File(classes, "a/A.class").renameTo(new File(classes, "a/B.class"));
+        assertFalse(hash.equals(ClassPathEntries.hash(classes)));
+    }
+    
+    @Test
+    public void testCachedDirectoryIsOnTheClassPath() throws Exception {
+        File classes = new File(directory, "classes");
+        write(new File(classes, "a/resource.txt"), "content");
+        String hash = ClassPathEntries.hash(classes);
+        File file = cache.store(hash, ClassPathEntries.toJar(classes));
+        URLClassLoader classLoader = new PublicURLClassLoader();
+        
+        assertNull(classLoader.getResource("a/resource.txt"));
+        assertTrue(ClassCache.addToClassLoader(file, classLoader));
+        assertNotNull(classLoader.getResource("a/resource.txt"));
+    }
+    
+    private static class PublicURLClassLoader extends URLClassLoader {
+        PublicURLClassLoader() {
+            super(new URL[0], null);
+        }
+
+        @Override
+        public void addURL(URL url) {
+            super.addURL(url);
+        }
+    }
+    
+    private void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(Constants.UTF8));
+        } finally {
+            out.close();
+        }
+    }
+    
+    private void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
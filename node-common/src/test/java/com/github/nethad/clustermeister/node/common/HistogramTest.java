@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class HistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        Histogram histogram = new Histogram();
+        
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        
+        assertEquals(5, histogram.getPercentile(50));
+        assertEquals(10, histogram.getPercentile(100));
+        assertEquals(5.5, histogram.getMean(), 0.0001);
+        assertEquals(10, histogram.getMax());
+    }
+
+    @Test
+    public void largeValuesAreWithinBucketPrecision() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+        
+        assertWithin(50000, histogram.getPercentile(50));
+        assertWithin(99000, histogram.getPercentile(99));
+        assertEquals(100000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void bucketsCoverAllValues() {
+        for (long value : new long[]{0, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(value <= Histogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || value > Histogram.upperBoundOf(bucket - 1));
+        }
+    }
+
+    @Test
+    public void concurrentRecordingLosesNoValues() throws Exception {
+        final Histogram histogram = new Histogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(i);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        
+        assertEquals(40000, histogram.getCount());
+        assertEquals(4L * 9999 * 10000 / 2, histogram.getSum());
+        assertEquals(9999, histogram.getMax());
+    }
+
+    private void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual, 
+                Math.abs(actual - expected) <= expected / Histogram.SUB_BUCKETS);
+    }
+}
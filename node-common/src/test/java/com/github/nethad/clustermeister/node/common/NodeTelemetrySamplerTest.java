@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class NodeTelemetrySamplerTest {
+    
+    private static final long INTERVAL = 1000;
+
+    @Test
+    public void sampleSurvivesBinaryForm() {
+        NodeTelemetrySample sample = new NodeTelemetrySample("node-1", 1234L, 0.5f, 1.25f, 
+                100L << 20, 512L << 20, 7, 4, 2, 0.001f);
+        
+        byte[] data = sample.toBytes();
+        NodeTelemetrySample read = NodeTelemetrySample.fromBytes(data);
+        
+        assertTrue(data.length < 64);
+        assertEquals("node-1", read.getNodeId());
+        assertEquals(1234L, read.getTimestamp());
+        assertEquals(0.5, read.getCpuLoad(), 0.0);
+        assertEquals(1.25, read.getSystemLoadAverage(), 0.0);
+        assertEquals(100L << 20, read.getHeapUsed());
+        assertEquals(512L << 20, read.getHeapMax());
+        assertEquals(7, read.getGcTime());
+        assertEquals(4, read.getActiveTasks());
+        assertEquals(2, read.getQueueLength());
+        assertEquals(0.001, read.getSamplingOverhead(), 0.000001);
+    }
+
+    @Test
+    public void unknownVersionIsRejected() {
+        byte[] data = new NodeTelemetrySample("node-1", 0, 0, 0, 0, 0, 0, 0, 0, 0).toBytes();
+        data[0] = NodeTelemetrySample.VERSION + 1;
+        try {
+            NodeTelemetrySample.fromBytes(data);
+            fail("Unknown version accepted.");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            NodeTelemetrySample.fromBytes(data, 0, 10);
+            fail("Truncated sample accepted.");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void tasksBeyondProcessingThreadsAreQueued() {
+        NodeTelemetrySampler sampler = new NodeTelemetrySampler("node-1", 4);
+        
+        sampler.tasksReceived(10);
+        NodeTelemetrySample busy = sampler.sample();
+        sampler.tasksCompleted(10);
+        NodeTelemetrySample idle = sampler.sample();
+        
+        assertEquals(4, busy.getActiveTasks());
+        assertEquals(6, busy.getQueueLength());
+        assertEquals(0, idle.getActiveTasks());
+        assertEquals(0, idle.getQueueLength());
+        assertTrue(idle.getHeapUsed() > 0);
+        assertTrue(idle.getCpuLoad() <= 1);
+    }
+
+    @Test
+    public void samplingStaysBelowOverheadBudget() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!threads.isCurrentThreadCpuTimeSupported()) {
+            return;
+        }
+        NodeTelemetrySampler sampler = new NodeTelemetrySampler("node-1", 1);
+        int samples = 1000;
+        // warm up
+        for (int i = 0; i < samples; i++) {
+            sampler.sample().toBytes();
+        }
+        long start = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < samples; i++) {
+            sampler.sample().toBytes();
+        }
+        long perSample = (threads.getCurrentThreadCpuTime() - start) / samples;
+        
+        assertTrue("sampling takes " + perSample + " ns", 
+                perSample < INTERVAL * 1000000 * NodeTelemetrySampler.MAX_OVERHEAD);
+    }
+
+    @Test
+    public void intervalBacksOffAboveOverheadBudget() {
+        long interval = NodeTelemetrySampler.adjustInterval(INTERVAL, INTERVAL, 0.02f);
+        assertEquals(2 * INTERVAL, interval);
+        
+        for (int i = 0; i < 10; i++) {
+            interval = NodeTelemetrySampler.adjustInterval(interval, INTERVAL, 0.02f);
+        }
+        assertEquals(NodeTelemetrySampler.MAX_INTERVAL_FACTOR * INTERVAL, interval);
+        
+        assertEquals(interval, NodeTelemetrySampler.adjustInterval(interval, INTERVAL, 0.005f));
+        assertEquals(interval / 2, NodeTelemetrySampler.adjustInterval(interval, INTERVAL, 0.001f));
+        assertEquals(INTERVAL, NodeTelemetrySampler.adjustInterval(INTERVAL, INTERVAL, 0.001f));
+    }
+}
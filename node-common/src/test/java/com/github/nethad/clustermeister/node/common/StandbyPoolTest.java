@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class StandbyPoolTest {
+    
+    private static final long TIMEOUT = 5000;
+    
+    private List<FakeProcess> started;
+    private Callable<Process> factory;
+    private StandbyPool pool;
+
+    @Before
+    public void setUp() {
+        started = new CopyOnWriteArrayList<FakeProcess>();
+        factory = new Callable<Process>() {
+            @Override
+            public Process call() throws Exception {
+                FakeProcess process = new FakeProcess();
+                started.add(process);
+                return process;
+            }
+        };
+    }
+    
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void poolIsFilledInBackground() throws Exception {
+        pool = new StandbyPool(2, factory);
+        
+        awaitStandbyCount(2);
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    public void takenProcessIsAttachedAndReplaced() throws Exception {
+        pool = new StandbyPool(1, factory);
+        awaitStandbyCount(1);
+        
+        FakeProcess process = (FakeProcess) pool.take();
+        
+        assertSame(started.get(0), process);
+        assertEquals(StandbyRunner.ATTACH_COMMAND + "\n\n", process.getInput());
+        awaitStandbyCount(1);
+        assertEquals(2, started.size());
+        assertEquals("", started.get(1).getInput());
+    }
+
+    @Test
+    public void processIsAttachedWithSettings() throws Exception {
+        pool = new StandbyPool(1, factory);
+        awaitStandbyCount(1);
+        Map<String, String> settings = new LinkedHashMap<String, String>();
+        settings.put("jppf.config", "/nodes/12002/jppf-node.properties");
+        settings.put(Constants.CLUSTERMEISTER_NODE_DIRECTORY, "/nodes/12002");
+        
+        FakeProcess process = (FakeProcess) pool.take(settings);
+        
+        assertEquals(StandbyRunner.ATTACH_COMMAND + "\n"
+                + "jppf.config=/nodes/12002/jppf-node.properties\n"
+                + Constants.CLUSTERMEISTER_NODE_DIRECTORY + "=/nodes/12002\n\n", process.getInput());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void multiLineSettingIsRejected() throws Exception {
+        pool = new StandbyPool(1, factory);
+        
+        pool.take(Collections.singletonMap("jppf.config", "a\nCMAttachCommand"));
+    }
+
+    @Test
+    public void terminatedStandbyProcessIsSkipped() throws Exception {
+        pool = new StandbyPool(1, factory);
+        awaitStandbyCount(1);
+        started.get(0).exitValue = 1;
+        
+        FakeProcess process = (FakeProcess) pool.take();
+        
+        assertNotSame(started.get(0), process);
+        assertEquals(StandbyRunner.ATTACH_COMMAND + "\n\n", process.getInput());
+    }
+
+    @Test
+    public void closeDestroysStandbyProcesses() throws Exception {
+        pool = new StandbyPool(2, factory);
+        awaitStandbyCount(2);
+        FakeProcess attached = (FakeProcess) pool.take();
+        awaitStandbyCount(2);
+        
+        pool.close();
+        
+        assertEquals(0, pool.getStandbyCount());
+        assertFalse(attached.destroyed);
+        for (FakeProcess process : started) {
+            assertTrue(process == attached || process.destroyed);
+        }
+    }
+    
+    private void awaitStandbyCount(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (pool.getStandbyCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, pool.getStandbyCount());
+    }
+    
+    private static class FakeProcess extends Process {
+        private final ByteArrayOutputStream input = new ByteArrayOutputStream();
+        private volatile Integer exitValue = null;
+        private volatile boolean destroyed = false;
+
+        String getInput() throws Exception {
+            return input.toString(Constants.UTF8);
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return input;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() throws InterruptedException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int exitValue() {
+            if (exitValue == null) {
+                throw new IllegalThreadStateException();
+            }
+            return exitValue;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+        }
+    }
+}
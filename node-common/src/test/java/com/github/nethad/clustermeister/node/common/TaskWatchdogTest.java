@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class TaskWatchdogTest {
+    
+    private final TaskWatchdog watchdog = new TaskWatchdog(20);
+
+    @Test
+    public void cancelledTaskIsInterrupted() throws Exception {
+        TaskWatchdog.Watch watch = watchdog.watch(answer(new AtomicBoolean(true)));
+        try {
+            Thread.sleep(5000);
+            fail();
+        } catch (InterruptedException ex) {
+            // expected
+        }
+        watch.stop();
+        
+        assertTrue(watch.isCancelled());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void runningTaskIsNotInterrupted() throws Exception {
+        TaskWatchdog.Watch watch = watchdog.watch(answer(new AtomicBoolean(false)));
+        Thread.sleep(100);
+        watch.stop();
+        
+        assertFalse(watch.isCancelled());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void stoppedWatchDoesNotInterrupt() throws Exception {
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        TaskWatchdog.Watch watch = watchdog.watch(answer(cancelled));
+        watch.stop();
+        cancelled.set(true);
+        Thread.sleep(100);
+        
+        assertFalse(watch.isCancelled());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    private static Callable<Boolean> answer(final AtomicBoolean cancelled) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return cancelled.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common.control;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class ControlChannelTest {
+    
+    private ControlServer server;
+    private ControlClient client;
+    private Service service;
+    private byte[] secret;
+
+    @Before
+    public void setUp() throws Exception {
+        secret = ControlEndpoint.generateSecret();
+        server = new ControlServer(0, secret);
+        server.register(Service.class, new ServiceImpl());
+        server.start();
+        client = ControlClient.connect("localhost", server.getPort(), secret);
+        service = client.getService(Service.class);
+    }
+    
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void callsReturnResults() throws Exception {
+        assertEquals(5, service.add(2, 3));
+        assertEquals("hello", service.echo("hello"));
+        assertNull(service.echo(null));
+    }
+
+    @Test
+    public void exceptionsArePropagated() throws Exception {
+        try {
+            service.fail("expected");
+            fail();
+        } catch (IllegalStateException ex) {
+            assertEquals("expected", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void concurrentRequestsArePipelined() throws Exception {
+        final CountDownLatch slowStarted = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> slow = executor.submit(new java.util.concurrent.Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    slowStarted.countDown();
+                    return service.sleep(500);
+                }
+            });
+            slowStarted.await();
+            long start = System.currentTimeMillis();
+            assertEquals(3, service.add(1, 2));
+            assertTrue(System.currentTimeMillis() - start < 400);
+            assertEquals(500, slow.get(5, TimeUnit.SECONDS).intValue());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void serverPushesToCallbacksInOrder() throws Exception {
+        final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch latch = new CountDownLatch(3);
+        Listener listener = new Listener() {
+            @Override
+            public void onEvent(String event) {
+                received.add(event);
+                latch.countDown();
+            }
+        };
+
+        service.subscribe(listener, 3);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(java.util.Arrays.asList("event0", "event1", "event2"), received);
+        assertTrue(service.unsubscribe(listener));
+    }
+
+    @Test
+    public void wrongSecretIsRejected() throws Exception {
+        ControlClient intruder = ControlClient.connect("localhost", server.getPort(), 
+                ControlEndpoint.generateSecret());
+        try {
+            intruder.getService(Service.class).add(1, 1);
+            fail();
+        } catch (RemoteException ex) {
+            // expected, the server closed the connection
+        } finally {
+            intruder.close();
+        }
+    }
+
+    @Test
+    public void classesOutsideAllowedPackagesAreRejected() throws Exception {
+        try {
+            service.echoObject(new java.text.SimpleDateFormat());
+            fail();
+        } catch (RemoteException ex) {
+            // expected, the server closed the connection
+        }
+    }
+
+    @Test
+    public void failingConnectionDoesNotAffectOthers() throws Exception {
+        ControlClient other = ControlClient.connect("localhost", server.getPort(), secret);
+        try {
+            try {
+                service.echoObject(new java.text.SimpleDateFormat());
+                fail();
+            } catch (RemoteException ex) {
+                // expected, the server closed the connection
+            }
+            assertEquals(3, other.getService(Service.class).add(1, 2));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void clientReconnectsAfterServerRestart() throws Exception {
+        final CountDownLatch reconnected = new CountDownLatch(1);
+        client.addListener(new ControlClient.Listener() {
+            @Override
+            public void reconnected(ControlClient client) {
+                reconnected.countDown();
+            }
+        });
+        int port = server.getPort();
+        server.stop();
+        Thread.sleep(200);
+        server = new ControlServer(port, secret);
+        server.register(Service.class, new ServiceImpl());
+        server.start();
+
+        assertTrue(reconnected.await(5, TimeUnit.SECONDS));
+        assertEquals(5, service.add(2, 3));
+    }
+
+    @Test(expected = RemoteException.class)
+    public void closedConnectionFailsCalls() throws Exception {
+        server.stop();
+        Thread.sleep(200);
+        service.add(1, 1);
+    }
+
+    public interface Listener extends Remote {
+        void onEvent(String event) throws RemoteException;
+    }
+
+    public interface Service {
+        int add(int a, int b) throws RemoteException;
+        
+        String echo(String value) throws RemoteException;
+        
+        Object echoObject(Object value) throws RemoteException;
+        
+        void fail(String message) throws RemoteException;
+        
+        int sleep(int millis) throws RemoteException;
+        
+        void subscribe(Listener listener, int events) throws RemoteException;
+        
+        boolean unsubscribe(Listener listener) throws RemoteException;
+    }
+
+    private static class ServiceImpl implements Service {
+        private final List<Listener> listeners = new ArrayList<Listener>();
+
+        @Override
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Override
+        public String echo(String value) {
+            return value;
+        }
+
+        @Override
+        public Object echoObject(Object value) {
+            return value;
+        }
+
+        @Override
+        public void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+
+        @Override
+        public int sleep(int millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return millis;
+        }
+
+        @Override
+        public synchronized void subscribe(Listener listener, int events) throws RemoteException {
+            listeners.add(listener);
+            for (int i = 0; i < events; i++) {
+                listener.onEvent("event" + i);
+            }
+        }
+
+        @Override
+        public synchronized boolean unsubscribe(Listener listener) {
+            return listeners.remove(listener);
+        }
+    }
+}
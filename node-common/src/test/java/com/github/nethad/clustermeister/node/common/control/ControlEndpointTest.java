@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node.common.control;
+
+import java.io.File;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class ControlEndpointTest {
+
+    @Test
+    public void endpointIsReadBackFromItsFile() throws Exception {
+        File file = File.createTempFile("control", ".properties");
+        try {
+            byte[] secret = ControlEndpoint.generateSecret();
+            new ControlEndpoint(61113, secret).write(file);
+
+            ControlEndpoint endpoint = ControlEndpoint.read(file);
+
+            assertEquals(61113, endpoint.getPort());
+            assertTrue(Arrays.equals(secret, endpoint.getSecret()));
+            assertTrue(file.canRead());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node;
+
+import com.github.nethad.clustermeister.node.common.ClassCache;
+import com.github.nethad.clustermeister.node.common.ClassCacheManifest;
+import com.github.nethad.clustermeister.node.common.ClassPathEntryFetch;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.jppf.node.event.NodeLifeCycleEvent;
+import org.jppf.node.event.NodeLifeCycleListener;
+import org.jppf.server.protocol.JPPFTask;
+import org.jppf.task.storage.DataProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fills the {@link ClassCache} with the client class path entries of a job 
+ * that were not cached when the job arrived.
+ * 
+ * The entries are fetched from the client once the job's tasks are executed, 
+ * one at a time on a background thread, so the job's results are not delayed. 
+ * The job itself still loads its classes remotely, the following jobs 
+ * (also after a restart of the node) load them from the cache. Entries larger than 
+ * {@link ClassCache#getMaxEntrySize()} are not transferred and not requested again.
+ *
+ * @author daniel
+ */
+public class ClassCacheNodeLifeCycleListener implements NodeLifeCycleListener {
+
+    protected final static Logger logger =
+            LoggerFactory.getLogger(ClassCacheNodeLifeCycleListener.class);
+    
+    private final ExecutorService fetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "cm-class-cache-fetcher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Set<String> oversized = Collections.synchronizedSet(new HashSet<String>());
+
+    @Override
+    public void nodeStarting(NodeLifeCycleEvent event) {
+        //nop
+    }
+
+    @Override
+    public void nodeEnding(NodeLifeCycleEvent event) {
+        //nop
+    }
+
+    @Override
+    public void jobStarting(NodeLifeCycleEvent event) {
+        //nop
+    }
+
+    @Override
+    public void jobEnding(NodeLifeCycleEvent event) {
+        ClassCacheManifest manifest = getManifest(event.getDataProvider());
+        if (manifest == null || event.getTasks() == null) {
+            return;
+        }
+        JPPFTask task = null;
+        for (Object candidate : event.getTasks()) {
+            if (candidate instanceof JPPFTask) {
+                task = (JPPFTask) candidate;
+                break;
+            }
+        }
+        if (task == null) {
+            return;
+        }
+        ClassLoader classLoader = task.getClass().getClassLoader();
+        List<String> missing = new ArrayList<String>();
+        for (String hash : manifest.install(classLoader)) {
+            if (!oversized.contains(hash)) {
+                missing.add(hash);
+            }
+        }
+        if (!missing.isEmpty()) {
+            fetcher.execute(new Fetch(manifest, missing, task, classLoader));
+        }
+    }
+
+    private ClassCacheManifest getManifest(DataProvider dataProvider) {
+        if (dataProvider == null) {
+            return null;
+        }
+        try {
+            Object manifest = dataProvider.getValue(ClassCacheManifest.DATA_PROVIDER_KEY);
+            if (manifest instanceof ClassCacheManifest) {
+                return (ClassCacheManifest) manifest;
+            }
+        } catch (Exception ex) {
+            logger.warn("Could not read class cache manifest from data provider.", ex);
+        }
+        return null;
+    }
+    
+    private class Fetch implements Runnable {
+        private final ClassCacheManifest manifest;
+        private final List<String> hashes;
+        private final JPPFTask task;
+        private final ClassLoader classLoader;
+
+        Fetch(ClassCacheManifest manifest, List<String> hashes, JPPFTask task, ClassLoader classLoader) {
+            this.manifest = manifest;
+            this.hashes = hashes;
+            this.task = task;
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public void run() {
+            ClassCache cache = ClassCache.getInstance();
+            for (String hash : hashes) {
+                if (cache.contains(hash)) {
+                    // fetched meanwhile for another job
+                    continue;
+                }
+                String location = manifest.getEntries().get(hash);
+                try {
+                    byte[] content = task.compute(
+                            new ClassPathEntryFetch(location, hash, cache.getMaxEntrySize()));
+                    if (content == null) {
+                        oversized.add(hash);
+                        logger.info("Not caching class path entry {}, it is too large.", location);
+                        continue;
+                    }
+                    File file = cache.store(hash, content);
+                    ClassCache.addToClassLoader(file, classLoader);
+                    logger.debug("Cached class path entry {} ({} bytes).", location, content.length);
+                } catch (Exception ex) {
+                    logger.warn("Could not cache class path entry {}.", location, ex);
+                }
+            }
+        }
+    }
+}
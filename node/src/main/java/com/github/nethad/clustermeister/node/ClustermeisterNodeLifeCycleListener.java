@@ -17,6 +17,7 @@ package com.github.nethad.clustermeister.node;
 
 import com.github.nethad.clustermeister.node.common.Constants;
 import com.github.nethad.clustermeister.node.common.MBeanUtils;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
@@ -54,9 +55,10 @@ public class ClustermeisterNodeLifeCycleListener implements NodeLifeCycleListene
         boolean divertStreamsToFile = Boolean.parseBoolean(System.getProperty(
                 Constants.CLUSTERMEISTER_DIVERT_STREAMS_TO_FILE));
         if(divertStreamsToFile) {
+            File directory = new File(System.getProperty(Constants.CLUSTERMEISTER_NODE_DIRECTORY, "."));
             try {
-                System.setOut(new PrintStream(new FileOutputStream(Constants.STDOUT_LOG)));
-                System.setErr(new PrintStream(new FileOutputStream(Constants.STDERR_LOG)));
+                System.setOut(new PrintStream(new FileOutputStream(new File(directory, Constants.STDOUT_LOG))));
+                System.setErr(new PrintStream(new FileOutputStream(new File(directory, Constants.STDERR_LOG))));
             } catch (FileNotFoundException ex) {
                 logger.warn("Could not create log file.", ex);
             }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node;
+
+import com.github.nethad.clustermeister.node.common.BundleResultCombiner;
+import java.util.ArrayList;
+import java.util.List;
+import org.jppf.node.event.NodeLifeCycleEvent;
+import org.jppf.node.event.NodeLifeCycleListener;
+import org.jppf.server.protocol.JPPFTask;
+import org.jppf.task.storage.DataProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Combines the task results of a bundle on the node if the job 
+ * provides a {@link BundleResultCombiner}.
+ *
+ * @author daniel
+ */
+public class ResultCombiningNodeLifeCycleListener implements NodeLifeCycleListener {
+
+    protected final static Logger logger =
+            LoggerFactory.getLogger(ResultCombiningNodeLifeCycleListener.class);
+
+    @Override
+    public void nodeStarting(NodeLifeCycleEvent event) {
+        //nop
+    }
+
+    @Override
+    public void nodeEnding(NodeLifeCycleEvent event) {
+        //nop
+    }
+
+    @Override
+    public void jobStarting(NodeLifeCycleEvent event) {
+        //nop
+    }
+
+    @Override
+    public void jobEnding(NodeLifeCycleEvent event) {
+        BundleResultCombiner combiner = getCombiner(event.getDataProvider());
+        if (combiner == null || event.getTasks() == null) {
+            return;
+        }
+        List<JPPFTask> successfulTasks = new ArrayList<JPPFTask>();
+        List<Object> results = new ArrayList<Object>();
+        for (Object task : event.getTasks()) {
+            if (task instanceof JPPFTask && ((JPPFTask) task).getException() == null) {
+                successfulTasks.add((JPPFTask) task);
+                results.add(((JPPFTask) task).getResult());
+            }
+        }
+        if (successfulTasks.size() < 2) {
+            return;
+        }
+        try {
+            Object combined = combiner.combine(results);
+            successfulTasks.get(0).setResult(combined);
+            for (JPPFTask task : successfulTasks.subList(1, successfulTasks.size())) {
+                task.setResult(BundleResultCombiner.Marker.COMBINED);
+            }
+        } catch (Exception ex) {
+            logger.warn("Could not combine task results, returning them uncombined.", ex);
+        }
+    }
+
+    private BundleResultCombiner getCombiner(DataProvider dataProvider) {
+        if (dataProvider == null) {
+            return null;
+        }
+        try {
+            Object combiner = dataProvider.getValue(BundleResultCombiner.DATA_PROVIDER_KEY);
+            if (combiner instanceof BundleResultCombiner) {
+                return (BundleResultCombiner) combiner;
+            }
+        } catch (Exception ex) {
+            logger.warn("Could not read combiner from data provider.", ex);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.node;
+
+import com.github.nethad.clustermeister.node.common.Constants;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySampler;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.jppf.node.NodeRunner;
+import org.jppf.node.event.NodeLifeCycleEvent;
+import org.jppf.node.event.NodeLifeCycleListener;
+import org.jppf.utils.JPPFConfiguration;
+import org.jppf.utils.TypedProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples the node's telemetry and sends it to the driver over a TCP connection, 
+ * every second by default (see {@link Constants#CLUSTERMEISTER_TELEMETRY_INTERVAL}).
+ * The connection is opened again at the next sample if it fails.
+ * 
+ * Tasks are counted per received bundle, the tasks beyond the processing threads 
+ * are reported as queued. The interval is backed off while sampling and sending take 
+ * more than {@link NodeTelemetrySampler#MAX_OVERHEAD} of the CPU.
+ *
+ * @author daniel
+ */
+public class TelemetryNodeLifeCycleListener implements NodeLifeCycleListener {
+
+    protected final static Logger logger =
+            LoggerFactory.getLogger(TelemetryNodeLifeCycleListener.class);
+    
+    private static final long DEFAULT_INTERVAL = 1000;
+    private static final int DEFAULT_SERVER_PORT = 11111;
+    private static final int CONNECT_TIMEOUT = 5000;
+    
+    private volatile NodeTelemetrySampler sampler = null;
+    private ScheduledExecutorService scheduler = null;
+    private volatile Socket socket = null;
+    private DataOutputStream out = null;
+    private InetSocketAddress driverAddress = null;
+    private long baseInterval;
+    private long interval;
+
+    @Override
+    public void nodeStarting(NodeLifeCycleEvent event) {
+        baseInterval = Long.getLong(Constants.CLUSTERMEISTER_TELEMETRY_INTERVAL, DEFAULT_INTERVAL);
+        if (baseInterval <= 0) {
+            logger.info("Telemetry disabled.");
+            return;
+        }
+        TypedProperties config = JPPFConfiguration.getProperties();
+        String host = config.getString("jppf.server.host", "localhost");
+        int port = Integer.getInteger(Constants.CLUSTERMEISTER_TELEMETRY_PORT, 
+                config.getInt("jppf.server.port", DEFAULT_SERVER_PORT) + Constants.TELEMETRY_PORT_OFFSET);
+        driverAddress = new InetSocketAddress(host, port);
+        interval = baseInterval;
+        sampler = new NodeTelemetrySampler(NodeRunner.getUuid(), config.getInt("processing.threads", 
+                Runtime.getRuntime().availableProcessors()));
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "cm-telemetry");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduleNextSample();
+        logger.info("Sending telemetry to {} every {} ms.", driverAddress, baseInterval);
+    }
+
+    @Override
+    public void nodeEnding(NodeLifeCycleEvent event) {
+        sampler = null;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        disconnect();
+    }
+
+    @Override
+    public void jobStarting(NodeLifeCycleEvent event) {
+        NodeTelemetrySampler currentSampler = sampler;
+        List<?> tasks = event.getTasks();
+        if (currentSampler != null && tasks != null) {
+            currentSampler.tasksReceived(tasks.size());
+        }
+    }
+
+    @Override
+    public void jobEnding(NodeLifeCycleEvent event) {
+        NodeTelemetrySampler currentSampler = sampler;
+        List<?> tasks = event.getTasks();
+        if (currentSampler != null && tasks != null) {
+            currentSampler.tasksCompleted(tasks.size());
+        }
+    }
+    
+    private void scheduleNextSample() {
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    sendSample();
+                }
+            }, interval, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // the node is ending
+        }
+    }
+    
+    private void sendSample() {
+        NodeTelemetrySampler currentSampler = sampler;
+        if (currentSampler == null) {
+            return;
+        }
+        NodeTelemetrySample sample = currentSampler.sample();
+        try {
+            send(sample.toBytes());
+        } catch (IOException ex) {
+            logger.debug("Could not send telemetry to {}.", driverAddress, ex);
+            disconnect();
+        }
+        long nextInterval = NodeTelemetrySampler.adjustInterval(
+                interval, baseInterval, sample.getSamplingOverhead());
+        if (nextInterval != interval) {
+            logger.info("Telemetry overhead is {}%, sampling every {} ms.", 
+                    String.format("%.2f", sample.getSamplingOverhead() * 100), nextInterval);
+            interval = nextInterval;
+        }
+        scheduleNextSample();
+    }
+    
+    private void send(byte[] data) throws IOException {
+        if (socket == null) {
+            Socket newSocket = new Socket();
+            try {
+                newSocket.setTcpNoDelay(true);
+                newSocket.connect(driverAddress, CONNECT_TIMEOUT);
+                out = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream()));
+            } catch (IOException ex) {
+                newSocket.close();
+                throw ex;
+            }
+            socket = newSocket;
+        }
+        out.writeShort(data.length);
+        out.write(data);
+        out.flush();
+    }
+    
+    private void disconnect() {
+        Socket currentSocket = socket;
+        if (currentSocket != null) {
+            try {
+                currentSocket.close();
+            } catch (IOException ex) {
+                logger.debug("Could not close telemetry connection.", ex);
+            }
+            socket = null;
+            out = null;
+        }
+    }
+}
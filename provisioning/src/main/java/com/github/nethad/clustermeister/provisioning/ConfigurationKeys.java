@@ -23,6 +23,9 @@ public class ConfigurationKeys {
     
     public static final String JVM_OPTIONS_LOCAL_DRIVER = "jvm_options.local_driver";
     
+    public static final String LOCAL_DRIVER_COUNT = "local_driver.count";
+    public static final int DEFAULT_LOCAL_DRIVER_COUNT = 1;
+    
     public static final String JVM_OPTIONS_NODE = "jvm_options.node";
     public static final String DEFAULT_JVM_OPTIONS_NODE = "-Xmx32m";
     
@@ -33,4 +36,9 @@ public class ConfigurationKeys {
     public static final Boolean DEFAULT_LOGGING_NODE_REMOTE = Boolean.FALSE;
     public static final int DEFAULT_LOGGING_NODE_REMOTE_PORT = 52321;
     
+    public static final String CONTROL_TRANSPORT = "control.transport";
+    
+    public static final String STANDBY_NODES = "standby.nodes";
+    public static final int DEFAULT_STANDBY_NODES = 0;
+    
 }
@@ -15,7 +15,6 @@
  */
 package com.github.nethad.clustermeister.provisioning.ec2;
 
-import com.github.nethad.clustermeister.api.JPPFConstants;
 import com.github.nethad.clustermeister.provisioning.AbstractExecutableCommand;
 import com.github.nethad.clustermeister.provisioning.Command;
 import com.github.nethad.clustermeister.provisioning.CommandLineArguments;
@@ -57,7 +56,7 @@ public class AmazonCommandLineEvaluation implements CommandLineEvaluation {
         this.handle = handle;
         //TODO: refactor initialization of this management client. Shouldn't be here!
         ManagementByJobsClientBuilder builder = new ManagementByJobsClientBuilder(
-                "localhost", JPPFConstants.DEFAULT_SERVER_PORT);
+                "localhost", nodeManager.getLocalDriverPort());
         this.managementClient = builder.build();
         nodeManager.registerManagementClient(managementClient);
         registerCommands();
@@ -153,6 +153,27 @@ public class AmazonConfigurationLoader {
      */
     public static final String NODE_LOG_REMOTE_PORT = "logging.node.remote_port";
     
+    /**
+     * Number of standby node JVMs configuration property.
+     */
+    public static final String NODE_STANDBY = "standby.nodes";
+    
+    /**
+     * Node topology configuration property ({@link #TOPOLOGY_FLAT} or {@link #TOPOLOGY_TIERED}).
+     */
+    public static final String TOPOLOGY = "amazon.topology";
+    
+    /**
+     * All nodes connect to the local driver.
+     */
+    public static final String TOPOLOGY_FLAT = "flat";
+    
+    /**
+     * Nodes connect to a driver in their region or placement group, 
+     * which is peered with the local driver.
+     */
+    public static final String TOPOLOGY_TIERED = "tiered";
+    
     /**
      * The configuration.
      */
@@ -227,6 +248,24 @@ public class AmazonConfigurationLoader {
         return configuration.getInt(NODE_LOG_REMOTE_PORT, 52321);
     }
     
+    /**
+     * Returns the number of pre-started standby JVMs each node keeps 
+     * to serve its restarts.
+     */
+    public Integer getNodeStandbyNodes() {
+        return configuration.getInt(NODE_STANDBY, 0);
+    }
+    
+    /**
+     * Returns whether the tiered node topology is configured.
+     * 
+     * @return true for {@link #TOPOLOGY_TIERED}, false otherwise.
+     */
+    public boolean isTieredTopology() {
+        String topology = configuration.getString(TOPOLOGY, TOPOLOGY_FLAT);
+        return TOPOLOGY_TIERED.equalsIgnoreCase(topology.trim());
+    }
+    
     /**
      * Returns a set of configured {@link Credentials}.
      * 
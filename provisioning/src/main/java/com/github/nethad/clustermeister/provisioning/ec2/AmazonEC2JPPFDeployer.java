@@ -69,6 +69,8 @@ public abstract class AmazonEC2JPPFDeployer extends Observable {
             LoggerFactory.getLogger(AmazonEC2JPPFDeployer.class);
     
     protected static final String INIT_LOG = "init.log";
+    protected static final long UUID_TIMEOUT = 60000;
+    protected static final long UUID_POLL_INTERVAL = 1000;
     protected static final String CLUSTERMEISTER_BIN = "clustermeister-bin";
     
     private static final Monitor driverMM = new Monitor(false);
@@ -343,8 +345,21 @@ public abstract class AmazonEC2JPPFDeployer extends Observable {
         script.append(" > ").
                 append(INIT_LOG).
                 append(" 2>&1");
+        if(isStartedInBackground()) {
+            script.append(" &");
+        }
         return execute(script.toString()).getOutput();
     }
+    
+    /**
+     * Whether the start script keeps running after the JPPF component is 
+     * up and thus has to be started in the background.
+     * 
+     * @return false by default.
+     */
+    protected boolean isStartedInBackground() {
+        return false;
+    }
 
     protected void closeInputstream(final InputStream in) {
         try {
@@ -356,8 +371,20 @@ public abstract class AmazonEC2JPPFDeployer extends Observable {
     
     protected String getUUID() {
         logger.debug("Fetching UUID from {}", INIT_LOG);
-        String output = getStringResult(execute("cat " + getDirectoryName() + 
-                jppfFolder + INIT_LOG + " | grep " + UUID_PREFIX));
+        String output = readUUIDLine();
+        long deadline = System.currentTimeMillis() + UUID_TIMEOUT;
+        while(isStartedInBackground() && 
+                (output == null || !output.contains(UUID_PREFIX)) && 
+                System.currentTimeMillis() < deadline) {
+            //the start script may not have printed the UUID yet.
+            try {
+                Thread.sleep(UUID_POLL_INTERVAL);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            output = readUUIDLine();
+        }
         checkNotNull(output);
         checkState(output.contains(UUID_PREFIX));
         int beginIndex = output.indexOf(UUID_PREFIX) + UUID_PREFIX.length();
@@ -367,4 +394,9 @@ public abstract class AmazonEC2JPPFDeployer extends Observable {
         
         return uuid;
     }
+    
+    private String readUUIDLine() {
+        return getStringResult(execute("cat " + getDirectoryName() + 
+                jppfFolder + INIT_LOG + " | grep " + UUID_PREFIX));
+    }
 }
@@ -16,7 +16,12 @@
 package com.github.nethad.clustermeister.provisioning.ec2;
 
 import com.github.nethad.clustermeister.api.JPPFConstants;
+import com.github.nethad.clustermeister.node.common.Constants;
+import com.github.nethad.clustermeister.node.common.control.ControlEndpoint;
+import com.google.common.io.Files;
 import com.google.common.util.concurrent.Monitor;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
 import org.jclouds.compute.ComputeServiceContext;
@@ -26,6 +31,10 @@ import org.jclouds.domain.LoginCredentials;
 /**
  * Do not reuse instances of this class.
  * 
+ * A tier driver reports its nodes to the provisioning through the control channel, 
+ * reverse tunneled to the same port on its instance. The control endpoint is copied to 
+ * the instance, readable by the login user only, and peer drivers are not reported.
+ * 
  * @author daniel
  */
 public class AmazonEC2JPPFDriverDeployer extends AmazonEC2JPPFDeployer {
@@ -38,13 +47,43 @@ public class AmazonEC2JPPFDriverDeployer extends AmazonEC2JPPFDeployer {
     private static final String LOG4J_CONFIG_FILE_SUBPATH = JPPF_FOLDER + "config/" + LOG4J_CONFIG_FILE_NAME;
     private static final String START_SCRIPT = "startDriver.sh";
     private static final String START_SCRIPT_ARGUMENTS = "false false true";
+    private static final String TIER_START_SCRIPT_ARGUMENTS = "false true true";
+    private static final String CONTROL_ENDPOINT_FOLDER = ".clustermeister";
+    private static final String PEER_NAME = "clustermeister";
 
     public AmazonEC2JPPFDriverDeployer(ComputeServiceContext context,
             NodeMetadata metadata, LoginCredentials credentials,
             AmazonNodeConfiguration nodeConfiguration) {
         super(credentials, context, metadata, nodeConfiguration, ZIP_FILE, 
                 CRC32_FILE, JPPF_CONFIG_FILE_SUBPATH, LOG4J_CONFIG_FILE_SUBPATH, 
-                START_SCRIPT, START_SCRIPT_ARGUMENTS, JPPF_FOLDER);
+                START_SCRIPT, isTierDriver(nodeConfiguration) ? TIER_START_SCRIPT_ARGUMENTS 
+                : START_SCRIPT_ARGUMENTS, JPPF_FOLDER);
+    }
+    
+    private static boolean isTierDriver(AmazonNodeConfiguration nodeConfiguration) {
+        return AmazonNodeManager.LOCAL_DRIVER_ADDRESS.equals(nodeConfiguration.getDriverAddress());
+    }
+
+    @Override
+    protected void setupJPPF() {
+        super.setupJPPF();
+        if (isTierDriver(nodeConfiguration)) {
+            uploadControlEndpoint();
+        }
+    }
+    
+    private void uploadControlEndpoint() {
+        String destination = CONTROL_ENDPOINT_FOLDER + "/" + ControlEndpoint.DEFAULT_FILE.getName();
+        byte[] endpoint;
+        try {
+            endpoint = Files.toByteArray(ControlEndpoint.DEFAULT_FILE);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not read control endpoint.", ex);
+        }
+        // restricted before the secret is written
+        execute(String.format("mkdir -p %1$s && chmod 700 %1$s", CONTROL_ENDPOINT_FOLDER));
+        upload(new ByteArrayInputStream(endpoint), destination);
+        execute("chmod 600 " + destination);
     }
 
     @Override
@@ -67,6 +106,17 @@ public class AmazonEC2JPPFDriverDeployer extends AmazonEC2JPPFDeployer {
             nodeProperties.setProperty(JPPFConstants.MANAGEMENT_HOST, getPrivateIp());
             nodeProperties.setProperty(JPPFConstants.MANAGEMENT_PORT, 
                     String.valueOf(nodeConfiguration.getManagementPort()));
+            if (isTierDriver(nodeConfiguration)) {
+                // tier driver, peered with the local driver through a reverse tunnel
+                nodeProperties.setProperty(JPPFConstants.PEERS, PEER_NAME);
+                nodeProperties.setProperty(String.format(JPPFConstants.PEER_SERVER_HOST_PATTERN, PEER_NAME), 
+                        AmazonNodeManager.LOCAL_DRIVER_ADDRESS);
+                nodeProperties.setProperty(String.format(JPPFConstants.PEER_SERVER_PORT_PATTERN, PEER_NAME), 
+                        String.valueOf(AmazonNodeManager.PEER_TUNNEL_PORT));
+                nodeProperties.setProperty(JPPFConstants.JVM_OPTIONS, String.format("%s -D%s=%s", 
+                        nodeProperties.getProperty(JPPFConstants.JVM_OPTIONS, ""), 
+                        Constants.CLUSTERMEISTER_CONTROL_TRANSPORT, Constants.CONTROL_TRANSPORT_NIO).trim());
+            }
             return nodeProperties;
         } finally {
             closeInputstream(in);
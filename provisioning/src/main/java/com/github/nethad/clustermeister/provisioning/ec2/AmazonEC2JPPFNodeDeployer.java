@@ -16,6 +16,7 @@
 package com.github.nethad.clustermeister.provisioning.ec2;
 
 import com.github.nethad.clustermeister.api.JPPFConstants;
+import com.github.nethad.clustermeister.node.common.Constants;
 import static com.google.common.base.Preconditions.*;
 import com.google.common.util.concurrent.Monitor;
 import java.io.InputStream;
@@ -76,6 +77,24 @@ public class AmazonEC2JPPFNodeDeployer extends AmazonEC2JPPFDeployer {
 
         nodeProperties.setProperty(JPPFConstants.PROCESSING_THREADS, 
                 String.valueOf(getNumberOfProcessingThreads()));
+        if(getStandbyNodes() > 0) {
+            nodeProperties.setProperty(Constants.CLUSTERMEISTER_STANDBY_NODES, 
+                    String.valueOf(getStandbyNodes()));
+        }
         return nodeProperties;
     }
+
+    /**
+     * With standby nodes the launcher keeps running to serve restarts and 
+     * the nodes added later on the instance, unless it attached its node to 
+     * the standby processes of such a launcher.
+     */
+    @Override
+    protected boolean isStartedInBackground() {
+        return getStandbyNodes() > 0;
+    }
+    
+    private int getStandbyNodes() {
+        return nodeConfiguration.getStandbyNodes().or(0);
+    }
 }
@@ -17,10 +17,14 @@ package com.github.nethad.clustermeister.provisioning.ec2;
 
 import com.github.nethad.clustermeister.api.Credentials;
 import com.github.nethad.clustermeister.api.JPPFConstants;
+import com.github.nethad.clustermeister.api.NodeType;
 import com.github.nethad.clustermeister.api.impl.AmazonConfiguredKeyPairCredentials;
 import com.github.nethad.clustermeister.api.impl.KeyPairCredentials;
 import com.github.nethad.clustermeister.api.impl.PasswordCredentials;
+import com.github.nethad.clustermeister.node.common.Constants;
+import com.github.nethad.clustermeister.node.common.control.ControlEndpoint;
 import com.github.nethad.clustermeister.provisioning.ec2.AmazonEC2JPPFDeployer.Event;
+import com.github.nethad.clustermeister.provisioning.jppf.JPPFLocalDriver;
 import com.github.nethad.clustermeister.provisioning.utils.SSHClientImpl;
 import com.github.nethad.clustermeister.provisioning.utils.SocksTunnel;
 import com.google.common.base.Optional;
@@ -82,8 +86,13 @@ public class AmazonInstanceManager {
             new HashMap<String, SocksTunnel>();
     private final Map<String, SocksTunnel> instanceToLoggingReverseTunnel =
             new HashMap<String, SocksTunnel>();
+    private final Map<String, SocksTunnel> instanceToControlReverseTunnel =
+            new HashMap<String, SocksTunnel>();
+    private final Map<String, SocksTunnel> instanceToTelemetryReverseTunnel =
+            new HashMap<String, SocksTunnel>();
     private final Collection<File> artifactsToPreload;
     private final Map<String, AWSInstanceProfile> profiles;
+    private final JPPFLocalDriver localDriver;
 
     
      /**
@@ -96,8 +105,10 @@ public class AmazonInstanceManager {
     AmazonInstanceManager(ContextManager contextManager, 
             AwsEc2Facade ec2Facade, 
             Map<String, AWSInstanceProfile> profiles, 
-            Collection<File> artifactsToPreload) {
+            Collection<File> artifactsToPreload,
+            JPPFLocalDriver localDriver) {
         this.contextManager = contextManager;
+        this.localDriver = localDriver;
         this.ec2Facade = ec2Facade;
         this.profiles = profiles;
         this.artifactsToPreload = artifactsToPreload;
@@ -230,7 +241,19 @@ public class AmazonInstanceManager {
                 AmazonEC2JPPFDeployer deployer =
                         new AmazonEC2JPPFDriverDeployer(context, instanceMetadata,
                         buildLoginCredentials(nodeConfig), nodeConfig);
+                Observer sshConnectionCallback = new Observer() {
+                    @Override
+                    public void update(Observable arg0, Object event) {
+                        if(event == Event.DEPLOYMENT_PREPARED) {
+                            openReverseChannel(instanceMetadata, nodeConfig);
+                        }
+                    }
+                };
+                if(AmazonNodeManager.LOCAL_DRIVER_ADDRESS.equals(nodeConfig.getDriverAddress())) {
+                    deployer.addObserver(sshConnectionCallback);
+                }
                 uuid = deployer.deploy();
+                deployer.deleteObserver(sshConnectionCallback);
 
                 break;
             }
@@ -258,9 +281,32 @@ public class AmazonInstanceManager {
                         sshClientForReverseTunnel.connect(publicIp, instanceMetadata.getLoginPort());
                         SocksTunnel socksJPPFReverseTunnel = sshClientForReverseTunnel.getNewSocksReverseTunnel();
                         instanceToJPPFReverseTunnel.put(instanceMetadata.getId(), socksJPPFReverseTunnel);
-                        socksJPPFReverseTunnel.openTunnel(
-                                JPPFConstants.DEFAULT_SERVER_PORT, "localhost", 
-                                JPPFConstants.DEFAULT_SERVER_PORT);
+                        if(AmazonNodeManager.LOCAL_DRIVER_ADDRESS.equals(nodeConfig.getDriverAddress())) {
+                            // tier drivers listen on the server port themselves, their peer uses another one
+                            int remotePort = nodeConfig.getType() == NodeType.DRIVER ? 
+                                    AmazonNodeManager.PEER_TUNNEL_PORT : JPPFConstants.DEFAULT_SERVER_PORT;
+                            // the local driver may not have got the default port
+                            int localPort = localDriver.getServerPort();
+                            socksJPPFReverseTunnel.openTunnel(remotePort, "localhost", localPort);
+                            if(nodeConfig.getType() == NodeType.DRIVER) {
+                                // tier drivers report their nodes through the control channel
+                                int controlPort = ControlEndpoint.read(ControlEndpoint.DEFAULT_FILE).getPort();
+                                SocksTunnel socksControlReverseTunnel = 
+                                        sshClientForReverseTunnel.getNewSocksReverseTunnel();
+                                instanceToControlReverseTunnel.put(
+                                        instanceMetadata.getId(), socksControlReverseTunnel);
+                                socksControlReverseTunnel.openTunnel(controlPort, "localhost", controlPort);
+                            } else {
+                                // nodes send their telemetry to the driver's telemetry port
+                                int telemetryOffset = Constants.TELEMETRY_PORT_OFFSET;
+                                SocksTunnel socksTelemetryReverseTunnel = 
+                                        sshClientForReverseTunnel.getNewSocksReverseTunnel();
+                                instanceToTelemetryReverseTunnel.put(
+                                        instanceMetadata.getId(), socksTelemetryReverseTunnel);
+                                socksTelemetryReverseTunnel.openTunnel(remotePort + telemetryOffset, 
+                                        "localhost", localPort + telemetryOffset);
+                            }
+                        }
                         //for remote logging
                         Optional<Boolean> remoteLoggingActivataed = 
                                 nodeConfig.isRemoteLoggingActivataed();
@@ -329,7 +375,17 @@ public class AmazonInstanceManager {
             if(loggingTunnel != null) {
                 loggingTunnel.closeTunnel();
             }
+            SocksTunnel controlTunnel = instanceToControlReverseTunnel.remove(instanceId);
+            if(controlTunnel != null) {
+                controlTunnel.closeTunnel();
+            }
+            SocksTunnel telemetryTunnel = instanceToTelemetryReverseTunnel.remove(instanceId);
+            if(telemetryTunnel != null) {
+                telemetryTunnel.closeTunnel();
+            }
             tunnel = (loggingTunnel == null) ? tunnel : loggingTunnel;
+            tunnel = (controlTunnel == null) ? tunnel : controlTunnel;
+            tunnel = (telemetryTunnel == null) ? tunnel : telemetryTunnel;
             if(tunnel != null) {
                 tunnel.getSshClient().disconnect();
             }
@@ -46,6 +46,7 @@ public class AmazonNodeConfiguration implements NodeConfiguration {
     private Optional<LogLevel> logLevel = Optional.absent();
     private Optional<Boolean> remoteLoggingActivated = Optional.absent();
     private Optional<Integer> remoteLoggingPort = Optional.absent();
+    private Optional<Integer> standbyNodes = Optional.absent();
 
     public static AmazonNodeConfiguration fromInstanceProfile(
             AWSInstanceProfile instanceProfile) {
@@ -165,4 +166,15 @@ public class AmazonNodeConfiguration implements NodeConfiguration {
     public Optional<Integer> getRemoteLoggingPort() {
         return remoteLoggingPort;
     }
+
+    public void setStandbyNodes(Integer standbyNodes) {
+        this.standbyNodes = Optional.fromNullable(standbyNodes);
+    }
+
+    /**
+     * @return the number of pre-started standby JVMs kept to serve node restarts.
+     */
+    public Optional<Integer> getStandbyNodes() {
+        return standbyNodes;
+    }
 }
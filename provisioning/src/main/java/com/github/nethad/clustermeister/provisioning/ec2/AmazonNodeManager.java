@@ -17,18 +17,22 @@ package com.github.nethad.clustermeister.provisioning.ec2;
 
 import com.github.nethad.clustermeister.api.LogLevel;
 import com.github.nethad.clustermeister.api.Node;
+import com.github.nethad.clustermeister.api.NodeType;
 import com.github.nethad.clustermeister.api.impl.PasswordCredentials;
 import com.github.nethad.clustermeister.api.utils.NodeManagementConnector;
 import com.github.nethad.clustermeister.provisioning.CommandLineEvaluation;
 import com.github.nethad.clustermeister.provisioning.CommandLineHandle;
 import com.github.nethad.clustermeister.provisioning.dependencymanager.DependencyConfigurationUtil;
+import com.github.nethad.clustermeister.provisioning.jppf.JPPFLocalDriver;
 import com.github.nethad.clustermeister.provisioning.jppf.JPPFManagementByJobsClient;
 import com.github.nethad.clustermeister.provisioning.rmi.RmiInfrastructure;
 import com.google.common.base.Optional;
 import static com.google.common.base.Preconditions.*;
 import com.google.common.base.Predicate;
+import com.google.common.collect.Collections2;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.Monitor;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -41,6 +45,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
 import org.apache.commons.configuration.Configuration;
@@ -59,6 +66,17 @@ public class AmazonNodeManager {
 
     public static final int DEFAULT_SSH_PORT = 22;
     
+    /**
+     * Remote port on a tier driver's instance that is reverse tunneled 
+     * to the local driver, which the tier driver uses as its peer.
+     */
+    public static final int PEER_TUNNEL_PORT = 11110;
+    
+    /**
+     * The driver address nodes use to connect to the local driver.
+     */
+    static final String LOCAL_DRIVER_ADDRESS = "localhost";
+    
     private final static Logger logger =
             LoggerFactory.getLogger(AmazonNodeManager.class);
     
@@ -79,20 +97,30 @@ public class AmazonNodeManager {
     private Set<AmazonNode> drivers = new HashSet<AmazonNode>();
     private Set<AmazonNode> nodes = new HashSet<AmazonNode>();
     
+    /**
+     * Tier drivers by region and placement group (or zone), only used in tiered topology.
+     */
+    private final ConcurrentMap<String, ListenableFutureTask<AmazonNode>> tierDrivers = 
+            new ConcurrentHashMap<String, ListenableFutureTask<AmazonNode>>();
+    
     private final Monitor managedNodesMonitor = new Monitor(false);
     
     private final ContextManager contextManager;
+    private final JPPFLocalDriver localDriver;
     private final ListeningExecutorService executorService;
     private PasswordCredentials awsWebApiCredentials;
     private String nodeJvmOptions;
     private LogLevel nodeLogLevel;
     private Boolean nodeRemoteLogging;
     private Integer nodeRemoteLoggingPort;
+    private Integer nodeStandbyNodes;
+    private boolean tieredTopology;
     private Map<String, AWSInstanceProfile> profiles;
     private Collection<File> artifactsToPreload;
 
-    public AmazonNodeManager(Configuration configuration) {
+    public AmazonNodeManager(Configuration configuration, JPPFLocalDriver localDriver) {
         this.configuration = configuration;
+        this.localDriver = localDriver;
         loadConfiguration(configuration);
         
         this.executorService = MoreExecutors.listeningDecorator(
@@ -101,12 +129,12 @@ public class AmazonNodeManager {
         this.ec2Facade = new AwsEc2Facade(contextManager);
         this.credentialsManager = new CredentialsManager(configuration, contextManager);
         this.amazonInstanceManager = new AmazonInstanceManager(contextManager, 
-                ec2Facade, profiles, artifactsToPreload);
+                ec2Facade, profiles, artifactsToPreload, localDriver);
     }
     
     public static CommandLineEvaluation commandLineEvaluation(Configuration configuration, 
-            CommandLineHandle handle, RmiInfrastructure rmiInfrastructure) {
-        AmazonNodeManager amazonNodeManager = new AmazonNodeManager(configuration);
+            CommandLineHandle handle, JPPFLocalDriver localDriver, RmiInfrastructure rmiInfrastructure) {
+        AmazonNodeManager amazonNodeManager = new AmazonNodeManager(configuration, localDriver);
         amazonNodeManager.registerRmiInfrastructure(rmiInfrastructure);
         CommandLineEvaluation commandLineEvaluation = 
                 amazonNodeManager.getCommandLineEvaluation(handle);
@@ -114,6 +142,13 @@ public class AmazonNodeManager {
         return commandLineEvaluation;
     }
     
+    /**
+     * @return the server port of the local driver EC2 nodes and tier drivers connect to.
+     */
+    public int getLocalDriverPort() {
+        return localDriver.getServerPort();
+    }
+    
     public CommandLineEvaluation getCommandLineEvaluation(CommandLineHandle commandLineHandle) {
         return new AmazonCommandLineEvaluation(this, commandLineHandle);
     }
@@ -157,6 +192,9 @@ public class AmazonNodeManager {
         if(!nodeConfiguration.getRemoteLoggingPort().isPresent()) {
             nodeConfiguration.setRemoteLoggingPort(nodeRemoteLoggingPort);
         }
+        if(!nodeConfiguration.getStandbyNodes().isPresent()) {
+            nodeConfiguration.setStandbyNodes(nodeStandbyNodes);
+        }
         return executorService.submit(new AmazonNodeManager.AddNodeTask(nodeConfiguration, instanceId));
     }
     
@@ -224,6 +262,7 @@ public class AmazonNodeManager {
         try {
             drivers.clear();
             nodes.clear();
+            tierDrivers.clear();
         } finally {
             managedNodesMonitor.leave();
         }
@@ -265,6 +304,11 @@ public class AmazonNodeManager {
                 }
                 case DRIVER: {
                     drivers.remove(node);
+                    String tierKey = getTierKey(node.nodeConfiguration.getProfile());
+                    ListenableFutureTask<AmazonNode> tierDriver = tierDrivers.get(tierKey);
+                    if (tierDriver != null && node.equals(getIfDeployed(tierDriver))) {
+                        tierDrivers.remove(tierKey, tierDriver);
+                    }
                     break;
                 }
                 default: {
@@ -276,6 +320,55 @@ public class AmazonNodeManager {
         }
     }
     
+    /**
+     * @return the managed nodes connected to the driver.
+     */
+    private List<AmazonNode> getNodesOfDriver(AmazonNode driver) {
+        final String driverAddress = Iterables.getFirst(driver.getPrivateAddresses(), null);
+        managedNodesMonitor.enter();
+        try {
+            return new ArrayList<AmazonNode>(Collections2.filter(nodes, new Predicate<AmazonNode>() {
+                @Override
+                public boolean apply(AmazonNode node) {
+                    return node.getDriverAddress().equals(driverAddress);
+                }
+            }));
+        } finally {
+            managedNodesMonitor.leave();
+        }
+    }
+    
+    /**
+     * Forgets a tier driver that has no nodes left, so the next node of its tier deploys a new one.
+     * 
+     * @return true if the driver is a tier driver without nodes and the caller has to remove it.
+     */
+    private boolean releaseIfUnused(AmazonNode driver) {
+        if (!isTierDriver(driver)) {
+            return false;
+        }
+        managedNodesMonitor.enter();
+        try {
+            if (!drivers.contains(driver) || !getNodesOfDriver(driver).isEmpty()) {
+                return false;
+            }
+            // claimed by the caller, concurrently removed nodes do not remove it again
+            drivers.remove(driver);
+            String tierKey = getTierKey(driver.nodeConfiguration.getProfile());
+            ListenableFutureTask<AmazonNode> tierDriver = tierDrivers.get(tierKey);
+            if (tierDriver != null && driver.equals(getIfDeployed(tierDriver))) {
+                tierDrivers.remove(tierKey, tierDriver);
+            }
+            return true;
+        } finally {
+            managedNodesMonitor.leave();
+        }
+    }
+    
+    private static boolean isTierDriver(AmazonNode driver) {
+        return driver.getType() == NodeType.DRIVER && LOCAL_DRIVER_ADDRESS.equals(driver.getDriverAddress());
+    }
+    
     private AmazonNode getDriverForNode(final AmazonNode node) {
         managedNodesMonitor.enter();
         try {
@@ -292,6 +385,69 @@ public class AmazonNodeManager {
         }
     }
     
+    /**
+     * Returns the driver of the node's tier, deploying it on a new instance 
+     * if the tier has none yet.
+     * 
+     * A tier driver lives as long as its nodes: it is removed with the last of them, 
+     * and removing a tier driver removes the nodes still connected to it.
+     * 
+     * @return the tier driver or null if it could not be deployed.
+     */
+    private AmazonNode getTierDriver(AmazonNodeConfiguration nodeConfiguration) {
+        AWSInstanceProfile profile = nodeConfiguration.getProfile();
+        String tierKey = getTierKey(profile);
+        ListenableFutureTask<AmazonNode> tierDriver = tierDrivers.get(tierKey);
+        if (tierDriver == null) {
+            AmazonNodeConfiguration driverConfiguration = 
+                    AmazonNodeConfiguration.fromInstanceProfile(profile);
+            driverConfiguration.setNodeType(NodeType.DRIVER);
+            driverConfiguration.setDriverAddress(LOCAL_DRIVER_ADDRESS);
+            if (nodeConfiguration.getCredentials().isPresent()) {
+                driverConfiguration.setCredentials(nodeConfiguration.getCredentials().get());
+            }
+            Optional<String> noInstance = Optional.absent();
+            ListenableFutureTask<AmazonNode> newTierDriver = ListenableFutureTask.create(
+                    new AddNodeTask(driverConfiguration, noInstance));
+            tierDriver = tierDrivers.putIfAbsent(tierKey, newTierDriver);
+            if (tierDriver == null) {
+                logger.info("Deploying tier driver for {}.", tierKey);
+                tierDriver = newTierDriver;
+                tierDriver.run();
+            }
+        }
+        try {
+            AmazonNode driver = tierDriver.get();
+            if (driver == null) {
+                tierDrivers.remove(tierKey, tierDriver);
+            }
+            return driver;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            logger.warn("Failed to deploy tier driver for " + tierKey + ".", ex.getCause());
+            tierDrivers.remove(tierKey, tierDriver);
+            return null;
+        }
+    }
+    
+    private static AmazonNode getIfDeployed(ListenableFutureTask<AmazonNode> tierDriver) {
+        if (!tierDriver.isDone()) {
+            return null;
+        }
+        try {
+            return tierDriver.get();
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+    
+    private static String getTierKey(AWSInstanceProfile profile) {
+        String tier = profile.getPlacementGroup().or(profile.getZone().or(""));
+        return profile.getRegion() + "/" + tier;
+    }
+    
     private void loadConfiguration(Configuration configuration) {
         AmazonConfigurationLoader configurationLoader = 
                 new AmazonConfigurationLoader(configuration);
@@ -303,6 +459,8 @@ public class AmazonNodeManager {
         nodeLogLevel = configurationLoader.getNodeLogLevel();
         nodeRemoteLogging = configurationLoader.getNodeRemoteLogging();
         nodeRemoteLoggingPort = configurationLoader.getNodeRemoteLoggingPort();
+        nodeStandbyNodes = configurationLoader.getNodeStandbyNodes();
+        tieredTopology = configurationLoader.isTieredTopology();
         
         profiles = Collections.synchronizedMap(configurationLoader.getConfiguredProfiles());
         
@@ -321,6 +479,16 @@ public class AmazonNodeManager {
 
         @Override
         public AmazonNode call() throws Exception {
+            if (tieredTopology && nodeConfiguration.getType() == NodeType.NODE 
+                    && LOCAL_DRIVER_ADDRESS.equals(nodeConfiguration.getDriverAddress())) {
+                AmazonNode tierDriver = getTierDriver(nodeConfiguration);
+                if (tierDriver != null) {
+                    nodeConfiguration.setDriverAddress(
+                            Iterables.getFirst(tierDriver.getPrivateAddresses(), null));
+                } else {
+                    logger.warn("No tier driver available, connecting node to the local driver.");
+                }
+            }
             NodeMetadata instanceMetadata;
             if (!instanceId.isPresent()) {
                 try {
@@ -367,10 +535,21 @@ public class AmazonNodeManager {
         private final AmazonNode node;
         private final AmazonInstanceShutdownState shutdownState;
         private final AmazonInstanceManager instanceManager;
+        private final boolean removeUnusedTierDriver;
 
         public RemoveNodeTask(AmazonNode node, AmazonInstanceShutdownState shutdownState,
                 AmazonInstanceManager instanceManager) {
+            this(node, shutdownState, instanceManager, true);
+        }
+
+        /**
+         * @param removeUnusedTierDriver whether to remove the node's tier driver 
+         *      if the node is its last one.
+         */
+        RemoveNodeTask(AmazonNode node, AmazonInstanceShutdownState shutdownState,
+                AmazonInstanceManager instanceManager, boolean removeUnusedTierDriver) {
             this.node = node;
+            this.removeUnusedTierDriver = removeUnusedTierDriver;
             if(node.nodeConfiguration.getProfile().getSpotPrice().isPresent() && 
                     shutdownState == AmazonInstanceShutdownState.SUSPENDED) {
                 this.shutdownState = AmazonInstanceShutdownState.TERMINATED;
@@ -390,6 +569,9 @@ public class AmazonNodeManager {
 //                    if(client != null) {
 //                        client.close();
 //                    }
+                    if (isTierDriver(node)) {
+                        removeNodesOfDriver();
+                    }
                     driverShutdown(publicIp);
                     break;
                 }
@@ -423,9 +605,26 @@ public class AmazonNodeManager {
             }
 
             removeManagedNode(node);
+            
+            if (removeUnusedTierDriver && node.getType() == NodeType.NODE && node.getDriver().isPresent() 
+                    && releaseIfUnused(node.getDriver().get())) {
+                logger.info("Removing tier driver {}, its last node was removed.", node.getDriver().get());
+                removeNode(node.getDriver().get());
+            }
 
             return Boolean.TRUE;
         }
+        
+        private void removeNodesOfDriver() {
+            for (AmazonNode attached : getNodesOfDriver(node)) {
+                logger.info("Removing {} with its tier driver.", attached);
+                try {
+                    new RemoveNodeTask(attached, shutdownState, instanceManager, false).call();
+                } catch (Exception ex) {
+                    logger.warn("Failed to remove " + attached + ".", ex);
+                }
+            }
+        }
 
         private void driverShutdown(String publicIp) throws TimeoutException, Exception {
             JMXDriverConnectionWrapper wrapper =
@@ -20,42 +20,60 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Collections;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import org.jppf.utils.JPPFConfiguration;
 
 /**
+ * The configuration of a local driver.
+ * 
+ * The launching JVM passes the ports, load balancing and other JPPF properties of each driver 
+ * explicitly, see {@link LocalDriverBuilder}. They are forwarded to the driver process as system properties 
+ * starting with {@link #PROPERTY_PREFIX}, where JPPF instantiates this class again and reads them.
+ * JPPF splits the JVM options at whitespace, so the values are URL encoded on the command line.
  *
  * @author thomas
  */
 public class JPPFDriverConfigurationSource implements JPPFConfiguration.ConfigurationSource {
     
     private static final String DEFAULT_JVM_OPTIONS = "-Xmx256m";
-
-	public static int serverPort = 11111;
-	public static int managementPort = 11198;
-    public static String jvmOptions = "";
-    public static Map<String, String> loadBalancing = Collections.EMPTY_MAP;
-	
-    public static String host = "localhost";
+    
+    /**
+     * Prefix of the system properties that override a JPPF driver property.
+     */
+    public static final String PROPERTY_PREFIX = "clustermeister.driver.";
+    
+    /**
+     * System property with the JVM options of the driver process.
+     */
+    public static final String JVM_OPTIONS_PROPERTY = PROPERTY_PREFIX + "jvmOptions";
+    
     Properties properties = new Properties();
 
-    public JPPFDriverConfigurationSource() {       
+    /**
+     * The configuration of the driver process, overridden by its system properties.
+     */
+    public JPPFDriverConfigurationSource() {
+        this(getOverrides(), System.getProperty(JVM_OPTIONS_PROPERTY, ""));
+    }
+
+    /**
+     * @param overrides the JPPF properties replacing the defaults.
+     * @param jvmOptions the JVM options of the driver process, empty for the defaults.
+     */
+    public JPPFDriverConfigurationSource(Map<String, String> overrides, String jvmOptions) {
         properties.setProperty(JPPFConstants.SERVER_HOST, "localhost");
 		
-		properties.setProperty(JPPFConstants.SERVER_PORT, String.valueOf(serverPort));
-		properties.setProperty(JPPFConstants.MANAGEMENT_PORT, String.valueOf(managementPort));
+		properties.setProperty(JPPFConstants.SERVER_PORT, String.valueOf(JPPFConstants.DEFAULT_SERVER_PORT));
+		properties.setProperty(JPPFConstants.MANAGEMENT_PORT, String.valueOf(JPPFConstants.DEFAULT_MANAGEMENT_PORT));
         
         properties.setProperty(JPPFConstants.DISCOVERY_ENABLED, "false");
         properties.setProperty(JPPFConstants.PEER_DISCOVERY_ENABLED, "false");              
 
-        System.out.println("loadBalancing isEmpty = "+loadBalancing.isEmpty());
-        System.out.println("jvmOptions = "+jvmOptions);
-        for (Map.Entry<String, String> entry : loadBalancing.entrySet()) {
-            System.out.println(entry.getKey()+" => "+entry.getValue());
-            properties.setProperty(entry.getKey(), entry.getValue());
-        }
         properties.setProperty(JPPFConstants.LOAD_BALANCING_ALGORITHM, "proportional");
         properties.setProperty(JPPFConstants.LOAD_BALANCING_STRATEGY, "test");
         properties.setProperty("strategy.manual.size", "1");
@@ -88,6 +106,10 @@ public class JPPFDriverConfigurationSource implements JPPFConfiguration.Configur
         properties.setProperty("strategy.test.performanceVariationThreshold", "0.001");
         properties.setProperty("strategy.test.maxActionRange", "10");
         properties.setProperty("strategy.test.multiplicator", "1");
+        // configured ports and load balancing override the defaults above
+        for (Map.Entry<String, String> entry : overrides.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue());
+        }
 
         StringBuilder configuredJvmOptions = new StringBuilder();
         if (jvmOptions.isEmpty()) {
@@ -100,11 +122,49 @@ public class JPPFDriverConfigurationSource implements JPPFConfiguration.Configur
                 .append("-Dsun.io.serialization.extendedDebugInfo=true ")
                 .append("-D").append(JPPFConstants.CONFIG_PLUGIN).append("=")
                 .append(JPPFDriverConfigurationSource.class.getCanonicalName());
+        for (Map.Entry<String, String> entry : overrides.entrySet()) {
+            configuredJvmOptions.append(" -D").append(PROPERTY_PREFIX).append(entry.getKey())
+                    .append("=").append(encode(entry.getValue()));
+        }
         
         properties.setProperty(JPPFConstants.JVM_OPTIONS, configuredJvmOptions.toString());
 
     }
 
+    /**
+     * @return the JPPF properties set by system properties with {@link #PROPERTY_PREFIX}, without the prefix.
+     */
+    static Map<String, String> getOverrides() {
+        Map<String, String> overrides = new TreeMap<String, String>();
+        Properties systemProperties = System.getProperties();
+        for (String name : systemProperties.stringPropertyNames()) {
+            if (name.startsWith(PROPERTY_PREFIX) && !name.equals(JVM_OPTIONS_PROPERTY)) {
+                overrides.put(name.substring(PROPERTY_PREFIX.length()), 
+                        decode(systemProperties.getProperty(name)));
+            }
+        }
+        return overrides;
+    }
+    
+    /**
+     * @return the value without whitespace, to be passed as a single JVM option.
+     */
+    static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     @Override
     public InputStream getPropertyStream() throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -15,24 +15,39 @@
  */
 package com.github.nethad.clustermeister.provisioning.jppf;
 
+import com.github.nethad.clustermeister.api.DriverAddress;
 import com.github.nethad.clustermeister.api.Loggers;
 import com.github.nethad.clustermeister.api.utils.NodeManagementConnector;
 import com.github.nethad.clustermeister.node.common.ClustermeisterLauncher;
+import com.github.nethad.clustermeister.provisioning.ConfigurationKeys;
 import com.google.common.util.concurrent.SettableFuture;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.configuration.Configuration;
 import org.jppf.management.JMXDriverConnectionWrapper;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Starts one or more local JPPF drivers, each in its own process and on its own ports.
+ * 
+ * With {@link ConfigurationKeys#LOCAL_DRIVER_COUNT} drivers, the first free ports 
+ * from {@link #SERVER_PORT} and {@link #MANAGEMENT_PORT} upwards are allocated. 
+ * Nodes are spread across the drivers with {@link #nextServerPort()}.
  *
  * @author thomas
  */
 public class JPPFLocalDriver implements Observer {
-    private ClustermeisterLauncher launcher = null;
+    private final List<ClustermeisterLauncher> launchers = new CopyOnWriteArrayList<ClustermeisterLauncher>();
+    private final List<DriverAddress> driverAddresses = new CopyOnWriteArrayList<DriverAddress>();
+    private final AtomicInteger nextDriver = new AtomicInteger();
     
     private final org.slf4j.Logger logger = LoggerFactory.getLogger(Loggers.PROVISIONING);
 
@@ -51,8 +66,49 @@ public class JPPFLocalDriver implements Observer {
     }
 
     private void localSetupAndRun() {
-        LocalDriverBuilder builder = new LocalDriverBuilder(SERVER_PORT, MANAGEMENT_PORT, configuration);
-        launcher = builder.build();
+        int count = configuration == null ? ConfigurationKeys.DEFAULT_LOCAL_DRIVER_COUNT 
+                : configuration.getInt(ConfigurationKeys.LOCAL_DRIVER_COUNT, ConfigurationKeys.DEFAULT_LOCAL_DRIVER_COUNT);
+        int serverPort = SERVER_PORT - 1;
+        int managementPort = MANAGEMENT_PORT - 1;
+        for (int i = 0; i < Math.max(1, count); i++) {
+            serverPort = findAvailablePort(serverPort + 1);
+            managementPort = findAvailablePort(managementPort + 1);
+            logger.info("Starting local driver {} on ports {} and {}.", 
+                    new Object[]{i, serverPort, managementPort});
+            LocalDriverBuilder builder = new LocalDriverBuilder(serverPort, managementPort, configuration);
+            launchers.add(builder.build());
+            driverAddresses.add(new DriverAddress("localhost", serverPort, managementPort));
+        }
+    }
+
+    /**
+     * @return the addresses of the started drivers.
+     */
+    public List<DriverAddress> getDriverAddresses() {
+        return Collections.unmodifiableList(driverAddresses);
+    }
+
+    /**
+     * @return the server port of the first driver, {@link #SERVER_PORT} if none was started.
+     */
+    public int getServerPort() {
+        if (driverAddresses.isEmpty()) {
+            return SERVER_PORT;
+        }
+        return driverAddresses.get(0).getServerPort();
+    }
+
+    /**
+     * Picks the drivers in turn, to spread nodes across them.
+     * 
+     * @return the server port of the next driver, {@link #SERVER_PORT} if none was started.
+     */
+    public int nextServerPort() {
+        if (driverAddresses.isEmpty()) {
+            return SERVER_PORT;
+        }
+        int index = (nextDriver.getAndIncrement() & Integer.MAX_VALUE) % driverAddresses.size();
+        return driverAddresses.get(index).getServerPort();
     }
 
     public String getIpAddress() {
@@ -72,7 +128,7 @@ public class JPPFLocalDriver implements Observer {
     }
     
     public void shutdown() {
-        if(launcher != null) {
+        for (ClustermeisterLauncher launcher : launchers) {
             try {
                 logger.info("Shutting down local driver.");
                 launcher.shutdownProcess();
@@ -83,12 +139,38 @@ public class JPPFLocalDriver implements Observer {
         }
     }
 
-    private void shutdownWithJMXConnection() {
+    private static int findAvailablePort(int startPort) {
+        int port = startPort;
+        while (!isAvailable(port)) {
+            port++;
+        }
+        return port;
+    }
+
+    private static boolean isAvailable(int port) {
+        ServerSocket serverSocket = null;
+        try {
+            serverSocket = new ServerSocket(port);
+            return true;
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            if (serverSocket != null) {
+                try {
+                    serverSocket.close();
+                } catch (IOException ex) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+
+    private void shutdownWithJMXConnection(int managementPort) {
         JMXDriverConnectionWrapper wrapper = null;
         try {
             logger.info("Shutting down local driver.");
             wrapper =
-                    NodeManagementConnector.openDriverConnection("localhost", MANAGEMENT_PORT);
+                    NodeManagementConnector.openDriverConnection("localhost", managementPort);
             wrapper.restartShutdown(1 * 1000L, -1L);
             logger.info("Shutdown complete.");
         } catch (TimeoutException ex) {
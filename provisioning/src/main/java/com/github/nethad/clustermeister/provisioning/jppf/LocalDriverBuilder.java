@@ -15,12 +15,14 @@
  */
 package com.github.nethad.clustermeister.provisioning.jppf;
 
+import com.github.nethad.clustermeister.api.JPPFConstants;
 import com.github.nethad.clustermeister.node.common.ClustermeisterDriverLauncher;
 import com.github.nethad.clustermeister.node.common.ClustermeisterLauncher;
 import com.github.nethad.clustermeister.node.common.ClustermeisterProcessLauncher;
-import com.github.nethad.clustermeister.node.common.builders.PluginConfiguratedJPPFComponentBuilder;
+import com.github.nethad.clustermeister.node.common.builders.PropertyConfiguratedJPPFComponentBuilder;
 import com.github.nethad.clustermeister.provisioning.ConfigurationKeys;
 import com.google.common.util.concurrent.Monitor;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
@@ -31,10 +33,13 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Builds and launches a new local driver component.
+ * 
+ * The driver's {@link JPPFDriverConfigurationSource} is passed to JPPF as a configuration 
+ * of this builder only, so concurrent builders and other JPPF components never see it.
  *
  * @author daniel
  */
-public class LocalDriverBuilder extends PluginConfiguratedJPPFComponentBuilder<ClustermeisterLauncher> {
+public class LocalDriverBuilder extends PropertyConfiguratedJPPFComponentBuilder<ClustermeisterLauncher> {
     private static final Logger logger = 
             LoggerFactory.getLogger(LocalDriverBuilder.class);
     
@@ -45,6 +50,8 @@ public class LocalDriverBuilder extends PluginConfiguratedJPPFComponentBuilder<C
     private final int managementPort;
     
     private final Configuration configuration;
+    
+    private final Map<String, String> driverProperties = new LinkedHashMap<String, String>();
 
     /**
      * Creates a new builder.
@@ -59,20 +66,32 @@ public class LocalDriverBuilder extends PluginConfiguratedJPPFComponentBuilder<C
         this.configuration = configuration;
     }
     
+    /**
+     * Sets an additional JPPF property for the driver, e.g. to configure peer drivers.
+     * 
+     * @param key the JPPF property name
+     * @param value the value
+     * @return this builder
+     */
+    public LocalDriverBuilder setDriverProperty(String key, String value) {
+        driverProperties.put(key, value);
+        return this;
+    }
+    
+    @Override
+    protected void preMutex() {
+        Map<String, String> overrides = new LinkedHashMap<String, String>();
+        overrides.put(JPPFConstants.SERVER_PORT, String.valueOf(serverPort));
+        overrides.put(JPPFConstants.MANAGEMENT_PORT, String.valueOf(managementPort));
+        overrides.putAll(new DriverLoadBalancing(configuration).getLoadBalancingConfigValues());
+        overrides.putAll(driverProperties);
+        String jvmOptions = configuration == null ? "" 
+                : configuration.getString(ConfigurationKeys.JVM_OPTIONS_LOCAL_DRIVER, "");
+        setProperties(new JPPFDriverConfigurationSource(overrides, jvmOptions).properties);
+    }
+    
     @Override
     protected ClustermeisterLauncher doBuild() {
-        JPPFDriverConfigurationSource.serverPort = serverPort;
-        JPPFDriverConfigurationSource.managementPort = managementPort;
-        JPPFDriverConfigurationSource.jvmOptions = configuration.getString(ConfigurationKeys.JVM_OPTIONS_LOCAL_DRIVER, "");
-        Map<String, String> loadBalancingConfigValues = new DriverLoadBalancing(configuration).getLoadBalancingConfigValues();
-        if (loadBalancingConfigValues.isEmpty()) {
-//                logger.info("No load balancing settings set.");
-        } else {
-            for (Map.Entry<String, String> entry : loadBalancingConfigValues.entrySet()) {
-//                    logger.info("{} => {}", entry.getKey(), entry.getValue());
-            }
-        }
-        JPPFDriverConfigurationSource.loadBalancing = new DriverLoadBalancing(configuration).getLoadBalancingConfigValues();
         final ClustermeisterLauncher launcher = new ClustermeisterDriverLauncher(true);
         final AtomicBoolean initialized = new AtomicBoolean(false);
         final Monitor initializationMonitor = new Monitor(false);
@@ -120,9 +139,4 @@ public class LocalDriverBuilder extends PluginConfiguratedJPPFComponentBuilder<C
         }
         return launcher;
     }
-
-    @Override
-    protected String getConfigurationClassName() {
-        return JPPFDriverConfigurationSource.class.getCanonicalName();
-    }
 }
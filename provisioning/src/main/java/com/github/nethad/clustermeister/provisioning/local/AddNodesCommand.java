@@ -70,9 +70,12 @@ public class AddNodesCommand extends AbstractLocalExecutableCommand {
         int nodeRemoteLoggingPort = configuration.getInt(ConfigurationKeys.LOGGING_NODE_REMOTE_PORT, 
                     ConfigurationKeys.DEFAULT_LOGGING_NODE_REMOTE_PORT); 
         
+        int standbyNodes = configuration.getInt(ConfigurationKeys.STANDBY_NODES, 
+                ConfigurationKeys.DEFAULT_STANDBY_NODES);
+        
         final LocalNodeConfiguration nodeConfiguration = LocalNodeConfiguration.configurationFor(
                 artifactsToPreload, jvmOptions, nodeLogLevel, nodeRemoteLogging, 
-                nodeRemoteLoggingPort, numberOfCpusPerNode);
+                nodeRemoteLoggingPort, numberOfCpusPerNode, standbyNodes);
         
         for (int i=0; i<numberOfNodes; i++) {
             getNodeManager().addNode(nodeConfiguration);
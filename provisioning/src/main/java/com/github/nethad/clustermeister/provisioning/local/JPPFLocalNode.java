@@ -18,6 +18,7 @@ package com.github.nethad.clustermeister.provisioning.local;
 import com.github.nethad.clustermeister.api.JPPFConstants;
 import com.github.nethad.clustermeister.api.LogLevel;
 import com.github.nethad.clustermeister.api.Loggers;
+import com.github.nethad.clustermeister.node.common.Constants;
 import com.github.nethad.clustermeister.node.common.NodeConfigurationUtils;
 import com.github.nethad.clustermeister.provisioning.ConfigurationKeys;
 import com.github.nethad.clustermeister.provisioning.utils.FileUtils;
@@ -63,6 +64,7 @@ public class JPPFLocalNode {
     private File targetDir;
     
     private int managementPort = 12001;
+    private final int serverPort;
     private File libDir;
 
     /**
@@ -71,7 +73,18 @@ public class JPPFLocalNode {
      * @param nodeConfiguration the node configuration.
      */
     public JPPFLocalNode(LocalNodeConfiguration nodeConfiguration) {
+        this(nodeConfiguration, JPPFConstants.DEFAULT_SERVER_PORT);
+    }
+
+    /**
+     * Create a new local node connecting to the driver on a server port.
+     * 
+     * @param nodeConfiguration the node configuration.
+     * @param serverPort the server port of the local driver.
+     */
+    public JPPFLocalNode(LocalNodeConfiguration nodeConfiguration, int serverPort) {
         this.nodeConfiguration = nodeConfiguration;
+        this.serverPort = serverPort;
     }
     
     /**
@@ -177,12 +190,17 @@ public class JPPFLocalNode {
         }
         properties.setProperty(JPPFConstants.CLASSLOADER_DELEGATION, "parent");
         properties.setProperty(JPPFConstants.SERVER_HOST, "localhost");
+        properties.setProperty(JPPFConstants.SERVER_PORT, String.valueOf(serverPort));
         properties.setProperty(JPPFConstants.MANAGEMENT_PORT, 
                 String.valueOf(managementPort++));
         properties.setProperty(JPPFConstants.RESOURCE_CACHE_DIR, 
                 String.format("/tmp/.jppf/node-%d", System.currentTimeMillis()));
         properties.setProperty(JPPFConstants.PROCESSING_THREADS, 
                 String.valueOf(this.nodeConfiguration.getNumberOfProcessingThreads()));
+        if(nodeConfiguration.getStandbyNodes() > 0) {
+            properties.setProperty(Constants.CLUSTERMEISTER_STANDBY_NODES, 
+                    String.valueOf(nodeConfiguration.getStandbyNodes()));
+        }
         return properties;
     }
 
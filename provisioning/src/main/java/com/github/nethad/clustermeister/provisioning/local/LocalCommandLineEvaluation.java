@@ -16,6 +16,7 @@
 package com.github.nethad.clustermeister.provisioning.local;
 
 import com.github.nethad.clustermeister.api.NodeInformation;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
 import com.github.nethad.clustermeister.provisioning.*;
 import com.github.nethad.clustermeister.provisioning.rmi.RmiServerForApi;
 import java.util.Collection;
@@ -43,6 +44,9 @@ public class LocalCommandLineEvaluation implements CommandLineEvaluation {
     public void state(CommandLineArguments arguments) {
         Collection<NodeInformation> allNodes = rmiServerForApi.getAllNodes();
         System.out.println("number of nodes: "+allNodes.size());
+        for (NodeTelemetrySample sample : rmiServerForApi.getNodeTelemetry().values()) {
+            System.out.println("node " + sample.getNodeId() + ": " + sample);
+        }
     }
 
     @Override
@@ -34,20 +34,23 @@ public class LocalNodeConfiguration implements NodeConfiguration {
     private final Optional<Boolean> remoteLoggingActivated;
     private final Optional<Integer> remoteLoggingPort;
     private final int numberOfProcessingThreads;
+    private final int standbyNodes;
     
     public static LocalNodeConfiguration configurationFor(
             Collection<File> artifactsToPreload, String jvmOptions, 
             String logLevel, Boolean activateRemoteLogging, 
-            Integer remoteLoggingPort, int numberOfProcessingThreads) {
+            Integer remoteLoggingPort, int numberOfProcessingThreads, 
+            int standbyNodes) {
         
         return new LocalNodeConfiguration(artifactsToPreload, jvmOptions, 
                 logLevel, activateRemoteLogging, remoteLoggingPort, 
-                numberOfProcessingThreads);
+                numberOfProcessingThreads, standbyNodes);
     }
 
     private LocalNodeConfiguration(Collection<File> artifactsToPreload, 
             String jvmOptions, String logLevel, Boolean activateRemoteLogging, 
-            Integer remoteLoggingPort, int numberOfProcessingThreads) {
+            Integer remoteLoggingPort, int numberOfProcessingThreads, 
+            int standbyNodes) {
         
         this.artifactsToPreload = artifactsToPreload;
         this.jvmOptions = Optional.fromNullable(jvmOptions);
@@ -55,6 +58,7 @@ public class LocalNodeConfiguration implements NodeConfiguration {
         this.remoteLoggingActivated = Optional.fromNullable(activateRemoteLogging);
         this.remoteLoggingPort = Optional.fromNullable(remoteLoggingPort);
         this.numberOfProcessingThreads = numberOfProcessingThreads;
+        this.standbyNodes = standbyNodes;
     }
 
     @Override
@@ -89,6 +93,13 @@ public class LocalNodeConfiguration implements NodeConfiguration {
         return numberOfProcessingThreads;
     }
 
+    /**
+     * @return the number of pre-started standby JVMs kept to serve node restarts.
+     */
+    public int getStandbyNodes() {
+        return standbyNodes;
+    }
+
     @Override
     public Optional<LogLevel> getLogLevel() {
         return logLevel;
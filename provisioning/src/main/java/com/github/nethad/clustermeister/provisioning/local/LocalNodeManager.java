@@ -15,6 +15,7 @@
  */
 package com.github.nethad.clustermeister.provisioning.local;
 
+import com.github.nethad.clustermeister.api.DriverAddress;
 import com.github.nethad.clustermeister.api.Loggers;
 import com.github.nethad.clustermeister.provisioning.CommandLineEvaluation;
 import com.github.nethad.clustermeister.provisioning.CommandLineHandle;
@@ -40,14 +41,17 @@ public class LocalNodeManager {
     private Collection<JPPFLocalNode> localNodes;
 //    private JPPFLocalNode node;
     
-    private LocalNodeManager(Configuration configuration) {
+    private final JPPFLocalDriver localDriver;
+    
+    private LocalNodeManager(Configuration configuration, JPPFLocalDriver localDriver) {
         this.configuration = configuration;
+        this.localDriver = localDriver;
         localNodes = new LinkedList<JPPFLocalNode>();
     }
     
     public static CommandLineEvaluation commandLineEvaluation(Configuration configuration, 
-            CommandLineHandle commandLineHandle, RmiServerForApi rmiServerForApi) {
-        LocalNodeManager nodeManager = new LocalNodeManager(configuration);
+            CommandLineHandle commandLineHandle, JPPFLocalDriver localDriver, RmiServerForApi rmiServerForApi) {
+        LocalNodeManager nodeManager = new LocalNodeManager(configuration, localDriver);
         return nodeManager.getCommandLineEvaluation(commandLineHandle, rmiServerForApi);
     }
 
@@ -63,9 +67,12 @@ public class LocalNodeManager {
     public void removeAllNodes() {
         logger.info("Remove all nodes.");
 
-        String driverHost = "localhost";
-        int serverPort = JPPFLocalDriver.SERVER_PORT;
+        for (DriverAddress driver : localDriver.getDriverAddresses()) {
+            removeAllNodes(driver.getHost(), driver.getServerPort());
+        }
+    }
 
+    private void removeAllNodes(String driverHost, int serverPort) {
         JPPFManagementByJobsClient client = null;
         try {
             ManagementByJobsClientBuilder builder = new ManagementByJobsClientBuilder(driverHost, serverPort);
@@ -89,7 +96,7 @@ public class LocalNodeManager {
     }
 
     public void addNode(LocalNodeConfiguration nodeConfiguration) {
-        JPPFLocalNode node = new JPPFLocalNode(nodeConfiguration);
+        JPPFLocalNode node = new JPPFLocalNode(nodeConfiguration, localDriver.nextServerPort());
         int numberOfProcessingThreads = nodeConfiguration.getNumberOfProcessingThreads();
         logger.info("Adding node with {} processing threads", numberOfProcessingThreads);
         node.deploy();
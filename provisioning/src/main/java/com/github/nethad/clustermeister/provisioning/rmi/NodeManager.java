@@ -16,42 +16,287 @@
 package com.github.nethad.clustermeister.provisioning.rmi;
 
 import com.github.nethad.clustermeister.api.NodeInformation;
+import com.github.nethad.clustermeister.api.NodeSummary;
+import com.github.nethad.clustermeister.api.NodeType;
+import com.github.nethad.clustermeister.api.impl.NodeInformationImpl;
+import com.github.nethad.clustermeister.api.rmi.NodeMembershipDelta;
+import com.github.nethad.clustermeister.driver.rmi.NodeEvent;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.jppf.management.JPPFManagementInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Keeps the currently connected nodes. 
+ * 
+ * Nodes connect and disconnect on RMI threads, while the API reads concurrently. Writers are 
+ * serialized, record every change with a new version and publish a new immutable 
+ * {@link NodeRegistrySnapshot}. A batch of node events from the driver is applied with one 
+ * rebuild instead of one per change. Readers just take the published snapshot, 
+ * without locking or copying.
+ * The last {@link #MAX_CHANGES} changes are kept to answer delta requests.
+ * The latest telemetry of the nodes is kept aside without locking, it changes too often 
+ * to be versioned.
  *
  * @author thomas
  */
 public class NodeManager {
+    static final int MAX_CHANGES = 10000;
+    
     private final Logger logger = LoggerFactory.getLogger(NodeManager.class);
     
-    Map<String, NodeInformation> nodeMap;
+    private final Object writeLock = new Object();
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+    private final ConcurrentNavigableMap<Long, Change> changes = new ConcurrentSkipListMap<Long, Change>();
+    private volatile NodeRegistrySnapshot snapshot = NodeRegistrySnapshot.EMPTY;
+    private long latestVersion = 0;
+    private final Map<String, NodeTelemetrySample> telemetry = 
+            new ConcurrentHashMap<String, NodeTelemetrySample>();
 
-    public NodeManager() {
-        nodeMap = new HashMap<String, NodeInformation>();
+    public void addNode(NodeInformation nodeInformation) {
+        addNode(nodeInformation, null, NodeType.NODE);
     }
     
-    public void addNode(NodeInformation nodeInformation) {
-        String nodeId = nodeInformation.getID();
-        if (!nodeMap.containsKey(nodeId)) {
-            nodeMap.put(nodeId, nodeInformation);
-        } else {
-            logger.warn("Tried to add node "+nodeId+" but it was already present in local collection.");
+    /**
+     * @param nodeInformation the connected node.
+     * @param host the host of the node as reported by the driver, may be null.
+     * @param type the node type.
+     */
+    public void addNode(NodeInformation nodeInformation, String host, NodeType type) {
+        synchronized (writeLock) {
+            if (add(nodeInformation, host, type)) {
+                publishSnapshot();
+            }
         }
     }
 
     void removeNode(String nodeId) {
-        if (nodeMap.remove(nodeId) == null) {
+        synchronized (writeLock) {
+            if (remove(nodeId)) {
+                publishSnapshot();
+            }
+        }
+        // after publishing, see updateTelemetry
+        telemetry.remove(nodeId);
+    }
+    
+    /**
+     * Applies a batch of node events in order and publishes one snapshot for all of them.
+     * @param events the events, oldest first.
+     */
+    void applyEvents(List<NodeEvent> events) {
+        List<String> removed = new ArrayList<String>();
+        synchronized (writeLock) {
+            boolean changed = false;
+            for (NodeEvent event : events) {
+                JPPFManagementInfo managementInfo = event.getManagementInfo();
+                switch (event.getType()) {
+                    case CONNECTED:
+                        changed |= add(new NodeInformationImpl(managementInfo.getId(), event.getSystemInformation()), 
+                                managementInfo.getHost(), typeOf(managementInfo));
+                        break;
+                    case DISCONNECTED:
+                        if (remove(managementInfo.getId())) {
+                            changed = true;
+                            removed.add(managementInfo.getId());
+                        }
+                        break;
+                }
+            }
+            if (changed) {
+                publishSnapshot();
+            }
+        }
+        for (String nodeId : removed) {
+            telemetry.remove(nodeId);
+        }
+    }
+    
+    /**
+     * @param managementInfo a node as reported by the driver.
+     * @return the type of the node.
+     */
+    static NodeType typeOf(JPPFManagementInfo managementInfo) {
+        return managementInfo.getType() == JPPFManagementInfo.DRIVER ? NodeType.DRIVER : NodeType.NODE;
+    }
+    
+    private boolean add(NodeInformation nodeInformation, String host, NodeType type) {
+        String nodeId = nodeInformation.getID();
+        if (entries.containsKey(nodeId)) {
+            logger.warn("Tried to add node "+nodeId+" but it was already present in local collection.");
+            return false;
+        }
+        Entry entry = new Entry(nodeInformation, host, type);
+        entries.put(nodeId, entry);
+        recordChange(nodeId, entry.summary);
+        return true;
+    }
+    
+    private boolean remove(String nodeId) {
+        if (entries.remove(nodeId) == null) {
             logger.warn("Tried to remove node "+nodeId+" but it was not present in local collection.");
+            return false;
         }
+        recordChange(nodeId, null);
+        return true;
     }
     
+    /**
+     * @param sample the latest telemetry of a node, ignored if the node is not connected.
+     */
+    void updateTelemetry(NodeTelemetrySample sample) {
+        String nodeId = sample.getNodeId();
+        if (snapshot.getNode(nodeId) == null) {
+            return;
+        }
+        telemetry.put(nodeId, sample);
+        // removeNode publishes before dropping the telemetry, a sample put after that is dropped here
+        if (snapshot.getNode(nodeId) == null) {
+            telemetry.remove(nodeId, sample);
+        }
+    }
+    
+    /**
+     * @return the latest telemetry sample of every connected node by node ID.
+     */
+    public Map<String, NodeTelemetrySample> getTelemetry() {
+        return new HashMap<String, NodeTelemetrySample>(telemetry);
+    }
+    
+    /**
+     * @return the current nodes, immutable.
+     */
     public Collection<NodeInformation> getAllNodes() {
-        return nodeMap.values();
+        return snapshot.getNodes();
+    }
+    
+    /**
+     * @return the current immutable snapshot of the registry.
+     */
+    public NodeRegistrySnapshot getSnapshot() {
+        return snapshot;
     }
     
+    /**
+     * @return the current membership version, 0 before the first change.
+     */
+    public long getVersion() {
+        return snapshot.getVersion();
+    }
+    
+    /**
+     * Returns the nodes that joined and left after a version. If the version is unknown 
+     * or older than the kept changes, all current nodes are returned as a full delta.
+     * @param since the last version known to the caller.
+     * @return the delta to the current version.
+     */
+    public NodeMembershipDelta getNodesSince(long since) {
+        NodeRegistrySnapshot current = snapshot;
+        long version = current.getVersion();
+        if (since == version) {
+            return new NodeMembershipDelta(since, version, false, 
+                    Collections.<NodeSummary>emptyList(), Collections.<String>emptyList());
+        }
+        if (since > version || since < 0 || !isKept(since)) {
+            return fullDelta(since, current);
+        }
+        Map<String, NodeSummary> joined = new LinkedHashMap<String, NodeSummary>();
+        Set<String> left = new LinkedHashSet<String>();
+        for (Change change : changes.subMap(since, false, version, true).values()) {
+            if (change.summary != null) {
+                left.remove(change.nodeId);
+                joined.put(change.nodeId, change.summary);
+            } else {
+                joined.remove(change.nodeId);
+                left.add(change.nodeId);
+            }
+        }
+        // changes may have been trimmed while reading them
+        if (!isKept(since)) {
+            return fullDelta(since, current);
+        }
+        return new NodeMembershipDelta(since, version, false, joined.values(), left);
+    }
+    
+    private boolean isKept(long since) {
+        Map.Entry<Long, Change> first = changes.firstEntry();
+        return first != null && first.getKey() <= since + 1;
+    }
+    
+    private NodeMembershipDelta fullDelta(long since, NodeRegistrySnapshot current) {
+        return new NodeMembershipDelta(since, current.getVersion(), true, 
+                current.getSummaries(), Collections.<String>emptyList());
+    }
+    
+    private void recordChange(String nodeId, NodeSummary summary) {
+        latestVersion++;
+        changes.put(latestVersion, new Change(nodeId, summary));
+        while (changes.size() > MAX_CHANGES) {
+            changes.pollFirstEntry();
+        }
+    }
+    
+    private void publishSnapshot() {
+        snapshot = rebuild();
+    }
+    
+    private NodeRegistrySnapshot rebuild() {
+        ImmutableMap.Builder<String, NodeInformation> nodesById = ImmutableMap.builder();
+        ImmutableMap.Builder<String, NodeSummary> summariesById = ImmutableMap.builder();
+        ImmutableListMultimap.Builder<Integer, NodeInformation> byProcessingThreads = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, NodeInformation> byHost = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<NodeType, NodeInformation> byType = ImmutableListMultimap.builder();
+        for (Entry entry : entries.values()) {
+            nodesById.put(entry.node.getID(), entry.node);
+            summariesById.put(entry.node.getID(), entry.summary);
+            byProcessingThreads.put(entry.summary.getProcessingThreads(), entry.node);
+            if (entry.host != null) {
+                byHost.put(entry.host, entry.node);
+            }
+            byType.put(entry.type, entry.node);
+        }
+        return new NodeRegistrySnapshot(latestVersion, nodesById.build(), summariesById.build(),
+                byProcessingThreads.build(), byHost.build(), byType.build());
+    }
+    
+    private static class Entry {
+        private final NodeInformation node;
+        private final String host;
+        private final NodeType type;
+        private final NodeSummary summary;
+
+        Entry(NodeInformation node, String host, NodeType type) {
+            this.node = node;
+            this.host = host;
+            this.type = type;
+            this.summary = NodeSummary.of(node.getID(), host, node.getJPPFSystemInformation());
+        }
+    }
+    
+    private static class Change {
+        private final String nodeId;
+        private final NodeSummary summary;
+
+        /**
+         * @param summary the joined node, null if the node left.
+         */
+        Change(String nodeId, NodeSummary summary) {
+            this.nodeId = nodeId;
+            this.summary = summary;
+        }
+    }
 }
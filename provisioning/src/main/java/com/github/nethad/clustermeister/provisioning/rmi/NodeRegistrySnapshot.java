@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.provisioning.rmi;
+
+import com.github.nethad.clustermeister.api.NodeInformation;
+import com.github.nethad.clustermeister.api.NodeSummary;
+import com.github.nethad.clustermeister.api.NodeType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * An immutable view of the connected nodes at one membership version, with indexes by
+ * node ID, processing threads, host and node type, and the nodes' {@link NodeSummary}s.
+ *
+ * @author thomas
+ */
+public class NodeRegistrySnapshot {
+    static final NodeRegistrySnapshot EMPTY = new NodeRegistrySnapshot(0, ImmutableMap.<String, NodeInformation>of(),
+            ImmutableMap.<String, NodeSummary>of(),
+            ImmutableListMultimap.<Integer, NodeInformation>of(), ImmutableListMultimap.<String, NodeInformation>of(),
+            ImmutableListMultimap.<NodeType, NodeInformation>of());
+    
+    private final long version;
+    private final ImmutableMap<String, NodeInformation> nodesById;
+    private final ImmutableList<NodeInformation> nodes;
+    private final ImmutableMap<String, NodeSummary> summariesById;
+    private final ImmutableList<NodeSummary> summaries;
+    private final ImmutableListMultimap<Integer, NodeInformation> nodesByProcessingThreads;
+    private final ImmutableListMultimap<String, NodeInformation> nodesByHost;
+    private final ImmutableListMultimap<NodeType, NodeInformation> nodesByType;
+
+    NodeRegistrySnapshot(long version, ImmutableMap<String, NodeInformation> nodesById,
+            ImmutableMap<String, NodeSummary> summariesById,
+            ImmutableListMultimap<Integer, NodeInformation> nodesByProcessingThreads,
+            ImmutableListMultimap<String, NodeInformation> nodesByHost,
+            ImmutableListMultimap<NodeType, NodeInformation> nodesByType) {
+        this.version = version;
+        this.nodesById = nodesById;
+        this.nodes = nodesById.values().asList();
+        this.summariesById = summariesById;
+        this.summaries = summariesById.values().asList();
+        this.nodesByProcessingThreads = nodesByProcessingThreads;
+        this.nodesByHost = nodesByHost;
+        this.nodesByType = nodesByType;
+    }
+
+    /**
+     * @return the membership version of this snapshot.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return all nodes in the order they connected.
+     */
+    public ImmutableList<NodeInformation> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @param nodeId a node ID.
+     * @return the node, or null if it is not connected.
+     */
+    public NodeInformation getNode(String nodeId) {
+        return nodesById.get(nodeId);
+    }
+
+    /**
+     * @return the summaries of all nodes in the order they connected.
+     */
+    public ImmutableList<NodeSummary> getSummaries() {
+        return summaries;
+    }
+
+    /**
+     * @param nodeId a node ID.
+     * @return the summary of the node, or null if it is not connected.
+     */
+    public NodeSummary getSummary(String nodeId) {
+        return summariesById.get(nodeId);
+    }
+
+    /**
+     * @param processingThreads a number of processing threads, 0 for nodes where it is unknown.
+     * @return the nodes with this number of processing threads.
+     */
+    public ImmutableList<NodeInformation> getNodesByProcessingThreads(int processingThreads) {
+        return nodesByProcessingThreads.get(processingThreads);
+    }
+
+    /**
+     * @param host a host name or address as reported by the driver.
+     * @return the nodes running on this host.
+     */
+    public ImmutableList<NodeInformation> getNodesByHost(String host) {
+        return nodesByHost.get(host);
+    }
+
+    public ImmutableList<NodeInformation> getNodesByType(NodeType type) {
+        return nodesByType.get(type);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+}
@@ -18,6 +18,9 @@ package com.github.nethad.clustermeister.provisioning.rmi;
 import com.github.nethad.clustermeister.api.Loggers;
 import com.github.nethad.clustermeister.api.rmi.IRmiServerForApi;
 import com.github.nethad.clustermeister.driver.rmi.IRmiServerForDriver;
+import com.github.nethad.clustermeister.node.common.Constants;
+import com.github.nethad.clustermeister.node.common.control.ControlEndpoint;
+import com.github.nethad.clustermeister.node.common.control.ControlServer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Ranges;
 import java.io.IOException;
@@ -32,6 +35,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Serves the provisioning components to the driver and the API, 
+ * both through an RMI registry and through a {@link ControlServer}. 
+ * Clients choose the transport. The control channel may drift to a free port, 
+ * its {@link ControlEndpoint} is written to {@link ControlEndpoint#DEFAULT_FILE} and its port 
+ * is set as {@link Constants#CLUSTERMEISTER_CONTROL_PORT} for the driver launcher.
  *
  * @author thomas
  */
@@ -39,7 +47,7 @@ public class RmiInfrastructure {
     
     private static final int MIN_PORT = 1024;
     private static final int MAX_PORT = 65536;
-    private static final int STANDARD_PORT = 61111;
+    private static final int STANDARD_PORT = Constants.RMI_REGISTRY_PORT;
     
     private final Logger logger = LoggerFactory.getLogger(Loggers.PROVISIONING);
 //    @Inject
@@ -52,6 +60,9 @@ public class RmiInfrastructure {
     private RmiServerForDriver rmiServerForDriver;
     private IRmiServerForApi serverForApiStub;
     private IRmiServerForDriver serverForDriverStub;
+    private int controlPort = Constants.CONTROL_CHANNEL_PORT;
+    private ControlEndpoint controlEndpoint;
+    private ControlServer controlServer;
 
     public RmiInfrastructure() {
         this.registryPort = STANDARD_PORT;
@@ -83,7 +94,7 @@ public class RmiInfrastructure {
         if (System.getSecurityManager() == null) {
             System.setSecurityManager(new SecurityManager());
         }
-        registryPort = findAvailablePort();
+        registryPort = findAvailablePort(registryPort);
         try {
             registry = LocateRegistry.createRegistry(registryPort);
             createRmiServerForDriver();
@@ -93,12 +104,26 @@ public class RmiInfrastructure {
             NodeManager nodeManager = new NodeManager();
             rmiServerForApi.setNodeManager(nodeManager);
             rmiServerForDriver.setNodeManager(nodeManager);
-            
+            rmiServerForDriver.addNodeConnectionListener(rmiServerForApi);
+            startControlServer();
         } catch (Exception ex) {
             logger.error("RmiServerForDriver exception:", ex);
         }
     }
     
+    private void startControlServer() throws IOException {
+        controlPort = findAvailablePort(controlPort);
+        controlEndpoint = new ControlEndpoint(controlPort, ControlEndpoint.generateSecret());
+        controlServer = new ControlServer(controlPort, controlEndpoint.getSecret());
+        controlServer.register(IRmiServerForDriver.class, rmiServerForDriver);
+        controlServer.register(IRmiServerForApi.class, rmiServerForApi);
+        controlServer.start();
+        controlEndpoint.write(ControlEndpoint.DEFAULT_FILE);
+        // picked up by the driver launcher
+        System.setProperty(Constants.CLUSTERMEISTER_CONTROL_PORT, Integer.toString(controlPort));
+        logger.info("Control channel listening on port {}", controlPort);
+    }
+    
     /**
      * The RMI registry port.
      * @return 
@@ -107,6 +132,22 @@ public class RmiInfrastructure {
         return registryPort;
     }
     
+    /**
+     * The control channel port.
+     * @return 
+     */
+    public int getControlPort() {
+        return controlPort;
+    }
+    
+    /**
+     * The control channel port and secret.
+     * @return the endpoint, null if the control channel is not running.
+     */
+    public ControlEndpoint getControlEndpoint() {
+        return controlEndpoint;
+    }
+    
     @VisibleForTesting
     IRmiServerForApi getRmiServerForApi() {
         return serverForApiStub;
@@ -140,8 +181,8 @@ public class RmiInfrastructure {
         registry.rebind(name, serverForApiStub);
     }
 
-    private int findAvailablePort() {
-        int port = this.registryPort;
+    private int findAvailablePort(int startPort) {
+        int port = startPort;
         while (!isAvailable(port)) {
             port++;
         }
@@ -180,6 +221,11 @@ public class RmiInfrastructure {
     }
 
     void unregister() throws NoSuchObjectException {
+        if (controlServer != null) {
+            controlServer.stop();
+        }
+        rmiServerForApi.shutdown();
+        rmiServerForDriver.shutdown();
         UnicastRemoteObject.unexportObject(rmiServerForApi, true);
         UnicastRemoteObject.unexportObject(rmiServerForDriver, true);
         UnicastRemoteObject.unexportObject(registry, true);
@@ -15,21 +15,49 @@
  */
 package com.github.nethad.clustermeister.provisioning.rmi;
 
+import com.github.nethad.clustermeister.api.DriverAddress;
+import com.github.nethad.clustermeister.api.Loggers;
 import com.github.nethad.clustermeister.api.NodeInformation;
+import com.github.nethad.clustermeister.api.rmi.IRmiMembershipListener;
 import com.github.nethad.clustermeister.api.rmi.IRmiServerForApi;
+import com.github.nethad.clustermeister.api.rmi.NodeMembershipDelta;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jppf.management.JPPFManagementInfo;
+import org.jppf.management.JPPFSystemInformation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  *
  * An RMI server/service for the Clustermeister API to query for currently running nodes.
  * 
+ * Registered membership listeners are pushed the changes since the version they last received.
+ * Each listener is notified serially on its own turn of a shared pool, so a slow or hung listener 
+ * never blocks the driver or the other listeners; changes that arrive meanwhile are pushed 
+ * as one delta. Listeners that can not be reached are dropped.
+ * 
  * @author thomas
  */
-public class RmiServerForApi implements IRmiServerForApi {
+public class RmiServerForApi implements IRmiServerForApi, NodeConnectionListener {
+    private final Logger logger = LoggerFactory.getLogger(Loggers.PROVISIONING);
     
     private NodeManager nodeManager;
+    private final Map<IRmiMembershipListener, ListenerNotifier> membershipListeners = 
+            new ConcurrentHashMap<IRmiMembershipListener, ListenerNotifier>();
+    private final ExecutorService notifier = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("cm-membership-notifier-%d").setDaemon(true).build());
+    private volatile List<DriverAddress> driverAddresses = Collections.emptyList();
 
     /**
      * Returns a collection of currently running nodes.
@@ -37,15 +65,128 @@ public class RmiServerForApi implements IRmiServerForApi {
      */
     @Override
     public Collection<NodeInformation> getAllNodes() {
-        // this is apparently necessary, because values() has HashMap.Values in it, and those are not serializable
-        Collection<NodeInformation> allNodes = nodeManager.getAllNodes();
-        List<NodeInformation> dest = new ArrayList<NodeInformation>(allNodes.size());
-        dest.addAll(allNodes);
-        return dest;
+        return nodeManager.getAllNodes();
+    }
+    
+    @Override
+    public JPPFSystemInformation getSystemInformation(String nodeId) {
+        NodeInformation node = nodeManager.getSnapshot().getNode(nodeId);
+        return node == null ? null : node.getJPPFSystemInformation();
+    }
+    
+    @Override
+    public Map<String, NodeTelemetrySample> getNodeTelemetry() {
+        return nodeManager.getTelemetry();
+    }
+    
+    @Override
+    public NodeMembershipDelta getNodesSince(long version) {
+        return nodeManager.getNodesSince(version);
+    }
+
+    @Override
+    public void addMembershipListener(IRmiMembershipListener listener, long version) {
+        ListenerNotifier listenerNotifier = new ListenerNotifier(listener, version);
+        membershipListeners.put(listener, listenerNotifier);
+        listenerNotifier.request();
+    }
+
+    @Override
+    public void removeMembershipListener(IRmiMembershipListener listener) {
+        membershipListeners.remove(listener);
+    }
+    
+    @Override
+    public List<DriverAddress> getDriverAddresses() {
+        return driverAddresses;
+    }
+    
+    @Override
+    public void onNodeConnected(JPPFManagementInfo managementInfo, JPPFSystemInformation systemInformation) {
+        notifyMembershipListeners();
+    }
+
+    @Override
+    public void onNodeDisconnected(JPPFManagementInfo managementInfo) {
+        notifyMembershipListeners();
     }
     
     public void setNodeManager(NodeManager nodeManager) {
         this.nodeManager = nodeManager;
     }
     
+    /**
+     * @param driverAddresses the started local drivers.
+     */
+    public void setDriverAddresses(List<DriverAddress> driverAddresses) {
+        this.driverAddresses = new ArrayList<DriverAddress>(driverAddresses);
+    }
+    
+    void shutdown() {
+        notifier.shutdownNow();
+    }
+    
+    private void notifyMembershipListeners() {
+        for (ListenerNotifier listenerNotifier : membershipListeners.values()) {
+            listenerNotifier.request();
+        }
+    }
+    
+    /**
+     * Pushes the changes to one listener, never from two threads at a time.
+     */
+    private class ListenerNotifier implements Runnable {
+        private final IRmiMembershipListener listener;
+        private final AtomicBoolean requested = new AtomicBoolean();
+        private final AtomicBoolean running = new AtomicBoolean();
+        private long version;
+
+        ListenerNotifier(IRmiMembershipListener listener, long version) {
+            this.listener = listener;
+            this.version = version;
+        }
+        
+        void request() {
+            requested.set(true);
+            if (running.compareAndSet(false, true)) {
+                notifier.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (requested.getAndSet(false) && isRegistered()) {
+                    push();
+                }
+            } finally {
+                running.set(false);
+            }
+            // requested after the loop ended
+            if (requested.get() && running.compareAndSet(false, true)) {
+                notifier.execute(this);
+            }
+        }
+        
+        private boolean isRegistered() {
+            return membershipListeners.get(listener) == this;
+        }
+        
+        private void push() {
+            NodeMembershipDelta delta = nodeManager.getNodesSince(version);
+            if (delta.isEmpty()) {
+                return;
+            }
+            try {
+                listener.onMembershipChanged(delta);
+                version = delta.getToVersion();
+            } catch (RemoteException ex) {
+                logger.warn("Membership listener is not reachable, removing it.", ex);
+                membershipListeners.remove(listener, this);
+            } catch (RuntimeException ex) {
+                logger.warn("Membership listener failed, removing it.", ex);
+                membershipListeners.remove(listener, this);
+            }
+        }
+    }
 }
@@ -18,9 +18,14 @@ package com.github.nethad.clustermeister.provisioning.rmi;
 import com.github.nethad.clustermeister.api.Loggers;
 import com.github.nethad.clustermeister.api.impl.NodeInformationImpl;
 import com.github.nethad.clustermeister.driver.rmi.IRmiServerForDriver;
-import java.rmi.RemoteException;
-import java.util.ArrayList;
+import com.github.nethad.clustermeister.driver.rmi.NodeEvent;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.jppf.management.JPPFManagementInfo;
 import org.jppf.management.JPPFSystemInformation;
 import org.slf4j.Logger;
@@ -28,6 +33,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * An RMI server/service for the JPPF driver to call on node (dis)connects.
+ * 
+ * The node registry is updated within the call, {@link NodeConnectionListener}s are notified 
+ * in order on a separate thread so a slow listener never holds up the driver.
+ * 
  * @author thomas
  */
 public class RmiServerForDriver implements IRmiServerForDriver {
@@ -35,7 +44,11 @@ public class RmiServerForDriver implements IRmiServerForDriver {
     
     private NodeManager nodeManager;
     
-    private List<NodeConnectionListener> listeners = new ArrayList<NodeConnectionListener>();
+    private final List<NodeConnectionListener> listeners = new CopyOnWriteArrayList<NodeConnectionListener>();
+    private final ExecutorService listenerExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("cm-node-listeners-%d").setDaemon(true).build());
+    private final AtomicInteger pendingNotifications = new AtomicInteger();
+    private volatile long notificationLag = 0;
 
     /**
      * To be called when a node connects.
@@ -44,22 +57,67 @@ public class RmiServerForDriver implements IRmiServerForDriver {
      */
     @Override
     public void onNodeConnected(JPPFManagementInfo managementInfo, JPPFSystemInformation systemInformation) {
-        logger.info("Node connected "+managementInfo.getId());
-        NodeInformationImpl nodeInformation = new NodeInformationImpl(managementInfo.getId(), systemInformation);
-        nodeManager.addNode(nodeInformation);
-        notifyListenersConnected(managementInfo, systemInformation);
+        nodeConnected(managementInfo, systemInformation, System.currentTimeMillis());
     }
     
     /**
      * To be called when a node disconnects.
      * @param managementInfo
-     * @throws RemoteException 
      */
     @Override
-    public void onNodeDisconnected(JPPFManagementInfo managementInfo) throws RemoteException {
+    public void onNodeDisconnected(JPPFManagementInfo managementInfo) {
+        nodeDisconnected(managementInfo, System.currentTimeMillis());
+    }
+    
+    /**
+     * To be called with a batch of node events, oldest first.
+     * @param events 
+     */
+    @Override
+    public void onNodeEvents(List<NodeEvent> events) {
+        logger.debug("Received {} node events.", events.size());
+        nodeManager.applyEvents(events);
+        for (NodeEvent event : events) {
+            switch (event.getType()) {
+                case CONNECTED:
+                    logger.info("Node connected "+event.getManagementInfo().getId());
+                    notifyListenersConnected(event.getManagementInfo(), event.getSystemInformation(), 
+                            event.getTimestamp());
+                    break;
+                case DISCONNECTED:
+                    logger.info("Node disconnected "+event.getManagementInfo().getId());
+                    notifyListenersDisconnected(event.getManagementInfo(), event.getTimestamp());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * To be called with the latest telemetry of the nodes.
+     * @param samples 
+     */
+    @Override
+    public void onNodeTelemetry(List<byte[]> samples) {
+        for (byte[] sample : samples) {
+            try {
+                nodeManager.updateTelemetry(NodeTelemetrySample.fromBytes(sample));
+            } catch (IllegalArgumentException ex) {
+                logger.warn("Could not read node telemetry.", ex);
+            }
+        }
+    }
+
+    private void nodeConnected(JPPFManagementInfo managementInfo, JPPFSystemInformation systemInformation, long timestamp) {
+        logger.info("Node connected "+managementInfo.getId());
+        NodeInformationImpl nodeInformation = new NodeInformationImpl(managementInfo.getId(), systemInformation);
+        nodeManager.addNode(nodeInformation, managementInfo.getHost(), NodeManager.typeOf(managementInfo));
+        notifyListenersConnected(managementInfo, systemInformation, timestamp);
+    }
+    
+    private void nodeDisconnected(JPPFManagementInfo managementInfo, long timestamp) {
         logger.info("Node disconnected "+managementInfo.getId());
         nodeManager.removeNode(managementInfo.getId());
-        notifyListenersDisconnected(managementInfo);
+        notifyListenersDisconnected(managementInfo, timestamp);
     }
     
     public void setNodeManager(NodeManager nodeManager) {
@@ -74,15 +132,67 @@ public class RmiServerForDriver implements IRmiServerForDriver {
         listeners.remove(listener);
     }
 
-    private void notifyListenersConnected(JPPFManagementInfo managementInfo, JPPFSystemInformation systemInformation) {
-        for (NodeConnectionListener nodeConnectionListener : listeners) {
-            nodeConnectionListener.onNodeConnected(managementInfo, systemInformation);
-        }
+    /**
+     * @return the number of events whose listeners have not been notified yet.
+     */
+    public int getPendingNotifications() {
+        return pendingNotifications.get();
     }
     
-    private void notifyListenersDisconnected(JPPFManagementInfo managementInfo) {
-        for (NodeConnectionListener nodeConnectionListener : listeners) {
-            nodeConnectionListener.onNodeDisconnected(managementInfo);
-        }
+    /**
+     * @return the time from the driver observing the last event to its listeners being notified, in milliseconds.
+     */
+    public long getNotificationLag() {
+        return notificationLag;
+    }
+    
+    void shutdown() {
+        listenerExecutor.shutdownNow();
+    }
+
+    private void notifyListenersConnected(final JPPFManagementInfo managementInfo, 
+            final JPPFSystemInformation systemInformation, long timestamp) {
+        notifyListeners(new Runnable() {
+            @Override
+            public void run() {
+                for (NodeConnectionListener nodeConnectionListener : listeners) {
+                    try {
+                        nodeConnectionListener.onNodeConnected(managementInfo, systemInformation);
+                    } catch (RuntimeException ex) {
+                        logger.warn("Node connection listener failed.", ex);
+                    }
+                }
+            }
+        }, timestamp);
+    }
+    
+    private void notifyListenersDisconnected(final JPPFManagementInfo managementInfo, long timestamp) {
+        notifyListeners(new Runnable() {
+            @Override
+            public void run() {
+                for (NodeConnectionListener nodeConnectionListener : listeners) {
+                    try {
+                        nodeConnectionListener.onNodeDisconnected(managementInfo);
+                    } catch (RuntimeException ex) {
+                        logger.warn("Node connection listener failed.", ex);
+                    }
+                }
+            }
+        }, timestamp);
+    }
+    
+    private void notifyListeners(final Runnable notification, final long timestamp) {
+        pendingNotifications.incrementAndGet();
+        listenerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    notification.run();
+                } finally {
+                    notificationLag = System.currentTimeMillis() - timestamp;
+                    pendingNotifications.decrementAndGet();
+                }
+            }
+        });
     }
 }
@@ -18,6 +18,7 @@ package com.github.nethad.clustermeister.provisioning.torque;
 import com.github.nethad.clustermeister.api.JPPFConstants;
 import com.github.nethad.clustermeister.api.LogLevel;
 import com.github.nethad.clustermeister.api.Loggers;
+import com.github.nethad.clustermeister.node.common.Constants;
 import com.github.nethad.clustermeister.node.common.NodeConfigurationUtils;
 import com.github.nethad.clustermeister.provisioning.ConfigurationKeys;
 import com.github.nethad.clustermeister.provisioning.utils.SSHClient;
@@ -151,6 +152,12 @@ class NodeDeployTask {
                 torqueNodeDeployment.getSessionId(), nodeNumber));
         properties.setProperty(JPPFConstants.PROCESSING_THREADS, 
                 String.valueOf(nodeConfiguration.getNumberOfCpus()));
+        int standbyNodes = nodeConfiguration.getStandbyNodes().or(
+                ConfigurationKeys.DEFAULT_STANDBY_NODES);
+        if(standbyNodes > 0) {
+            properties.setProperty(Constants.CLUSTERMEISTER_STANDBY_NODES, 
+                    String.valueOf(standbyNodes));
+        }
         return properties;
     }
     
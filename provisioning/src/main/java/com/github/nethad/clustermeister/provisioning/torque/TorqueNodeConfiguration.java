@@ -36,6 +36,7 @@ public class TorqueNodeConfiguration implements NodeConfiguration {
     private Optional<LogLevel> logLevel = Optional.absent();
     private Optional<Boolean> remoteLoggingActivated = Optional.absent();
     private Optional<Integer> remoteLoggingPort = Optional.absent();
+    private Optional<Integer> standbyNodes = Optional.absent();
 
     public TorqueNodeConfiguration(String driverAddress, int numberOfCpus, Collection<File> artifactsToPreload) {
         this.driverAddress = driverAddress;
@@ -121,4 +122,15 @@ public class TorqueNodeConfiguration implements NodeConfiguration {
     public Optional<Integer> getRemoteLoggingPort() {
         return remoteLoggingPort;
     }
+
+    /**
+     * Set the number of pre-started standby JVMs kept to serve node restarts.
+     */
+    public void setStandbyNodes(Integer standbyNodes) {
+        this.standbyNodes = Optional.fromNullable(standbyNodes);
+    }
+
+    public Optional<Integer> getStandbyNodes() {
+        return standbyNodes;
+    }
 }
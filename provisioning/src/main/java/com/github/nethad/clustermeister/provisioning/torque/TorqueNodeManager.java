@@ -163,6 +163,11 @@ public class TorqueNodeManager {
                     ConfigurationKeys.LOGGING_NODE_REMOTE_PORT, 
                     ConfigurationKeys.DEFAULT_LOGGING_NODE_REMOTE_PORT));
         }
+        if (!nodeConfiguration.getStandbyNodes().isPresent()) {
+            nodeConfiguration.setStandbyNodes(configuration.getInt(
+                    ConfigurationKeys.STANDBY_NODES, 
+                    ConfigurationKeys.DEFAULT_STANDBY_NODES));
+        }
         return executorService.submit(new AddNodeTask(nodeConfiguration));
     }
     
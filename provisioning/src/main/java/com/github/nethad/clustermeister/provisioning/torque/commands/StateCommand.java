@@ -17,10 +17,12 @@ package com.github.nethad.clustermeister.provisioning.torque.commands;
 
 import com.github.nethad.clustermeister.api.NodeInformation;
 import com.github.nethad.clustermeister.api.utils.JPPFProperties;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
 import com.github.nethad.clustermeister.provisioning.CommandLineArguments;
 import com.github.nethad.clustermeister.provisioning.CommandLineHandle;
 import com.github.nethad.clustermeister.provisioning.rmi.RmiServerForApi;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.StringTokenizer;
 
@@ -44,12 +46,17 @@ public class StateCommand extends AbstractTorqueExecutableCommand {
     @Override
     public void execute(CommandLineArguments arguments) {
         Collection<NodeInformation> allNodes = getRmiServerForApi().getAllNodes();
+        Map<String, NodeTelemetrySample> telemetry = getRmiServerForApi().getNodeTelemetry();
         getCommandLineHandle().print("running nodes: %d", allNodes.size());
         
         for (NodeInformation nodeInformation : allNodes) {
             String id = nodeInformation.getID();
             String processingThreads = nodeInformation.getJPPFSystemInformation().getJppf().getProperty(JPPFProperties.PROCESSING_THREADS);
             getCommandLineHandle().print("node %s: %s processing threads.", id, processingThreads);
+            NodeTelemetrySample sample = telemetry.get(id);
+            if (sample != null) {
+                getCommandLineHandle().print("  %s", sample);
+            }
         }
     }
     
@@ -64,6 +64,7 @@ public class AmazonConfigurationLoaderTest {
     private static final String USER2 = "user2";
     private ByteArrayInputStream configBytes;
     private ByteArrayInputStream badConfigBytes;
+    private ByteArrayInputStream tieredConfigBytes;
     private SimpleDateFormat simpleDateFormat = 
             new SimpleDateFormat(AWSInstanceProfile.DATE_PATTERN);
 
@@ -118,6 +119,12 @@ public class AmazonConfigurationLoaderTest {
         config.append("    - ").append(PROFILE1).append(":").append("\n");
         config.append("        ami_id: ").append(AMI_ID1).append("\n");
         badConfigBytes = new ByteArrayInputStream(config.toString().getBytes(Charsets.UTF_8));
+        
+        config = new StringBuilder("amazon:").append("\n");
+        config.append("  access_key_id: ").append(ACCESS_KEY_ID).append("\n");
+        config.append("  secret_key: ").append(SECRET_KEY).append("\n");
+        config.append("  topology: ").append(AmazonConfigurationLoader.TOPOLOGY_TIERED).append("\n");
+        tieredConfigBytes = new ByteArrayInputStream(config.toString().getBytes(Charsets.UTF_8));
     }
 
     
@@ -133,6 +140,12 @@ public class AmazonConfigurationLoaderTest {
         configLoader = new AmazonConfigurationLoader(config);
     }
     
+    public void tieredConfigSetup() throws ConfigurationException {
+        YamlConfiguration config = new YamlConfiguration();
+        config.load(new InputStreamReader(tieredConfigBytes, Charsets.UTF_8));
+        configLoader = new AmazonConfigurationLoader(config);
+    }
+    
     @After
     public void tearDown() {
         configLoader = null;
@@ -168,6 +181,18 @@ public class AmazonConfigurationLoaderTest {
         configLoader.getSecretKey();
     }
 
+    @Test
+    public void testIsTieredTopology() throws ConfigurationException {
+        tieredConfigSetup();
+        assertThat(configLoader.isTieredTopology(), is(true));
+    }
+    
+    @Test
+    public void testFlatTopologyByDefault() throws ConfigurationException {
+        goodConfigSetup();
+        assertThat(configLoader.isTieredTopology(), is(false));
+    }
+
     /**
      * Test of getConfiguredCredentials method, of class AmazonConfigurationLoader.
      */
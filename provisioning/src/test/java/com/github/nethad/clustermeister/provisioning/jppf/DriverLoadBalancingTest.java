@@ -42,6 +42,17 @@ public class DriverLoadBalancingTest {
         return readYamlConfig(sb);
     }
     
+    private Configuration throughputLoadBalancingConfig() {
+        StringBuilder sb = new StringBuilder("load_balancing:\n");
+            sb.append("  algorithm: cm_throughput\n")
+              .append("  strategy: throughput\n")
+              .append("  strategies:\n")
+              .append("    - throughput:\n")
+              .append("        targetLatency: 500\n")
+              .append("        varianceFactor: 0.5\n");
+        return readYamlConfig(sb);
+    }
+    
     private Configuration strategyNotInStrategiesConfig() {
         StringBuilder sb = new StringBuilder("load_balancing:\n");
             sb.append("  algorithm: manual\n")
@@ -85,6 +96,17 @@ public class DriverLoadBalancingTest {
         assertThat(values.get("strategy.cmprofile.size"), equalTo("10"));
     }
 
+    @Test
+    public void throughputStrategy() {
+        driverLoadBalancing = new DriverLoadBalancing(throughputLoadBalancingConfig());
+        Map<String, String> values = driverLoadBalancing.getLoadBalancingConfigValues();
+        
+        assertThat(values.size(), is(4));
+        assertThat(values.get(JPPFConstants.LOAD_BALANCING_ALGORITHM), equalTo("cm_throughput"));
+        assertThat(values.get("strategy.cmprofile.targetLatency"), equalTo("500"));
+        assertThat(values.get("strategy.cmprofile.varianceFactor"), equalTo("0.5"));
+    }
+
     @Test
     public void strategyNotInStrategies() {
         driverLoadBalancing = new DriverLoadBalancing(strategyNotInStrategiesConfig());
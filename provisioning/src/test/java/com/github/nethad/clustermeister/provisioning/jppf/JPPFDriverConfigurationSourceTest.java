@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.provisioning.jppf;
+
+import com.github.nethad.clustermeister.api.JPPFConstants;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import org.junit.After;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ *
+ * @author thomas
+ */
+public class JPPFDriverConfigurationSourceTest {
+
+    @After
+    public void tearDown() {
+        System.getProperties().remove(JPPFDriverConfigurationSource.PROPERTY_PREFIX + JPPFConstants.SERVER_PORT);
+        System.getProperties().remove(JPPFDriverConfigurationSource.PROPERTY_PREFIX + JPPFConstants.LOAD_BALANCING_ALGORITHM);
+        System.getProperties().remove(JPPFDriverConfigurationSource.PROPERTY_PREFIX + "jppf.peers");
+        System.getProperties().remove(JPPFDriverConfigurationSource.JVM_OPTIONS_PROPERTY);
+    }
+
+    @Test
+    public void defaults() {
+        JPPFDriverConfigurationSource source = new JPPFDriverConfigurationSource();
+
+        assertThat(source.properties.getProperty(JPPFConstants.SERVER_PORT), 
+                equalTo(String.valueOf(JPPFConstants.DEFAULT_SERVER_PORT)));
+        assertThat(source.properties.getProperty(JPPFConstants.LOAD_BALANCING_ALGORITHM), equalTo("proportional"));
+    }
+
+    @Test
+    public void overridesAreAppliedAndForwarded() {
+        Map<String, String> overrides = new HashMap<String, String>();
+        overrides.put(JPPFConstants.SERVER_PORT, "11112");
+        overrides.put(JPPFConstants.LOAD_BALANCING_ALGORITHM, "cm_throughput");
+
+        JPPFDriverConfigurationSource source = new JPPFDriverConfigurationSource(overrides, "-Xmx512m");
+
+        assertThat(source.properties.getProperty(JPPFConstants.SERVER_PORT), equalTo("11112"));
+        assertThat(source.properties.getProperty(JPPFConstants.LOAD_BALANCING_ALGORITHM), equalTo("cm_throughput"));
+        String jvmOptions = source.properties.getProperty(JPPFConstants.JVM_OPTIONS);
+        assertThat(jvmOptions, containsString("-Xmx512m"));
+        assertThat(jvmOptions, containsString("-Dclustermeister.driver.jppf.server.port=11112"));
+        assertThat(jvmOptions, not(containsString(JPPFDriverConfigurationSource.JVM_OPTIONS_PROPERTY)));
+        assertThat(System.getProperty(JPPFDriverConfigurationSource.PROPERTY_PREFIX + JPPFConstants.SERVER_PORT), 
+                nullValue());
+    }
+
+    @Test
+    public void driverProcessReadsForwardedOverrides() {
+        System.setProperty(JPPFDriverConfigurationSource.PROPERTY_PREFIX + JPPFConstants.SERVER_PORT, "11112");
+        System.setProperty(JPPFDriverConfigurationSource.PROPERTY_PREFIX + JPPFConstants.LOAD_BALANCING_ALGORITHM, 
+                "cm_throughput");
+
+        JPPFDriverConfigurationSource source = new JPPFDriverConfigurationSource();
+
+        assertThat(source.properties.getProperty(JPPFConstants.SERVER_PORT), equalTo("11112"));
+        assertThat(source.properties.getProperty(JPPFConstants.LOAD_BALANCING_ALGORITHM), equalTo("cm_throughput"));
+    }
+
+    @Test
+    public void valuesWithSpacesAreForwardedAsOneOption() {
+        Map<String, String> overrides = new HashMap<String, String>();
+        overrides.put("jppf.peers", "driver1 driver2");
+
+        JPPFDriverConfigurationSource source = new JPPFDriverConfigurationSource(overrides, "");
+        
+        // JPPF splits the JVM options at whitespace
+        String[] jvmOptions = source.properties.getProperty(JPPFConstants.JVM_OPTIONS).split("\\s");
+        String option = "-Dclustermeister.driver.jppf.peers=driver1+driver2";
+        assertThat(Arrays.asList(jvmOptions), hasItem(option));
+        System.setProperty(JPPFDriverConfigurationSource.PROPERTY_PREFIX + "jppf.peers", 
+                option.substring(option.indexOf('=') + 1));
+        assertThat(new JPPFDriverConfigurationSource().properties.getProperty("jppf.peers"), 
+                equalTo("driver1 driver2"));
+    }
+}
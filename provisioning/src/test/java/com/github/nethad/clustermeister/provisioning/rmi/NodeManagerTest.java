@@ -0,0 +1,266 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.provisioning.rmi;
+
+import com.github.nethad.clustermeister.api.NodeInformation;
+import com.github.nethad.clustermeister.api.NodeType;
+import com.github.nethad.clustermeister.api.impl.NodeInformationImpl;
+import com.github.nethad.clustermeister.api.rmi.NodeMembershipDelta;
+import com.github.nethad.clustermeister.api.utils.JPPFProperties;
+import com.github.nethad.clustermeister.driver.rmi.NodeEvent;
+import com.github.nethad.clustermeister.node.common.NodeTelemetrySample;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.jppf.management.JPPFManagementInfo;
+import org.jppf.management.JPPFSystemInformation;
+import org.jppf.utils.TypedProperties;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author thomas
+ */
+public class NodeManagerTest {
+    private NodeManager nodeManager;
+
+    @Before
+    public void setup() {
+        nodeManager = new NodeManager();
+    }
+
+    @Test
+    public void everyChangeIncrementsTheVersion() {
+        assertThat(nodeManager.getVersion(), is(0L));
+        nodeManager.addNode(node("a", 2));
+        nodeManager.addNode(node("b", 2));
+        nodeManager.removeNode("a");
+        nodeManager.removeNode("a");
+
+        assertThat(nodeManager.getVersion(), is(3L));
+    }
+
+    @Test
+    public void snapshotsAreNotAffectedByLaterChanges() {
+        nodeManager.addNode(node("a", 2));
+        NodeRegistrySnapshot snapshot = nodeManager.getSnapshot();
+
+        nodeManager.addNode(node("b", 2));
+
+        assertThat(snapshot.size(), is(1));
+        assertThat(snapshot.getNode("b"), is(nullValue()));
+        assertThat(nodeManager.getSnapshot().size(), is(2));
+    }
+
+    @Test
+    public void batchOfEventsIsPublishedAsOneSnapshot() {
+        nodeManager.applyEvents(Arrays.asList(
+                NodeEvent.connected(new JPPFManagementInfo("host1", 0, "a"), null),
+                NodeEvent.connected(new JPPFManagementInfo("host1", 0, "b"), null),
+                NodeEvent.disconnected(new JPPFManagementInfo("host1", 0, "a"))));
+
+        NodeRegistrySnapshot snapshot = nodeManager.getSnapshot();
+
+        assertThat(snapshot.getVersion(), is(3L));
+        assertThat(snapshot.size(), is(1));
+        assertThat(snapshot.getNodesByHost("host1").get(0).getID(), is("b"));
+        assertThat(nodeManager.getSnapshot(), is(sameInstance(snapshot)));
+        assertThat(nodeManager.getNodesSince(1).getLeft(), is(Arrays.asList("a")));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void allNodesAreImmutable() {
+        nodeManager.addNode(node("a", 2));
+
+        nodeManager.getAllNodes().clear();
+    }
+
+    @Test
+    public void snapshotsAreIndexed() {
+        nodeManager.addNode(node("a", 2), "host1", NodeType.NODE);
+        nodeManager.addNode(node("b", 4), "host1", NodeType.NODE);
+        nodeManager.addNode(node("c", 4), "host2", NodeType.DRIVER);
+
+        NodeRegistrySnapshot snapshot = nodeManager.getSnapshot();
+
+        assertThat(snapshot.getNode("b").getID(), is("b"));
+        assertThat(snapshot.getNodesByProcessingThreads(4).size(), is(2));
+        assertThat(snapshot.getNodesByHost("host1").size(), is(2));
+        assertThat(snapshot.getNodesByType(NodeType.DRIVER).get(0).getID(), is("c"));
+        assertThat(snapshot.getNodesByHost("host3").isEmpty(), is(true));
+    }
+
+    @Test
+    public void deltaCollapsesChanges() {
+        nodeManager.addNode(node("a", 2));
+        long version = nodeManager.getVersion();
+        nodeManager.addNode(node("b", 2));
+        nodeManager.addNode(node("c", 2));
+        nodeManager.removeNode("b");
+        nodeManager.removeNode("a");
+
+        NodeMembershipDelta delta = nodeManager.getNodesSince(version);
+
+        assertThat(delta.isFull(), is(false));
+        assertThat(delta.getJoined().size(), is(1));
+        assertThat(delta.getJoined().get(0).getID(), is("c"));
+        assertThat(delta.getLeft(), is(Arrays.asList("b", "a")));
+        assertThat(delta.getToVersion(), is(nodeManager.getVersion()));
+    }
+
+    @Test
+    public void oldVersionGetsFullDelta() {
+        for (int i = 0; i < NodeManager.MAX_CHANGES + 10; i++) {
+            nodeManager.addNode(node("node" + i));
+        }
+
+        NodeMembershipDelta delta = nodeManager.getNodesSince(1);
+
+        assertThat(delta.isFull(), is(true));
+        assertThat(delta.getJoined().size(), is(NodeManager.MAX_CHANGES + 10));
+    }
+
+    @Test
+    public void concurrentChurnIsConsistent() throws Exception {
+        final int threads = 8;
+        final int nodesPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    for (int i = 0; i < nodesPerThread; i++) {
+                        nodeManager.addNode(node(thread + "-" + i));
+                        if (i % 2 == 1) {
+                            nodeManager.removeNode(thread + "-" + (i - 1));
+                        }
+                        nodeManager.getAllNodes().size();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+
+        assertThat(nodeManager.getAllNodes().size(), is(threads * nodesPerThread / 2));
+        assertThat(nodeManager.getVersion(), is((long) threads * nodesPerThread * 3 / 2));
+    }
+
+    @Test
+    public void summariesAreMuchSmallerThanSystemInformation() throws Exception {
+        final int nodes = 2000;
+        for (int i = 0; i < nodes; i++) {
+            String id = "node" + i;
+            nodeManager.addNode(new NodeInformationImpl(id, new JPPFSystemInformation(id)));
+        }
+
+        NodeMembershipDelta delta = nodeManager.getNodesSince(0);
+        long summaryBytes = serializedSize(delta);
+        long systemInformationBytes = serializedSize(new ArrayList<NodeInformation>(nodeManager.getAllNodes()));
+
+        assertThat(delta.getJoined().size(), is(nodes));
+        assertThat(delta.getJoined().get(0).getAvailableProcessors(), 
+                is(Runtime.getRuntime().availableProcessors()));
+        assertThat(summaryBytes * 10 < systemInformationBytes, is(true));
+    }
+
+    @Test
+    public void telemetryIsKeptForConnectedNodesOnly() {
+        nodeManager.addNode(node("a"));
+        nodeManager.updateTelemetry(telemetry("a"));
+        nodeManager.updateTelemetry(telemetry("unknown"));
+
+        assertThat(nodeManager.getTelemetry().keySet(), is(Collections.singleton("a")));
+        assertThat(nodeManager.getTelemetry().get("a").getActiveTasks(), is(2));
+
+        nodeManager.removeNode("a");
+
+        assertThat(nodeManager.getTelemetry().isEmpty(), is(true));
+    }
+
+    @Test
+    public void telemetryOfRemovedNodeIsNotKept() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                final String id = "node" + i;
+                nodeManager.addNode(node(id));
+                final CountDownLatch started = new CountDownLatch(1);
+                Future<?> updates = executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        started.countDown();
+                        for (int j = 0; j < 10; j++) {
+                            nodeManager.updateTelemetry(telemetry(id));
+                        }
+                    }
+                });
+                started.await();
+                nodeManager.removeNode(id);
+                updates.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(nodeManager.getTelemetry().isEmpty(), is(true));
+    }
+
+    private NodeTelemetrySample telemetry(String id) {
+        return new NodeTelemetrySample(id, System.currentTimeMillis(), 0.5f, 1, 1 << 20, 1 << 30, 0, 2, 0, 0);
+    }
+
+    private long serializedSize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.size();
+    }
+
+    private NodeInformation node(String id) {
+        return new NodeInformationImpl(id, null);
+    }
+
+    private NodeInformation node(String id, int processingThreads) {
+        TypedProperties jppf = new TypedProperties();
+        jppf.setProperty(JPPFProperties.PROCESSING_THREADS, String.valueOf(processingThreads));
+        JPPFSystemInformation systemInformation = mock(JPPFSystemInformation.class);
+        when(systemInformation.getJppf()).thenReturn(jppf);
+        return new NodeInformationImpl(id, systemInformation);
+    }
+}
@@ -17,9 +17,17 @@ package com.github.nethad.clustermeister.provisioning.rmi;
 
 import com.github.nethad.clustermeister.api.NodeInformation;
 import com.github.nethad.clustermeister.api.rmi.IRmiServerForApi;
+import com.github.nethad.clustermeister.api.rmi.NodeMembershipDelta;
 import com.github.nethad.clustermeister.driver.rmi.IRmiServerForDriver;
+import com.github.nethad.clustermeister.driver.rmi.NodeEvent;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.jppf.management.JPPFManagementInfo;
 import org.jppf.management.JPPFSystemInformation;
 import org.junit.AfterClass;
@@ -76,6 +84,64 @@ public class RmiIntegrationTest {
         assertThat(allNodes.size(), is(0));
     }
 
+    @Test
+    public void apiGetsMembershipDeltas() throws Exception {
+        long version = rmiServerForApi.getNodesSince(0).getToVersion();
+        final JPPFManagementInfo managementInfo = getManagementInfoForNodeId("node2");
+        rmiServerForDriver.onNodeConnected(managementInfo, managementInfo.getSystemInfo());
+
+        NodeMembershipDelta delta = rmiServerForApi.getNodesSince(version);
+        assertThat(delta.getJoined().size(), is(1));
+        assertThat(delta.getJoined().get(0).getID(), is("node2"));
+        assertThat(delta.getToVersion(), is(version + 1));
+
+        rmiServerForDriver.onNodeDisconnected(managementInfo);
+        delta = rmiServerForApi.getNodesSince(version);
+        assertThat(delta.getJoined().size(), is(0));
+        assertThat(delta.getLeft(), is(Arrays.asList("node2")));
+    }
+
+    @Test
+    public void batchedEventsAreAppliedInOrderAndListenersNotified() throws Exception {
+        final JPPFManagementInfo node3 = getManagementInfoForNodeId("node3");
+        final JPPFManagementInfo node4 = getManagementInfoForNodeId("node4");
+        final List<String> notified = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch latch = new CountDownLatch(3);
+        NodeConnectionListener listener = new NodeConnectionListener() {
+            @Override
+            public void onNodeConnected(JPPFManagementInfo managementInfo, JPPFSystemInformation systemInformation) {
+                notified.add("+" + managementInfo.getId());
+                latch.countDown();
+            }
+
+            @Override
+            public void onNodeDisconnected(JPPFManagementInfo managementInfo) {
+                notified.add("-" + managementInfo.getId());
+                latch.countDown();
+            }
+        };
+        RmiServerForDriver serverObject = rmiInfrastructure.getRmiServerForDriverObject();
+        serverObject.addNodeConnectionListener(listener);
+        try {
+            rmiServerForDriver.onNodeEvents(Arrays.asList(
+                    NodeEvent.connected(node3, node3.getSystemInfo()),
+                    NodeEvent.connected(node4, node4.getSystemInfo()),
+                    NodeEvent.disconnected(node3)));
+
+            List<String> ids = new ArrayList<String>();
+            for (NodeInformation node : rmiServerForApi.getAllNodes()) {
+                ids.add(node.getID());
+            }
+            assertThat(ids.contains("node4"), is(true));
+            assertThat(ids.contains("node3"), is(false));
+            assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+            assertThat(notified, is(Arrays.asList("+node3", "+node4", "-node3")));
+        } finally {
+            serverObject.removeNodeConnectionListener(listener);
+            rmiServerForDriver.onNodeDisconnected(node4);
+        }
+    }
+
     private JPPFManagementInfo getManagementInfoForNodeId(String id) {
         JPPFSystemInformation jppfSystemInformation = new JPPFSystemInformation(id);
         JPPFManagementInfo managementInfo = new JPPFManagementInfo("", 0, id);
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012 The Clustermeister Team.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.nethad.clustermeister.provisioning.rmi;
+
+import com.github.nethad.clustermeister.api.impl.NodeInformationImpl;
+import com.github.nethad.clustermeister.api.rmi.IRmiMembershipListener;
+import com.github.nethad.clustermeister.api.rmi.NodeMembershipDelta;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ *
+ * @author thomas
+ */
+public class RmiServerForApiTest {
+    private NodeManager nodeManager;
+    private RmiServerForApi server;
+
+    @Before
+    public void setup() {
+        nodeManager = new NodeManager();
+        server = new RmiServerForApi();
+        server.setNodeManager(nodeManager);
+    }
+    
+    @After
+    public void tearDown() {
+        server.shutdown();
+    }
+
+    @Test
+    public void hungListenerDoesNotBlockOthers() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        server.addMembershipListener(new IRmiMembershipListener() {
+            @Override
+            public void onMembershipChanged(NodeMembershipDelta delta) {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 0);
+        final CountDownLatch notified = new CountDownLatch(2);
+        server.addMembershipListener(new IRmiMembershipListener() {
+            @Override
+            public void onMembershipChanged(NodeMembershipDelta delta) {
+                notified.countDown();
+            }
+        }, 0);
+        
+        addNode("a");
+        addNode("b");
+
+        try {
+            assertThat(notified.await(10, TimeUnit.SECONDS), is(true));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void removedListenerIsNotNotifiedAgain() throws Exception {
+        final AtomicInteger notifications = new AtomicInteger();
+        final CountDownLatch first = new CountDownLatch(1);
+        IRmiMembershipListener listener = new IRmiMembershipListener() {
+            @Override
+            public void onMembershipChanged(NodeMembershipDelta delta) {
+                notifications.incrementAndGet();
+                first.countDown();
+            }
+        };
+        server.addMembershipListener(listener, 0);
+        addNode("a");
+        assertThat(first.await(10, TimeUnit.SECONDS), is(true));
+        
+        server.removeMembershipListener(listener);
+        addNode("b");
+        Thread.sleep(200);
+        
+        assertThat(notifications.get(), is(1));
+    }
+
+    private void addNode(String id) {
+        nodeManager.addNode(new NodeInformationImpl(id, null));
+        server.onNodeConnected(null, null);
+    }
+}